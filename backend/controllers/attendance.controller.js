@@ -134,6 +134,8 @@ const bulkMarkAttendance = async (req, res) => {
       await client.query('BEGIN');
 
       const results = [];
+      // Attendees without a record, as markAttendance would have answered them
+      const rejected = [];
       for (const att of attendances) {
         const result = await client.query(
           `UPDATE attendance 
@@ -144,6 +146,8 @@ const bulkMarkAttendance = async (req, res) => {
         );
         if (result.rows.length > 0) {
           results.push(result.rows[0]);
+        } else {
+          rejected.push({ userId: att.userId, httpStatus: 404, error: 'Attendance record not found' });
         }
       }
 
@@ -151,7 +155,8 @@ const bulkMarkAttendance = async (req, res) => {
 
       res.json({
         message: 'Attendance marked for all',
-        updated: results.length
+        updated: results.length,
+        rejected
       });
     } catch (error) {
       await client.query('ROLLBACK');
@@ -55,86 +55,125 @@ const getCourseProgress = async (req, res) => {
   }
 };
 
-// Update lesson progress
-const updateLessonProgress = async (req, res) => {
-  try {
-    const { lessonId } = req.params;
-    const { completed, timeSpentSeconds, lastPositionSeconds } = req.body;
+// Upsert one lesson's progress and the course percentage for a user.
+// Resolves { status, error } if the lesson is unknown or the user is not enrolled.
+const applyLessonProgress = async (userId, lessonId, { completed, timeSpentSeconds, lastPositionSeconds }) => {
+  // Get lesson and course info
+  const lessonInfo = await pool.query(
+    'SELECT course_id FROM lessons WHERE id = $1',
+    [lessonId]
+  );
+
+  if (lessonInfo.rows.length === 0) {
+    return { status: 404, error: 'Lesson not found' };
+  }
 
-    // Get lesson and course info
-    const lessonInfo = await pool.query(
-      'SELECT course_id FROM lessons WHERE id = $1',
-      [lessonId]
-    );
+  const courseId = lessonInfo.rows[0].course_id;
 
-    if (lessonInfo.rows.length === 0) {
-      return res.status(404).json({ error: 'Lesson not found' });
-    }
+  // Check if enrolled
+  const enrollmentCheck = await pool.query(
+    'SELECT id FROM enrollments WHERE user_id = $1 AND course_id = $2',
+    [userId, courseId]
+  );
 
-    const courseId = lessonInfo.rows[0].course_id;
+  if (enrollmentCheck.rows.length === 0) {
+    return { status: 403, error: 'Not enrolled in this course' };
+  }
 
-    // Check if enrolled
-    const enrollmentCheck = await pool.query(
-      'SELECT id FROM enrollments WHERE user_id = $1 AND course_id = $2',
-      [req.user.id, courseId]
-    );
+  // Upsert progress
+  const result = await pool.query(
+    `INSERT INTO lesson_progress (user_id, lesson_id, completed, time_spent_seconds, last_position_seconds, completed_at)
+     VALUES ($1, $2, $3, $4, $5, $6)
+     ON CONFLICT (user_id, lesson_id) 
+     DO UPDATE SET 
+       completed = COALESCE($3, lesson_progress.completed),
+       time_spent_seconds = COALESCE($4, lesson_progress.time_spent_seconds),
+       last_position_seconds = COALESCE($5, lesson_progress.last_position_seconds),
+       completed_at = CASE WHEN $3 = true AND lesson_progress.completed_at IS NULL THEN NOW() ELSE lesson_progress.completed_at END,
+       updated_at = NOW()
+     RETURNING *`,
+    [userId, lessonId, completed, timeSpentSeconds, lastPositionSeconds, completed ? new Date() : null]
+  );
+
+  // Update enrollment progress percent
+  const progressStats = await pool.query(
+    `SELECT 
+       COUNT(*) as total,
+       COUNT(*) FILTER (WHERE lp.completed = true) as completed
+     FROM lessons l
+     LEFT JOIN lesson_progress lp ON lp.lesson_id = l.id AND lp.user_id = $1
+     WHERE l.course_id = $2`,
+    [userId, courseId]
+  );
+
+  const { total, completed: completedCount } = progressStats.rows[0];
+  const progressPercent = parseInt(total) > 0 ? Math.round((parseInt(completedCount) / parseInt(total)) * 100) : 0;
+
+  await pool.query(
+    `UPDATE enrollments 
+     SET progress_percent = $1, 
+         completed_at = CASE WHEN $1 = 100 THEN NOW() ELSE completed_at END
+     WHERE user_id = $2 AND course_id = $3`,
+    [progressPercent, userId, courseId]
+  );
+
+  const p = result.rows[0];
+
+  return {
+    progress: {
+      lessonId: p.lesson_id,
+      completed: p.completed,
+      timeSpentSeconds: p.time_spent_seconds,
+      lastPositionSeconds: p.last_position_seconds,
+      completedAt: p.completed_at
+    },
+    courseProgressPercent: progressPercent
+  };
+};
 
-    if (enrollmentCheck.rows.length === 0) {
-      return res.status(403).json({ error: 'Not enrolled in this course' });
+// Update lesson progress
+const updateLessonProgress = async (req, res) => {
+  try {
+    const result = await applyLessonProgress(req.user.id, req.params.lessonId, req.body);
+    if (result.error) {
+      return res.status(result.status).json({ error: result.error });
     }
 
-    // Upsert progress
-    const result = await pool.query(
-      `INSERT INTO lesson_progress (user_id, lesson_id, completed, time_spent_seconds, last_position_seconds, completed_at)
-       VALUES ($1, $2, $3, $4, $5, $6)
-       ON CONFLICT (user_id, lesson_id) 
-       DO UPDATE SET 
-         completed = COALESCE($3, lesson_progress.completed),
-         time_spent_seconds = COALESCE($4, lesson_progress.time_spent_seconds),
-         last_position_seconds = COALESCE($5, lesson_progress.last_position_seconds),
-         completed_at = CASE WHEN $3 = true AND lesson_progress.completed_at IS NULL THEN NOW() ELSE lesson_progress.completed_at END,
-         updated_at = NOW()
-       RETURNING *`,
-      [req.user.id, lessonId, completed, timeSpentSeconds, lastPositionSeconds, completed ? new Date() : null]
-    );
-
-    // Update enrollment progress percent
-    const progressStats = await pool.query(
-      `SELECT 
-         COUNT(*) as total,
-         COUNT(*) FILTER (WHERE lp.completed = true) as completed
-       FROM lessons l
-       LEFT JOIN lesson_progress lp ON lp.lesson_id = l.id AND lp.user_id = $1
-       WHERE l.course_id = $2`,
-      [req.user.id, courseId]
-    );
-
-    const { total, completed: completedCount } = progressStats.rows[0];
-    const progressPercent = parseInt(total) > 0 ? Math.round((parseInt(completedCount) / parseInt(total)) * 100) : 0;
-
-    await pool.query(
-      `UPDATE enrollments 
-       SET progress_percent = $1, 
-           completed_at = CASE WHEN $1 = 100 THEN NOW() ELSE completed_at END
-       WHERE user_id = $2 AND course_id = $3`,
-      [progressPercent, req.user.id, courseId]
-    );
+    res.json({
+      message: 'Progress updated',
+      progress: result.progress,
+      courseProgressPercent: result.courseProgressPercent
+    });
+  } catch (error) {
+    console.error('Update progress error:', error);
+    res.status(500).json({ error: 'Failed to update progress' });
+  }
+};
 
-    const p = result.rows[0];
+// Apply progress updates queued by the app while offline, in order.
+// Updates for unknown lessons or courses the user left are reported, with the
+// status the single-lesson endpoint would have answered, not retried.
+const batchUpdateProgress = async (req, res) => {
+  try {
+    const progress = [];
+    const rejected = [];
+    for (const event of req.body.events) {
+      const result = await applyLessonProgress(req.user.id, event.lessonId, event);
+      if (result.error) {
+        rejected.push({ lessonId: event.lessonId, httpStatus: result.status, error: result.error });
+      } else {
+        progress.push(result.progress);
+      }
+    }
 
     res.json({
       message: 'Progress updated',
-      progress: {
-        lessonId: p.lesson_id,
-        completed: p.completed,
-        timeSpentSeconds: p.time_spent_seconds,
-        lastPositionSeconds: p.last_position_seconds,
-        completedAt: p.completed_at
-      },
-      courseProgressPercent: progressPercent
+      applied: progress.length,
+      progress,
+      rejected
     });
   } catch (error) {
-    console.error('Update progress error:', error);
+    console.error('Batch update progress error:', error);
     res.status(500).json({ error: 'Failed to update progress' });
   }
 };
@@ -411,6 +450,7 @@ const lockLesson = async (req, res) => {
 module.exports = {
   getCourseProgress,
   updateLessonProgress,
+  batchUpdateProgress,
   getOverallProgress,
   getAllProgress,
   grantExtraPause,
@@ -18,6 +18,12 @@ router.put('/lesson/:lessonId', verifyToken, [
   param('lessonId').isUUID().withMessage('Valid lesson ID required')
 ], validate, progressController.updateLessonProgress);
 
+// Apply a batch of lesson progress updates (the app's offline journal)
+router.post('/batch', verifyToken, [
+  body('events').isArray({ min: 1, max: 500 }).withMessage('Between 1 and 500 events required'),
+  body('events.*.lessonId').isUUID().withMessage('Valid lesson ID required')
+], validate, progressController.batchUpdateProgress);
+
 // Admin route - get all users' progress
 router.get('/all', verifyToken, isAdmin, progressController.getAllProgress);
 
@@ -0,0 +1,176 @@
+package com.shadangakriya.app;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-256-CTR keystream positioned exactly like the WebView's
+ * encryptChunk/decryptChunk in audioEncryption.ts.
+ *
+ * The counter for chunk N is the base nonce plus N * chunkSize / 16 (full
+ * 128-bit add). Inside a chunk WebCrypto runs with {@code length: 64}, so only
+ * the low 64 bits of the counter increment and wrap, whereas javax.crypto
+ * carries into the high half. This class re-keys the cipher at that wrap so
+ * both sides always produce the same keystream.
+ */
+final class AesCtrCipher {
+    static final int BLOCK_SIZE = 16;
+
+    private final SecretKeySpec key;
+    private final byte[] counter;
+    private final Cipher cipher;
+    private long bytesUntilWrap;
+
+    /**
+     * @param key           AES key (see {@link #keyFromHex})
+     * @param baseNonce     16-byte base nonce from the manifest
+     * @param chunkSize     plaintext bytes per chunk (multiple of 16)
+     * @param chunkIndex    chunk the keystream starts in
+     * @param offsetInChunk plaintext byte offset inside that chunk
+     */
+    AesCtrCipher(SecretKeySpec key, byte[] baseNonce, int chunkSize, long chunkIndex, long offsetInChunk)
+            throws GeneralSecurityException {
+        if (baseNonce.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("Nonce must be 16 bytes");
+        }
+        if (chunkSize <= 0 || chunkSize % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 16");
+        }
+        this.key = key;
+        this.counter = baseNonce.clone();
+        addFull(counter, chunkIndex * (chunkSize / BLOCK_SIZE));
+        setLow(counter, getLow(counter) + offsetInChunk / BLOCK_SIZE);
+
+        this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        this.cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counter));
+        this.bytesUntilWrap = bytesUntilLowWrap(getLow(counter));
+
+        int skip = (int) (offsetInChunk % BLOCK_SIZE);
+        if (skip > 0) {
+            byte[] discard = new byte[skip];
+            update(discard, 0, skip, discard, 0);
+        }
+    }
+
+    /**
+     * XOR {@code len} bytes of keystream over {@code in} into {@code out}.
+     * CTR is symmetric, so this both encrypts and decrypts.
+     */
+    void update(byte[] in, int inOff, int len, byte[] out, int outOff) throws GeneralSecurityException {
+        int done = 0;
+        while (len - done > bytesUntilWrap) {
+            int n = (int) bytesUntilWrap;
+            cipher.update(in, inOff + done, n, out, outOff + done);
+            done += n;
+            wrapLowCounter();
+        }
+        int rest = len - done;
+        if (rest > 0) {
+            cipher.update(in, inOff + done, rest, out, outOff + done);
+            bytesUntilWrap -= rest;
+        }
+    }
+
+    /**
+     * Buffer variant of {@link #update(byte[], int, int, byte[], int)}: consumes
+     * all of {@code in} and writes the same number of bytes to {@code out}.
+     * Works on direct buffers without copying them to the Java heap.
+     */
+    void update(ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        int limit = in.limit();
+        while (in.remaining() > bytesUntilWrap) {
+            in.limit(in.position() + (int) bytesUntilWrap);
+            cipher.update(in, out);
+            in.limit(limit);
+            wrapLowCounter();
+        }
+        int rest = in.remaining();
+        if (rest > 0) {
+            cipher.update(in, out);
+            bytesUntilWrap -= rest;
+        }
+    }
+
+    private void wrapLowCounter() throws GeneralSecurityException {
+        setLow(counter, 0L);
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counter));
+        bytesUntilWrap = bytesUntilLowWrap(0L);
+    }
+
+    // -------------------------------------------------------------------------
+    // Counter / hex helpers
+    // -------------------------------------------------------------------------
+
+    /** Import the first 32 bytes (64 hex chars) of a hex key, like importKey() in JS. */
+    static SecretKeySpec keyFromHex(String hexKey) {
+        if (hexKey == null || hexKey.length() < 64) {
+            throw new IllegalArgumentException("Key must be at least 64 hex characters");
+        }
+        return new SecretKeySpec(hexToBytes(hexKey.substring(0, 64)), "AES");
+    }
+
+    static byte[] hexToBytes(String hex) {
+        if (hex == null || hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hex string");
+        }
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+
+    static String bytesToHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /** Bytes of keystream left before the low 64 bits of the counter wrap to zero. */
+    private static long bytesUntilLowWrap(long low) {
+        if (low == 0L) {
+            return Long.MAX_VALUE;
+        }
+        long blocks = -low; // 2^64 - low, as unsigned
+        if (Long.compareUnsigned(blocks, Long.MAX_VALUE / BLOCK_SIZE) > 0) {
+            return Long.MAX_VALUE;
+        }
+        return blocks * BLOCK_SIZE;
+    }
+
+    /** Big-endian 128-bit addition of a non-negative value, same as the JS carry loop. */
+    private static void addFull(byte[] counter, long value) {
+        long carry = value;
+        for (int i = BLOCK_SIZE - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+    }
+
+    private static long getLow(byte[] counter) {
+        long low = 0;
+        for (int i = 8; i < BLOCK_SIZE; i++) {
+            low = (low << 8) | (counter[i] & 0xFF);
+        }
+        return low;
+    }
+
+    private static void setLow(byte[] counter, long low) {
+        for (int i = BLOCK_SIZE - 1; i >= 8; i--) {
+            counter[i] = (byte) low;
+            low >>>= 8;
+        }
+    }
+}
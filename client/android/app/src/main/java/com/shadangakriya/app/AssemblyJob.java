@@ -0,0 +1,86 @@
+package com.shadangakriya.app;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Progress and cancellation state of one concatenate / decrypt / download job.
+ *
+ * Workers call {@link #advance} as bytes are written; listeners are notified
+ * at most every {@link #PROGRESS_INTERVAL_MS} so a fast copy does not flood
+ * the bridge. {@link #cancel} is picked up at the next advance. Several
+ * workers may advance the same job concurrently.
+ */
+final class AssemblyJob {
+    static final long PROGRESS_INTERVAL_MS = 250;
+
+    interface ProgressListener {
+        void onProgress(AssemblyJob job, long bytesDone, long totalBytes, long bytesPerSecond);
+    }
+
+    final String id;
+    private volatile long totalBytes;
+    private final ProgressListener listener;
+    private final long startNanos = System.nanoTime();
+
+    private volatile boolean cancelled = false;
+    private long bytesDone = 0;
+    private long lastNotifyNanos = 0;
+
+    AssemblyJob(String id, long totalBytes, ProgressListener listener) {
+        this.id = id;
+        this.totalBytes = totalBytes;
+        this.listener = listener;
+    }
+
+    /** For jobs whose size is only known once they start, e.g. a download. */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    synchronized long getBytesDone() {
+        return bytesDone;
+    }
+
+    /** @throws CancellationException if {@link #cancel} was called */
+    void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Job " + id + " was cancelled");
+        }
+    }
+
+    /** Record {@code bytes} more output, then report if the interval elapsed. */
+    synchronized void advance(long bytes) {
+        throwIfCancelled();
+        bytesDone += bytes;
+        long now = System.nanoTime();
+        if (listener != null && now - lastNotifyNanos >= PROGRESS_INTERVAL_MS * 1_000_000L) {
+            lastNotifyNanos = now;
+            listener.onProgress(this, bytesDone, totalBytes, bytesPerSecond(now));
+        }
+    }
+
+    /** Always report the final state, regardless of throttling. */
+    synchronized void finish() {
+        if (listener != null) {
+            listener.onProgress(this, bytesDone, Math.max(totalBytes, bytesDone), bytesPerSecond(System.nanoTime()));
+        }
+    }
+
+    /** Average rate since the job started. */
+    synchronized long bytesPerSecond() {
+        return bytesPerSecond(System.nanoTime());
+    }
+
+    private long bytesPerSecond(long now) {
+        long elapsed = now - startNanos;
+        return elapsed > 0 ? bytesDone * 1_000_000_000L / elapsed : 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.shadangakriya.app;
+
+import android.util.Base64;
+import android.util.Base64InputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Readers for the v3 `_chunk_N.enc` files, which hold the ciphertext as one
+ * unwrapped base64 string (see arrayBufferToBase64 in audioEncryption.ts).
+ */
+final class Base64ChunkFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Base64ChunkFiles() {}
+
+    /** Decoded ciphertext of the whole chunk. */
+    static InputStream open(File file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * Decoded ciphertext starting at byte {@code offset}. Every 4 base64
+     * characters hold 3 bytes, so the file is entered at the enclosing
+     * quantum and only the remainder is decoded and dropped.
+     */
+    static InputStream open(File file, long offset) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            skipFully(fis, offset / 3 * 4);
+            InputStream in = new Base64InputStream(new BufferedInputStream(fis, BUFFER_SIZE), Base64.DEFAULT);
+            skipFully(in, offset % 3);
+            return in;
+        } catch (IOException e) {
+            fis.close();
+            throw e;
+        }
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Chunk ended before offset");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
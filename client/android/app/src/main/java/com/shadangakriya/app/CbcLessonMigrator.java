@@ -0,0 +1,141 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Moves a v2 lesson (AES-256-CBC, every chunk PKCS#7 padded on its own) to
+ * a v4 AES-CTR container without the network. Each old chunk is streamed
+ * through CBC decryption, which strips its padding, and the plaintext is
+ * cut into {@code chunkSize} CTR chunks with a fresh nonce, exactly as
+ * {@link LessonDownloader} writes them. One 64 KB buffer each way, whatever
+ * the lesson length.
+ *
+ * The container is written as .part and only moved into place once
+ * complete (see {@link LessonContainer.Writer#finish}), so a crash leaves
+ * the v2 files as they were and the migration simply runs again.
+ */
+final class CbcLessonMigrator {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SecretKeySpec key;
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+
+    CbcLessonMigrator(SecretKeySpec key, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % AesCtrCipher.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 16");
+        }
+        this.key = key;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Re-encrypt the v2 chunks of {@code source} into {@code container}.
+     *
+     * @param ivs IV of each v2 chunk, in order; a null entry means the chunk's
+     *            ciphertext starts with its IV
+     */
+    LessonDownloader.Result migrate(EncryptedChunkAssembler.ChunkSource source, byte[][] ivs, File container,
+                                    LessonDownloader.ManifestFactory manifestFactory, AssemblyJob job)
+            throws IOException, GeneralSecurityException {
+        byte[] nonce = new byte[AesCtrCipher.BLOCK_SIZE];
+        random.nextBytes(nonce);
+
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            CtrChunkWriter out = new CtrChunkWriter(writer, nonce);
+            byte[] in = new byte[BUFFER_SIZE];
+            // CBC holds back the last block until doFinal, so output can run one block ahead
+            byte[] plain = new byte[BUFFER_SIZE + AesCtrCipher.BLOCK_SIZE];
+
+            for (int i = 0; i < ivs.length; i++) {
+                try (InputStream chunk = source.open(i)) {
+                    byte[] iv = ivs[i] != null ? ivs[i] : readIv(chunk, i);
+                    Cipher cbc = Cipher.getInstance("AES/CBC/PKCS5Padding");
+                    cbc.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+                    int read;
+                    while ((read = chunk.read(in)) != -1) {
+                        out.write(plain, cbc.update(in, 0, read, plain, 0), job);
+                    }
+                    out.write(plain, cbc.doFinal(plain, 0), job);
+                } catch (BadPaddingException e) {
+                    throw new GeneralSecurityException("v2 chunk " + i + " did not decrypt: wrong key or damaged data", e);
+                }
+            }
+
+            LessonDownloader.Result result = out.finish();
+            writer.finish(manifestFactory.create(result));
+            return result;
+        }
+    }
+
+    private static byte[] readIv(InputStream in, int chunkIndex) throws IOException {
+        byte[] iv = new byte[AesCtrCipher.BLOCK_SIZE];
+        int filled = 0;
+        while (filled < iv.length) {
+            int read = in.read(iv, filled, iv.length - filled);
+            if (read == -1) {
+                throw new IOException("v2 chunk " + chunkIndex + " is too short for its IV");
+            }
+            filled += read;
+        }
+        return iv;
+    }
+
+    /** Cuts the plaintext into CTR chunks on the way to the container, hashing each one. */
+    private final class CtrChunkWriter {
+        private final LessonContainer.Writer writer;
+        private final byte[] nonce;
+        private final List<byte[]> digests = new ArrayList<>();
+        private final MessageDigest digest = ChunkDigests.newDigest();
+        private AesCtrCipher cipher;
+        private long written;
+
+        CtrChunkWriter(LessonContainer.Writer writer, byte[] nonce) {
+            this.writer = writer;
+            this.nonce = nonce;
+        }
+
+        /** Encrypts {@code buffer[0, length)} in place and appends it. */
+        void write(byte[] buffer, int length, AssemblyJob job) throws IOException, GeneralSecurityException {
+            int offset = 0;
+            while (offset < length) {
+                int inChunk = (int) (written % chunkSize);
+                if (inChunk == 0) {
+                    cipher = new AesCtrCipher(key, nonce, chunkSize, written / chunkSize, 0);
+                }
+                int n = Math.min(length - offset, chunkSize - inChunk);
+                digest.update(buffer, offset, n);
+                cipher.update(buffer, offset, n, buffer, offset);
+                writer.append(buffer, offset, n);
+                offset += n;
+                written += n;
+                if (written % chunkSize == 0) {
+                    digests.add(digest.digest());
+                }
+            }
+            job.advance(length);
+        }
+
+        LessonDownloader.Result finish() throws IOException {
+            if (written == 0) {
+                throw new IOException("v2 lesson has no audio");
+            }
+            if (written % chunkSize != 0) {
+                digests.add(digest.digest());
+            }
+            return new LessonDownloader.Result(nonce, written, chunkSize, digests.toArray(new byte[0][]));
+        }
+    }
+}
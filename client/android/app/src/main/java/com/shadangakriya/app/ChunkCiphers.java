@@ -0,0 +1,20 @@
+package com.shadangakriya.app;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The keystream of each chunk of a lesson. Downloaded lessons use one key
+ * and nonce with a counter per chunk ({@link #lesson}); lessons kept in the
+ * {@link ChunkStore} have a key stream per chunk ({@link ChunkStore#ciphers}).
+ */
+interface ChunkCiphers {
+
+    /** A cipher positioned at {@code offsetInChunk} of chunk {@code chunkIndex}. */
+    AesCtrCipher open(int chunkIndex, long offsetInChunk) throws GeneralSecurityException;
+
+    static ChunkCiphers lesson(SecretKeySpec key, byte[] nonce, int chunkSize) {
+        return (chunkIndex, offsetInChunk) -> new AesCtrCipher(key, nonce, chunkSize, chunkIndex, offsetInChunk);
+    }
+}
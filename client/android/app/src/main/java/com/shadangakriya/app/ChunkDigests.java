@@ -0,0 +1,50 @@
+package com.shadangakriya.app;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Per-chunk SHA-256 of the plaintext, as recorded in the lesson manifest
+ * ({@code chunks[i].sha256}). Digests are fed the same buffers the
+ * decrypt pass writes, so checking them costs no extra read.
+ */
+final class ChunkDigests {
+    static final String ALGORITHM = "SHA-256";
+
+    private ChunkDigests() {}
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java / Android runtime is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compare a finished chunk digest with the expected one.
+     *
+     * @param expected null to skip (manifests written before digests existed)
+     */
+    static void verify(int chunkIndex, MessageDigest digest, byte[] expected) throws ChunkIntegrityException {
+        if (expected != null && !MessageDigest.isEqual(expected, digest.digest())) {
+            throw new ChunkIntegrityException(chunkIndex);
+        }
+    }
+
+    /** Parse hex digests; null or empty entries stay null. */
+    static byte[][] fromHex(String[] hex) {
+        byte[][] digests = new byte[hex.length][];
+        for (int i = 0; i < hex.length; i++) {
+            if (hex[i] != null && !hex[i].isEmpty()) {
+                digests[i] = AesCtrCipher.hexToBytes(hex[i]);
+                if (digests[i].length != 32) {
+                    throw new IllegalArgumentException("Digest of chunk " + i + " is not SHA-256");
+                }
+            }
+        }
+        return digests;
+    }
+
+}
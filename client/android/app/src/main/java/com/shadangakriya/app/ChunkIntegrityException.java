@@ -0,0 +1,15 @@
+package com.shadangakriya.app;
+
+import java.io.IOException;
+
+/** A chunk's plaintext did not match the SHA-256 digest recorded in its manifest. */
+final class ChunkIntegrityException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    final int chunkIndex;
+
+    ChunkIntegrityException(int chunkIndex) {
+        super("Chunk " + chunkIndex + " failed integrity check");
+        this.chunkIndex = chunkIndex;
+    }
+}
@@ -0,0 +1,305 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Content-addressed store of lesson chunks, so audio shared by several
+ * lessons (intros, outros, the unchanged chunks of a re-uploaded lesson) is
+ * kept on disk once.
+ *
+ * A chunk is named by the SHA-256 of its plaintext, as recorded in the
+ * lesson manifests, and encrypted under the store's own key with a nonce
+ * taken from that digest: the same audio always gives the same file,
+ * whichever lesson key it was downloaded with.
+ *
+ * Each owner (a lesson) holds references to the chunks of its manifest
+ * ({@link #retain}); a chunk is deleted when its last owner lets go
+ * ({@link #release}). References are kept in {@value #REFS_FILE}, replaced
+ * atomically. A chunk that was {@link #put} but not yet retained is left
+ * alone until the next {@link #sweep}, so an ingest in progress is safe
+ * from a concurrent release.
+ */
+final class ChunkStore {
+    /** Manifest version of a lesson whose chunks are kept here instead of in a container. */
+    static final int MANIFEST_VERSION = 5;
+    static final String CHUNK_SUFFIX = ".chk";
+    static final String REFS_FILE = "refs.properties";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final SecretKeySpec key;
+    // Owner -> the distinct chunks it references, hex
+    private final Map<String, Set<String>> owners = new HashMap<>();
+    private final Map<String, Integer> references = new HashMap<>();
+
+    /** Open the store in {@code dir}, creating it if needed. */
+    ChunkStore(File dir, SecretKeySpec key) throws IOException {
+        this.dir = dir;
+        this.key = key;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        loadReferences();
+    }
+
+    /** Whether the chunk with plaintext digest {@code digest} is on disk. */
+    boolean contains(byte[] digest) {
+        return fileFor(AesCtrCipher.bytesToHex(digest)).isFile();
+    }
+
+    /**
+     * Encrypt {@code plainText} into the store under {@code digest}, unless
+     * it is there already. The data is hashed on the way and only kept if it
+     * matches.
+     *
+     * @return true if the chunk was added, false if it was already stored
+     * @throws IOException if the data does not match {@code digest}
+     */
+    boolean put(byte[] digest, InputStream plainText, int bufferSize) throws IOException, GeneralSecurityException {
+        String hex = AesCtrCipher.bytesToHex(digest);
+        File file = fileFor(hex);
+        if (file.isFile()) {
+            return false;
+        }
+
+        File temp = File.createTempFile(hex, TMP_SUFFIX, dir);
+        try {
+            AesCtrCipher cipher = cipherFor(digest, 0);
+            MessageDigest actual = ChunkDigests.newDigest();
+            byte[] buffer = new byte[bufferSize];
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                int read;
+                while ((read = plainText.read(buffer)) != -1) {
+                    actual.update(buffer, 0, read);
+                    cipher.update(buffer, 0, read, buffer, 0);
+                    out.write(buffer, 0, read);
+                }
+                out.getFD().sync();
+            }
+            if (!MessageDigest.isEqual(digest, actual.digest())) {
+                throw new IOException("Chunk does not match its digest " + hex);
+            }
+            // Another ingest may have stored the same chunk meanwhile; the content is identical
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not store chunk " + hex);
+            }
+            return true;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** The stored ciphertext of a chunk from {@code offsetInChunk}. */
+    InputStream open(byte[] digest, long offsetInChunk) throws IOException {
+        FileInputStream in = new FileInputStream(fileFor(AesCtrCipher.bytesToHex(digest)));
+        if (offsetInChunk > 0) {
+            in.getChannel().position(offsetInChunk);
+        }
+        return in;
+    }
+
+    /** Keystreams of the chunks of a lesson kept here, one per manifest digest. */
+    ChunkCiphers ciphers(byte[][] digests) {
+        return (chunkIndex, offsetInChunk) -> cipherFor(digests[chunkIndex], offsetInChunk);
+    }
+
+    /**
+     * Drop a stored chunk that failed verification, so the next ingest writes
+     * it again. Every owner sharing it has lost it too and must be downloaded
+     * again; their references stay until then.
+     *
+     * @return the owners that reference the chunk
+     */
+    synchronized Set<String> evict(byte[] digest) {
+        String hex = AesCtrCipher.bytesToHex(digest);
+        fileFor(hex).delete();
+        Set<String> affected = new TreeSet<>();
+        for (Map.Entry<String, Set<String>> entry : owners.entrySet()) {
+            if (entry.getValue().contains(hex)) {
+                affected.add(entry.getKey());
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Make {@code owner} reference exactly {@code digests} (its manifest's
+     * chunks, all of them stored) and delete chunks nobody references any
+     * more, e.g. those only an older version of the lesson had.
+     *
+     * @return the number of chunk files deleted
+     */
+    synchronized int retain(String owner, byte[][] digests) throws IOException {
+        Set<String> chunks = new LinkedHashSet<>();
+        for (byte[] digest : digests) {
+            String hex = AesCtrCipher.bytesToHex(digest);
+            if (!fileFor(hex).isFile()) {
+                throw new IOException("Chunk " + hex + " is not in the store");
+            }
+            chunks.add(hex);
+        }
+        return replace(owner, chunks);
+    }
+
+    /**
+     * Drop every reference of {@code owner} and the chunks only it used.
+     *
+     * @return the number of chunk files deleted
+     */
+    synchronized int release(String owner) throws IOException {
+        return owners.containsKey(owner) ? replace(owner, null) : 0;
+    }
+
+    synchronized int references(byte[] digest) {
+        Integer count = references.get(AesCtrCipher.bytesToHex(digest));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Delete chunks no owner references and temp files left by interrupted
+     * ingests. Only while no ingest is running, e.g. when the store is opened.
+     *
+     * @return the number of files deleted
+     */
+    synchronized int sweep() {
+        int removed = 0;
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            boolean stale = name.endsWith(TMP_SUFFIX)
+                || (name.endsWith(CHUNK_SUFFIX) && !references.containsKey(hexOf(name)));
+            if (stale && file.delete()) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** Bytes on disk and bytes the owners would take without sharing. */
+    synchronized long[] usage() {
+        long stored = 0;
+        long referenced = 0;
+        for (Map.Entry<String, Integer> entry : references.entrySet()) {
+            long length = fileFor(entry.getKey()).length();
+            stored += length;
+            referenced += length * entry.getValue();
+        }
+        return new long[] {stored, referenced};
+    }
+
+    synchronized int chunkCount() {
+        return references.size();
+    }
+
+    /** Delete every chunk and reference. */
+    synchronized void clear() {
+        owners.clear();
+        references.clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /** @param chunks null to remove the owner */
+    private int replace(String owner, Set<String> chunks) throws IOException {
+        Set<String> previous = chunks == null ? owners.remove(owner) : owners.put(owner, chunks);
+        if (chunks != null) {
+            for (String hex : chunks) {
+                references.merge(hex, 1, Integer::sum);
+            }
+        }
+        List<String> unreferenced = new ArrayList<>();
+        if (previous != null) {
+            for (String hex : previous) {
+                if (references.merge(hex, -1, Integer::sum) <= 0) {
+                    references.remove(hex);
+                    unreferenced.add(hex);
+                }
+            }
+        }
+        // References first: a crash before the deletes only leaves files the next sweep removes
+        saveReferences();
+
+        int removed = 0;
+        for (String hex : unreferenced) {
+            if (fileFor(hex).delete()) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private AesCtrCipher cipherFor(byte[] digest, long offsetInChunk) throws GeneralSecurityException {
+        return new AesCtrCipher(key, Arrays.copyOf(digest, AesCtrCipher.BLOCK_SIZE), AesCtrCipher.BLOCK_SIZE,
+            0, offsetInChunk);
+    }
+
+    private File fileFor(String hex) {
+        return new File(dir, hex + CHUNK_SUFFIX);
+    }
+
+    private static String hexOf(String chunkFileName) {
+        return chunkFileName.substring(0, chunkFileName.length() - CHUNK_SUFFIX.length());
+    }
+
+    private void loadReferences() throws IOException {
+        File file = new File(dir, REFS_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        for (String owner : props.stringPropertyNames()) {
+            String value = props.getProperty(owner);
+            Set<String> chunks = new LinkedHashSet<>();
+            if (!value.isEmpty()) {
+                chunks.addAll(Arrays.asList(value.split(",")));
+            }
+            owners.put(owner, chunks);
+            for (String hex : chunks) {
+                references.merge(hex, 1, Integer::sum);
+            }
+        }
+    }
+
+    private void saveReferences() throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, Set<String>> entry : owners.entrySet()) {
+            props.setProperty(entry.getKey(), String.join(",", entry.getValue()));
+        }
+        File file = new File(dir, REFS_FILE);
+        File temp = new File(dir, REFS_FILE + TMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            props.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + REFS_FILE);
+        }
+    }
+}
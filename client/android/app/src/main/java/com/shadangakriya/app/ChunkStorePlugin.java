@@ -0,0 +1,247 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Moves downloaded lessons into the shared {@link ChunkStore}, so audio that
+ * several lessons have in common, or that a re-downloaded lesson kept, is
+ * stored once. Lessons in the store have a v5 manifest: the chunk digests
+ * name the chunks and there is no container; LessonStream, LessonPlayer,
+ * LessonPrefetch and FileConcatenation read them with {@code chunkStore}.
+ *
+ * The store has its own key in the {@link KeyVault}. If that key is ever
+ * lost, the chunks are unreadable, so the store starts over empty.
+ */
+@CapacitorPlugin(name = "ChunkStore")
+public class ChunkStorePlugin extends Plugin {
+    private static final String TAG = "ChunkStore";
+    private static final String STORE_DIR = "chunk_store";
+    // Not a lesson id, so it can never collide with a lesson's key
+    private static final String STORE_KEY_ID = "chunk-store";
+
+    private static ChunkStore store;
+
+    // A download waits for its ingest, so it must not be held with the
+    // background work paused under memory pressure
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+
+    /**
+     * The store, opened on first use. Chunks no lesson references any more
+     * (e.g. from an ingest cut short) are swept then, before anything can be
+     * added.
+     */
+    static synchronized ChunkStore store(Context context) throws IOException, GeneralSecurityException {
+        if (store != null) {
+            return store;
+        }
+        KeyVault vault = KeyVault.get(context);
+        SecretKeySpec key = vault.key(STORE_KEY_ID);
+        File dir = new File(context.getFilesDir(), STORE_DIR);
+        ChunkStore opened;
+        if (key == null) {
+            byte[] rawKey = new byte[32];
+            new SecureRandom().nextBytes(rawKey);
+            try {
+                vault.store(STORE_KEY_ID, rawKey);
+                key = new SecretKeySpec(rawKey, "AES");
+            } finally {
+                Arrays.fill(rawKey, (byte) 0);
+            }
+            opened = new ChunkStore(dir, key);
+            opened.clear();
+        } else {
+            opened = new ChunkStore(dir, key);
+        }
+        int swept = opened.sweep();
+        if (swept > 0) {
+            Log.d(TAG, "Swept " + swept + " unreferenced files");
+        }
+        store = opened;
+        return store;
+    }
+
+    /** Digests of a lesson in the store: every chunk must have one. */
+    static byte[][] digestsFrom(JSONArray array) throws JSONException {
+        if (array == null) {
+            throw new IllegalArgumentException("Missing digests");
+        }
+        String[] hex = new String[array.length()];
+        for (int i = 0; i < hex.length; i++) {
+            hex[i] = array.isNull(i) ? null : array.getString(i);
+        }
+        byte[][] digests = ChunkDigests.fromHex(hex);
+        for (int i = 0; i < digests.length; i++) {
+            if (digests[i] == null) {
+                throw new IllegalArgumentException("Chunk " + i + " has no digest");
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Move the v4 lesson at {@code manifestPath} into the store: each chunk
+     * not stored yet is decrypted with the lesson key (from {@code key} or
+     * the vault entry of {@code lessonId}) and added, the lesson takes
+     * references to all of them, and its manifest becomes v5. Only then is
+     * the container deleted, so a crash at any point leaves a playable
+     * lesson. Resolves with the new {@code manifest} and how many chunks
+     * were {@code added} or already {@code shared}.
+     */
+    @PluginMethod
+    public void ingest(PluginCall call) {
+        String manifestPath = call.getString("manifestPath");
+        String lessonId = call.getString("lessonId");
+        String hexKey = call.getString("key");
+        if (manifestPath == null || lessonId == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+        File filesDir = getContext().getFilesDir();
+        File manifestFile = new File(filesDir, manifestPath);
+        Context context = getContext();
+
+        executor.execute(() -> {
+            try {
+                JSONObject manifest = new JSONObject(LessonContainerPlugin.readText(manifestFile));
+                if (manifest.optInt("version", 0) != LessonContainer.FORMAT_VERSION || !manifest.has("container")) {
+                    call.reject("Only v4 lessons can be moved to the chunk store");
+                    return;
+                }
+                File container = new File(filesDir, manifest.getString("container"));
+                int chunkSize = manifest.getInt("chunkSize");
+                long totalSize = LessonContainer.dataLength(container);
+                JSONArray chunks = manifest.getJSONArray("chunks");
+                JSONArray hexDigests = new JSONArray();
+                for (int i = 0; i < chunks.length(); i++) {
+                    hexDigests.put(chunks.getJSONObject(i).optString("sha256", null));
+                }
+                byte[][] digests = digestsFrom(hexDigests);
+                if (digests.length != (totalSize + chunkSize - 1) / chunkSize) {
+                    call.reject("Manifest does not match its container");
+                    return;
+                }
+
+                ChunkStore chunkStore = store(context);
+                SecretKeySpec key = KeyVault.resolve(context, hexKey, lessonId);
+                byte[] nonce = AesCtrCipher.hexToBytes(manifest.getString("nonce"));
+                int bufferSize = DeviceProfile.current().bufferSize;
+                int added = 0;
+                for (int i = 0; i < digests.length; i++) {
+                    long start = (long) i * chunkSize;
+                    long end = Math.min(start + chunkSize, totalSize);
+                    try (InputStream plainText = new DecryptingRangeStream(
+                            (index, offset) -> LessonContainer.openChunk(container, chunkSize, index, offset),
+                            key, nonce, chunkSize, start, end)) {
+                        if (chunkStore.put(digests[i], plainText, bufferSize)) {
+                            added++;
+                        }
+                    }
+                }
+                int freed = chunkStore.retain(lessonId, digests);
+
+                manifest.put("version", ChunkStore.MANIFEST_VERSION);
+                manifest.remove("container");
+                LessonContainerPlugin.writeTextAtomically(manifestFile, manifest.toString());
+                container.delete();
+                Log.d(TAG, "Moved " + lessonId + " to the chunk store: " + added + " added, "
+                    + (digests.length - added) + " shared, " + freed + " freed");
+
+                JSObject result = new JSObject();
+                result.put("manifest", new JSObject(manifest.toString()));
+                result.put("added", added);
+                result.put("shared", digests.length - added);
+                call.resolve(result);
+            } catch (IllegalArgumentException | JSONException e) {
+                call.reject("Invalid lesson: " + e.getMessage());
+            } catch (GeneralSecurityException e) {
+                call.reject("Key unavailable: " + e.getMessage(), "KEY_UNAVAILABLE");
+            } catch (IOException e) {
+                call.reject("Failed to move lesson to the chunk store: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Drop {@code lessonId}'s references; chunks no other lesson uses are deleted. */
+    @PluginMethod
+    public void release(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing lessonId");
+            return;
+        }
+        Context context = getContext();
+        executor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("removed", store(context).release(lessonId));
+                call.resolve(result);
+            } catch (IOException | GeneralSecurityException e) {
+                call.reject("Failed to release lesson: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * {@code chunks} stored, {@code storedBytes} on disk and
+     * {@code savedBytes} the lessons would take on top without sharing.
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        Context context = getContext();
+        executor.execute(() -> {
+            try {
+                ChunkStore chunkStore = store(context);
+                long[] usage = chunkStore.usage();
+                JSObject result = new JSObject();
+                result.put("chunks", chunkStore.chunkCount());
+                result.put("storedBytes", usage[0]);
+                result.put("savedBytes", usage[1] - usage[0]);
+                call.resolve(result);
+            } catch (IOException | GeneralSecurityException e) {
+                call.reject("Chunk store unavailable: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Delete every stored chunk, e.g. when all downloads are cleared. */
+    @PluginMethod
+    public void clear(PluginCall call) {
+        Context context = getContext();
+        executor.execute(() -> {
+            try {
+                store(context).clear();
+                call.resolve();
+            } catch (IOException | GeneralSecurityException e) {
+                call.reject("Chunk store unavailable: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+}
@@ -0,0 +1,109 @@
+package com.shadangakriya.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Plaintext view of a byte range of an AES-CTR chunked lesson. Only the
+ * chunks that overlap the range are opened, and each one is entered at the
+ * exact counter block for the requested offset, so a seek costs one chunk
+ * open instead of a decrypt from the start of the file.
+ */
+final class DecryptingRangeStream extends InputStream {
+
+    /** Opens the raw ciphertext of a chunk starting at a plaintext offset. */
+    interface CiphertextSource {
+        InputStream open(int chunkIndex, long offsetInChunk) throws IOException;
+    }
+
+    private final CiphertextSource source;
+    private final ChunkCiphers ciphers;
+    private final int chunkSize;
+    private final long end;
+
+    private long position;
+    private InputStream current;
+    private AesCtrCipher cipher;
+    private long chunkRemaining;
+
+    /**
+     * @param start first plaintext byte (inclusive)
+     * @param end   last plaintext byte (exclusive)
+     */
+    DecryptingRangeStream(CiphertextSource source, SecretKeySpec key, byte[] nonce, int chunkSize,
+                          long start, long end) {
+        this(source, ChunkCiphers.lesson(key, nonce, chunkSize), chunkSize, start, end);
+    }
+
+    /** Variant for chunks with their own keystreams, e.g. in the {@link ChunkStore}. */
+    DecryptingRangeStream(CiphertextSource source, ChunkCiphers ciphers, int chunkSize, long start, long end) {
+        this.source = source;
+        this.ciphers = ciphers;
+        this.chunkSize = chunkSize;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        if (current == null || chunkRemaining == 0) {
+            openChunkAtPosition();
+        }
+
+        int want = (int) Math.min(len, Math.min(chunkRemaining, end - position));
+        int read = current.read(b, off, want);
+        if (read == -1) {
+            throw new IOException("Unexpected end of chunk " + (position / chunkSize));
+        }
+        try {
+            cipher.update(b, off, read, b, off);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Decryption failed: " + e.getMessage(), e);
+        }
+        position += read;
+        chunkRemaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current == null ? 0 : (int) Math.min(chunkRemaining, Math.min(end - position, current.available()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private void openChunkAtPosition() throws IOException {
+        close();
+        int chunkIndex = (int) (position / chunkSize);
+        long offsetInChunk = position % chunkSize;
+        try {
+            cipher = ciphers.open(chunkIndex, offsetInChunk);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cipher init failed: " + e.getMessage(), e);
+        }
+        current = source.open(chunkIndex, offsetInChunk);
+        chunkRemaining = chunkSize - offsetInChunk;
+    }
+}
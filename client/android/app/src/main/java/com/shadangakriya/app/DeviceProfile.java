@@ -0,0 +1,138 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * How hard native I/O may push this device: the copy buffer size, the
+ * sizes of the {@link NativeScheduler} pools and the chunk size of new
+ * downloads. {@link #choose} picks them once from the device class; while
+ * the system is short of memory {@link #underPressure} scales them down and
+ * background work is paused.
+ *
+ * The profile in force is process-wide ({@link #current}); changing it
+ * resizes the scheduler's pools right away. Buffer and chunk sizes apply
+ * to jobs started afterwards.
+ */
+final class DeviceProfile {
+
+    enum Tier { LOW, MID, HIGH }
+
+    enum Pressure { NONE, MODERATE, CRITICAL }
+
+    static final int MIN_BUFFER_SIZE = 16 * 1024;
+    // Below this, running disk jobs side by side only splits the bandwidth
+    static final long SLOW_STORAGE_BYTES_PER_SECOND = 20L * 1024 * 1024;
+    static final long FAST_STORAGE_BYTES_PER_SECOND = 100L * 1024 * 1024;
+
+    private static final int MB = 1024 * 1024;
+
+    /** Until the device is probed: the sizes every device used before profiles. */
+    static final DeviceProfile DEFAULT = new DeviceProfile(Tier.MID, Pressure.NONE, 64 * 1024, 5 * MB,
+        4, Runtime.getRuntime().availableProcessors(), false);
+
+    private static DeviceProfile base = DEFAULT;
+    private static DeviceProfile current = DEFAULT;
+
+    final Tier tier;
+    final Pressure pressure;
+    final int bufferSize;
+    /** Plaintext bytes per chunk for new downloads; existing lessons keep theirs. */
+    final int chunkSize;
+    final int ioThreads;
+    final int cpuThreads;
+    final boolean backgroundPaused;
+
+    private DeviceProfile(Tier tier, Pressure pressure, int bufferSize, int chunkSize, int ioThreads,
+                          int cpuThreads, boolean backgroundPaused) {
+        this.tier = tier;
+        this.pressure = pressure;
+        this.bufferSize = bufferSize;
+        this.chunkSize = chunkSize;
+        this.ioThreads = ioThreads;
+        this.cpuThreads = cpuThreads;
+        this.backgroundPaused = backgroundPaused;
+    }
+
+    /**
+     * @param lowRam                 {@code ActivityManager.isLowRamDevice()}
+     * @param memoryClassMb          {@code ActivityManager.getMemoryClass()}, the app's heap limit
+     * @param cores                  available processors
+     * @param storageBytesPerSecond  measured sustained write speed, or 0 if unknown
+     */
+    static DeviceProfile choose(boolean lowRam, int memoryClassMb, int cores, long storageBytesPerSecond) {
+        boolean slowStorage = storageBytesPerSecond > 0 && storageBytesPerSecond < SLOW_STORAGE_BYTES_PER_SECOND;
+        if (lowRam || memoryClassMb <= 128 || cores <= 2) {
+            // Small chunks keep the WebView's decrypt fallback and resume granularity small
+            return new DeviceProfile(Tier.LOW, Pressure.NONE, 32 * 1024, 2 * MB, 2, Math.min(cores, 2), false);
+        }
+        if (memoryClassMb >= 256 && cores >= 8 && storageBytesPerSecond >= FAST_STORAGE_BYTES_PER_SECOND) {
+            return new DeviceProfile(Tier.HIGH, Pressure.NONE, 256 * 1024, 8 * MB, 6, cores, false);
+        }
+        return new DeviceProfile(Tier.MID, Pressure.NONE, 64 * 1024, 5 * MB, slowStorage ? 2 : 4, cores, false);
+    }
+
+    /** This profile scaled down for {@code pressure}. The chunk size stays, so a download in progress can resume. */
+    DeviceProfile underPressure(Pressure pressure) {
+        switch (pressure) {
+            case MODERATE:
+                return new DeviceProfile(tier, pressure, Math.max(MIN_BUFFER_SIZE, bufferSize / 2), chunkSize,
+                    Math.max(2, ioThreads / 2), Math.max(1, cpuThreads / 2), true);
+            case CRITICAL:
+                // Two IO threads: NativeScheduler keeps one for playback, so a long download cannot hold it up
+                return new DeviceProfile(tier, pressure, MIN_BUFFER_SIZE, chunkSize, 2, 1, true);
+            default:
+                return this;
+        }
+    }
+
+    /** The profile native jobs should use now. */
+    static synchronized DeviceProfile current() {
+        return current;
+    }
+
+    /** Install the device's profile; any memory pressure in force still applies. */
+    static synchronized DeviceProfile setBase(DeviceProfile profile) {
+        base = profile;
+        return apply(profile.underPressure(current.pressure));
+    }
+
+    static synchronized DeviceProfile setPressure(Pressure pressure) {
+        return apply(base.underPressure(pressure));
+    }
+
+    private static DeviceProfile apply(DeviceProfile profile) {
+        current = profile;
+        NativeScheduler scheduler = NativeScheduler.get();
+        scheduler.setThreads(NativeScheduler.Pool.IO, profile.ioThreads);
+        scheduler.setThreads(NativeScheduler.Pool.CPU, profile.cpuThreads);
+        scheduler.setBackgroundPaused(profile.backgroundPaused);
+        return profile;
+    }
+
+    /**
+     * Sustained write speed of the filesystem holding {@code dir}: writes
+     * {@code bytes} to a scratch file and syncs it, so the page cache does
+     * not flatter the result. The file is deleted afterwards.
+     *
+     * @return bytes per second
+     */
+    static long probeStorage(File dir, int bytes) throws IOException {
+        File scratch = File.createTempFile("io-probe", ".tmp", dir);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            long started = System.nanoTime();
+            try (FileOutputStream out = new FileOutputStream(scratch)) {
+                for (int written = 0; written < bytes; written += buffer.length) {
+                    out.write(buffer, 0, Math.min(buffer.length, bytes - written));
+                }
+                out.getFD().sync();
+            }
+            long nanos = Math.max(1, System.nanoTime() - started);
+            return bytes * 1_000_000_000L / nanos;
+        } finally {
+            scratch.delete();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.shadangakriya.app;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the {@link DeviceProfile} from the device class and exposes it,
+ * so JS sizes its work (e.g. the chunk size of new downloads) the same way
+ * the native plugins do.
+ *
+ * Storage speed is probed once per build fingerprint, in the background;
+ * until then the profile is chosen without it. {@code profileChanged} fires
+ * whenever the profile changes: after the probe, when {@link MainActivity}
+ * reports memory pressure, and when that pressure has passed.
+ */
+@CapacitorPlugin(name = "DeviceProfile")
+public class DeviceProfilePlugin extends Plugin {
+    private static final String TAG = "DeviceProfile";
+    private static final String EVENT_CHANGED = "profileChanged";
+    private static final String PREFS = "device_profile";
+    private static final String PREF_STORAGE_SPEED = "storageBytesPerSecond";
+    private static final String PREF_FINGERPRINT = "fingerprint";
+    private static final int PROBE_BYTES = 4 * 1024 * 1024;
+    // Android never says when pressure is over; assume so after this long without a trim callback
+    private static final long PRESSURE_RELIEF_MS = 60_000;
+
+    private static volatile DeviceProfilePlugin instance;
+    private static final NativeScheduler.Lane EXECUTOR =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+    // Bumped by every trim callback, so only the latest one's relief runs
+    private static int pressureGeneration;
+
+    private static boolean lowRam;
+    private static int memoryClassMb;
+    private static int cores;
+    private static long storageBytesPerSecond;
+
+    @Override
+    public void load() {
+        instance = this;
+        profile(getContext());
+    }
+
+    @PluginMethod
+    public void getProfile(PluginCall call) {
+        call.resolve(toJson(DeviceProfile.current()));
+    }
+
+    /**
+     * Choose the profile from what the system reports and the cached storage
+     * speed; probe storage in the background if this build has not been yet.
+     * Safe to call more than once.
+     */
+    static synchronized void profile(Context context) {
+        if (cores > 0) {
+            return;
+        }
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        lowRam = activityManager.isLowRamDevice();
+        memoryClassMb = activityManager.getMemoryClass();
+        cores = Runtime.getRuntime().availableProcessors();
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (Build.FINGERPRINT.equals(prefs.getString(PREF_FINGERPRINT, null))) {
+            storageBytesPerSecond = prefs.getLong(PREF_STORAGE_SPEED, 0);
+        }
+        DeviceProfile.setBase(DeviceProfile.choose(lowRam, memoryClassMb, cores, storageBytesPerSecond));
+        if (storageBytesPerSecond > 0) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> {
+            long speed;
+            try {
+                speed = DeviceProfile.probeStorage(appContext.getFilesDir(), PROBE_BYTES);
+            } catch (IOException e) {
+                Log.w(TAG, "Storage probe failed", e);
+                return;
+            }
+            prefs.edit()
+                .putString(PREF_FINGERPRINT, Build.FINGERPRINT)
+                .putLong(PREF_STORAGE_SPEED, speed)
+                .apply();
+            synchronized (DeviceProfilePlugin.class) {
+                storageBytesPerSecond = speed;
+                DeviceProfile.setBase(DeviceProfile.choose(lowRam, memoryClassMb, cores, speed));
+            }
+            Log.d(TAG, "Storage writes " + (speed / (1024 * 1024)) + " MB/s");
+            dispatchChanged();
+        });
+    }
+
+    /** Called by {@link MainActivity#onTrimMemory}. */
+    static void onTrimMemory(int level) {
+        DeviceProfile.Pressure pressure;
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            pressure = DeviceProfile.Pressure.CRITICAL;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE
+                || level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            pressure = DeviceProfile.Pressure.MODERATE;
+        } else {
+            // UI_HIDDEN and BACKGROUND: routine, nothing to give back
+            return;
+        }
+
+        int generation;
+        synchronized (DeviceProfilePlugin.class) {
+            DeviceProfile current = DeviceProfile.current();
+            // A milder callback does not lift a stronger pressure before its relief
+            if (pressure.compareTo(current.pressure) > 0) {
+                DeviceProfile.setPressure(pressure);
+            }
+            generation = ++pressureGeneration;
+        }
+        if (pressure == DeviceProfile.Pressure.CRITICAL) {
+            // Started again by its worker's retry once background work resumes
+            LessonPrefetch.get().interrupt();
+        }
+        dispatchChanged();
+
+        EXECUTOR.schedule(() -> {
+            synchronized (DeviceProfilePlugin.class) {
+                if (generation != pressureGeneration) {
+                    return;
+                }
+                DeviceProfile.setPressure(DeviceProfile.Pressure.NONE);
+            }
+            dispatchChanged();
+        }, PRESSURE_RELIEF_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void dispatchChanged() {
+        DeviceProfilePlugin plugin = instance;
+        if (plugin != null) {
+            plugin.notifyListeners(EVENT_CHANGED, toJson(DeviceProfile.current()));
+        }
+    }
+
+    private static JSObject toJson(DeviceProfile profile) {
+        JSObject result = new JSObject();
+        result.put("tier", profile.tier.name().toLowerCase(Locale.ROOT));
+        result.put("pressure", profile.pressure.name().toLowerCase(Locale.ROOT));
+        result.put("bufferSize", profile.bufferSize);
+        result.put("chunkSize", profile.chunkSize);
+        result.put("ioThreads", profile.ioThreads);
+        result.put("cpuThreads", profile.cpuThreads);
+        result.put("backgroundPaused", profile.backgroundPaused);
+        synchronized (DeviceProfilePlugin.class) {
+            result.put("lowRamDevice", lowRam);
+            result.put("memoryClassMb", memoryClassMb);
+            result.put("cores", cores);
+            result.put("storageBytesPerSecond", storageBytesPerSecond);
+        }
+        return result;
+    }
+}
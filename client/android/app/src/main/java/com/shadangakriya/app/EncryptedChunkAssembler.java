@@ -0,0 +1,422 @@
+package com.shadangakriya.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streams a lesson's AES-CTR chunks through the cipher into one output,
+ * chunk by chunk, with a single reusable buffer. No intermediate files and
+ * no plaintext ever leaves native code.
+ *
+ * Because every chunk has its own counter, chunks can also be decrypted
+ * independently: the parallel variants spread them over a pool and write
+ * each one at its own offset of a preallocated output file.
+ *
+ * With {@link #setExpectedDigests} every chunk's plaintext is hashed as it
+ * is written and checked at the end of the chunk; a mismatch throws
+ * {@link ChunkIntegrityException} naming the chunk.
+ *
+ * With {@link #setSeekIndexBuilder} the sequential variants also feed the
+ * plaintext, in order, to an {@link Mp3SeekIndex.Builder}. The parallel
+ * ones write out of order, so their output is indexed afterwards with
+ * {@link Mp3SeekIndex#scan}.
+ *
+ * With {@link #setPlayableListener} the sequential variants tell the caller
+ * once the first bytes of the output are on disk, so playback can start
+ * while the rest is still being written. The parallel variants never do:
+ * their output is preallocated, so the file is full length with holes
+ * until the end.
+ */
+final class EncryptedChunkAssembler {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Opens the raw ciphertext of a chunk (already base64-decoded if needed). */
+    interface ChunkSource {
+        InputStream open(int chunkIndex) throws IOException;
+    }
+
+    /** Told once, from a worker thread, that the output's first {@code bytesWritten} bytes are final. */
+    interface PlayableListener {
+        void onPlayable(long bytesWritten);
+    }
+
+    private final ChunkCiphers ciphers;
+    private final int chunkSize;
+    private int bufferSize = BUFFER_SIZE;
+    private byte[][] expectedDigests;
+    private Mp3SeekIndex.Builder seekIndex;
+    private long playableHeadBytes;
+    private PlayableListener playableListener;
+    private boolean playableSent;
+
+    EncryptedChunkAssembler(SecretKeySpec key, byte[] nonce, int chunkSize) {
+        this(ChunkCiphers.lesson(key, nonce, chunkSize), chunkSize);
+    }
+
+    /** Variant for chunks with their own keystreams, e.g. in the {@link ChunkStore}. */
+    EncryptedChunkAssembler(ChunkCiphers ciphers, int chunkSize) {
+        this.ciphers = ciphers;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Bytes read, decrypted and written at a time (per worker in the parallel variants); 64 KB by default. */
+    void setBufferSize(int bytes) {
+        if (bytes < AesCtrCipher.BLOCK_SIZE) {
+            throw new IllegalArgumentException("Buffer size must be at least 16");
+        }
+        this.bufferSize = bytes;
+    }
+
+    /** Per-chunk SHA-256 of the plaintext to verify against; null entries are skipped. */
+    void setExpectedDigests(byte[][] digests) {
+        this.expectedDigests = digests;
+    }
+
+    /**
+     * Report once {@code headBytes} from the start of the output are written,
+     * or the whole output if it is shorter. Only the sequential variants
+     * report; a parallel assembly is not playable until it returns.
+     */
+    void setPlayableListener(long headBytes, PlayableListener listener) {
+        this.playableHeadBytes = headBytes;
+        this.playableListener = listener;
+    }
+
+    /** Receives the plaintext of {@link #assemble} and {@link #assembleContainer}. */
+    void setSeekIndexBuilder(Mp3SeekIndex.Builder builder) {
+        this.seekIndex = builder;
+    }
+
+    /**
+     * Decrypt {@code chunkCount} chunks in order and write them to {@code out},
+     * reporting each buffer to {@code job} (which may cancel the run).
+     *
+     * @return total plaintext bytes written
+     */
+    long assemble(ChunkSource source, int chunkCount, OutputStream out, AssemblyJob job)
+            throws IOException, GeneralSecurityException {
+        byte[] buffer = new byte[bufferSize];
+        long totalBytes = 0;
+
+        for (int i = 0; i < chunkCount; i++) {
+            long started = System.nanoTime();
+            AesCtrCipher cipher = ciphers.open(i, 0);
+            MessageDigest digest = digestFor(i);
+            long chunkBytes = 0;
+
+            try (InputStream in = source.open(i)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    chunkBytes += read;
+                    if (chunkBytes > chunkSize) {
+                        throw new IOException("Chunk " + i + " is larger than the manifest chunk size");
+                    }
+                    cipher.update(buffer, 0, read, buffer, 0);
+                    if (digest != null) {
+                        digest.update(buffer, 0, read);
+                    }
+                    if (seekIndex != null) {
+                        seekIndex.update(buffer, 0, read);
+                    }
+                    out.write(buffer, 0, read);
+                    job.advance(read);
+                }
+            }
+
+            // Every chunk but the last must be full, otherwise the counters of
+            // the following chunks no longer line up with their data.
+            if (i < chunkCount - 1 && chunkBytes != chunkSize) {
+                throw new IOException("Chunk " + i + " is truncated (" + chunkBytes + " of " + chunkSize + " bytes)");
+            }
+            verify(i, digest);
+            recordChunk(started);
+            totalBytes += chunkBytes;
+            if (playablePending()) {
+                out.flush();
+                reportWritten(totalBytes, i == chunkCount - 1);
+            }
+        }
+
+        out.flush();
+        return totalBytes;
+    }
+
+    /**
+     * Parallel variant of {@link #assemble}: chunks are decrypted concurrently
+     * on {@code pool} and written at {@code chunkIndex * chunkSize} in
+     * {@code out}. The file is preallocated to {@code sizeHint} (an upper
+     * bound is fine) and trimmed to the real size at the end.
+     *
+     * @return total plaintext bytes written
+     */
+    long assembleParallel(ChunkSource source, int chunkCount, long sizeHint, RandomAccessFile out,
+                          ExecutorService pool, AssemblyJob job) throws IOException, GeneralSecurityException {
+        out.setLength(sizeHint);
+        FileChannel channel = out.getChannel();
+
+        long totalBytes = runChunks(chunkCount, pool, (index, abort) -> {
+            long started = System.nanoTime();
+            byte[] buffer = new byte[bufferSize];
+            AesCtrCipher cipher = ciphers.open(index, 0);
+            MessageDigest digest = digestFor(index);
+            long position = (long) index * chunkSize;
+            long chunkBytes = 0;
+
+            try (InputStream in = source.open(index)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    throwIfAborted(abort);
+                    chunkBytes += read;
+                    if (chunkBytes > chunkSize) {
+                        throw new IOException("Chunk " + index + " is larger than the manifest chunk size");
+                    }
+                    cipher.update(buffer, 0, read, buffer, 0);
+                    if (digest != null) {
+                        digest.update(buffer, 0, read);
+                    }
+                    ByteBuffer plainText = ByteBuffer.wrap(buffer, 0, read);
+                    while (plainText.hasRemaining()) {
+                        position += channel.write(plainText, position);
+                    }
+                    job.advance(read);
+                }
+            }
+
+            if (index < chunkCount - 1 && chunkBytes != chunkSize) {
+                throw new IOException("Chunk " + index + " is truncated (" + chunkBytes + " of " + chunkSize + " bytes)");
+            }
+            verify(index, digest);
+            recordChunk(started);
+            return chunkBytes;
+        });
+
+        out.setLength(totalBytes);
+        return totalBytes;
+    }
+
+    /**
+     * v4 variant: decrypt the contiguous ciphertext stored in a
+     * {@link LessonContainer} into {@code out}. Reads, decrypts and writes go
+     * through direct buffers, so the audio never passes through the Java heap.
+     *
+     * @return total plaintext bytes written
+     */
+    long assembleContainer(FileChannel in, long dataOffset, long dataLength, FileChannel out, AssemblyJob job)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer cipherText = ByteBuffer.allocateDirect(bufferSize);
+        ByteBuffer plainText = ByteBuffer.allocateDirect(bufferSize);
+        long outStart = out.position();
+
+        long done = 0;
+        for (int i = 0; done < dataLength; i++) {
+            done += decryptContainerChunk(in, dataOffset, dataLength, i, out, outStart, cipherText, plainText, job,
+                null, seekIndex);
+            reportWritten(done, done == dataLength);
+        }
+        return dataLength;
+    }
+
+    /**
+     * Parallel variant of {@link #assembleContainer}: the output file is
+     * preallocated to {@code dataLength}, then chunks are decrypted on
+     * {@code pool} and written at their own offsets with positional writes.
+     *
+     * @return total plaintext bytes written
+     */
+    long assembleContainerParallel(FileChannel in, long dataOffset, long dataLength, RandomAccessFile out,
+                                   ExecutorService pool, AssemblyJob job)
+            throws IOException, GeneralSecurityException {
+        out.setLength(dataLength);
+        FileChannel channel = out.getChannel();
+        int chunkCount = (int) ((dataLength + chunkSize - 1) / chunkSize);
+
+        return runChunks(chunkCount, pool, (index, abort) -> {
+            ByteBuffer cipherText = ByteBuffer.allocateDirect(bufferSize);
+            ByteBuffer plainText = ByteBuffer.allocateDirect(bufferSize);
+            return decryptContainerChunk(in, dataOffset, dataLength, index, channel, 0, cipherText,
+                plainText, job, abort, null);
+        });
+    }
+
+    /** Decrypt chunk {@code index} of a container to {@code outStart + index * chunkSize}. */
+    private long decryptContainerChunk(FileChannel in, long dataOffset, long dataLength, int index,
+                                       FileChannel out, long outStart, ByteBuffer cipherText, ByteBuffer plainText,
+                                       AssemblyJob job, AtomicReference<Throwable> abort,
+                                       Mp3SeekIndex.Builder seekIndex)
+            throws IOException, GeneralSecurityException {
+        long started = System.nanoTime();
+        AesCtrCipher cipher = ciphers.open(index, 0);
+        MessageDigest digest = digestFor(index);
+        long done = (long) index * chunkSize;
+        long chunkEnd = Math.min(done + chunkSize, dataLength);
+        long chunkStart = done;
+
+        while (done < chunkEnd) {
+            throwIfAborted(abort);
+            cipherText.clear();
+            cipherText.limit((int) Math.min(cipherText.capacity(), chunkEnd - done));
+            while (cipherText.hasRemaining()) {
+                if (in.read(cipherText, dataOffset + done + cipherText.position()) < 0) {
+                    throw new IOException("Container ended inside chunk " + index);
+                }
+            }
+            cipherText.flip();
+
+            plainText.clear();
+            cipher.update(cipherText, plainText);
+            plainText.flip();
+            if (digest != null) {
+                plainText.mark();
+                digest.update(plainText);
+                plainText.reset();
+            }
+            if (seekIndex != null) {
+                seekIndex.update(plainText);
+            }
+            int length = plainText.remaining();
+            long position = outStart + done;
+            while (plainText.hasRemaining()) {
+                position += out.write(plainText, position);
+            }
+            done += length;
+            job.advance(length);
+        }
+        verify(index, digest);
+        recordChunk(started);
+        return chunkEnd - chunkStart;
+    }
+
+    /** @return a fresh digest if chunk {@code index} has an expected one, else null */
+    private MessageDigest digestFor(int index) {
+        if (expectedDigests == null || index >= expectedDigests.length || expectedDigests[index] == null) {
+            return null;
+        }
+        return ChunkDigests.newDigest();
+    }
+
+    private void verify(int index, MessageDigest digest) throws ChunkIntegrityException {
+        if (digest == null) {
+            return;
+        }
+        try {
+            ChunkDigests.verify(index, digest, expectedDigests[index]);
+        } catch (ChunkIntegrityException e) {
+            NativeMetrics.CORRUPT_CHUNKS.increment();
+            throw e;
+        }
+    }
+
+    private boolean playablePending() {
+        return playableListener != null && !playableSent;
+    }
+
+    /** {@code contiguousBytes} from the start of the output are written; {@code complete} if that is all of it. */
+    private void reportWritten(long contiguousBytes, boolean complete) {
+        if (playablePending() && (contiguousBytes >= playableHeadBytes || complete)) {
+            playableSent = true;
+            playableListener.onPlayable(contiguousBytes);
+        }
+    }
+
+    private static void recordChunk(long startNanos) {
+        NativeMetrics.DECRYPT_CHUNK_MICROS.recordMicrosSince(startNanos);
+        NativeMetrics.DECRYPTED_CHUNKS.increment();
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel execution
+    // -------------------------------------------------------------------------
+
+    /** Per-chunk work for {@link #runChunks}; stops early once {@code abort} holds an error. */
+    private interface ParallelChunkTask {
+        long run(int chunkIndex, AtomicReference<Throwable> abort) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Run {@code task} for every chunk on {@code pool} and wait for all of
+     * them, so nothing writes to the output after this returns. The first
+     * failure stops the remaining chunks and is rethrown as is. An interrupt
+     * does the same: it fails the run once no chunk is writing any more and
+     * is then restored.
+     *
+     * @return sum of the chunk sizes
+     */
+    private static long runChunks(int chunkCount, ExecutorService pool, ParallelChunkTask task)
+            throws IOException, GeneralSecurityException {
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        List<Future<Long>> futures = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            final int index = i;
+            futures.add(pool.submit(() -> {
+                throwIfAborted(firstError);
+                try {
+                    return task.run(index, firstError);
+                } catch (Throwable t) {
+                    firstError.compareAndSet(null, t);
+                    throw t;
+                }
+            }));
+        }
+
+        long totalBytes = 0;
+        boolean interrupted = false;
+        for (Future<Long> future : futures) {
+            while (true) {
+                try {
+                    totalBytes += future.get();
+                    break;
+                } catch (ExecutionException e) {
+                    // Recorded in firstError
+                    break;
+                } catch (InterruptedException e) {
+                    // Chunks not started yet now skip themselves; the ones writing are waited out
+                    interrupted = true;
+                    firstError.compareAndSet(null, new InterruptedIOException("Assembly interrupted"));
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable error = firstError.get();
+        if (error == null) {
+            return totalBytes;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof GeneralSecurityException) {
+            throw (GeneralSecurityException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IOException(error);
+    }
+
+    private static void throwIfAborted(AtomicReference<Throwable> abort) {
+        if (abort != null && abort.get() != null) {
+            throw new CancellationException("Another chunk failed");
+        }
+    }
+}
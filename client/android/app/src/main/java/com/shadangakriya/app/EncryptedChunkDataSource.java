@@ -0,0 +1,126 @@
+package com.shadangakriya.app;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.BaseDataSource;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSourceException;
+import androidx.media3.datasource.DataSpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Media3 {@link DataSource} that plays a downloaded lesson straight from its
+ * encrypted chunks. Each open decrypts from the requested position through a
+ * {@link DecryptingRangeStream}, so seeks cost one chunk open and nothing
+ * plaintext is ever written. How far ahead it reads is bounded by the
+ * player's load control (see {@link LessonPlaybackService}).
+ *
+ * Lessons are registered under a random token and addressed as
+ * {@code sklesson://<token>}.
+ */
+@UnstableApi
+final class EncryptedChunkDataSource extends BaseDataSource {
+    static final String SCHEME = "sklesson";
+
+    private static final Map<String, LessonStreamServer.Stream> lessons = new ConcurrentHashMap<>();
+
+    static Uri register(String token, LessonStreamServer.Stream stream) {
+        lessons.put(token, stream);
+        return Uri.parse(SCHEME + "://" + token);
+    }
+
+    static void unregisterLesson(String lessonId) {
+        lessons.values().removeIf(stream -> stream.lessonId.equals(lessonId));
+    }
+
+    /** Creates one source per load; the player opens several while seeking. */
+    static final class Factory implements DataSource.Factory {
+        @Override
+        public DataSource createDataSource() {
+            return new EncryptedChunkDataSource();
+        }
+    }
+
+    @Nullable private Uri uri;
+    @Nullable private InputStream input;
+    private long bytesRemaining;
+    private boolean opened;
+
+    EncryptedChunkDataSource() {
+        super(/* isNetwork= */ false);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        uri = dataSpec.uri;
+        transferInitializing(dataSpec);
+
+        LessonStreamServer.Stream stream = SCHEME.equals(uri.getScheme()) ? lessons.get(uri.getHost()) : null;
+        if (stream == null) {
+            throw new DataSourceException("Lesson is not registered for playback",
+                PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND);
+        }
+        if (dataSpec.position > stream.totalSize) {
+            throw new DataSourceException(PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+        }
+
+        long end = dataSpec.length == C.LENGTH_UNSET
+            ? stream.totalSize
+            : Math.min(stream.totalSize, dataSpec.position + dataSpec.length);
+        input = new DecryptingRangeStream(stream.source, stream.ciphers, stream.chunkSize,
+            dataSpec.position, end);
+        bytesRemaining = end - dataSpec.position;
+
+        opened = true;
+        transferStarted(dataSpec);
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (bytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+
+        int read = input.read(buffer, offset, (int) Math.min(length, bytesRemaining));
+        if (read == -1) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        bytesRemaining -= read;
+        bytesTransferred(read);
+        return read;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        uri = null;
+        try {
+            if (input != null) {
+                input.close();
+            }
+        } finally {
+            input = null;
+            if (opened) {
+                opened = false;
+                transferEnded();
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.shadangakriya.app;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of events waiting to be sent to the server, e.g. lesson
+ * progress recorded while the device is offline.
+ *
+ * Every event goes to a {@link Target} (one batch request) under a key;
+ * a later event with the same target and key replaces the earlier one, so
+ * only the latest of each is sent ({@link #pending}). Appends are buffered
+ * in memory until {@link #sync}, which writes them all with one write and
+ * one fsync. Records carry a CRC, so a write torn by a crash is dropped on
+ * the next open instead of corrupting the log.
+ *
+ * Sent events are removed with {@link #acknowledge}, which rewrites the
+ * log without them so a restart does not send them again. Replaced records
+ * are dropped the same way once they make up most of the log. Keep one
+ * instance per file.
+ */
+final class EventJournal implements Closeable {
+    // Record layout: int payload length, int CRC32 of the payload, payload
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_PAYLOAD = 64 * 1024;
+    // After a sync, rewrite once this many records on disk are replaced and they outnumber the live ones
+    private static final int COMPACT_MIN_STALE = 64;
+
+    /** The batch request an event is sent with: {@code {"<field>": [event, ...]}} to {@code method path}. */
+    static final class Target {
+        final String method;
+        final String path;
+        final String field;
+
+        Target(String method, String path, String field) {
+            this.method = Objects.requireNonNull(method);
+            this.path = Objects.requireNonNull(path);
+            this.field = Objects.requireNonNull(field);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Target)) {
+                return false;
+            }
+            Target other = (Target) o;
+            return method.equals(other.method) && path.equals(other.path) && field.equals(other.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, path, field);
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path;
+        }
+    }
+
+    static final class Event {
+        final long sequence;
+        final long recordedAtMs;
+        final Target target;
+        final String key;
+        /** The event as JSON, sent as is. */
+        final String json;
+
+        Event(long sequence, long recordedAtMs, Target target, String key, String json) {
+            this.sequence = sequence;
+            this.recordedAtMs = recordedAtMs;
+            this.target = target;
+            this.key = key;
+            this.json = json;
+        }
+
+        private String slot() {
+            return target.method + ' ' + target.path + ' ' + target.field + ' ' + key;
+        }
+    }
+
+    private final File file;
+    // Latest event per target and key, synced or not
+    private final Map<String, Event> latest = new LinkedHashMap<>();
+    private final List<Event> unsynced = new ArrayList<>();
+    private FileOutputStream out;
+    private long nextSequence = 1;
+    private int recordsOnDisk;
+
+    /** Open {@code file}, creating it if needed and dropping a torn last record. */
+    EventJournal(File file) throws IOException {
+        this.file = file;
+        long validLength = load();
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        out = new FileOutputStream(file, true);
+    }
+
+    /**
+     * Queue an event; it is durable after the next {@link #sync}.
+     *
+     * @return its sequence number
+     */
+    synchronized long append(Target target, String key, String json, long recordedAtMs) {
+        Event event = new Event(nextSequence++, recordedAtMs, target, key, json);
+        if (encode(event).length > MAX_PAYLOAD + RECORD_HEADER) {
+            throw new IllegalArgumentException("Event too large");
+        }
+        latest.remove(event.slot());
+        latest.put(event.slot(), event);
+        unsynced.add(event);
+        return event.sequence;
+    }
+
+    /**
+     * Write and fsync everything appended since the last sync. Events
+     * already replaced by a later one are skipped.
+     */
+    synchronized void sync() throws IOException {
+        if (unsynced.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        int written = 0;
+        for (Event event : unsynced) {
+            if (latest.get(event.slot()) == event) {
+                batch.write(encode(event));
+                written++;
+            }
+        }
+        out.write(batch.toByteArray());
+        out.getFD().sync();
+        recordsOnDisk += written;
+        unsynced.clear();
+        compactIfStale();
+    }
+
+    synchronized int unsyncedCount() {
+        return unsynced.size();
+    }
+
+    /** Events not yet acknowledged, latest per target and key, oldest first. */
+    synchronized List<Event> pending() {
+        List<Event> events = new ArrayList<>(latest.values());
+        events.sort(Comparator.comparingLong(e -> e.sequence));
+        return events;
+    }
+
+    synchronized int pendingCount() {
+        return latest.size();
+    }
+
+    /**
+     * Forget {@code sent}. An event appended for the same target and key
+     * after it was read stays pending.
+     */
+    synchronized void acknowledge(Collection<Event> sent) throws IOException {
+        boolean removed = false;
+        for (Event event : sent) {
+            Event current = latest.get(event.slot());
+            if (current != null && current.sequence <= event.sequence) {
+                latest.remove(event.slot());
+                removed = true;
+            }
+        }
+        if (removed) {
+            compact();
+        }
+    }
+
+    /** Rewrite the log with only the pending events, synced or not. */
+    synchronized void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        List<Event> live = pending();
+        try (FileOutputStream rewrite = new FileOutputStream(temp)) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for (Event event : live) {
+                records.write(encode(event));
+            }
+            rewrite.write(records.toByteArray());
+            rewrite.getFD().sync();
+        }
+        out.close();
+        if (!temp.renameTo(file)) {
+            out = new FileOutputStream(file, true);
+            throw new IOException("Could not replace " + file.getName());
+        }
+        out = new FileOutputStream(file, true);
+        unsynced.clear();
+        recordsOnDisk = live.size();
+    }
+
+    private void compactIfStale() throws IOException {
+        int stale = recordsOnDisk - latest.size();
+        if (stale >= COMPACT_MIN_STALE && stale > recordsOnDisk / 2) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Read every intact record; returns the length of the valid prefix. */
+    private long load() throws IOException {
+        if (!file.exists()) {
+            file.getParentFile().mkdirs();
+            return 0;
+        }
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                int crc;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                    if (length <= 0 || length > MAX_PAYLOAD) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc32(payload) != crc) {
+                    break;
+                }
+                Event event = decode(payload);
+                latest.remove(event.slot());
+                latest.put(event.slot(), event);
+                nextSequence = Math.max(nextSequence, event.sequence + 1);
+                recordsOnDisk++;
+                valid += RECORD_HEADER + length;
+            }
+        }
+        return valid;
+    }
+
+    private static byte[] encode(Event event) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeLong(event.sequence);
+            data.writeLong(event.recordedAtMs);
+            data.writeUTF(event.target.method);
+            data.writeUTF(event.target.path);
+            data.writeUTF(event.target.field);
+            data.writeUTF(event.key);
+            data.writeUTF(event.json);
+            byte[] bytes = payload.toByteArray();
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_HEADER + bytes.length);
+            DataOutputStream header = new DataOutputStream(record);
+            header.writeInt(bytes.length);
+            header.writeInt(crc32(bytes));
+            header.write(bytes);
+            return record.toByteArray();
+        } catch (IOException e) {
+            // A string over 64 KB encoded; nothing else can fail in memory
+            throw new IllegalArgumentException("Event too large", e);
+        }
+    }
+
+    private static Event decode(byte[] payload) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = data.readLong();
+        long recordedAtMs = data.readLong();
+        Target target = new Target(data.readUTF(), data.readUTF(), data.readUTF());
+        return new Event(sequence, recordedAtMs, target, data.readUTF(), data.readUTF());
+    }
+
+    private static int crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+}
@@ -1,5 +1,7 @@
 package com.shadangakriya.app;
 
+import android.util.Log;
+
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -9,74 +11,522 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 
 import org.json.JSONException;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 @CapacitorPlugin(name = "FileConcatenation")
 public class FileConcatenationPlugin extends Plugin {
+    private static final String TAG = "FileConcatenation";
+    private static final String EVENT_PROGRESS = "concatenationProgress";
+    private static final String EVENT_PLAYABLE = "playableReady";
+
+    // One job at a time: they are disk-bound, running two only splits the bandwidth.
+    // Playback is waiting on the result, so it goes ahead of downloads and cleanup.
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.PLAYBACK);
+    // Chunks decrypt independently, so a job fans them out over the CPU pool.
+    private final ExecutorService decryptPool =
+        NativeScheduler.get().lane(NativeScheduler.Pool.CPU, NativeScheduler.Priority.PLAYBACK);
+    // Seek lookups are short and the player is waiting; they must not queue behind an assembly
+    private final ExecutorService lookups =
+        NativeScheduler.get().lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.PLAYBACK);
+    private final Map<String, AssemblyJob> jobs = new ConcurrentHashMap<>();
+    // Outputs being assembled: a lookup would index a partial file
+    private final Set<String> assembling = ConcurrentHashMap.newKeySet();
+
+    private final AssemblyJob.ProgressListener progressListener = (job, bytesDone, totalBytes, bytesPerSecond) -> {
+        JSObject data = new JSObject();
+        data.put("jobId", job.id);
+        data.put("bytesDone", bytesDone);
+        data.put("totalBytes", totalBytes);
+        data.put("bytesPerSecond", bytesPerSecond);
+        notifyListeners(EVENT_PROGRESS, data);
+    };
 
     @PluginMethod
     public void concatenateFiles(PluginCall call) {
         String outputPath = call.getString("outputPath");
         JSArray inputPathsArray = call.getArray("inputPaths");
-        
+
         if (outputPath == null || inputPathsArray == null) {
             call.reject("Missing required parameters");
             return;
         }
 
+        List<File> inputFiles;
         try {
-            // Convert JSArray to String array
-            List<String> inputPathsList = new ArrayList<>();
-            for (int i = 0; i < inputPathsArray.length(); i++) {
-                inputPathsList.add(inputPathsArray.getString(i));
+            inputFiles = resolveInputFiles(call, inputPathsArray);
+        } catch (JSONException e) {
+            call.reject("Failed to parse input paths: " + e.getMessage());
+            return;
+        }
+        if (inputFiles == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (File inputFile : inputFiles) {
+            totalSize += inputFile.length();
+        }
+
+        File outputFile = new File(getContext().getFilesDir(), outputPath);
+        // Whatever was indexed at this path before is about to be replaced
+        Mp3SeekIndex.sidecarFor(outputFile).delete();
+        AssemblyJob job = startJob(call, totalSize);
+
+        executor.execute(() -> {
+            try {
+                long totalBytes = ChannelConcatenator.concatenate(inputFiles, outputFile, job);
+                job.finish();
+                resolveJob(call, job, totalBytes, null);
+            } catch (CancellationException e) {
+                outputFile.delete();
+                call.reject("Concatenation cancelled", "CANCELLED");
+            } catch (IOException e) {
+                outputFile.delete();
+                call.reject("Failed to concatenate files: " + e.getMessage());
+            } finally {
+                jobs.remove(job.id);
             }
-            String[] inputPaths = inputPathsList.toArray(new String[0]);
-            
-            if (inputPaths.length == 0) {
-                call.reject("No input paths provided");
-                return;
+        });
+    }
+
+    /**
+     * Decrypt a lesson straight into one output file, from the v3 base64
+     * chunk files ({@code inputPaths}), a v4 container ({@code containerPath})
+     * or, with {@code chunkStore}, the {@link ChunkStore} chunks named by
+     * {@code digests} (v5; no key or nonce needed). Each chunk is decrypted as a stream with the
+     * counter offset used by audioEncryption.ts, so no temp chunk files are
+     * written and no plaintext crosses the bridge.
+     *
+     * Unless {@code parallel} is false, chunks are decrypted concurrently on
+     * the CPU pool into a preallocated output file. Buffer size and pool size
+     * come from the {@link DeviceProfile}.
+     *
+     * Without {@code key}, the key of {@code lessonId} comes from the
+     * {@link KeyVault}.
+     *
+     * If {@code digests} (the manifest's per-chunk SHA-256, hex) is given,
+     * each chunk is verified in the same pass; a mismatch rejects with code
+     * CHUNK_CORRUPT and {@code data.chunkIndex}. A corrupt stored chunk is
+     * dropped from the store, so downloading the lesson again replaces it.
+     *
+     * Unless {@code seekIndex} is false, an {@link Mp3SeekIndex} of the
+     * output is saved next to it and the exact {@code durationMs} is
+     * resolved along with the size.
+     *
+     * With {@code playableAfterBytes}, a {@code playableReady} event with the
+     * job id and {@code bytesWritten} is sent once that much of the output
+     * is on disk, so the player can open the file while the rest is
+     * appended. The lesson is then assembled in order, never in parallel:
+     * a preallocated file is full length with holes, not a playable head.
+     * The call itself resolves with the final length.
+     */
+    @PluginMethod
+    public void decryptAndAssemble(PluginCall call) {
+        String outputPath = call.getString("outputPath");
+        JSArray inputPathsArray = call.getArray("inputPaths");
+        String containerPath = call.getString("containerPath");
+        String hexKey = call.getString("key");
+        String lessonId = call.getString("lessonId");
+        String hexNonce = call.getString("nonce");
+        Integer chunkSize = call.getInt("chunkSize");
+        boolean fromStore = call.getBoolean("chunkStore", false);
+        DeviceProfile profile = DeviceProfile.current();
+        Long playableAfterBytes = call.getLong("playableAfterBytes");
+        boolean parallel = call.getBoolean("parallel", true) && profile.cpuThreads > 1 && playableAfterBytes == null;
+        Mp3SeekIndex.Builder seekIndex = call.getBoolean("seekIndex", true) ? new Mp3SeekIndex.Builder() : null;
+
+        if (outputPath == null || chunkSize == null || (!fromStore && ((inputPathsArray == null && containerPath == null)
+                || (hexKey == null && lessonId == null) || hexNonce == null))) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        EncryptedChunkAssembler assembler;
+        ChunkStore store = null;
+        byte[][] storeDigests = null;
+        try {
+            if (fromStore) {
+                storeDigests = ChunkStorePlugin.digestsFrom(call.getArray("digests"));
+                store = ChunkStorePlugin.store(getContext());
+                assembler = new EncryptedChunkAssembler(store.ciphers(storeDigests), chunkSize);
+            } else {
+                assembler = new EncryptedChunkAssembler(
+                    KeyVault.resolve(getContext(), hexKey, lessonId),
+                    AesCtrCipher.hexToBytes(hexNonce),
+                    chunkSize
+                );
+            }
+            assembler.setBufferSize(profile.bufferSize);
+            JSArray digestsArray = call.getArray("digests");
+            if (digestsArray != null) {
+                String[] hexDigests = new String[digestsArray.length()];
+                for (int i = 0; i < hexDigests.length; i++) {
+                    hexDigests[i] = digestsArray.isNull(i) ? null : digestsArray.getString(i);
+                }
+                assembler.setExpectedDigests(ChunkDigests.fromHex(hexDigests));
             }
+        } catch (IllegalArgumentException | JSONException e) {
+            call.reject("Invalid decryption parameters: " + e.getMessage());
+            return;
+        } catch (GeneralSecurityException e) {
+            call.reject("Lesson key unavailable: " + e.getMessage(), "KEY_UNAVAILABLE");
+            return;
+        } catch (IOException e) {
+            call.reject("Chunk store unavailable: " + e.getMessage());
+            return;
+        }
+
+        if (seekIndex != null && !parallel) {
+            assembler.setSeekIndexBuilder(seekIndex);
+        }
+        String jobId = call.getString("jobId", UUID.randomUUID().toString());
+        if (playableAfterBytes != null) {
+            assembler.setPlayableListener(playableAfterBytes, bytesWritten -> {
+                JSObject data = new JSObject();
+                data.put("jobId", jobId);
+                data.put("outputPath", outputPath);
+                data.put("bytesWritten", bytesWritten);
+                notifyListeners(EVENT_PLAYABLE, data);
+            });
+        }
 
-            File outputFile = new File(getContext().getFilesDir(), outputPath);
-            FileOutputStream fos = new FileOutputStream(outputFile);
+        File outputFile = new File(getContext().getFilesDir(), outputPath);
+        Mp3SeekIndex.sidecarFor(outputFile).delete();
 
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long totalBytes = 0;
+        if (containerPath != null && !fromStore) {
+            File containerFile = new File(getContext().getFilesDir(), containerPath);
+            if (!containerFile.exists()) {
+                call.reject("Input file does not exist: " + containerPath);
+                return;
+            }
+            long dataLength = LessonContainer.dataLength(containerFile);
+            AssemblyJob job = startJob(jobId, dataLength);
+            assembling.add(outputPath);
 
-            for (String inputPath : inputPaths) {
-                File inputFile = new File(getContext().getFilesDir(), inputPath);
-                
-                if (!inputFile.exists()) {
-                    fos.close();
-                    call.reject("Input file does not exist: " + inputPath);
+            executor.execute(() -> {
+                try (FileInputStream fis = new FileInputStream(containerFile)) {
+                    long totalBytes;
+                    if (parallel) {
+                        try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+                            totalBytes = assembler.assembleContainerParallel(
+                                fis.getChannel(), LessonContainer.HEADER_SIZE, dataLength, raf, decryptPool, job);
+                        }
+                    } else {
+                        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+                            totalBytes = assembler.assembleContainer(
+                                fis.getChannel(), LessonContainer.HEADER_SIZE, dataLength, fos.getChannel(), job);
+                        }
+                    }
+                    job.finish();
+                    resolveJob(call, job, totalBytes, saveSeekIndex(outputFile, seekIndex, parallel));
+                } catch (CancellationException e) {
+                    outputFile.delete();
+                    call.reject("Decryption cancelled", "CANCELLED");
+                } catch (ChunkIntegrityException e) {
+                    outputFile.delete();
+                    rejectCorruptChunk(call, e, null);
+                } catch (IOException | GeneralSecurityException e) {
+                    outputFile.delete();
+                    call.reject("Failed to decrypt files: " + e.getMessage());
+                } finally {
+                    jobs.remove(job.id);
+                    assembling.remove(outputPath);
+                }
+            });
+            return;
+        }
+
+        EncryptedChunkAssembler.ChunkSource source;
+        int chunkCount;
+        long estimatedSize;
+        if (fromStore) {
+            ChunkStore chunks = store;
+            byte[][] digests = storeDigests;
+            for (byte[] digest : digests) {
+                if (!chunks.contains(digest)) {
+                    call.reject("Chunk " + AesCtrCipher.bytesToHex(digest) + " is not in the store", "CHUNK_MISSING");
                     return;
                 }
+            }
+            source = index -> chunks.open(digests[index], 0);
+            chunkCount = digests.length;
+            // Stored chunks are raw ciphertext; only the last one may be short
+            estimatedSize = (long) chunkCount * chunkSize;
+        } else {
+            List<File> inputFiles;
+            try {
+                inputFiles = resolveInputFiles(call, inputPathsArray);
+            } catch (JSONException e) {
+                call.reject("Failed to parse input paths: " + e.getMessage());
+                return;
+            }
+            if (inputFiles == null) {
+                return;
+            }
+
+            // Chunks are base64 text: 4 characters on disk per 3 plaintext bytes.
+            long decodedSize = 0;
+            for (File inputFile : inputFiles) {
+                decodedSize += inputFile.length() / 4 * 3;
+            }
+            source = index -> Base64ChunkFiles.open(inputFiles.get(index));
+            chunkCount = inputFiles.size();
+            estimatedSize = decodedSize;
+        }
+
+        AssemblyJob job = startJob(jobId, estimatedSize);
+        assembling.add(outputPath);
+        ChunkStore corruptible = store;
+        byte[][] corruptibleDigests = storeDigests;
+
+        executor.execute(() -> {
+            try {
+                long totalBytes;
+                if (parallel) {
+                    try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+                        totalBytes = assembler.assembleParallel(
+                            source, chunkCount, estimatedSize, raf, decryptPool, job);
+                    }
+                } else {
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), profile.bufferSize)) {
+                        totalBytes = assembler.assemble(source, chunkCount, out, job);
+                    }
+                }
+                job.finish();
+                resolveJob(call, job, totalBytes, saveSeekIndex(outputFile, seekIndex, parallel));
+            } catch (CancellationException e) {
+                outputFile.delete();
+                call.reject("Decryption cancelled", "CANCELLED");
+            } catch (ChunkIntegrityException e) {
+                outputFile.delete();
+                Set<String> lessonIds = corruptible != null
+                    ? corruptible.evict(corruptibleDigests[e.chunkIndex])
+                    : null;
+                rejectCorruptChunk(call, e, lessonIds);
+            } catch (FileNotFoundException e) {
+                outputFile.delete();
+                if (corruptible != null) {
+                    // Evicted by another lesson's assembly since the check above
+                    call.reject("A stored chunk is gone: " + e.getMessage(), "CHUNK_MISSING");
+                } else {
+                    call.reject("Failed to decrypt files: " + e.getMessage());
+                }
+            } catch (IOException | GeneralSecurityException e) {
+                outputFile.delete();
+                call.reject("Failed to decrypt files: " + e.getMessage());
+            } finally {
+                jobs.remove(job.id);
+                assembling.remove(outputPath);
+            }
+        });
+    }
 
-                FileInputStream fis = new FileInputStream(inputFile);
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
+    /**
+     * Exact duration and seek points of an assembled MP3 ({@code path}),
+     * from the index saved by decryptAndAssemble. Files without one are
+     * scanned once and the index is saved for next time.
+     *
+     * With {@code positionsMs}, resolves {@code offsets}: for each position
+     * the byte offset of the frame starting at or before it. Otherwise
+     * resolves the whole table as {@code timesMs} and {@code offsets}, one
+     * entry per second of audio. Rejects with code BUSY while
+     * decryptAndAssemble is still writing the file.
+     */
+    @PluginMethod
+    public void getSeekIndex(PluginCall call) {
+        String path = call.getString("path");
+        JSArray positionsArray = call.getArray("positionsMs");
+        if (path == null) {
+            call.reject("Missing path");
+            return;
+        }
+        File file = new File(getContext().getFilesDir(), path);
+        if (!file.isFile()) {
+            call.reject("File does not exist: " + path);
+            return;
+        }
+        if (assembling.contains(path)) {
+            call.reject("File is still being assembled: " + path, "BUSY");
+            return;
+        }
+
+        lookups.execute(() -> {
+            try {
+                File sidecar = Mp3SeekIndex.sidecarFor(file);
+                Mp3SeekIndex index = null;
+                try {
+                    index = Mp3SeekIndex.readFrom(sidecar);
+                } catch (IOException e) {
+                    Log.w(TAG, "Rebuilding seek index: " + e.getMessage());
+                }
+                if (index == null) {
+                    index = Mp3SeekIndex.scan(file);
+                    if (index == null) {
+                        call.reject("No MP3 frames found in " + path, "NOT_MP3");
+                        return;
+                    }
+                    index.writeTo(sidecar);
+                }
+
+                JSObject result = seekIndexResult(index);
+                if (positionsArray != null) {
+                    JSArray offsets = new JSArray();
+                    for (int i = 0; i < positionsArray.length(); i++) {
+                        long timeUs = positionsArray.getLong(i) * 1000;
+                        offsets.put(index.offsetAt(index.entryForTime(timeUs)));
+                    }
+                    result.put("offsets", offsets);
+                } else {
+                    JSArray times = new JSArray();
+                    JSArray offsets = new JSArray();
+                    for (int i = 0; i < index.size(); i++) {
+                        times.put(index.timeUsAt(i) / 1000);
+                        offsets.put(index.offsetAt(i));
+                    }
+                    result.put("timesMs", times);
+                    result.put("offsets", offsets);
                 }
-                fis.close();
+                call.resolve(result);
+            } catch (IOException | JSONException e) {
+                call.reject("Failed to read seek index: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Cancel a running concatenateFiles / decryptAndAssemble job. The job's own
+     * call rejects with code CANCELLED and its partial output is deleted.
+     */
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        String jobId = call.getString("jobId");
+        if (jobId == null) {
+            call.reject("Missing jobId");
+            return;
+        }
+
+        AssemblyJob job = jobs.get(jobId);
+        if (job != null) {
+            job.cancel();
+        }
+
+        JSObject result = new JSObject();
+        result.put("cancelled", job != null);
+        call.resolve(result);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (AssemblyJob job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdown();
+        decryptPool.shutdown();
+        lookups.shutdown();
+        super.handleOnDestroy();
+    }
+
+    /** @return the input files, or null after rejecting the call if one is missing */
+    private List<File> resolveInputFiles(PluginCall call, JSArray inputPathsArray) throws JSONException {
+        List<File> inputFiles = new ArrayList<>();
+        for (int i = 0; i < inputPathsArray.length(); i++) {
+            String inputPath = inputPathsArray.getString(i);
+            File inputFile = new File(getContext().getFilesDir(), inputPath);
+            if (!inputFile.exists()) {
+                call.reject("Input file does not exist: " + inputPath);
+                return null;
             }
+            inputFiles.add(inputFile);
+        }
 
-            fos.close();
+        if (inputFiles.isEmpty()) {
+            call.reject("No input paths provided");
+            return null;
+        }
+        return inputFiles;
+    }
+
+    private AssemblyJob startJob(PluginCall call, long totalBytes) {
+        return startJob(call.getString("jobId", UUID.randomUUID().toString()), totalBytes);
+    }
 
-            JSObject result = new JSObject();
-            result.put("success", true);
-            result.put("totalBytes", totalBytes);
-            call.resolve(result);
+    private AssemblyJob startJob(String jobId, long totalBytes) {
+        AssemblyJob job = new AssemblyJob(jobId, totalBytes, progressListener);
+        jobs.put(jobId, job);
+        return job;
+    }
 
+    /** Names the damaged chunk so only that chunk needs downloading again. */
+    /** @param lessonIds the stored lessons that shared the evicted chunk, if it was stored */
+    private void rejectCorruptChunk(PluginCall call, ChunkIntegrityException e, Set<String> lessonIds) {
+        Log.w(TAG, e.getMessage());
+        JSObject data = new JSObject();
+        data.put("chunkIndex", e.chunkIndex);
+        if (lessonIds != null) {
+            data.put("lessonIds", new JSArray(lessonIds));
+        }
+        call.reject(e.getMessage(), "CHUNK_CORRUPT", e, data);
+    }
+
+    /**
+     * Save the seek index of a finished assembly. A parallel one was written
+     * out of order, so it is scanned here. Failing to index never fails the
+     * assembly: the player then just estimates.
+     *
+     * @return the index, or null if none was asked for or it could not be built
+     */
+    private static Mp3SeekIndex saveSeekIndex(File outputFile, Mp3SeekIndex.Builder builder, boolean parallel) {
+        if (builder == null) {
+            return null;
+        }
+        try {
+            Mp3SeekIndex index = parallel ? Mp3SeekIndex.scan(outputFile) : builder.build();
+            if (index != null) {
+                index.writeTo(Mp3SeekIndex.sidecarFor(outputFile));
+            }
+            return index;
         } catch (IOException e) {
-            call.reject("Failed to concatenate files: " + e.getMessage());
-        } catch (JSONException e) {
-            call.reject("Failed to parse input paths: " + e.getMessage());
+            Log.w(TAG, "Could not index " + outputFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static JSObject seekIndexResult(Mp3SeekIndex index) {
+        JSObject result = new JSObject();
+        result.put("durationMs", index.durationUs() / 1000);
+        result.put("sampleRate", index.sampleRate);
+        result.put("frameCount", index.frameCount);
+        return result;
+    }
+
+    private void resolveJob(PluginCall call, AssemblyJob job, long totalBytes, Mp3SeekIndex seekIndex) {
+        Log.d(TAG, "Job " + job.id + " wrote " + totalBytes + " bytes");
+        NativeMetrics.ASSEMBLY_BYTES_PER_SECOND.record(job.bytesPerSecond());
+        NativeMetrics.ASSEMBLY_BYTES.add(totalBytes);
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("jobId", job.id);
+        result.put("totalBytes", totalBytes);
+        if (seekIndex != null) {
+            result.put("durationMs", seekIndex.durationUs() / 1000);
         }
+        call.resolve(result);
     }
 }
@@ -1,8 +1,18 @@
 package com.shadangakriya.app;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioDeviceCallback;
 import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
 
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -12,62 +22,189 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 
 @CapacitorPlugin(name = "HeadphoneDetection")
 public class HeadphonePlugin extends Plugin {
+    private static final String TAG = "HeadphoneDetection";
+    private static final String EVENT_HEADPHONES_CHANGED = "headphonesChanged";
+    private static final String EVENT_PREFLIGHT_CHANGED = "preflightChanged";
+
+    private AudioManager audioManager;
+
+    // Snapshot of the output route, kept current by the device callback
+    private volatile boolean headphonesConnected = false;
+    private volatile String headphoneType = "none";
+
+    private volatile boolean preflightUpdates = false;
+
+    // Airplane and ringer mode changes while preflight updates are on
+    private final BroadcastReceiver preflightReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            notifyListeners(EVENT_PREFLIGHT_CHANGED, preflightSnapshot());
+        }
+    };
+
+    // Display changes (screen recording) while preflight updates are on
+    private final ScreenCaptureMonitor.Listener screenCaptureListener =
+        recording -> notifyListeners(EVENT_PREFLIGHT_CHANGED, preflightSnapshot());
+
+    private final AudioDeviceCallback deviceCallback = new AudioDeviceCallback() {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            refreshRoute();
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            refreshRoute();
+        }
+    };
+
+    @Override
+    public void load() {
+        super.load();
+        audioManager = (AudioManager) getContext().getSystemService(Context.AUDIO_SERVICE);
+        refreshRoute();
+        // minSdkVersion is 24, so the device callback is always available
+        audioManager.registerAudioDeviceCallback(deviceCallback, new Handler(Looper.getMainLooper()));
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        stopPreflightUpdates();
+        if (audioManager != null) {
+            audioManager.unregisterAudioDeviceCallback(deviceCallback);
+        }
+        super.handleOnDestroy();
+    }
 
+    /** Answered from the cached route; listen to headphonesChanged for updates. */
     @PluginMethod
     public void isConnected(PluginCall call) {
-        try {
-            Context context = getContext();
-            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-
-            boolean isConnected = false;
-            String deviceType = "none";
-
-            // minSdkVersion is 24, so AudioDeviceInfo API is always available
-            AudioDeviceInfo[] devices = audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS);
-            for (AudioDeviceInfo device : devices) {
-                int type = device.getType();
-                if (type == AudioDeviceInfo.TYPE_WIRED_HEADPHONES) {
-                    isConnected = true;
-                    deviceType = "wired_headphones";
-                    break;
-                } else if (type == AudioDeviceInfo.TYPE_WIRED_HEADSET) {
-                    isConnected = true;
-                    deviceType = "wired_headset";
-                    break;
-                } else if (type == AudioDeviceInfo.TYPE_USB_HEADSET) {
-                    isConnected = true;
-                    deviceType = "usb_headset";
-                    break;
-                } else if (type == AudioDeviceInfo.TYPE_BLUETOOTH_A2DP) {
-                    isConnected = true;
-                    deviceType = "bluetooth_a2dp";
-                    break;
-                } else if (type == AudioDeviceInfo.TYPE_BLUETOOTH_SCO) {
-                    isConnected = true;
-                    deviceType = "bluetooth_sco";
-                    break;
-                }
+        call.resolve(routeSnapshot());
+    }
+
+    /**
+     * Everything the pre-lesson checks need in one round trip: output route,
+     * airplane mode, ringer mode and screen recording.
+     */
+    @PluginMethod
+    public void getPreflightState(PluginCall call) {
+        call.resolve(preflightSnapshot());
+    }
+
+    /**
+     * Emit preflightChanged with a fresh snapshot whenever airplane mode,
+     * ringer mode, the headphone route or the display set changes.
+     */
+    @PluginMethod
+    public void startPreflightUpdates(PluginCall call) {
+        synchronized (this) {
+            if (!preflightUpdates) {
+                preflightUpdates = true;
+                IntentFilter filter = new IntentFilter();
+                filter.addAction(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+                filter.addAction(AudioManager.RINGER_MODE_CHANGED_ACTION);
+                ContextCompat.registerReceiver(getContext(), preflightReceiver, filter,
+                    ContextCompat.RECEIVER_NOT_EXPORTED);
+                ScreenCaptureMonitor.get(getContext()).addListener(screenCaptureListener);
             }
+        }
+        call.resolve(preflightSnapshot());
+    }
 
-            JSObject result = new JSObject();
-            result.put("isConnected", isConnected);
-            result.put("deviceType", deviceType);
-            call.resolve(result);
-        } catch (Exception e) {
-            call.reject("Error detecting headphones: " + e.getMessage());
+    @PluginMethod
+    public void stopPreflightUpdates(PluginCall call) {
+        stopPreflightUpdates();
+        call.resolve();
+    }
+
+    private synchronized void stopPreflightUpdates() {
+        if (!preflightUpdates) {
+            return;
+        }
+        preflightUpdates = false;
+        getContext().unregisterReceiver(preflightReceiver);
+        ScreenCaptureMonitor.get(getContext()).removeListener(screenCaptureListener);
+    }
+
+    private JSObject preflightSnapshot() {
+        int ringerMode = audioManager.getRingerMode();
+        JSObject state = new JSObject();
+        state.put("headphonesConnected", headphonesConnected);
+        state.put("headphoneType", headphoneType);
+        state.put("airplaneMode", isAirplaneModeOn());
+        state.put("ringerSilent", isSilent(ringerMode));
+        state.put("ringerMode", ringerModeName(ringerMode));
+        state.put("screenRecording", ScreenCaptureMonitor.get(getContext()).isRecording());
+        return state;
+    }
+
+    private boolean isAirplaneModeOn() {
+        return Settings.Global.getInt(getContext().getContentResolver(), Settings.Global.AIRPLANE_MODE_ON, 0) != 0;
+    }
+
+    private static boolean isSilent(int ringerMode) {
+        return ringerMode == AudioManager.RINGER_MODE_SILENT || ringerMode == AudioManager.RINGER_MODE_VIBRATE;
+    }
+
+    private static String ringerModeName(int ringerMode) {
+        switch (ringerMode) {
+            case AudioManager.RINGER_MODE_SILENT:
+                return "silent";
+            case AudioManager.RINGER_MODE_VIBRATE:
+                return "vibrate";
+            default:
+                return "normal";
+        }
+    }
+
+    private void refreshRoute() {
+        String type = headphoneType(audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS));
+        boolean connected = !"none".equals(type);
+        if (connected == headphonesConnected && type.equals(headphoneType)) {
+            return;
+        }
+        headphonesConnected = connected;
+        headphoneType = type;
+        Log.d(TAG, "Output route changed: " + type);
+        notifyListeners(EVENT_HEADPHONES_CHANGED, routeSnapshot());
+        if (preflightUpdates) {
+            notifyListeners(EVENT_PREFLIGHT_CHANGED, preflightSnapshot());
+        }
+    }
+
+    private JSObject routeSnapshot() {
+        JSObject result = new JSObject();
+        result.put("isConnected", headphonesConnected);
+        result.put("deviceType", headphoneType);
+        return result;
+    }
+
+    /** The first headphone-like output, or "none". */
+    private static String headphoneType(AudioDeviceInfo[] devices) {
+        for (AudioDeviceInfo device : devices) {
+            switch (device.getType()) {
+                case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                    return "wired_headphones";
+                case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+                    return "wired_headset";
+                case AudioDeviceInfo.TYPE_USB_HEADSET:
+                    return "usb_headset";
+                case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+                    return "bluetooth_a2dp";
+                case AudioDeviceInfo.TYPE_BLUETOOTH_SCO:
+                    return "bluetooth_sco";
+                default:
+                    break;
+            }
         }
+        return "none";
     }
 
     @PluginMethod
     public void isAirplaneModeEnabled(PluginCall call) {
         try {
-            Context context = getContext();
-            boolean isEnabled = android.provider.Settings.Global.getInt(
-                context.getContentResolver(), 
-                android.provider.Settings.Global.AIRPLANE_MODE_ON, 0) != 0;
-            
             JSObject result = new JSObject();
-            result.put("isEnabled", isEnabled);
+            result.put("isEnabled", isAirplaneModeOn());
             call.resolve(result);
         } catch (Exception e) {
             call.reject("Error checking airplane mode: " + e.getMessage());
@@ -80,9 +217,6 @@ public class HeadphonePlugin extends Plugin {
     @PluginMethod
     public void requestExclusiveAudioFocus(PluginCall call) {
         try {
-            Context context = getContext();
-            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-
             // Create a listener for audio focus changes
             audioFocusListener = new AudioManager.OnAudioFocusChangeListener() {
                 @Override
@@ -122,8 +256,6 @@ public class HeadphonePlugin extends Plugin {
     public void abandonAudioFocus(PluginCall call) {
         try {
             if (audioFocusListener != null) {
-                Context context = getContext();
-                AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
                 audioManager.abandonAudioFocus(audioFocusListener);
                 audioFocusListener = null;
             }
@@ -138,28 +270,11 @@ public class HeadphonePlugin extends Plugin {
     @PluginMethod
     public void isRingerSilent(PluginCall call) {
         try {
-            Context context = getContext();
-            AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
             int ringerMode = audioManager.getRingerMode();
 
-            boolean isSilent = (ringerMode == AudioManager.RINGER_MODE_SILENT || 
-                                ringerMode == AudioManager.RINGER_MODE_VIBRATE);
-            
-            String modeName;
-            switch (ringerMode) {
-                case AudioManager.RINGER_MODE_SILENT:
-                    modeName = "silent";
-                    break;
-                case AudioManager.RINGER_MODE_VIBRATE:
-                    modeName = "vibrate";
-                    break;
-                default:
-                    modeName = "normal";
-            }
-
             JSObject result = new JSObject();
-            result.put("isSilent", isSilent);
-            result.put("mode", modeName);
+            result.put("isSilent", isSilent(ringerMode));
+            result.put("mode", ringerModeName(ringerMode));
             call.resolve(result);
         } catch (Exception e) {
             call.reject("Error checking ringer mode: " + e.getMessage());
@@ -0,0 +1,167 @@
+package com.shadangakriya.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the pending events of an {@link EventJournal} in as few requests as
+ * it can: one per {@link EventJournal.Target}, up to {@link #MAX_BATCH}
+ * events each, and acknowledges what the server took.
+ *
+ * A network error, a 401 (the app will configure a fresh token), a 408,
+ * 429 or 5xx stops the flush with everything unsent kept for the next one.
+ * A 403 holds only that target's events: this token may not send them,
+ * e.g. after a role change, but they are not wrong and the other targets
+ * still go out. Any other 4xx means the server will never accept that
+ * batch, so it is dropped and counted as rejected rather than retried
+ * forever.
+ */
+final class JournalSync {
+    static final int MAX_BATCH = 200;
+    // Replies are only kept for the caller to show, so a long one is cut
+    private static final int MAX_REPLY_BYTES = 16 * 1024;
+
+    /** What the server answered to one batch. */
+    static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    static final class Result {
+        final int sent;
+        final int rejected;
+        /** Still in the journal, e.g. because the flush stopped early. */
+        final int pending;
+        /** Why the flush stopped early, or null. */
+        final IOException error;
+        /**
+         * The reply to the last batch sent to each target. A target's newest
+         * event is in its last batch, so this is what became of that event.
+         */
+        final Map<EventJournal.Target, Reply> replies;
+
+        Result(int sent, int rejected, int pending, IOException error, Map<EventJournal.Target, Reply> replies) {
+            this.sent = sent;
+            this.rejected = rejected;
+            this.pending = pending;
+            this.error = error;
+            this.replies = replies;
+        }
+    }
+
+    private final String baseUrl;
+    private final Map<String, String> headers;
+
+    /** @param baseUrl prefixed to each target's path */
+    JournalSync(String baseUrl, Map<String, String> headers) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.headers = headers;
+    }
+
+    /** Sync the journal, then send its pending events. Throws only if the journal itself fails. */
+    Result flush(EventJournal journal) throws IOException {
+        journal.sync();
+        Map<EventJournal.Target, List<EventJournal.Event>> byTarget = new LinkedHashMap<>();
+        for (EventJournal.Event event : journal.pending()) {
+            byTarget.computeIfAbsent(event.target, t -> new ArrayList<>()).add(event);
+        }
+
+        int sent = 0;
+        int rejected = 0;
+        IOException held = null;
+        Map<EventJournal.Target, Reply> replies = new LinkedHashMap<>();
+        for (Map.Entry<EventJournal.Target, List<EventJournal.Event>> entry : byTarget.entrySet()) {
+            List<EventJournal.Event> events = entry.getValue();
+            for (int from = 0; from < events.size(); from += MAX_BATCH) {
+                List<EventJournal.Event> batch = events.subList(from, Math.min(from + MAX_BATCH, events.size()));
+                int status;
+                try {
+                    Reply reply = send(entry.getKey(), batch);
+                    replies.put(entry.getKey(), reply);
+                    status = reply.status;
+                } catch (IOException e) {
+                    return new Result(sent, rejected, journal.pendingCount(), e, replies);
+                }
+                if (status / 100 == 2) {
+                    journal.acknowledge(batch);
+                    sent += batch.size();
+                } else if (status == HttpURLConnection.HTTP_FORBIDDEN) {
+                    held = new IOException("HTTP " + status + " from " + entry.getKey());
+                    break;
+                } else if (isTransient(status)) {
+                    return new Result(sent, rejected, journal.pendingCount(),
+                        new IOException("HTTP " + status + " from " + entry.getKey()), replies);
+                } else {
+                    journal.acknowledge(batch);
+                    rejected += batch.size();
+                }
+            }
+        }
+        return new Result(sent, rejected, journal.pendingCount(), held, replies);
+    }
+
+    private static boolean isTransient(int status) {
+        return status == HttpURLConnection.HTTP_UNAUTHORIZED || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+            || status == 429 || status >= 500 || status < 200;
+    }
+
+    private Reply send(EventJournal.Target target, List<EventJournal.Event> batch) throws IOException {
+        StringBuilder body = new StringBuilder("{\"").append(target.field).append("\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(batch.get(i).json);
+        }
+        body.append("]}");
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + target.path).openConnection();
+        try {
+            connection.setConnectTimeout(LessonDownloader.CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(LessonDownloader.READ_TIMEOUT_MS);
+            connection.setRequestMethod(target.method);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status / 100 == 2 ? connection.getInputStream() : connection.getErrorStream();
+            return new Reply(status, in != null ? read(in) : "");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while (body.size() < MAX_REPLY_BYTES && (n = stream.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Lesson keys at rest, wrapped (AES-GCM) by a key that lives in the Android
+ * Keystore and never leaves it (hardware-backed where the device has it).
+ * Native decrypt paths get keys from here by lesson id, so a raw key never
+ * has to cross the bridge or sit in the WebView heap.
+ *
+ * Unwrapped keys are kept in a small {@link LessonKeyCache}: replaying or
+ * seeking a lesson skips the Keystore, storage reads and hex parsing.
+ */
+final class KeyVault {
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String WRAPPING_ALIAS = "sk_lesson_key_wrap";
+    private static final String PREFS = "lesson_key_vault";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int CACHE_ENTRIES = 8;
+    private static final long CACHE_TTL_MS = 10 * 60 * 1000;
+
+    private static KeyVault instance;
+
+    private final SharedPreferences prefs;
+    private final LessonKeyCache cache = new LessonKeyCache(CACHE_ENTRIES, CACHE_TTL_MS, System::currentTimeMillis);
+    private SecretKey wrappingKey;
+
+    private KeyVault(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    static synchronized KeyVault get(Context context) {
+        if (instance == null) {
+            instance = new KeyVault(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * The key for a native call: {@code hexKey} if the caller still passes
+     * one, else the vault's key for {@code lessonId}.
+     *
+     * @throws IllegalArgumentException if neither is given or the hex key is malformed
+     * @throws GeneralSecurityException if the lesson has no key in the vault or it cannot be unwrapped
+     */
+    static SecretKeySpec resolve(Context context, String hexKey, String lessonId) throws GeneralSecurityException {
+        if (hexKey != null) {
+            return AesCtrCipher.keyFromHex(hexKey);
+        }
+        if (lessonId == null) {
+            throw new IllegalArgumentException("Missing key or lessonId");
+        }
+        SecretKeySpec key = get(context).key(lessonId);
+        if (key == null) {
+            throw new GeneralSecurityException("No key stored for lesson " + lessonId);
+        }
+        return key;
+    }
+
+    /** Wrap and persist a lesson's key. @return its {@link #keyId} */
+    synchronized String store(String lessonId, byte[] rawKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, wrappingKey());
+        byte[] iv = cipher.getIV();
+        byte[] wrapped = cipher.doFinal(rawKey);
+
+        byte[] blob = Arrays.copyOf(iv, iv.length + wrapped.length);
+        System.arraycopy(wrapped, 0, blob, iv.length, wrapped.length);
+        if (!prefs.edit().putString(lessonId, Base64.encodeToString(blob, Base64.NO_WRAP)).commit()) {
+            throw new GeneralSecurityException("Could not persist the key of lesson " + lessonId);
+        }
+
+        SecretKeySpec key = new SecretKeySpec(rawKey, "AES");
+        cache.put(lessonId, key);
+        return keyId(rawKey);
+    }
+
+    /** The lesson's key, from the cache or unwrapped; null if none is stored. */
+    synchronized SecretKeySpec key(String lessonId) throws GeneralSecurityException {
+        SecretKeySpec key = cache.get(lessonId);
+        if (key != null) {
+            return key;
+        }
+
+        String stored = prefs.getString(lessonId, null);
+        if (stored == null) {
+            return null;
+        }
+        byte[] blob = Base64.decode(stored, Base64.NO_WRAP);
+        if (blob == null || blob.length <= GCM_IV_BYTES) {
+            throw new GeneralSecurityException("Malformed key entry for lesson " + lessonId);
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, wrappingKey(), new GCMParameterSpec(GCM_TAG_BITS, blob, 0, GCM_IV_BYTES));
+        byte[] rawKey = cipher.doFinal(blob, GCM_IV_BYTES, blob.length - GCM_IV_BYTES);
+
+        key = new SecretKeySpec(rawKey, "AES");
+        Arrays.fill(rawKey, (byte) 0);
+        cache.put(lessonId, key);
+        return key;
+    }
+
+    synchronized void remove(String lessonId) {
+        cache.invalidate(lessonId);
+        prefs.edit().remove(lessonId).apply();
+    }
+
+    synchronized void clear() {
+        cache.clear();
+        prefs.edit().clear().apply();
+    }
+
+    /** Drop the unwrapped keys, e.g. when the system is short of memory. */
+    void evictCache() {
+        cache.clear();
+    }
+
+    /**
+     * Stable identifier of a key that reveals nothing about it, e.g. for
+     * playback cache fingerprints.
+     */
+    static String keyId(byte[] rawKey) throws GeneralSecurityException {
+        MessageDigest digest = MessageDigest.getInstance(ChunkDigests.ALGORITHM);
+        digest.update("sk-lesson-key-id:".getBytes(StandardCharsets.UTF_8));
+        digest.update(rawKey);
+        return AesCtrCipher.bytesToHex(digest.digest()).substring(0, 32);
+    }
+
+    private SecretKey wrappingKey() throws GeneralSecurityException {
+        if (wrappingKey != null) {
+            return wrappingKey;
+        }
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        try {
+            keyStore.load(null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException("Keystore unavailable", e);
+        }
+
+        KeyStore.Entry entry = keyStore.getEntry(WRAPPING_ALIAS, null);
+        if (entry instanceof KeyStore.SecretKeyEntry) {
+            wrappingKey = ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(
+                    WRAPPING_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+            wrappingKey = generator.generateKey();
+        }
+        return wrappingKey;
+    }
+}
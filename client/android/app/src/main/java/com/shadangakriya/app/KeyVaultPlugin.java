@@ -0,0 +1,216 @@
+package com.shadangakriya.app;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Puts lesson keys into the {@link KeyVault}. Once a lesson's key is there,
+ * the decrypting plugins (LessonStream, LessonPlayer, FileConcatenation,
+ * LessonPrefetch, LessonDownload.repairChunk) take {@code lessonId} instead
+ * of {@code key}.
+ *
+ * {@code fetch} asks the server for a key and stores it directly, so that
+ * key never reaches JS at all. The other methods only ever return a
+ * {@code keyId}, which identifies a key without revealing it.
+ */
+@CapacitorPlugin(name = "KeyVault")
+public class KeyVaultPlugin extends Plugin {
+    // Keystore operations can take tens of milliseconds on secure hardware,
+    // and playback waits for the key
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.PLAYBACK);
+    // Key requests can take seconds on a slow network; lookups must not queue behind them
+    private final ExecutorService network =
+        NativeScheduler.get().lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+
+    /** Resolves {@code keyId} if the lesson's key is stored, else nothing. */
+    @PluginMethod
+    public void lookup(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing lessonId");
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                SecretKeySpec key = vault().key(lessonId);
+                if (key != null) {
+                    result.put("keyId", KeyVault.keyId(key.getEncoded()));
+                }
+                call.resolve(result);
+            } catch (GeneralSecurityException e) {
+                // E.g. the wrapping key is gone after a restore: the entry is useless
+                vault().remove(lessonId);
+                call.resolve(new JSObject());
+            }
+        });
+    }
+
+    /** Wrap and store a key the app already has, e.g. right after a download. */
+    @PluginMethod
+    public void store(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        String hexKey = call.getString("key");
+        if (lessonId == null || hexKey == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        executor.execute(() -> {
+            byte[] rawKey = null;
+            try {
+                rawKey = AesCtrCipher.hexToBytes(hexKey);
+                resolveKeyId(call, vault().store(lessonId, rawKey));
+            } catch (IllegalArgumentException | GeneralSecurityException e) {
+                call.reject("Failed to store key: " + e.getMessage());
+            } finally {
+                if (rawKey != null) {
+                    Arrays.fill(rawKey, (byte) 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * POST {@code body} to {@code url} (the decrypt endpoint) and store the
+     * {@code key} of the JSON response without handing it to JS.
+     */
+    @PluginMethod
+    public void fetch(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        String url = call.getString("url");
+        if (lessonId == null || url == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+        String body = call.getString("body", "{}");
+        JSObject headers = call.getObject("headers");
+
+        network.execute(() -> {
+            byte[] rawKey;
+            try {
+                JSONObject response = new JSONObject(post(new URL(url), headers, body));
+                rawKey = AesCtrCipher.hexToBytes(response.getString("key"));
+            } catch (IOException | JSONException e) {
+                call.reject("Failed to fetch key: " + e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                call.reject("Failed to store key: " + e.getMessage());
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        resolveKeyId(call, vault().store(lessonId, rawKey));
+                    } catch (GeneralSecurityException e) {
+                        call.reject("Failed to store key: " + e.getMessage());
+                    } finally {
+                        Arrays.fill(rawKey, (byte) 0);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The plugin is being destroyed
+                Arrays.fill(rawKey, (byte) 0);
+                call.reject("Failed to store key: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void remove(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing lessonId");
+            return;
+        }
+        executor.execute(() -> {
+            vault().remove(lessonId);
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void clear(PluginCall call) {
+        executor.execute(() -> {
+            vault().clear();
+            call.resolve();
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        network.shutdown();
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private KeyVault vault() {
+        return KeyVault.get(getContext());
+    }
+
+    private static void resolveKeyId(PluginCall call, String keyId) {
+        JSObject result = new JSObject();
+        result.put("keyId", keyId);
+        call.resolve(result);
+    }
+
+    private static String post(URL url, JSObject headers, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(LessonDownloader.CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(LessonDownloader.READ_TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            if (headers != null) {
+                Iterator<String> names = headers.keys();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    connection.setRequestProperty(name, headers.optString(name));
+                }
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + ": " + connection.getResponseMessage());
+            }
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    response.write(buffer, 0, read);
+                }
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * v4 on-disk lesson format: one file per lesson holding the raw AES-CTR
+ * ciphertext of every chunk back to back, behind a fixed-size header.
+ *
+ * <pre>
+ *   0      "SKL4" magic
+ *   4      int32  format version (4)
+ *   8      int32  manifest JSON length
+ *   12     manifest JSON (UTF-8), zero padded
+ *   65536  ciphertext, chunk N at 65536 + N * chunkSize
+ * </pre>
+ *
+ * The header has a fixed size so the manifest can be rewritten once the
+ * final size is known without moving the data, and so the data starts on a
+ * page boundary. 64 KB leaves room for per-chunk manifest entries on
+ * multi-hour lessons and is noise next to the audio itself.
+ */
+final class LessonContainer {
+    static final int FORMAT_VERSION = 4;
+    static final int HEADER_SIZE = 64 * 1024;
+    private static final byte[] MAGIC = {'S', 'K', 'L', '4'};
+    private static final int MANIFEST_OFFSET = 12;
+
+    private LessonContainer() {}
+
+    /** Appends ciphertext after the header; the manifest is written on {@link #finish}. */
+    static final class Writer implements AutoCloseable {
+        private final File target;
+        private final File partFile;
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private long dataLength = 0;
+        private boolean keepPartFile = false;
+
+        /** Start a new container; data goes to a .part file until {@link #finish}. */
+        Writer(File target) throws IOException {
+            this(target, 0);
+        }
+
+        /**
+         * Reopen the .part file left by an interrupted writer and continue
+         * after its first {@code resumeFrom} data bytes; anything past that
+         * is discarded. {@code resumeFrom} 0 starts a new container.
+         */
+        Writer(File target, long resumeFrom) throws IOException {
+            this.target = target;
+            this.partFile = new File(target.getPath() + ".part");
+            if (resumeFrom > 0 && partFile.length() < HEADER_SIZE + resumeFrom) {
+                throw new IOException("Partial container is shorter than " + resumeFrom + " bytes");
+            }
+            this.file = new RandomAccessFile(partFile, "rw");
+            this.file.setLength(HEADER_SIZE + resumeFrom);
+            this.channel = file.getChannel();
+            this.dataLength = resumeFrom;
+        }
+
+        long getDataLength() {
+            return dataLength;
+        }
+
+        void append(ByteBuffer ciphertext) throws IOException {
+            while (ciphertext.hasRemaining()) {
+                dataLength += channel.write(ciphertext, HEADER_SIZE + dataLength);
+            }
+        }
+
+        void append(byte[] ciphertext, int offset, int length) throws IOException {
+            append(ByteBuffer.wrap(ciphertext, offset, length));
+        }
+
+        /** Flush appended data to storage, e.g. before recording it as resumable. */
+        void sync() throws IOException {
+            channel.force(false);
+        }
+
+        /** Close but keep the .part file, so a later Writer can resume it. */
+        void release() throws IOException {
+            keepPartFile = true;
+            file.close();
+        }
+
+        /** Write the header, sync, and atomically move the container into place. */
+        void finish(String manifestJson) throws IOException {
+            writeHeader(channel, manifestJson);
+            channel.force(true);
+            file.close();
+            if (!partFile.renameTo(target)) {
+                throw new IOException("Could not move container into place: " + target.getName());
+            }
+            keepPartFile = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!keepPartFile) {
+                file.close();
+                partFile.delete();
+            }
+        }
+    }
+
+    /** Read the manifest JSON from a container header. */
+    static String readManifest(File container) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(container, "r")) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            FileChannel channel = file.getChannel();
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated container header");
+                }
+            }
+            header.flip();
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a lesson container");
+                }
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported container version " + version);
+            }
+            int length = header.getInt();
+            if (length < 0 || length > HEADER_SIZE - MANIFEST_OFFSET) {
+                throw new IOException("Corrupt container header");
+            }
+            byte[] json = new byte[length];
+            header.get(json);
+            return new String(json, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Ciphertext bytes stored after the header. */
+    static long dataLength(File container) {
+        return Math.max(0, container.length() - HEADER_SIZE);
+    }
+
+    /**
+     * Ciphertext of chunk {@code chunkIndex} from {@code offsetInChunk}
+     * onwards, read straight from the container file.
+     */
+    static InputStream openChunk(File container, int chunkSize, int chunkIndex, long offsetInChunk)
+            throws IOException {
+        RandomAccessFile file = new RandomAccessFile(container, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.position(HEADER_SIZE + (long) chunkIndex * chunkSize + offsetInChunk);
+            return Channels.newInputStream(channel);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, String manifestJson) throws IOException {
+        byte[] json = manifestJson.getBytes(StandardCharsets.UTF_8);
+        if (json.length > HEADER_SIZE - MANIFEST_OFFSET) {
+            throw new IOException("Manifest does not fit in the container header");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(json.length);
+        header.put(json);
+        header.rewind();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+}
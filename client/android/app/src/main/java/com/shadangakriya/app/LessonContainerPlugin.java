@@ -0,0 +1,356 @@
+package com.shadangakriya.app;
+
+import android.util.Base64;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes and reads v4 lesson containers (see {@link LessonContainer}) and
+ * converts existing v3 base64 chunk sets, and re-encrypts v2 CBC ones, to
+ * v4 in the background.
+ */
+@CapacitorPlugin(name = "LessonContainer")
+public class LessonContainerPlugin extends Plugin {
+    private static final String TAG = "LessonContainer";
+
+    private final Map<String, LessonContainer.Writer> writers = new ConcurrentHashMap<>();
+    // Conversions are background housekeeping: anything playback or a download needs goes first
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+
+    @PluginMethod
+    public void create(PluginCall call) {
+        String path = call.getString("path");
+        if (path == null) {
+            call.reject("Missing path");
+            return;
+        }
+
+        try {
+            closeQuietly(writers.remove(path));
+            writers.put(path, new LessonContainer.Writer(resolve(path)));
+            call.resolve();
+        } catch (IOException e) {
+            call.reject("Failed to create container: " + e.getMessage());
+        }
+    }
+
+    /** Append one encrypted chunk, passed as base64 and stored as raw bytes. */
+    @PluginMethod
+    public void append(PluginCall call) {
+        String path = call.getString("path");
+        String data = call.getString("data");
+        if (path == null || data == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        LessonContainer.Writer writer = writers.get(path);
+        if (writer == null) {
+            call.reject("No open container: " + path);
+            return;
+        }
+
+        try {
+            byte[] bytes = Base64.decode(data, Base64.DEFAULT);
+            writer.append(bytes, 0, bytes.length);
+
+            JSObject result = new JSObject();
+            result.put("size", bytes.length);
+            call.resolve(result);
+        } catch (IOException | IllegalArgumentException e) {
+            closeQuietly(writers.remove(path));
+            call.reject("Failed to append chunk: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void finish(PluginCall call) {
+        String path = call.getString("path");
+        JSObject manifest = call.getObject("manifest");
+        if (path == null || manifest == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        LessonContainer.Writer writer = writers.remove(path);
+        if (writer == null) {
+            call.reject("No open container: " + path);
+            return;
+        }
+
+        try {
+            writer.finish(manifest.toString());
+            JSObject result = new JSObject();
+            result.put("dataLength", writer.getDataLength());
+            call.resolve(result);
+        } catch (IOException e) {
+            closeQuietly(writer);
+            call.reject("Failed to finish container: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void abort(PluginCall call) {
+        String path = call.getString("path");
+        if (path != null) {
+            closeQuietly(writers.remove(path));
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void readManifest(PluginCall call) {
+        String path = call.getString("path");
+        if (path == null) {
+            call.reject("Missing path");
+            return;
+        }
+
+        try {
+            JSObject result = new JSObject();
+            result.put("manifest", new JSObject(LessonContainer.readManifest(resolve(path))));
+            call.resolve(result);
+        } catch (IOException | JSONException e) {
+            call.reject("Failed to read container: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Convert a v3 lesson (base64 chunk files + manifest) into a v4 container
+     * on a background thread, without re-downloading. The switch is crash
+     * safe: the container is moved into place first, then the manifest is
+     * replaced atomically, and only then are the old chunk files deleted.
+     */
+    @PluginMethod
+    public void convertFromV3(PluginCall call) {
+        String manifestPath = call.getString("manifestPath");
+        String containerPath = call.getString("containerPath");
+        JSArray inputPathsArray = call.getArray("inputPaths");
+        if (manifestPath == null || containerPath == null || inputPathsArray == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        List<File> chunkFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < inputPathsArray.length(); i++) {
+                chunkFiles.add(resolve(inputPathsArray.getString(i)));
+            }
+        } catch (JSONException e) {
+            call.reject("Failed to parse input paths: " + e.getMessage());
+            return;
+        }
+
+        File manifestFile = resolve(manifestPath);
+        File containerFile = resolve(containerPath);
+
+        executor.execute(() -> {
+            try {
+                JSONObject manifest = new JSONObject(readText(manifestFile));
+                if (manifest.optInt("version", 0) != 3) {
+                    call.reject("Only v3 manifests can be converted");
+                    return;
+                }
+
+                JSONArray chunks = new JSONArray();
+                byte[] buffer = new byte[DeviceProfile.current().bufferSize];
+                try (LessonContainer.Writer writer = new LessonContainer.Writer(containerFile)) {
+                    for (File chunkFile : chunkFiles) {
+                        long before = writer.getDataLength();
+                        try (InputStream in = Base64ChunkFiles.open(chunkFile)) {
+                            int read;
+                            while ((read = in.read(buffer)) != -1) {
+                                writer.append(buffer, 0, read);
+                            }
+                        }
+                        chunks.put(new JSONObject().put("encryptedSize", writer.getDataLength() - before));
+                    }
+
+                    manifest.put("version", LessonContainer.FORMAT_VERSION);
+                    manifest.put("container", containerPath);
+                    manifest.put("chunks", chunks);
+                    writer.finish(manifest.toString());
+                }
+
+                writeTextAtomically(manifestFile, manifest.toString());
+                for (File chunkFile : chunkFiles) {
+                    chunkFile.delete();
+                }
+                Log.d(TAG, "Converted " + manifestPath + " to v4 (" + LessonContainer.dataLength(containerFile) + " bytes)");
+
+                JSObject result = new JSObject();
+                result.put("manifest", new JSObject(manifest.toString()));
+                call.resolve(result);
+            } catch (IOException | JSONException e) {
+                containerFile.delete();
+                call.reject("Failed to convert lesson: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Re-encrypt a v2 lesson (AES-256-CBC base64 chunk files + manifest) into
+     * a v4 AES-CTR container on a background thread, without re-downloading
+     * (see {@link CbcLessonMigrator}). Each chunk's IV comes from
+     * {@code chunks[i].iv} in the v2 manifest, else its top-level {@code iv},
+     * else the first 16 bytes of the chunk. Crash safe like
+     * {@link #convertFromV3}. Without {@code key}, the key of
+     * {@code lessonId} comes from the {@link KeyVault}.
+     */
+    @PluginMethod
+    public void migrateFromV2(PluginCall call) {
+        String manifestPath = call.getString("manifestPath");
+        String containerPath = call.getString("containerPath");
+        JSArray inputPathsArray = call.getArray("inputPaths");
+        String hexKey = call.getString("key");
+        String lessonId = call.getString("lessonId");
+        Integer chunkSize = call.getInt("chunkSize");
+        if (manifestPath == null || containerPath == null || inputPathsArray == null
+                || (hexKey == null && lessonId == null) || chunkSize == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        List<File> chunkFiles = new ArrayList<>();
+        CbcLessonMigrator migrator;
+        try {
+            for (int i = 0; i < inputPathsArray.length(); i++) {
+                chunkFiles.add(resolve(inputPathsArray.getString(i)));
+            }
+            migrator = new CbcLessonMigrator(KeyVault.resolve(getContext(), hexKey, lessonId), chunkSize);
+        } catch (JSONException | IllegalArgumentException e) {
+            call.reject("Invalid migration parameters: " + e.getMessage());
+            return;
+        } catch (GeneralSecurityException e) {
+            call.reject("Lesson key unavailable: " + e.getMessage(), "KEY_UNAVAILABLE");
+            return;
+        }
+
+        File manifestFile = resolve(manifestPath);
+        File containerFile = resolve(containerPath);
+
+        executor.execute(() -> {
+            try {
+                JSONObject legacy = new JSONObject(readText(manifestFile));
+                if (legacy.optInt("version", 0) != 2 || !legacy.optString("algorithm").contains("CBC")) {
+                    call.reject("Only v2 AES-CBC manifests can be migrated");
+                    return;
+                }
+                byte[][] ivs = legacyIvs(legacy, chunkFiles.size());
+                JSONObject metadata = legacy.optJSONObject("metadata");
+                String id = metadata != null ? metadata.optString("lessonId", lessonId) : lessonId;
+
+                long estimatedSize = 0;
+                for (File chunkFile : chunkFiles) {
+                    estimatedSize += chunkFile.length() / 4 * 3;
+                }
+                AssemblyJob job = new AssemblyJob(manifestPath, estimatedSize, null);
+
+                JSONObject[] manifest = new JSONObject[1];
+                migrator.migrate(index -> Base64ChunkFiles.open(chunkFiles.get(index)), ivs, containerFile, r -> {
+                    try {
+                        manifest[0] = LessonDownloadPlugin.buildManifest(id, containerPath, r);
+                        return manifest[0].toString();
+                    } catch (JSONException e) {
+                        throw new IOException(e);
+                    }
+                }, job);
+
+                writeTextAtomically(manifestFile, manifest[0].toString());
+                for (File chunkFile : chunkFiles) {
+                    chunkFile.delete();
+                }
+                Log.d(TAG, "Migrated " + manifestPath + " from CBC to v4 (" + job.getBytesDone() + " bytes)");
+
+                JSObject result = new JSObject();
+                result.put("manifest", new JSObject(manifest[0].toString()));
+                call.resolve(result);
+            } catch (IOException | GeneralSecurityException | JSONException | IllegalArgumentException e) {
+                // The v2 manifest still points at the v2 chunks, which are untouched
+                call.reject("Failed to migrate lesson: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (LessonContainer.Writer writer : writers.values()) {
+            closeQuietly(writer);
+        }
+        writers.clear();
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private File resolve(String path) {
+        return new File(getContext().getFilesDir(), path);
+    }
+
+    /** Per-chunk IVs of a v2 manifest; null entries are stored in front of their chunk. */
+    private static byte[][] legacyIvs(JSONObject manifest, int chunkCount) throws JSONException {
+        JSONArray chunks = manifest.optJSONArray("chunks");
+        String sharedIv = manifest.optString("iv", null);
+        byte[][] ivs = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            JSONObject chunk = chunks != null ? chunks.optJSONObject(i) : null;
+            String iv = chunk != null && chunk.has("iv") ? chunk.getString("iv") : sharedIv;
+            ivs[i] = iv != null ? AesCtrCipher.hexToBytes(iv) : null;
+        }
+        return ivs;
+    }
+
+    static String readText(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static void writeTextAtomically(File file, String text) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file.getName());
+        }
+    }
+
+    private static void closeQuietly(LessonContainer.Writer writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to discard container", e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.shadangakriya.app;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Downloads a lesson and encrypts it into a v4 container natively (see
+ * {@link LessonDownloader}), so the audio never passes through the WebView.
+ * Interrupted downloads resume from the last completed chunk on the next
+ * call for the same container.
+ */
+@CapacitorPlugin(name = "LessonDownload")
+public class LessonDownloadPlugin extends Plugin {
+    private static final String TAG = "LessonDownload";
+    private static final String EVENT_PROGRESS = "downloadProgress";
+
+    // Lessons download one after another so each gets the full bandwidth.
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+    private final Map<String, AssemblyJob> jobs = new ConcurrentHashMap<>();
+
+    private final AssemblyJob.ProgressListener progressListener = (job, bytesDone, totalBytes, bytesPerSecond) -> {
+        JSObject data = new JSObject();
+        data.put("jobId", job.id);
+        data.put("bytesDone", bytesDone);
+        data.put("totalBytes", totalBytes);
+        data.put("bytesPerSecond", bytesPerSecond);
+        notifyListeners(EVENT_PROGRESS, data);
+    };
+
+    @PluginMethod
+    public void download(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        String url = call.getString("url");
+        String containerPath = call.getString("containerPath");
+        String hexKey = call.getString("key");
+        Integer chunkSize = call.getInt("chunkSize");
+
+        if (lessonId == null || url == null || containerPath == null || hexKey == null || chunkSize == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        LessonDownloader downloader;
+        URL source;
+        try {
+            downloader = new LessonDownloader(AesCtrCipher.keyFromHex(hexKey), chunkSize);
+            downloader.setBufferSize(DeviceProfile.current().bufferSize);
+            source = new URL(url);
+        } catch (IllegalArgumentException | MalformedURLException e) {
+            call.reject("Invalid download parameters: " + e.getMessage());
+            return;
+        }
+
+        Map<String, String> headers = headersFrom(call);
+
+        File containerFile = new File(getContext().getFilesDir(), containerPath);
+        File parent = containerFile.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        String jobId = call.getString("jobId", UUID.randomUUID().toString());
+        AssemblyJob job = new AssemblyJob(jobId, 0, progressListener);
+        jobs.put(jobId, job);
+
+        executor.execute(() -> {
+            try {
+                JSONObject[] manifest = new JSONObject[1];
+                LessonDownloader.Result result = downloader.download(source, headers, containerFile, r -> {
+                    try {
+                        manifest[0] = buildManifest(lessonId, containerPath, r);
+                        return manifest[0].toString();
+                    } catch (JSONException e) {
+                        throw new IOException(e);
+                    }
+                }, job);
+                job.finish();
+                Log.d(TAG, "Downloaded " + lessonId + " (" + result.totalBytes + " bytes)");
+
+                JSObject response = new JSObject();
+                response.put("jobId", jobId);
+                response.put("manifest", new JSObject(manifest[0].toString()));
+                call.resolve(response);
+            } catch (CancellationException e) {
+                LessonDownloader.discard(containerFile);
+                call.reject("Download cancelled", "CANCELLED");
+            } catch (IOException | GeneralSecurityException | JSONException e) {
+                // The committed part stays on disk; the next download resumes from it
+                call.reject("Failed to download lesson: " + e.getMessage());
+            } finally {
+                jobs.remove(jobId);
+            }
+        });
+    }
+
+    /**
+     * Re-download one chunk of a finished container that failed its integrity
+     * check ({@code chunkIndex}, expected {@code sha256}) and re-encrypt it in
+     * place. Runs on the download thread, after any download in progress.
+     * Without {@code key}, the key of {@code lessonId} comes from the
+     * {@link KeyVault}.
+     */
+    @PluginMethod
+    public void repairChunk(PluginCall call) {
+        String url = call.getString("url");
+        String containerPath = call.getString("containerPath");
+        String hexKey = call.getString("key");
+        String lessonId = call.getString("lessonId");
+        String hexNonce = call.getString("nonce");
+        Integer chunkSize = call.getInt("chunkSize");
+        Long totalSize = call.getLong("totalSize");
+        Integer chunkIndex = call.getInt("chunkIndex");
+        String sha256 = call.getString("sha256");
+
+        if (url == null || containerPath == null || (hexKey == null && lessonId == null) || hexNonce == null
+                || chunkSize == null || totalSize == null || chunkIndex == null || sha256 == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        LessonDownloader downloader;
+        URL source;
+        byte[] nonce;
+        byte[] expectedDigest;
+        try {
+            downloader = new LessonDownloader(KeyVault.resolve(getContext(), hexKey, lessonId), chunkSize);
+            source = new URL(url);
+            nonce = AesCtrCipher.hexToBytes(hexNonce);
+            expectedDigest = ChunkDigests.fromHex(new String[] {sha256})[0];
+        } catch (IllegalArgumentException | MalformedURLException e) {
+            call.reject("Invalid repair parameters: " + e.getMessage());
+            return;
+        } catch (GeneralSecurityException e) {
+            call.reject("Lesson key unavailable: " + e.getMessage(), "KEY_UNAVAILABLE");
+            return;
+        }
+
+        File containerFile = new File(getContext().getFilesDir(), containerPath);
+        if (!containerFile.exists()) {
+            call.reject("Input file does not exist: " + containerPath);
+            return;
+        }
+        Map<String, String> headers = headersFrom(call);
+
+        executor.execute(() -> {
+            try {
+                downloader.repairChunk(source, headers, containerFile, nonce, totalSize, chunkIndex, expectedDigest);
+                Log.d(TAG, "Repaired chunk " + chunkIndex + " of " + containerPath);
+                JSObject result = new JSObject();
+                result.put("chunkIndex", chunkIndex);
+                call.resolve(result);
+            } catch (ChunkIntegrityException e) {
+                // The server's copy does not match the manifest either
+                call.reject("Downloaded chunk " + chunkIndex + " does not match the manifest", "CHUNK_CORRUPT");
+            } catch (IOException | GeneralSecurityException e) {
+                call.reject("Failed to repair chunk: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Stop a running download. Its call rejects with code CANCELLED and the partial file is removed. */
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        String jobId = call.getString("jobId");
+        if (jobId == null) {
+            call.reject("Missing jobId");
+            return;
+        }
+
+        AssemblyJob job = jobs.get(jobId);
+        if (job != null) {
+            job.cancel();
+        }
+
+        JSObject result = new JSObject();
+        result.put("cancelled", job != null);
+        call.resolve(result);
+    }
+
+    /** Drop any resumable partial download of {@code containerPath}. */
+    @PluginMethod
+    public void discard(PluginCall call) {
+        String containerPath = call.getString("containerPath");
+        if (containerPath == null) {
+            call.reject("Missing containerPath");
+            return;
+        }
+        LessonDownloader.discard(new File(getContext().getFilesDir(), containerPath));
+        call.resolve();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (AssemblyJob job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private static Map<String, String> headersFrom(PluginCall call) {
+        Map<String, String> headers = new HashMap<>();
+        JSObject headersObject = call.getObject("headers");
+        if (headersObject != null) {
+            Iterator<String> names = headersObject.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                headers.put(name, headersObject.optString(name));
+            }
+        }
+        return headers;
+    }
+
+    /** Same shape as the manifest encryptAndSaveChunks() writes in downloadManager.ts. */
+    static JSONObject buildManifest(String lessonId, String containerPath, LessonDownloader.Result result)
+            throws JSONException {
+        JSONArray chunks = new JSONArray();
+        for (int i = 0; i < result.chunkCount(); i++) {
+            chunks.put(new JSONObject()
+                .put("encryptedSize", result.chunkLength(i))
+                .put("sha256", AesCtrCipher.bytesToHex(result.digests[i])));
+        }
+
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        return new JSONObject()
+            .put("version", LessonContainer.FORMAT_VERSION)
+            .put("algorithm", "AES-256-CTR")
+            .put("chunkSize", result.chunkSize)
+            .put("totalChunks", result.chunkCount())
+            .put("chunks", chunks)
+            .put("nonce", AesCtrCipher.bytesToHex(result.nonce))
+            .put("container", containerPath)
+            .put("metadata", new JSONObject()
+                .put("lessonId", lessonId)
+                .put("originalSize", result.totalBytes)
+                .put("encryptedAt", iso.format(new Date())));
+    }
+}
@@ -0,0 +1,380 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streams a lesson's audio over HTTP through AES-CTR straight into a v4
+ * container (see {@link LessonContainer}). Only one 64 KB buffer of audio is
+ * held at a time, whatever the lesson length.
+ *
+ * Progress is committed at chunk boundaries: each completed chunk is synced
+ * and recorded in a small ".resume" file next to the partial container. The
+ * next download of the same container asks the server for the rest with a
+ * Range request, guarded by If-Range on the ETag / Last-Modified, and keeps
+ * encrypting with the same nonce, so an interrupted download only repeats
+ * the chunk it was in. If the server returns the whole body instead, the
+ * download starts over with a fresh nonce.
+ *
+ * The SHA-256 of every chunk's plaintext is computed on the way through and
+ * returned for the manifest, so later decrypt passes can verify each chunk;
+ * {@link #repairChunk} re-fetches a single chunk that fails.
+ */
+final class LessonDownloader {
+    static final int CONNECT_TIMEOUT_MS = 15_000;
+    static final int READ_TIMEOUT_MS = 30_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** What was written, for building the lesson manifest. */
+    static final class Result {
+        final byte[] nonce;
+        final long totalBytes;
+        final int chunkSize;
+        /** SHA-256 of each chunk's plaintext. */
+        final byte[][] digests;
+
+        Result(byte[] nonce, long totalBytes, int chunkSize, byte[][] digests) {
+            this.nonce = nonce;
+            this.totalBytes = totalBytes;
+            this.chunkSize = chunkSize;
+            this.digests = digests;
+        }
+
+        int chunkCount() {
+            return (int) ((totalBytes + chunkSize - 1) / chunkSize);
+        }
+
+        /** Ciphertext size of chunk {@code index}; CTR adds no padding. */
+        long chunkLength(int index) {
+            return Math.min(chunkSize, totalBytes - (long) index * chunkSize);
+        }
+    }
+
+    /** Builds the manifest stored in the container header once all data is written. */
+    interface ManifestFactory {
+        String create(Result result) throws IOException;
+    }
+
+    private final SecretKeySpec key;
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+    private int bufferSize = BUFFER_SIZE;
+
+    LessonDownloader(SecretKeySpec key, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % AesCtrCipher.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 16");
+        }
+        this.key = key;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Bytes read from the network and encrypted at a time; 64 KB by default. */
+    void setBufferSize(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.bufferSize = bytes;
+    }
+
+    /**
+     * Download {@code url} into {@code container}, resuming a previous
+     * partial download of it when possible.
+     *
+     * On failure or cancellation the committed part is kept for the next
+     * call; use {@link #discard} to drop it.
+     */
+    Result download(URL url, Map<String, String> headers, File container, ManifestFactory manifestFactory,
+                    AssemblyJob job) throws IOException, GeneralSecurityException {
+        File stateFile = resumeFile(container);
+        ResumeState state = ResumeState.load(stateFile, container, chunkSize);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            // Byte offsets must refer to the stored entity, not a gzip stream
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+            if (state != null) {
+                connection.setRequestProperty("Range", "bytes=" + state.committed + "-");
+                connection.setRequestProperty("If-Range", state.validator);
+            }
+
+            int status = connection.getResponseCode();
+            long resumeFrom;
+            long total;
+            byte[] nonce;
+            List<byte[]> digests = new ArrayList<>();
+            if (state != null && status == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+                if (range == null || range[0] != state.committed || range[1] != state.total) {
+                    discard(container);
+                    throw new IOException("Unexpected Content-Range: " + connection.getHeaderField("Content-Range"));
+                }
+                resumeFrom = state.committed;
+                total = state.total;
+                nonce = state.nonce;
+                digests.addAll(state.digests);
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                stateFile.delete();
+                resumeFrom = 0;
+                total = connection.getContentLengthLong();
+                nonce = new byte[AesCtrCipher.BLOCK_SIZE];
+                random.nextBytes(nonce);
+            } else {
+                if (state != null) {
+                    discard(container);
+                }
+                throw new IOException("HTTP " + status + ": " + connection.getResponseMessage());
+            }
+
+            String validator = connection.getHeaderField("ETag");
+            if (validator == null) {
+                validator = connection.getHeaderField("Last-Modified");
+            }
+
+            job.setTotalBytes(Math.max(total, 0));
+            job.advance(resumeFrom);
+
+            LessonContainer.Writer writer = new LessonContainer.Writer(container, resumeFrom);
+            try (InputStream body = connection.getInputStream()) {
+                byte[] in = new byte[bufferSize];
+                byte[] out = new byte[bufferSize];
+                long written = resumeFrom;
+                AesCtrCipher cipher = null;
+                MessageDigest digest = ChunkDigests.newDigest();
+
+                while (true) {
+                    // One cipher per chunk, positioned like encryptChunk() in audioEncryption.ts
+                    int inChunk = (int) (written % chunkSize);
+                    if (inChunk == 0 || cipher == null) {
+                        cipher = new AesCtrCipher(key, nonce, chunkSize, written / chunkSize, inChunk);
+                    }
+                    int read = body.read(in, 0, Math.min(in.length, chunkSize - inChunk));
+                    if (read == -1) {
+                        break;
+                    }
+                    digest.update(in, 0, read);
+                    cipher.update(in, 0, read, out, 0);
+                    writer.append(out, 0, read);
+                    written += read;
+                    job.advance(read);
+
+                    if (written % chunkSize == 0) {
+                        digests.add(digest.digest());
+                        if (validator != null && total > 0) {
+                            writer.sync();
+                            new ResumeState(nonce, written, total, validator, digests).save(stateFile, chunkSize);
+                        }
+                    }
+                }
+
+                if (written == 0 || (total >= 0 && written != total)) {
+                    throw new IOException("Connection closed after " + written + " of " + total + " bytes");
+                }
+                if (written % chunkSize != 0) {
+                    digests.add(digest.digest());
+                }
+
+                Result result = new Result(nonce, written, chunkSize, digests.toArray(new byte[0][]));
+                writer.finish(manifestFactory.create(result));
+                stateFile.delete();
+                return result;
+            } finally {
+                writer.release();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Re-download chunk {@code chunkIndex} of a finished container with a
+     * Range request and re-encrypt it in place, after checking it against
+     * {@code expectedDigest}. The rest of the lesson is left untouched.
+     */
+    void repairChunk(URL url, Map<String, String> headers, File container, byte[] nonce, long totalBytes,
+                     int chunkIndex, byte[] expectedDigest) throws IOException, GeneralSecurityException {
+        long start = (long) chunkIndex * chunkSize;
+        long end = Math.min(start + chunkSize, totalBytes);
+        if (chunkIndex < 0 || start >= totalBytes) {
+            throw new IOException("Chunk " + chunkIndex + " is out of range");
+        }
+        int length = (int) (end - start);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        byte[] chunk = new byte[length];
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+
+            int status = connection.getResponseCode();
+            long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+            if (status != HttpURLConnection.HTTP_PARTIAL || range == null || range[0] != start
+                    || range[1] != totalBytes) {
+                throw new IOException("Server did not return chunk " + chunkIndex + " (HTTP " + status + ")");
+            }
+
+            try (InputStream body = connection.getInputStream()) {
+                int filled = 0;
+                while (filled < length) {
+                    int read = body.read(chunk, filled, length - filled);
+                    if (read == -1) {
+                        throw new IOException("Connection closed inside chunk " + chunkIndex);
+                    }
+                    filled += read;
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        MessageDigest digest = ChunkDigests.newDigest();
+        digest.update(chunk);
+        ChunkDigests.verify(chunkIndex, digest, expectedDigest);
+
+        new AesCtrCipher(key, nonce, chunkSize, chunkIndex, 0).update(chunk, 0, length, chunk, 0);
+        try (RandomAccessFile file = new RandomAccessFile(container, "rw")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer cipherText = ByteBuffer.wrap(chunk);
+            long position = LessonContainer.HEADER_SIZE + start;
+            while (cipherText.hasRemaining()) {
+                position += channel.write(cipherText, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    /** Forget a partial download of {@code container}. */
+    static void discard(File container) {
+        new File(container.getPath() + ".part").delete();
+        resumeFile(container).delete();
+    }
+
+    private static File resumeFile(File container) {
+        return new File(container.getPath() + ".resume");
+    }
+
+    /**
+     * Parse "bytes start-end/total".
+     *
+     * @return {start, total}, or null if malformed or the total is unknown
+     */
+    static long[] parseContentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = header.indexOf('-');
+        int slash = header.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(header.substring("bytes ".length(), dash).trim());
+            long total = Long.parseLong(header.substring(slash + 1).trim());
+            return new long[] {start, total};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Committed progress of a partial download, stored next to the container. */
+    private static final class ResumeState {
+        final byte[] nonce;
+        final long committed;
+        final long total;
+        final String validator;
+        /** Digests of the committed chunks. */
+        final List<byte[]> digests;
+
+        ResumeState(byte[] nonce, long committed, long total, String validator, List<byte[]> digests) {
+            this.nonce = nonce;
+            this.committed = committed;
+            this.total = total;
+            this.validator = validator;
+            this.digests = digests;
+        }
+
+        /** @return the saved state, or null if there is nothing usable to resume */
+        static ResumeState load(File stateFile, File container, int chunkSize) {
+            if (!stateFile.exists()) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream(stateFile)) {
+                props.load(in);
+                long committed = Long.parseLong(props.getProperty("committed"));
+                long partLength = new File(container.getPath() + ".part").length();
+                if (Integer.parseInt(props.getProperty("chunkSize")) != chunkSize
+                        || committed <= 0
+                        || partLength < LessonContainer.HEADER_SIZE + committed) {
+                    return null;
+                }
+                List<byte[]> digests = new ArrayList<>();
+                for (int i = 0; i < committed / chunkSize; i++) {
+                    digests.add(AesCtrCipher.hexToBytes(props.getProperty("digest." + i)));
+                }
+                return new ResumeState(
+                    AesCtrCipher.hexToBytes(props.getProperty("nonce")),
+                    committed,
+                    Long.parseLong(props.getProperty("total")),
+                    props.getProperty("validator"),
+                    digests
+                );
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /** Written to a temp file and renamed, so a crash leaves the old or new state. */
+        void save(File stateFile, int chunkSize) throws IOException {
+            Properties props = new Properties();
+            props.setProperty("nonce", AesCtrCipher.bytesToHex(nonce));
+            props.setProperty("chunkSize", String.valueOf(chunkSize));
+            props.setProperty("committed", String.valueOf(committed));
+            props.setProperty("total", String.valueOf(total));
+            props.setProperty("validator", validator);
+            for (int i = 0; i < digests.size(); i++) {
+                props.setProperty("digest." + i, AesCtrCipher.bytesToHex(digests.get(i)));
+            }
+
+            File tmp = new File(stateFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, null);
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(stateFile)) {
+                tmp.delete();
+                throw new IOException("Could not save download state");
+            }
+        }
+    }
+}
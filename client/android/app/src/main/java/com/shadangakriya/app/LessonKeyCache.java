@@ -0,0 +1,83 @@
+package com.shadangakriya.app;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Unwrapped lesson keys kept for a short while, so replaying or seeking a
+ * lesson does not unwrap its key through the Keystore again. Holds at most
+ * {@code maxEntries} keys, least recently used first out, and forgets each
+ * one {@code ttlMs} after it was last used.
+ */
+final class LessonKeyCache {
+    private static final class Entry {
+        final SecretKeySpec key;
+        long lastUsedMs;
+
+        Entry(SecretKeySpec key, long lastUsedMs) {
+            this.key = key;
+            this.lastUsedMs = lastUsedMs;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    // Access order: least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    LessonKeyCache(int maxEntries, long ttlMs, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    /** The key, marked as just used, or null if it is not cached or expired. */
+    synchronized SecretKeySpec get(String lessonId) {
+        long now = clock.getAsLong();
+        expire(now);
+        Entry entry = entries.get(lessonId);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsedMs = now;
+        return entry.key;
+    }
+
+    synchronized void put(String lessonId, SecretKeySpec key) {
+        long now = clock.getAsLong();
+        entries.put(lessonId, new Entry(key, now));
+        expire(now);
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    synchronized void invalidate(String lessonId) {
+        entries.remove(lessonId);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        expire(clock.getAsLong());
+        return entries.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue().lastUsedMs >= ttlMs) {
+                it.remove();
+            }
+        }
+    }
+}
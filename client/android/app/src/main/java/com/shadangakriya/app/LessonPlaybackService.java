@@ -0,0 +1,156 @@
+package com.shadangakriya.app;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.AudioAttributes;
+import androidx.media3.common.C;
+import androidx.media3.common.ForwardingPlayer;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.Player;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
+import androidx.media3.session.MediaSession;
+import androidx.media3.session.MediaSessionService;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hosts the lesson player and its media session, so playback keeps going
+ * with the screen locked or the app in the background, and shows up on the
+ * lock screen and in the media notification. The WebView only sends
+ * commands through {@link LessonPlayerPlugin}.
+ */
+@UnstableApi
+public class LessonPlaybackService extends MediaSessionService {
+    static final String EXTRA_ALLOW_SEEKING = "allowSeeking";
+
+    // Read-ahead is capped: about a minute of audio, well under 2 MB at
+    // typical lesson bitrates, whatever the lesson length.
+    private static final int MIN_BUFFER_MS = 15_000;
+    private static final int MAX_BUFFER_MS = 60_000;
+
+    @Nullable private MediaSession session;
+    private volatile boolean allowSeeking = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        ExoPlayer player = new ExoPlayer.Builder(this)
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(new EncryptedChunkDataSource.Factory()))
+            .setLoadControl(new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(MIN_BUFFER_MS, MAX_BUFFER_MS,
+                    DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+                    DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS)
+                .build())
+            .setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(C.USAGE_MEDIA)
+                .setContentType(C.AUDIO_CONTENT_TYPE_SPEECH)
+                .build(), /* handleAudioFocus= */ true)
+            .setHandleAudioBecomingNoisy(true)
+            .setWakeMode(C.WAKE_MODE_LOCAL)
+            .build();
+
+        session = new MediaSession.Builder(this, new SeekGuard(player))
+            .setCallback(new SessionCallback())
+            .build();
+    }
+
+    @Nullable
+    @Override
+    public MediaSession onGetSession(MediaSession.ControllerInfo controllerInfo) {
+        return session;
+    }
+
+    @Override
+    public void onTaskRemoved(@Nullable Intent rootIntent) {
+        if (session == null || !session.getPlayer().getPlayWhenReady()) {
+            stopSelf();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (session != null) {
+            session.getPlayer().release();
+            session.release();
+            session = null;
+        }
+        super.onDestroy();
+    }
+
+    private final class SessionCallback implements MediaSession.Callback {
+        /**
+         * Controllers can't send playable URIs, only request metadata, so
+         * resolve each item to its registered {@code sklesson://} URI here.
+         */
+        @Override
+        public ListenableFuture<List<MediaItem>> onAddMediaItems(MediaSession mediaSession,
+                                                                 MediaSession.ControllerInfo controller,
+                                                                 List<MediaItem> mediaItems) {
+            List<MediaItem> resolved = new ArrayList<>();
+            for (MediaItem item : mediaItems) {
+                Bundle extras = item.requestMetadata.extras;
+                allowSeeking = extras != null && extras.getBoolean(EXTRA_ALLOW_SEEKING, false);
+                resolved.add(item.buildUpon().setUri(item.requestMetadata.mediaUri).build());
+            }
+            return Futures.immediateFuture(resolved);
+        }
+    }
+
+    /**
+     * Hides and ignores seeking for lessons that don't allow it, so the lock
+     * screen and notification can't scrub either.
+     */
+    private final class SeekGuard extends ForwardingPlayer {
+        SeekGuard(Player player) {
+            super(player);
+        }
+
+        @Override
+        public Player.Commands getAvailableCommands() {
+            Player.Commands commands = super.getAvailableCommands();
+            if (allowSeeking) {
+                return commands;
+            }
+            return commands.buildUpon()
+                .removeAll(Player.COMMAND_SEEK_IN_CURRENT_MEDIA_ITEM, Player.COMMAND_SEEK_BACK,
+                    Player.COMMAND_SEEK_FORWARD)
+                .build();
+        }
+
+        @Override
+        public boolean isCommandAvailable(int command) {
+            return getAvailableCommands().contains(command);
+        }
+
+        @Override
+        public void seekTo(long positionMs) {
+            if (allowSeeking) {
+                super.seekTo(positionMs);
+            }
+        }
+
+        @Override
+        public void seekBack() {
+            if (allowSeeking) {
+                super.seekBack();
+            }
+        }
+
+        @Override
+        public void seekForward() {
+            if (allowSeeking) {
+                super.seekForward();
+            }
+        }
+    }
+}
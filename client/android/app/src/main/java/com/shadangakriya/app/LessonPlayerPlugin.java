@@ -0,0 +1,349 @@
+package com.shadangakriya.app;
+
+import android.content.ComponentName;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.MediaMetadata;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.Player;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.session.MediaController;
+import androidx.media3.session.SessionToken;
+import androidx.tracing.Trace;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Native lesson playback. Lessons play in {@link LessonPlaybackService}
+ * straight from their encrypted chunks (see {@link EncryptedChunkDataSource});
+ * this plugin is the WebView's remote control and reports position and state
+ * changes back.
+ */
+@UnstableApi
+@CapacitorPlugin(name = "LessonPlayer")
+public class LessonPlayerPlugin extends Plugin {
+    private static final String TAG = "LessonPlayer";
+    private static final String EVENT_POSITION = "positionChanged";
+    private static final String EVENT_STATE = "playbackStateChanged";
+    private static final String EVENT_ERROR = "playbackError";
+    private static final long POSITION_INTERVAL_MS = 500;
+    // Trace sections the lesson-start macrobenchmark measures: load until the
+    // player is ready, and play until audio is actually rendering
+    private static final String TRACE_PREPARE = "LessonPrepare";
+    private static final String TRACE_FIRST_AUDIO = "LessonFirstAudio";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Nullable private ListenableFuture<MediaController> controllerFuture;
+    @Nullable private String lessonId;
+    private boolean allowSeeking = false;
+    private boolean webViewVisible = true;
+    private boolean tracingPrepare = false;
+    private boolean tracingFirstAudio = false;
+
+    private final Runnable positionTicker = new Runnable() {
+        @Override
+        public void run() {
+            MediaController controller = connectedController();
+            if (controller == null || !controller.isPlaying() || !webViewVisible) {
+                return;
+            }
+            notifyListeners(EVENT_POSITION, positionSnapshot(controller));
+            mainHandler.postDelayed(this, POSITION_INTERVAL_MS);
+        }
+    };
+
+    private final Player.Listener playerListener = new Player.Listener() {
+        @Override
+        public void onEvents(Player player, Player.Events events) {
+            if (events.containsAny(Player.EVENT_PLAYBACK_STATE_CHANGED, Player.EVENT_IS_PLAYING_CHANGED,
+                    Player.EVENT_PLAY_WHEN_READY_CHANGED)) {
+                endTraces(player);
+                notifyListeners(EVENT_STATE, stateSnapshot(player));
+                mainHandler.removeCallbacks(positionTicker);
+                positionTicker.run();
+            }
+        }
+
+        @Override
+        public void onPlayerError(PlaybackException error) {
+            Log.e(TAG, "Playback failed", error);
+            endTraces(null);
+            JSObject data = new JSObject();
+            data.put("lessonId", lessonId);
+            data.put("message", error.getMessage());
+            data.put("code", error.getErrorCodeName());
+            notifyListeners(EVENT_ERROR, data);
+        }
+    };
+
+    /**
+     * Register a lesson (same source options as LessonStream.open) and
+     * prepare it for playback. Resolves once the player has it queued.
+     */
+    @PluginMethod
+    public void load(PluginCall call) {
+        LessonStreamServer.Stream stream = LessonStreamPlugin.streamFromCall(call, getContext());
+        if (stream == null) {
+            return;
+        }
+        boolean seekable = call.getBoolean("allowSeeking", false);
+        long startPositionMs = call.getLong("startPositionMs", 0L);
+
+        Bundle extras = new Bundle();
+        extras.putBoolean(LessonPlaybackService.EXTRA_ALLOW_SEEKING, seekable);
+
+        // A fresh token per load, so a stopped lesson can never be replayed
+        EncryptedChunkDataSource.unregisterLesson(stream.lessonId);
+        Uri uri = EncryptedChunkDataSource.register(UUID.randomUUID().toString().replace("-", ""), stream);
+
+        MediaItem item = new MediaItem.Builder()
+            .setMediaId(stream.lessonId)
+            .setRequestMetadata(new MediaItem.RequestMetadata.Builder()
+                .setMediaUri(uri)
+                .setExtras(extras)
+                .build())
+            .setMediaMetadata(new MediaMetadata.Builder()
+                .setTitle(call.getString("title"))
+                .setArtist(call.getString("artist"))
+                .build())
+            .build();
+
+        withController(call, controller -> {
+            if (lessonId != null && !lessonId.equals(stream.lessonId)) {
+                EncryptedChunkDataSource.unregisterLesson(lessonId);
+            }
+            lessonId = stream.lessonId;
+            allowSeeking = seekable;
+
+            endTraces(null);
+            Trace.beginAsyncSection(TRACE_PREPARE, 0);
+            tracingPrepare = true;
+            controller.setMediaItem(item, startPositionMs);
+            controller.prepare();
+
+            JSObject result = new JSObject();
+            result.put("lessonId", lessonId);
+            call.resolve(result);
+        });
+    }
+
+    @PluginMethod
+    public void play(PluginCall call) {
+        withController(call, controller -> {
+            if (!controller.isPlaying() && !tracingFirstAudio) {
+                Trace.beginAsyncSection(TRACE_FIRST_AUDIO, 0);
+                tracingFirstAudio = true;
+            }
+            controller.play();
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void pause(PluginCall call) {
+        withController(call, controller -> {
+            controller.pause();
+            call.resolve(positionSnapshot(controller));
+        });
+    }
+
+    /** Rejected unless the loaded lesson allows seeking. */
+    @PluginMethod
+    public void seekTo(PluginCall call) {
+        Long positionMs = call.getLong("positionMs");
+        if (positionMs == null) {
+            call.reject("Missing positionMs");
+            return;
+        }
+        withController(call, controller -> {
+            if (!allowSeeking) {
+                call.reject("Seeking is not allowed for this lesson");
+                return;
+            }
+            controller.seekTo(Math.max(0, positionMs));
+            call.resolve(positionSnapshot(controller));
+        });
+    }
+
+    @PluginMethod
+    public void setVolume(PluginCall call) {
+        Float volume = call.getFloat("volume");
+        if (volume == null) {
+            call.reject("Missing volume");
+            return;
+        }
+        withController(call, controller -> {
+            controller.setVolume(Math.max(0f, Math.min(1f, volume)));
+            call.resolve();
+        });
+    }
+
+    @PluginMethod
+    public void getState(PluginCall call) {
+        withController(call, controller -> {
+            JSObject state = stateSnapshot(controller);
+            state.put("volume", controller.getVolume());
+            call.resolve(state);
+        });
+    }
+
+    /**
+     * Stop playback and forget the lesson's key. With {@code lessonId}, only
+     * if that lesson is still the one loaded.
+     */
+    @PluginMethod
+    public void stop(PluginCall call) {
+        String only = call.getString("lessonId");
+        withController(call, controller -> {
+            if (only != null && !only.equals(lessonId)) {
+                EncryptedChunkDataSource.unregisterLesson(only);
+                call.resolve();
+                return;
+            }
+            endTraces(null);
+            controller.stop();
+            controller.clearMediaItems();
+            if (lessonId != null) {
+                EncryptedChunkDataSource.unregisterLesson(lessonId);
+                lessonId = null;
+            }
+            call.resolve();
+        });
+    }
+
+    // Position events are only useful while the WebView is on screen;
+    // playback itself carries on in the service.
+    @Override
+    protected void handleOnPause() {
+        webViewVisible = false;
+        mainHandler.removeCallbacks(positionTicker);
+    }
+
+    @Override
+    protected void handleOnResume() {
+        webViewVisible = true;
+        positionTicker.run();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        mainHandler.removeCallbacks(positionTicker);
+        if (controllerFuture != null) {
+            // The service keeps playing; it stops itself once paused and dismissed
+            MediaController.releaseFuture(controllerFuture);
+            controllerFuture = null;
+        }
+        super.handleOnDestroy();
+    }
+
+    /**
+     * Close the open trace sections {@code player} has reached the end of;
+     * all of them if {@code player} is null (the attempt was abandoned).
+     */
+    private void endTraces(@Nullable Player player) {
+        if (tracingPrepare && (player == null || player.getPlaybackState() == Player.STATE_READY)) {
+            Trace.endAsyncSection(TRACE_PREPARE, 0);
+            tracingPrepare = false;
+        }
+        if (tracingFirstAudio && (player == null || player.isPlaying())) {
+            Trace.endAsyncSection(TRACE_FIRST_AUDIO, 0);
+            tracingFirstAudio = false;
+        }
+    }
+
+    /** Run {@code action} on the main thread once connected to the playback service. */
+    private void withController(PluginCall call, Consumer<MediaController> action) {
+        mainHandler.post(() -> {
+            if (controllerFuture == null) {
+                SessionToken token = new SessionToken(getContext(),
+                    new ComponentName(getContext(), LessonPlaybackService.class));
+                controllerFuture = new MediaController.Builder(getContext(), token).buildAsync();
+                controllerFuture.addListener(() -> {
+                    MediaController controller = connectedController();
+                    if (controller != null) {
+                        controller.addListener(playerListener);
+                    }
+                }, ContextCompat.getMainExecutor(getContext()));
+            }
+
+            ListenableFuture<MediaController> future = controllerFuture;
+            future.addListener(() -> {
+                MediaController controller = connectedController();
+                if (controller == null) {
+                    controllerFuture = null;
+                    call.reject("Playback service unavailable");
+                    return;
+                }
+                try {
+                    action.accept(controller);
+                } catch (RuntimeException e) {
+                    call.reject("Playback command failed: " + e.getMessage());
+                }
+            }, ContextCompat.getMainExecutor(getContext()));
+        });
+    }
+
+    @Nullable
+    private MediaController connectedController() {
+        if (controllerFuture == null || !controllerFuture.isDone()) {
+            return null;
+        }
+        try {
+            return controllerFuture.get();
+        } catch (Exception e) {
+            Log.w(TAG, "Could not connect to playback service", e);
+            return null;
+        }
+    }
+
+    private JSObject positionSnapshot(Player player) {
+        JSObject data = new JSObject();
+        data.put("lessonId", lessonId);
+        data.put("positionMs", player.getCurrentPosition());
+        data.put("bufferedMs", player.getBufferedPosition());
+        long duration = player.getDuration();
+        data.put("durationMs", duration == C.TIME_UNSET ? 0 : duration);
+        return data;
+    }
+
+    private JSObject stateSnapshot(Player player) {
+        JSObject data = positionSnapshot(player);
+        data.put("isPlaying", player.isPlaying());
+        // Stays true through buffering; false once paused from anywhere
+        data.put("playWhenReady", player.getPlayWhenReady());
+        data.put("allowSeeking", allowSeeking);
+        switch (player.getPlaybackState()) {
+            case Player.STATE_BUFFERING:
+                data.put("state", "buffering");
+                break;
+            case Player.STATE_READY:
+                data.put("state", "ready");
+                break;
+            case Player.STATE_ENDED:
+                data.put("state", "ended");
+                break;
+            default:
+                data.put("state", "idle");
+                break;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,240 @@
+package com.shadangakriya.app;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lessons to get ready before the learner presses play, worked off one at a
+ * time in the background (see {@link LessonPrefetchWorker}).
+ *
+ * Each lesson is decrypted once with its chunk digests checked, so damage
+ * is found while there is still time to repair it. With a fingerprint the
+ * result also goes into the {@link PlaybackCache}, so playing it needs no
+ * preparation at all.
+ *
+ * The list lives in memory only: if the process dies before the work runs,
+ * those lessons are simply prepared on play as before. It holds no keys;
+ * each lesson's keystream is resolved when its turn comes, so keys stay
+ * under the {@link KeyVault}'s expiry while a lesson waits. A
+ * lesson interrupted by {@link #interrupt} goes back to the head of the list
+ * and starts over on the next run.
+ */
+final class LessonPrefetch {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Outcome { VERIFIED, CACHED, CORRUPT, FAILED }
+
+    /** Looks up a lesson's keystream when it is prepared. */
+    interface CipherSource {
+        ChunkCiphers open() throws GeneralSecurityException, IOException;
+    }
+
+    static final class Lesson {
+        final String lessonId;
+        final EncryptedChunkAssembler.ChunkSource source;
+        final int chunkCount;
+        final CipherSource ciphers;
+        final int chunkSize;
+        /** Per-chunk plaintext SHA-256, or null to only decrypt. */
+        final byte[][] digests;
+        /** Playback cache fingerprint, or null to verify without caching. */
+        final String fingerprint;
+
+        Lesson(String lessonId, EncryptedChunkAssembler.ChunkSource source, int chunkCount, CipherSource ciphers,
+               int chunkSize, byte[][] digests, String fingerprint) {
+            this.lessonId = lessonId;
+            this.source = source;
+            this.chunkCount = chunkCount;
+            this.ciphers = ciphers;
+            this.chunkSize = chunkSize;
+            this.digests = digests;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    static final class Result {
+        final String lessonId;
+        final Outcome outcome;
+        /** The damaged chunk for {@link Outcome#CORRUPT}, else -1. */
+        final int chunkIndex;
+        final String message;
+
+        Result(String lessonId, Outcome outcome, int chunkIndex, String message) {
+            this.lessonId = lessonId;
+            this.outcome = outcome;
+            this.chunkIndex = chunkIndex;
+            this.message = message;
+        }
+    }
+
+    interface Listener {
+        void onResult(Result result);
+    }
+
+    private static final LessonPrefetch INSTANCE = new LessonPrefetch();
+
+    private final Deque<Lesson> pending = new ArrayDeque<>();
+    private final Map<String, Result> results = new LinkedHashMap<>();
+    private volatile AssemblyJob current;
+    // Bumped by offer and clear, so an interrupted lesson of an old plan is not put back
+    private int generation = 0;
+
+    /** The process-wide list shared by the plugin and the worker. */
+    static LessonPrefetch get() {
+        return INSTANCE;
+    }
+
+    /** Replace the pending lessons; the newest plan wins. */
+    synchronized void offer(List<Lesson> lessons) {
+        generation++;
+        pending.clear();
+        for (Lesson lesson : lessons) {
+            results.remove(lesson.lessonId);
+            pending.add(lesson);
+        }
+    }
+
+    synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    synchronized List<String> pendingLessonIds() {
+        List<String> ids = new ArrayList<>();
+        for (Lesson lesson : pending) {
+            ids.add(lesson.lessonId);
+        }
+        return ids;
+    }
+
+    synchronized List<Result> results() {
+        return new ArrayList<>(results.values());
+    }
+
+    /** Drop the pending lessons and stop the one being prepared. */
+    synchronized void clear() {
+        generation++;
+        pending.clear();
+        interrupt();
+    }
+
+    /** Stop the lesson being prepared; it is kept for the next run. */
+    void interrupt() {
+        AssemblyJob job = current;
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Prepare pending lessons in order until none are left or {@code stopped}
+     * says to yield.
+     *
+     * @param cache where fingerprinted lessons are stored; null to only verify
+     * @return true if the list was worked off completely
+     */
+    boolean runPending(PlaybackCache cache, BooleanSupplier stopped, Listener listener) {
+        while (true) {
+            Lesson lesson;
+            int plan;
+            synchronized (this) {
+                if (stopped.getAsBoolean()) {
+                    return false;
+                }
+                lesson = pending.poll();
+                if (lesson == null) {
+                    return true;
+                }
+                plan = generation;
+            }
+
+            AssemblyJob job = new AssemblyJob("prefetch-" + lesson.lessonId, 0, null);
+            current = job;
+            if (stopped.getAsBoolean()) {
+                job.cancel();
+            }
+            Result result = prepare(lesson, cache, job);
+            current = null;
+
+            synchronized (this) {
+                if (result == null) {
+                    // Interrupted: unless a newer plan replaced it, start over next run
+                    if (plan == generation) {
+                        pending.addFirst(lesson);
+                    }
+                    return false;
+                }
+                results.put(lesson.lessonId, result);
+            }
+            if (listener != null) {
+                listener.onResult(result);
+            }
+        }
+    }
+
+    /** @return the outcome, or null if {@code job} was cancelled */
+    private static Result prepare(Lesson lesson, PlaybackCache cache, AssemblyJob job) {
+        boolean caching = cache != null && lesson.fingerprint != null;
+        if (caching && cache.contains(lesson.lessonId, lesson.fingerprint)) {
+            return new Result(lesson.lessonId, Outcome.CACHED, -1, null);
+        }
+
+        File staging = null;
+        try {
+            EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(lesson.ciphers.open(), lesson.chunkSize);
+            if (lesson.digests != null) {
+                assembler.setExpectedDigests(lesson.digests);
+            }
+            if (caching) {
+                staging = cache.stagingFile(lesson.lessonId, lesson.fingerprint);
+                Mp3SeekIndex.Builder seekIndex = new Mp3SeekIndex.Builder();
+                assembler.setSeekIndexBuilder(seekIndex);
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(staging), BUFFER_SIZE)) {
+                    assembler.assemble(lesson.source, lesson.chunkCount, out, job);
+                }
+                Mp3SeekIndex index = seekIndex.build();
+                if (index != null) {
+                    index.writeTo(Mp3SeekIndex.sidecarFor(staging));
+                }
+                cache.commit(lesson.lessonId, lesson.fingerprint);
+                return new Result(lesson.lessonId, Outcome.CACHED, -1, null);
+            }
+            assembler.assemble(lesson.source, lesson.chunkCount, DISCARD, job);
+            return new Result(lesson.lessonId, Outcome.VERIFIED, -1, null);
+        } catch (CancellationException e) {
+            return null;
+        } catch (ChunkIntegrityException e) {
+            return new Result(lesson.lessonId, Outcome.CORRUPT, e.chunkIndex, e.getMessage());
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            return new Result(lesson.lessonId, Outcome.FAILED, -1, e.getMessage());
+        } finally {
+            if (staging != null) {
+                // Already moved into the cache on success
+                staging.delete();
+                Mp3SeekIndex.sidecarFor(staging).delete();
+            }
+        }
+    }
+
+    /** Verification only needs the digests, not the plaintext. */
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+}
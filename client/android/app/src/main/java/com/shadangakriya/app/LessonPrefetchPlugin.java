@@ -0,0 +1,280 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Prepares the lessons a learner is likely to play next in the background
+ * (see {@link LessonPrefetch}), under WorkManager constraints. Each finished
+ * lesson fires {@code lessonPrefetched}; a damaged one names its chunk so
+ * the app can repair it before it is played.
+ *
+ * Playback should {@code pause} prefetching while it prepares and
+ * {@code resume} it afterwards, so the two never compete for the CPU.
+ */
+@CapacitorPlugin(name = "LessonPrefetch")
+public class LessonPrefetchPlugin extends Plugin {
+    private static final String WORK_NAME = "lesson-prefetch";
+    private static final String EVENT_PREFETCHED = "lessonPrefetched";
+
+    // The loaded plugin, for results coming from the worker
+    private static volatile LessonPrefetchPlugin instance;
+
+    // Lessons are read (files, stored keys) off the plugin thread, behind playback and downloads
+    private final ExecutorService executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+    private volatile Constraints constraints = defaultConstraints();
+
+    @Override
+    public void load() {
+        instance = this;
+    }
+
+    /**
+     * Replace the lessons to prepare and (re)start the work. Each lesson is
+     * described like LessonStream.open (lessonId, inputPaths or
+     * containerPath, nonce, chunkSize and a key unless it is in the
+     * {@link KeyVault}; or chunkStore, chunkSize and digests for a lesson in
+     * the {@link ChunkStore}) plus optional {@code digests}
+     * and {@code fingerprint}; with a fingerprint the decrypted lesson is
+     * stored in the playback cache. A {@code key} passed in goes into the
+     * vault; the list itself only keeps lesson ids and looks each key up when
+     * the lesson's turn comes.
+     *
+     * Constraints: {@code requiresCharging} and {@code requiresDeviceIdle}
+     * (default false), {@code requiresBatteryNotLow} (default true).
+     */
+    @PluginMethod
+    public void schedule(PluginCall call) {
+        JSArray lessonsArray = call.getArray("lessons");
+        if (lessonsArray == null) {
+            call.reject("Missing lessons");
+            return;
+        }
+
+        Constraints requested = new Constraints.Builder()
+            .setRequiresCharging(call.getBoolean("requiresCharging", false))
+            .setRequiresDeviceIdle(call.getBoolean("requiresDeviceIdle", false))
+            .setRequiresBatteryNotLow(call.getBoolean("requiresBatteryNotLow", true))
+            .setRequiresStorageNotLow(true)
+            .build();
+
+        executor.execute(() -> {
+            List<LessonPrefetch.Lesson> lessons = new ArrayList<>();
+            try {
+                for (int i = 0; i < lessonsArray.length(); i++) {
+                    LessonPrefetch.Lesson lesson = lessonFrom(lessonsArray.getJSONObject(i));
+                    if (lesson != null) {
+                        lessons.add(lesson);
+                    }
+                }
+            } catch (JSONException | IllegalArgumentException | GeneralSecurityException | IOException e) {
+                call.reject("Invalid lesson: " + e.getMessage());
+                return;
+            }
+
+            constraints = requested;
+            LessonPrefetch.get().offer(lessons);
+            enqueue();
+
+            JSObject result = new JSObject();
+            result.put("scheduled", lessons.size());
+            call.resolve(result);
+        });
+    }
+
+    /** Stop preparing but keep the list, e.g. while a lesson is being played. */
+    @PluginMethod
+    public void pause(PluginCall call) {
+        WorkManager.getInstance(getContext()).cancelUniqueWork(WORK_NAME);
+        LessonPrefetch.get().interrupt();
+        call.resolve();
+    }
+
+    /** Continue with the lessons left, under the last constraints. */
+    @PluginMethod
+    public void resume(PluginCall call) {
+        if (LessonPrefetch.get().hasPending()) {
+            enqueue();
+        }
+        call.resolve();
+    }
+
+    /** Stop and forget the lessons left. */
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        WorkManager.getInstance(getContext()).cancelUniqueWork(WORK_NAME);
+        LessonPrefetch.get().clear();
+        call.resolve();
+    }
+
+    /** Lessons still to prepare and the outcome of those done. */
+    @PluginMethod
+    public void getStatus(PluginCall call) {
+        JSArray pending = new JSArray();
+        for (String lessonId : LessonPrefetch.get().pendingLessonIds()) {
+            pending.put(lessonId);
+        }
+        JSArray results = new JSArray();
+        for (LessonPrefetch.Result result : LessonPrefetch.get().results()) {
+            results.put(toJson(result));
+        }
+
+        JSObject status = new JSObject();
+        status.put("pending", pending);
+        status.put("results", results);
+        call.resolve(status);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (instance == this) {
+            instance = null;
+        }
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    static void dispatchResult(LessonPrefetch.Result result) {
+        LessonPrefetchPlugin plugin = instance;
+        if (plugin != null) {
+            plugin.notifyListeners(EVENT_PREFETCHED, toJson(result));
+        }
+    }
+
+    private void enqueue() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(LessonPrefetchWorker.class)
+            .setConstraints(constraints)
+            .build();
+        WorkManager.getInstance(getContext()).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    /** @return the lesson, or null if its files are gone (deleted since it was listed) */
+    private LessonPrefetch.Lesson lessonFrom(JSONObject json)
+            throws JSONException, GeneralSecurityException, IOException {
+        String lessonId = json.getString("lessonId");
+        int chunkSize = json.getInt("chunkSize");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size for lesson " + lessonId);
+        }
+        Context context = getContext();
+        File filesDir = context.getFilesDir();
+
+        if (json.optBoolean("chunkStore", false)) {
+            byte[][] digests = ChunkStorePlugin.digestsFrom(json.optJSONArray("digests"));
+            ChunkStore store = ChunkStorePlugin.store(context);
+            for (byte[] digest : digests) {
+                if (!store.contains(digest)) {
+                    return null;
+                }
+            }
+            return new LessonPrefetch.Lesson(
+                lessonId,
+                index -> store.open(digests[index], 0),
+                digests.length,
+                () -> store.ciphers(digests),
+                chunkSize,
+                digests,
+                json.optString("fingerprint", null)
+            );
+        }
+
+        EncryptedChunkAssembler.ChunkSource source;
+        int chunkCount;
+        String containerPath = json.optString("containerPath", null);
+        if (containerPath != null) {
+            File container = new File(filesDir, containerPath);
+            if (!container.isFile()) {
+                return null;
+            }
+            chunkCount = (int) ((LessonContainer.dataLength(container) + chunkSize - 1) / chunkSize);
+            source = index -> LessonContainer.openChunk(container, chunkSize, index, 0);
+        } else {
+            JSONArray inputPaths = json.getJSONArray("inputPaths");
+            List<File> chunkFiles = new ArrayList<>();
+            for (int i = 0; i < inputPaths.length(); i++) {
+                File chunkFile = new File(filesDir, inputPaths.getString(i));
+                if (!chunkFile.isFile()) {
+                    return null;
+                }
+                chunkFiles.add(chunkFile);
+            }
+            chunkCount = chunkFiles.size();
+            source = index -> Base64ChunkFiles.open(chunkFiles.get(index));
+        }
+
+        byte[][] digests = null;
+        JSONArray digestsArray = json.optJSONArray("digests");
+        if (digestsArray != null) {
+            String[] hexDigests = new String[digestsArray.length()];
+            for (int i = 0; i < hexDigests.length; i++) {
+                hexDigests[i] = digestsArray.isNull(i) ? null : digestsArray.getString(i);
+            }
+            digests = ChunkDigests.fromHex(hexDigests);
+        }
+
+        byte[] nonce = AesCtrCipher.hexToBytes(json.getString("nonce"));
+        String hexKey = json.optString("key", null);
+        if (hexKey != null) {
+            byte[] rawKey = AesCtrCipher.keyFromHex(hexKey).getEncoded();
+            try {
+                KeyVault.get(context).store(lessonId, rawKey);
+            } finally {
+                Arrays.fill(rawKey, (byte) 0);
+            }
+        }
+
+        return new LessonPrefetch.Lesson(
+            lessonId,
+            source,
+            chunkCount,
+            () -> ChunkCiphers.lesson(KeyVault.resolve(context, null, lessonId), nonce, chunkSize),
+            chunkSize,
+            digests,
+            json.optString("fingerprint", null)
+        );
+    }
+
+    private static JSObject toJson(LessonPrefetch.Result result) {
+        JSObject data = new JSObject();
+        data.put("lessonId", result.lessonId);
+        data.put("outcome", result.outcome.name().toLowerCase());
+        if (result.chunkIndex >= 0) {
+            data.put("chunkIndex", result.chunkIndex);
+        }
+        if (result.message != null) {
+            data.put("message", result.message);
+        }
+        return data;
+    }
+
+    private static Constraints defaultConstraints() {
+        return new Constraints.Builder()
+            .setRequiresBatteryNotLow(true)
+            .setRequiresStorageNotLow(true)
+            .build();
+    }
+}
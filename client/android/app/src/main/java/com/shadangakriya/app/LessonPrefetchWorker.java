@@ -0,0 +1,48 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Works off {@link LessonPrefetch} when WorkManager's constraints allow.
+ * When they stop holding, or the app needs the CPU for playback, WorkManager
+ * stops the worker: the lesson in progress is abandoned at its next buffer
+ * and picked up again by the next run.
+ */
+public class LessonPrefetchWorker extends Worker {
+    private static final String TAG = "LessonPrefetch";
+
+    public LessonPrefetchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        PlaybackCache cache = PlaybackCachePlugin.sharedCache(getApplicationContext());
+        boolean done = LessonPrefetch.get().runPending(cache, this::isStopped, result -> {
+            Log.d(TAG, "Lesson " + result.lessonId + ": " + result.outcome);
+            LessonPrefetchPlugin.dispatchResult(result);
+        });
+        if (!done) {
+            Log.d(TAG, "Stopped with lessons left");
+            if (NativeScheduler.get().isBackgroundPaused()) {
+                // Interrupted for memory pressure, not by WorkManager: try again later
+                return Result.retry();
+            }
+        }
+        // A stopped worker is rescheduled by WorkManager itself if it was the constraints
+        return Result.success();
+    }
+
+    @Override
+    public void onStopped() {
+        LessonPrefetch.get().interrupt();
+    }
+}
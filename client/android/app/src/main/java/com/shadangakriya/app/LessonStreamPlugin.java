@@ -0,0 +1,168 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Registers downloaded lessons with {@link LessonStreamServer} and hands the
+ * WebView a virtual URL that decrypts on demand. The key stays in native
+ * memory until the stream is closed.
+ */
+@CapacitorPlugin(name = "LessonStream")
+public class LessonStreamPlugin extends Plugin {
+
+    /**
+     * Register a lesson stored as v3 base64 chunk files ({@code inputPaths}),
+     * as a v4 container ({@code containerPath}) or, with {@code chunkStore},
+     * as v5 chunks in the {@link ChunkStore} ({@code digests}).
+     */
+    @PluginMethod
+    public void open(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        LessonStreamServer.Stream stream = streamFromCall(call, getContext());
+        if (stream == null) {
+            return;
+        }
+
+        // A fresh token per open, so a closed URL can never be replayed
+        String token = UUID.randomUUID().toString().replace("-", "");
+        LessonStreamServer.unregisterLesson(lessonId);
+        LessonStreamServer.register(token, stream);
+
+        JSObject result = new JSObject();
+        result.put("url", getBridge().getLocalUrl() + LessonStreamServer.PATH_PREFIX + token + ".mp3");
+        call.resolve(result);
+    }
+
+    /**
+     * Build the decrypting view of the lesson described by {@code call}
+     * (lessonId, inputPaths or containerPath, key, nonce, chunkSize,
+     * totalSize; or chunkStore and digests instead of the inputs, key and
+     * nonce). Without {@code key} the lesson's key comes from the
+     * {@link KeyVault}. Shared with {@link LessonPlayerPlugin}.
+     *
+     * @return the stream, or null after rejecting the call
+     */
+    static LessonStreamServer.Stream streamFromCall(PluginCall call, Context context) {
+        File filesDir = context.getFilesDir();
+        String lessonId = call.getString("lessonId");
+        JSArray inputPathsArray = call.getArray("inputPaths");
+        String containerPath = call.getString("containerPath");
+        String hexKey = call.getString("key");
+        String hexNonce = call.getString("nonce");
+        Integer chunkSize = call.getInt("chunkSize");
+        Long totalSize = call.getLong("totalSize");
+        boolean fromStore = call.getBoolean("chunkStore", false);
+
+        if (lessonId == null || chunkSize == null || totalSize == null
+                || (!fromStore && ((inputPathsArray == null && containerPath == null) || hexNonce == null))) {
+            call.reject("Missing required parameters");
+            return null;
+        }
+
+        try {
+            DecryptingRangeStream.CiphertextSource source;
+            if (fromStore) {
+                byte[][] digests = ChunkStorePlugin.digestsFrom(call.getArray("digests"));
+                if (digests.length != (totalSize + chunkSize - 1) / chunkSize) {
+                    call.reject("Chunk count does not match total size");
+                    return null;
+                }
+                ChunkStore store = ChunkStorePlugin.store(context);
+                for (byte[] digest : digests) {
+                    if (!store.contains(digest)) {
+                        call.reject("Chunk " + AesCtrCipher.bytesToHex(digest) + " is not in the store", "CHUNK_MISSING");
+                        return null;
+                    }
+                }
+                return new LessonStreamServer.Stream(
+                    lessonId,
+                    (chunkIndex, offsetInChunk) -> store.open(digests[chunkIndex], offsetInChunk),
+                    store.ciphers(digests),
+                    chunkSize,
+                    totalSize
+                );
+            } else if (containerPath != null) {
+                File container = new File(filesDir, containerPath);
+                if (LessonContainer.dataLength(container) != totalSize) {
+                    call.reject("Container size does not match total size");
+                    return null;
+                }
+                source = (chunkIndex, offsetInChunk) ->
+                    LessonContainer.openChunk(container, chunkSize, chunkIndex, offsetInChunk);
+            } else {
+                List<File> chunkFiles = new ArrayList<>();
+                for (int i = 0; i < inputPathsArray.length(); i++) {
+                    File chunkFile = new File(filesDir, inputPathsArray.getString(i));
+                    if (!chunkFile.exists()) {
+                        call.reject("Input file does not exist: " + inputPathsArray.getString(i));
+                        return null;
+                    }
+                    chunkFiles.add(chunkFile);
+                }
+
+                long expectedChunks = (totalSize + chunkSize - 1) / chunkSize;
+                if (chunkFiles.size() != expectedChunks) {
+                    call.reject("Chunk count does not match total size");
+                    return null;
+                }
+                source = (chunkIndex, offsetInChunk) ->
+                    Base64ChunkFiles.open(chunkFiles.get(chunkIndex), offsetInChunk);
+            }
+
+            return new LessonStreamServer.Stream(
+                lessonId,
+                source,
+                ChunkCiphers.lesson(KeyVault.resolve(context, hexKey, lessonId), AesCtrCipher.hexToBytes(hexNonce), chunkSize),
+                chunkSize,
+                totalSize
+            );
+        } catch (JSONException e) {
+            call.reject("Failed to parse input paths: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid decryption parameters: " + e.getMessage());
+        } catch (GeneralSecurityException e) {
+            call.reject("Lesson key unavailable: " + e.getMessage(), "KEY_UNAVAILABLE");
+        } catch (IOException e) {
+            call.reject("Chunk store unavailable: " + e.getMessage());
+        }
+        return null;
+    }
+
+    @PluginMethod
+    public void close(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing lessonId");
+            return;
+        }
+        LessonStreamServer.unregisterLesson(lessonId);
+        call.resolve();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        LessonStreamServer.clear();
+        super.handleOnDestroy();
+    }
+}
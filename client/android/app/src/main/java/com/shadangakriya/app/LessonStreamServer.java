@@ -0,0 +1,183 @@
+package com.shadangakriya.app;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves registered lessons to the WebView as virtual audio URLs under
+ * {@link #PATH_PREFIX}, decrypting only the byte ranges the media element
+ * asks for. Nothing is written to disk, so playback starts as soon as the
+ * first range is decrypted and seeks are random-access.
+ *
+ * Hooked into the bridge's WebViewClient by {@link MainActivity}; lessons
+ * are registered through {@link LessonStreamPlugin}.
+ */
+final class LessonStreamServer {
+    private static final String TAG = "LessonStreamServer";
+    static final String PATH_PREFIX = "/_sk_stream/";
+
+    /** Everything needed to decrypt one registered lesson. */
+    static final class Stream {
+        final String lessonId;
+        final DecryptingRangeStream.CiphertextSource source;
+        final ChunkCiphers ciphers;
+        final int chunkSize;
+        final long totalSize;
+
+        Stream(String lessonId, DecryptingRangeStream.CiphertextSource source, ChunkCiphers ciphers,
+               int chunkSize, long totalSize) {
+            this.lessonId = lessonId;
+            this.source = source;
+            this.ciphers = ciphers;
+            this.chunkSize = chunkSize;
+            this.totalSize = totalSize;
+        }
+    }
+
+    private static final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private LessonStreamServer() {}
+
+    static void register(String token, Stream stream) {
+        streams.put(token, stream);
+    }
+
+    static void unregisterLesson(String lessonId) {
+        streams.values().removeIf(stream -> stream.lessonId.equals(lessonId));
+    }
+
+    static void clear() {
+        streams.clear();
+    }
+
+    /**
+     * @param host the bridge's local host ({@code localhost} unless
+     *             configured), the only one lessons are served on
+     * @return a response for a virtual lesson URL, or null if the request is
+     *         not ours and should go to the normal Capacitor local server
+     */
+    static WebResourceResponse intercept(WebResourceRequest request, String host) {
+        Uri url = request.getUrl();
+        if (url == null || !host.equals(url.getHost())) {
+            return null;
+        }
+        String path = url.getPath();
+        if (path == null || !path.startsWith(PATH_PREFIX)) {
+            return null;
+        }
+
+        String token = path.substring(PATH_PREFIX.length());
+        int dot = token.indexOf('.');
+        if (dot >= 0) {
+            token = token.substring(0, dot);
+        }
+
+        Stream stream = streams.get(token);
+        if (stream == null) {
+            return errorResponse(404, "Not Found");
+        }
+
+        long total = stream.totalSize;
+        long start = 0;
+        long end = total - 1;
+        boolean partial = false;
+
+        String range = findHeader(request.getRequestHeaders(), "Range");
+        if (range != null && range.startsWith("bytes=")) {
+            long[] parsed = parseRange(range.substring("bytes=".length()), total);
+            if (parsed == null) {
+                Map<String, String> headers = new HashMap<>();
+                headers.put("Content-Range", "bytes */" + total);
+                return new WebResourceResponse("audio/mpeg", null, 416, "Range Not Satisfiable",
+                    headers, new ByteArrayInputStream(new byte[0]));
+            }
+            start = parsed[0];
+            end = parsed[1];
+            partial = true;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Ranges", "bytes");
+        headers.put("Content-Length", String.valueOf(end - start + 1));
+        headers.put("Cache-Control", "no-store");
+        if (partial) {
+            headers.put("Content-Range", "bytes " + start + "-" + end + "/" + total);
+        }
+
+        DecryptingRangeStream body = new DecryptingRangeStream(
+            stream.source,
+            stream.ciphers,
+            stream.chunkSize,
+            start,
+            end + 1
+        );
+
+        Log.d(TAG, "Serving " + stream.lessonId + " bytes " + start + "-" + end + "/" + total);
+        return new WebResourceResponse("audio/mpeg", null, partial ? 206 : 200,
+            partial ? "Partial Content" : "OK", headers, body);
+    }
+
+    /**
+     * Parse the first range of a "bytes=" spec against {@code total}.
+     *
+     * @return {start, end} inclusive, or null if unsatisfiable
+     */
+    static long[] parseRange(String spec, long total) {
+        int comma = spec.indexOf(',');
+        if (comma >= 0) {
+            spec = spec.substring(0, comma);
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0 || total <= 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? total - 1 : Math.min(Long.parseLong(last), total - 1);
+            }
+            if (start < 0 || start >= total || end < start) {
+                return null;
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String findHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static WebResourceResponse errorResponse(int status, String reason) {
+        return new WebResourceResponse("text/plain", "utf-8", status, reason,
+            new HashMap<>(), new ByteArrayInputStream(new byte[0]));
+    }
+}
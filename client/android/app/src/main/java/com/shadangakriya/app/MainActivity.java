@@ -1,6 +1,8 @@
 package com.shadangakriya.app;
 
 import android.os.Bundle;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebSettings;
 import android.view.WindowManager;
@@ -10,21 +12,24 @@ import android.os.Handler;
 import android.provider.Settings;
 import android.view.Window;
 import android.app.Activity;
-import android.content.Context;
-import android.hardware.display.DisplayManager;
-import android.hardware.display.VirtualDisplay;
-import android.media.projection.MediaProjection;
-import android.media.projection.MediaProjectionManager;
 import androidx.webkit.WebSettingsCompat;
 import androidx.webkit.WebViewFeature;
 import com.ionicframework.capacitor.Checkout;
 import com.getcapacitor.BridgeActivity;
-import java.lang.reflect.Method;
+import com.getcapacitor.BridgeWebViewClient;
 
 public class MainActivity extends BridgeActivity {
     private Handler handler;
-    private Runnable screenRecordingChecker;
-    private boolean isScreenRecordingDetected = false;
+    private ScreenCaptureMonitor screenCaptureMonitor;
+
+    private final ScreenCaptureMonitor.Listener screenCaptureListener = new ScreenCaptureMonitor.Listener() {
+        @Override
+        public void onRecordingChanged(boolean recording) {
+            if (recording) {
+                showScreenRecordingWarning();
+            }
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -38,15 +43,35 @@ public class MainActivity extends BridgeActivity {
         registerPlugin(ScreenProtectionPlugin.class);
         registerPlugin(AudioProtectionPlugin.class);
         registerPlugin(FileConcatenationPlugin.class);
+        registerPlugin(LessonStreamPlugin.class);
+        registerPlugin(LessonContainerPlugin.class);
+        registerPlugin(LessonDownloadPlugin.class);
+        registerPlugin(LessonPlayerPlugin.class);
+        registerPlugin(PlaybackCachePlugin.class);
+        registerPlugin(MetricsPlugin.class);
+        registerPlugin(StorageIndexPlugin.class);
+        registerPlugin(LessonPrefetchPlugin.class);
+        registerPlugin(KeyVaultPlugin.class);
+        registerPlugin(DeviceProfilePlugin.class);
+        registerPlugin(ProgressJournalPlugin.class);
+        registerPlugin(ChunkStorePlugin.class);
         registerPlugin(Checkout.class);
         super.onCreate(savedInstanceState);
+
+        // Serve registered lessons as decrypt-on-demand virtual URLs
+        getBridge().setWebViewClient(new BridgeWebViewClient(getBridge()) {
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                WebResourceResponse response = LessonStreamServer.intercept(request, getBridge().getHost());
+                return response != null ? response : super.shouldInterceptRequest(view, request);
+            }
+        });
         
         // Additional security flags
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_SECURE);
         
-        // Start monitoring for screen recording
         handler = new Handler();
-        startScreenRecordingDetection();
+        screenCaptureMonitor = ScreenCaptureMonitor.get(this);
     }
 
     @Override
@@ -74,8 +99,9 @@ public class MainActivity extends BridgeActivity {
             e.printStackTrace();
         }
         
-        // Resume screen recording detection
-        startScreenRecordingDetection();
+        // Watch for screen recording while visible (event driven, no polling)
+        screenCaptureMonitor.attachActivity(this);
+        screenCaptureMonitor.addListener(screenCaptureListener);
     }
     
     @Override
@@ -85,72 +111,29 @@ public class MainActivity extends BridgeActivity {
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_SECURE);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Smaller buffers and fewer threads for native jobs, background work paused
+        DeviceProfilePlugin.onTrimMemory(level);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (handler != null && screenRecordingChecker != null) {
-            handler.removeCallbacks(screenRecordingChecker);
+        if (handler != null) {
+            handler.removeCallbacksAndMessages(null);
         }
     }
     
     @Override
     public void onStop() {
         super.onStop();
-        if (handler != null && screenRecordingChecker != null) {
-            handler.removeCallbacks(screenRecordingChecker);
-        }
-    }
-    
-    private void startScreenRecordingDetection() {
-        screenRecordingChecker = new Runnable() {
-            @Override
-            public void run() {
-                if (isScreenRecording()) {
-                    if (!isScreenRecordingDetected) {
-                        isScreenRecordingDetected = true;
-                        showScreenRecordingWarning();
-                    }
-                } else {
-                    isScreenRecordingDetected = false;
-                }
-                // Check every 1 second
-                handler.postDelayed(this, 1000);
-            }
-        };
-        handler.post(screenRecordingChecker);
-    }
-    
-    private boolean isScreenRecording() {
-        try {
-            // Method 1: Check for MediaProjection (Android 5.0+)
-            MediaProjectionManager projectionManager = 
-                (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
-            
-            // Method 2: Check virtual displays
-            DisplayManager displayManager = (DisplayManager) getSystemService(Context.DISPLAY_SERVICE);
-            if (displayManager != null) {
-                android.view.Display[] displays = displayManager.getDisplays();
-                for (android.view.Display display : displays) {
-                    if (display.getDisplayId() != android.view.Display.DEFAULT_DISPLAY) {
-                        // Virtual display detected - likely screen recording
-                        return true;
-                    }
-                }
-            }
-            
-            // Method 3: Check if FLAG_SECURE is being bypassed (reflection)
-            try {
-                Class<?> surfaceClass = Class.forName("android.view.SurfaceControl");
-                Method method = surfaceClass.getMethod("getBuiltInDisplay", int.class);
-                // If we can access this, screen recording might be active
-            } catch (Exception e) {
-                // Expected on most devices
-            }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
+        screenCaptureMonitor.removeListener(screenCaptureListener);
+        screenCaptureMonitor.detachActivity(this);
+        if (handler != null) {
+            handler.removeCallbacksAndMessages(null);
         }
-        return false;
     }
     
     private void showScreenRecordingWarning() {
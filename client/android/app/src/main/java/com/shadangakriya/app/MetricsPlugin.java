@@ -0,0 +1,84 @@
+package com.shadangakriya.app;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exposes {@link NativeMetrics} so field telemetry can be sent with the
+ * app's other analytics.
+ */
+@CapacitorPlugin(name = "Metrics")
+public class MetricsPlugin extends Plugin {
+
+    /**
+     * Every histogram (count, mean, p50, p90, p99, max) and counter since
+     * the last reset.
+     */
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject histograms = new JSObject();
+        for (Map.Entry<String, MetricsHistogram> entry : NativeMetrics.histograms().entrySet()) {
+            MetricsHistogram histogram = entry.getValue();
+            JSObject summary = new JSObject();
+            summary.put("unit", histogram.unit);
+            summary.put("count", histogram.count());
+            summary.put("mean", histogram.mean());
+            summary.put("p50", histogram.percentile(0.50));
+            summary.put("p90", histogram.percentile(0.90));
+            summary.put("p99", histogram.percentile(0.99));
+            summary.put("max", histogram.max());
+            histograms.put(entry.getKey(), summary);
+        }
+
+        JSObject counters = new JSObject();
+        for (Map.Entry<String, LongAdder> entry : NativeMetrics.counters().entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        JSObject result = new JSObject();
+        result.put("sinceMs", NativeMetrics.sinceMillis());
+        result.put("histograms", histograms);
+        result.put("counters", counters);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        NativeMetrics.reset();
+        call.resolve();
+    }
+
+    /** Does nothing; the WebView times it to measure bridge latency. */
+    @PluginMethod
+    public void ping(PluginCall call) {
+        call.resolve();
+    }
+
+    /** Bridge round trips measured by the WebView, in microseconds. */
+    @PluginMethod
+    public void recordBridgeSamples(PluginCall call) {
+        JSArray samples = call.getArray("micros");
+        if (samples == null) {
+            call.reject("Missing micros");
+            return;
+        }
+        try {
+            for (int i = 0; i < samples.length(); i++) {
+                NativeMetrics.BRIDGE_ROUND_TRIP_MICROS.record(samples.getLong(i));
+            }
+        } catch (JSONException e) {
+            call.reject("Invalid micros: " + e.getMessage());
+            return;
+        }
+        call.resolve();
+    }
+}
@@ -0,0 +1,390 @@
+package com.shadangakriya.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Where each second of an MP3 starts: the byte offset of the first frame at
+ * or after every whole second, found by walking the frame headers. Players
+ * otherwise estimate offsets from the bitrate, which lands seconds off in a
+ * long VBR lesson, and the frame count gives the exact duration.
+ *
+ * Built with a {@link Builder} from the plaintext as it goes by (only the
+ * headers are looked at, frame bodies are skipped) and stored as a small
+ * sidecar file next to the lesson: about 12 bytes per second of audio.
+ */
+final class Mp3SeekIndex {
+    static final String SIDECAR_SUFFIX = ".skidx";
+
+    private static final int MAGIC = 0x534B5349; // "SKSI"
+    private static final int FORMAT_VERSION = 1;
+    private static final long INTERVAL_US = 1_000_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Fields every frame of a stream shares: sync, version, layer, sample rate
+    private static final int STREAM_MASK = 0xFFFE0C00;
+
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[][] BITRATES_KBPS = {
+        // MPEG-1 layer I, II, III
+        {32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+        {32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+        {32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+        // MPEG-2 / 2.5 layer I, II and III
+        {32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+        {8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+
+    final int sampleRate;
+    final int samplesPerFrame;
+    final long frameCount;
+    /** Ordinal of the frame each entry points at. */
+    private final int[] frames;
+    /** Byte offset of that frame in the plaintext. */
+    private final long[] offsets;
+
+    private Mp3SeekIndex(int sampleRate, int samplesPerFrame, long frameCount, int[] frames, long[] offsets) {
+        this.sampleRate = sampleRate;
+        this.samplesPerFrame = samplesPerFrame;
+        this.frameCount = frameCount;
+        this.frames = frames;
+        this.offsets = offsets;
+    }
+
+    /** Where the index of {@code mp3} is kept. */
+    static File sidecarFor(File mp3) {
+        return new File(mp3.getPath() + SIDECAR_SUFFIX);
+    }
+
+    long durationUs() {
+        return frameCount * samplesPerFrame * 1_000_000L / sampleRate;
+    }
+
+    int size() {
+        return offsets.length;
+    }
+
+    /** Exact start time of entry {@code i}. */
+    long timeUsAt(int i) {
+        return (long) frames[i] * samplesPerFrame * 1_000_000L / sampleRate;
+    }
+
+    long offsetAt(int i) {
+        return offsets[i];
+    }
+
+    /** The last entry starting at or before {@code timeUs}. */
+    int entryForTime(long timeUs) {
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timeUsAt(mid) <= timeUs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /** The last entry starting at or before byte {@code offset}. */
+    int entryForOffset(long offset) {
+        int i = Arrays.binarySearch(offsets, offset);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    /** Written to a temp file and renamed, so readers see the old index or the new one. */
+    void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sampleRate);
+            out.writeInt(samplesPerFrame);
+            out.writeLong(frameCount);
+            out.writeInt(offsets.length);
+            for (int frame : frames) {
+                out.writeInt(frame);
+            }
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not save seek index " + file.getName());
+        }
+    }
+
+    /** @return the stored index, or null if there is none */
+    static Mp3SeekIndex readFrom(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a seek index: " + file.getName());
+            }
+            int sampleRate = in.readInt();
+            int samplesPerFrame = in.readInt();
+            long frameCount = in.readLong();
+            int count = in.readInt();
+            if (sampleRate <= 0 || samplesPerFrame <= 0 || count <= 0 || (long) count * 12 > file.length()) {
+                throw new IOException("Corrupt seek index: " + file.getName());
+            }
+            int[] frames = new int[count];
+            long[] offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                frames[i] = in.readInt();
+            }
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+            }
+            return new Mp3SeekIndex(sampleRate, samplesPerFrame, frameCount, frames, offsets);
+        }
+    }
+
+    /** Index a plaintext MP3 file, e.g. one assembled out of order in parallel. */
+    static Mp3SeekIndex scan(File mp3) throws IOException {
+        Builder builder = new Builder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileInputStream in = new FileInputStream(mp3)) {
+            FileChannel channel = in.getChannel();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                builder.update(buffer);
+                buffer.clear();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Incremental frame header parser: feed it the plaintext in order, in
+     * pieces of any size. Leading ID3v2 tags, a Xing / Info / VBRI header
+     * frame and anything that does not parse as a frame of the stream
+     * (trailing tags, garbage) are skipped.
+     */
+    static final class Builder {
+        // Enough for an ID3v2 header and for a frame header up to a VBRI tag
+        private final byte[] header = new byte[48];
+        private int headerLength;
+        private long position;
+        private long skip;
+        private boolean pastTags;
+        private boolean firstFrame = true;
+
+        private int streamHeader;
+        private int sampleRate;
+        private int samplesPerFrame;
+        private long frameCount;
+        private long nextEntryUs;
+
+        private int[] frames = new int[256];
+        private long[] offsets = new long[256];
+        private int entries;
+
+        void update(byte[] data, int offset, int length) {
+            int end = offset + length;
+            while (offset < end) {
+                if (skip > 0) {
+                    int n = (int) Math.min(skip, end - offset);
+                    skip -= n;
+                    position += n;
+                    offset += n;
+                } else {
+                    push(data[offset++]);
+                }
+            }
+        }
+
+        /** Consumes the remaining bytes of {@code data} without moving its position. */
+        void update(ByteBuffer data) {
+            int offset = data.position();
+            int end = data.limit();
+            while (offset < end) {
+                if (skip > 0) {
+                    int n = (int) Math.min(skip, end - offset);
+                    skip -= n;
+                    position += n;
+                    offset += n;
+                } else {
+                    push(data.get(offset++));
+                }
+            }
+        }
+
+        /** @return the index, or null if no MP3 frames were found */
+        Mp3SeekIndex build() {
+            if (frameCount == 0) {
+                return null;
+            }
+            return new Mp3SeekIndex(sampleRate, samplesPerFrame, frameCount,
+                Arrays.copyOf(frames, entries), Arrays.copyOf(offsets, entries));
+        }
+
+        private void push(byte b) {
+            header[headerLength++] = b;
+            position++;
+            if (!pastTags) {
+                parseTag();
+            } else {
+                parseFrame();
+            }
+        }
+
+        private void parseTag() {
+            if (headerLength < 3) {
+                return;
+            }
+            if (header[0] != 'I' || header[1] != 'D' || header[2] != '3') {
+                pastTags = true;
+                parseFrame();
+                return;
+            }
+            if (headerLength < 10) {
+                return;
+            }
+            int size = (header[6] & 0x7F) << 21 | (header[7] & 0x7F) << 14 | (header[8] & 0x7F) << 7 | (header[9] & 0x7F);
+            boolean footer = (header[5] & 0x10) != 0;
+            skip = size + (footer ? 10 : 0);
+            headerLength = 0;
+        }
+
+        private void parseFrame() {
+            if (headerLength < 4) {
+                return;
+            }
+            int h = (header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF);
+            int frameLength = frameLength(h);
+            if (frameLength <= 0 || (streamHeader != 0 && (h & STREAM_MASK) != streamHeader)) {
+                // Lost sync: slide one byte and look again
+                System.arraycopy(header, 1, header, 0, --headerLength);
+                if (headerLength >= 4) {
+                    parseFrame();
+                }
+                return;
+            }
+
+            boolean audio = true;
+            if (firstFrame) {
+                int tagOffset = vbrTagOffset(h);
+                int needed = Math.min(frameLength, 36 + 4);
+                if (headerLength < needed) {
+                    return;
+                }
+                audio = !hasTag(tagOffset, "Xing") && !hasTag(tagOffset, "Info") && !hasTag(36, "VBRI");
+                firstFrame = false;
+                streamHeader = h & STREAM_MASK;
+                sampleRate = sampleRate(h);
+                samplesPerFrame = samplesPerFrame(h);
+            }
+
+            if (audio) {
+                long frameStart = position - headerLength;
+                if (frameCount * samplesPerFrame * 1_000_000L / sampleRate >= nextEntryUs) {
+                    addEntry((int) frameCount, frameStart);
+                    nextEntryUs += INTERVAL_US;
+                }
+                frameCount++;
+            }
+            skip = frameLength - headerLength;
+            headerLength = 0;
+        }
+
+        private boolean hasTag(int offset, String tag) {
+            if (offset + 4 > headerLength) {
+                return false;
+            }
+            for (int i = 0; i < 4; i++) {
+                if (header[offset + i] != tag.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addEntry(int frame, long offset) {
+            if (entries == frames.length) {
+                frames = Arrays.copyOf(frames, entries * 2);
+                offsets = Arrays.copyOf(offsets, entries * 2);
+            }
+            frames[entries] = frame;
+            offsets[entries] = offset;
+            entries++;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Frame header fields
+    // -------------------------------------------------------------------------
+
+    /** @return the frame's length in bytes, or -1 if {@code h} is not a usable frame header */
+    static int frameLength(int h) {
+        if ((h & 0xFFE00000) != 0xFFE00000) {
+            return -1;
+        }
+        int version = (h >>> 19) & 3;
+        int layer = (h >>> 17) & 3;
+        int bitrateIndex = (h >>> 12) & 0xF;
+        int sampleRateIndex = (h >>> 10) & 3;
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            // Reserved values; free-format bitrate cannot be indexed either
+            return -1;
+        }
+        boolean mpeg1 = version == 3;
+        int bitrate = BITRATES_KBPS[mpeg1 ? 3 - layer : (layer == 3 ? 3 : 4)][bitrateIndex - 1] * 1000;
+        int sampleRate = sampleRate(h);
+        int padding = (h >>> 9) & 1;
+        if (layer == 3) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        return samplesPerFrame(h) / 8 * bitrate / sampleRate + padding;
+    }
+
+    private static int sampleRate(int h) {
+        int rate = SAMPLE_RATES[(h >>> 10) & 3];
+        switch ((h >>> 19) & 3) {
+            case 3:
+                return rate;
+            case 2:
+                return rate / 2;
+            default:
+                return rate / 4;
+        }
+    }
+
+    private static int samplesPerFrame(int h) {
+        int layer = (h >>> 17) & 3;
+        if (layer == 3) {
+            return 384;
+        }
+        if (layer == 2 || ((h >>> 19) & 3) == 3) {
+            return 1152;
+        }
+        return 576;
+    }
+
+    /** Offset of a Xing / Info tag in the first frame: after the side information. */
+    private static int vbrTagOffset(int h) {
+        boolean mpeg1 = ((h >>> 19) & 3) == 3;
+        boolean mono = ((h >>> 6) & 3) == 3;
+        if (mpeg1) {
+            return mono ? 4 + 17 : 4 + 32;
+        }
+        return mono ? 4 + 9 : 4 + 17;
+    }
+}
@@ -0,0 +1,68 @@
+package com.shadangakriya.app;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timers and counters for the native hot paths, exposed to the
+ * WebView by {@link MetricsPlugin}. The set is fixed here, so recording
+ * never touches a map.
+ */
+final class NativeMetrics {
+    private static final Map<String, MetricsHistogram> histograms = new LinkedHashMap<>();
+    private static final Map<String, LongAdder> counters = new LinkedHashMap<>();
+
+    /** Throughput of each finished concatenate / decryptAndAssemble job. */
+    static final MetricsHistogram ASSEMBLY_BYTES_PER_SECOND = histogram("assembly.bytesPerSecond", "bytes/s");
+    /** Read, decrypt, verify and write of one chunk. */
+    static final MetricsHistogram DECRYPT_CHUNK_MICROS = histogram("decrypt.chunkMicros", "us");
+    /** Round trip of an empty plugin call, as measured by the WebView. */
+    static final MetricsHistogram BRIDGE_ROUND_TRIP_MICROS = histogram("bridge.roundTripMicros", "us");
+    /** One scan of the displays for a screen recorder. */
+    static final MetricsHistogram SCREEN_CAPTURE_CHECK_MICROS = histogram("screenCapture.checkMicros", "us");
+
+    static final LongAdder ASSEMBLY_BYTES = counter("assembly.bytes");
+    static final LongAdder DECRYPTED_CHUNKS = counter("decrypt.chunks");
+    static final LongAdder CORRUPT_CHUNKS = counter("decrypt.corruptChunks");
+
+    private static volatile long sinceMillis = System.currentTimeMillis();
+
+    private NativeMetrics() {}
+
+    private static MetricsHistogram histogram(String name, String unit) {
+        MetricsHistogram histogram = new MetricsHistogram(name, unit);
+        histograms.put(name, histogram);
+        return histogram;
+    }
+
+    private static LongAdder counter(String name) {
+        LongAdder counter = new LongAdder();
+        counters.put(name, counter);
+        return counter;
+    }
+
+    static Map<String, MetricsHistogram> histograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    static Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /** Wall-clock start of the current measurement window. */
+    static long sinceMillis() {
+        return sinceMillis;
+    }
+
+    static void reset() {
+        for (MetricsHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        sinceMillis = System.currentTimeMillis();
+    }
+}
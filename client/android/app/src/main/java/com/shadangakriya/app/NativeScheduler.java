@@ -0,0 +1,375 @@
+package com.shadangakriya.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The app's native background threads: one bounded pool for disk and
+ * network work and one for CPU-bound work (decryption, hashing), shared by
+ * every plugin instead of each plugin owning its threads.
+ *
+ * Work is queued by {@link Priority}: whatever playback is waiting for
+ * goes ahead of user-started downloads, which go ahead of background
+ * cleanup and prefetching. Running tasks are never preempted, so one
+ * thread of each pool (if it has more than one) is kept for playback:
+ * other work never holds every thread, and a long download cannot keep
+ * playback waiting.
+ *
+ * Plugins submit through a {@link Lane}, an {@code ExecutorService} bound
+ * to one pool and priority. A serial lane runs its tasks one at a time in
+ * order, like the single-thread executors it replaces. Shutting a lane down
+ * only stops that lane; the pools live as long as the process.
+ *
+ * Pool sizes and whether background work may start are set from the
+ * {@link DeviceProfile}.
+ */
+final class NativeScheduler {
+
+    /** Queue order; earlier constants run first. */
+    enum Priority { PLAYBACK, USER, BACKGROUND }
+
+    enum Pool { IO, CPU }
+
+    private static final int DEFAULT_IO_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static NativeScheduler instance;
+
+    private final ThreadPoolExecutor io;
+    private final ThreadPoolExecutor cpu;
+    // Only holds delayed tasks until they are due, then hands them to their lane
+    private final ScheduledExecutorService timer;
+    private final AtomicLong sequence = new AtomicLong();
+    // Background tasks submitted while paused, in order
+    private final List<QueuedTask> held = new ArrayList<>();
+    private boolean backgroundPaused;
+    private final Gate ioGate = new Gate();
+    private final Gate cpuGate = new Gate();
+
+    NativeScheduler(int ioThreads, int cpuThreads) {
+        io = newPool("NativeIO", ioThreads);
+        cpu = newPool("NativeCPU", cpuThreads);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemonThreads("NativeTimer"));
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+    }
+
+    /** The process-wide scheduler. */
+    static synchronized NativeScheduler get() {
+        if (instance == null) {
+            instance = new NativeScheduler(DEFAULT_IO_THREADS, Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    /** A lane whose tasks may run concurrently, up to the pool's size. */
+    Lane lane(Pool pool, Priority priority) {
+        return new Lane(pool, priority, false);
+    }
+
+    /** A lane that runs one task at a time, in submission order. */
+    Lane serialLane(Pool pool, Priority priority) {
+        return new Lane(pool, priority, true);
+    }
+
+    int threads(Pool pool) {
+        return executor(pool).getMaximumPoolSize();
+    }
+
+    /** Cap how many tasks of {@code pool} run at once, e.g. on a weak device. Takes effect as tasks finish. */
+    void setThreads(Pool pool, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A pool needs at least one thread");
+        }
+        ThreadPoolExecutor executor = executor(pool);
+        // Core and maximum move together: with an unbounded queue only core threads ever start
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        admitWaiting(pool);
+    }
+
+    /** Tasks waiting for a thread of {@code pool}. */
+    int queued(Pool pool) {
+        Gate gate = gate(pool);
+        synchronized (gate) {
+            return executor(pool).getQueue().size() + gate.waiting.size();
+        }
+    }
+
+    /**
+     * Hold back {@link Priority#BACKGROUND} tasks, e.g. while memory is
+     * short. Tasks already running finish; held ones start, in order, once
+     * unpaused.
+     */
+    void setBackgroundPaused(boolean paused) {
+        List<QueuedTask> resumed;
+        synchronized (held) {
+            backgroundPaused = paused;
+            if (paused || held.isEmpty()) {
+                return;
+            }
+            resumed = new ArrayList<>(held);
+            held.clear();
+        }
+        for (QueuedTask task : resumed) {
+            admit(task);
+        }
+    }
+
+    boolean isBackgroundPaused() {
+        synchronized (held) {
+            return backgroundPaused;
+        }
+    }
+
+    private void enqueue(QueuedTask task) {
+        if (task.priority == Priority.BACKGROUND) {
+            synchronized (held) {
+                if (backgroundPaused) {
+                    held.add(task);
+                    return;
+                }
+            }
+        }
+        admit(task);
+    }
+
+    /** Hand {@code task} to its pool, unless it is not playback and the pool's other threads are all taken. */
+    private void admit(QueuedTask task) {
+        if (task.priority != Priority.PLAYBACK) {
+            Gate gate = gate(task.pool);
+            synchronized (gate) {
+                if (gate.admitted >= othersLimit(task.pool)) {
+                    gate.waiting.add(task);
+                    return;
+                }
+                gate.admitted++;
+            }
+        }
+        executor(task.pool).execute(task);
+    }
+
+    /** A task that went through {@link #admit} finished: let the next waiting one in. */
+    private void released(Pool pool, Priority priority) {
+        if (priority == Priority.PLAYBACK) {
+            return;
+        }
+        Gate gate = gate(pool);
+        synchronized (gate) {
+            gate.admitted--;
+        }
+        admitWaiting(pool);
+    }
+
+    private void admitWaiting(Pool pool) {
+        Gate gate = gate(pool);
+        List<QueuedTask> admitted = new ArrayList<>();
+        synchronized (gate) {
+            while (!gate.waiting.isEmpty() && gate.admitted < othersLimit(pool)) {
+                admitted.add(gate.waiting.poll());
+                gate.admitted++;
+            }
+        }
+        for (QueuedTask task : admitted) {
+            executor(pool).execute(task);
+        }
+    }
+
+    /** Threads of {@code pool} that work other than playback may hold at once. */
+    private int othersLimit(Pool pool) {
+        return Math.max(1, executor(pool).getMaximumPoolSize() - 1);
+    }
+
+    private ThreadPoolExecutor executor(Pool pool) {
+        return pool == Pool.IO ? io : cpu;
+    }
+
+    private Gate gate(Pool pool) {
+        return pool == Pool.IO ? ioGate : cpuGate;
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), daemonThreads(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            // Below the UI thread, so background work never janks the WebView
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+
+    /** What sits in a pool's queue: ordered by priority, then first come first served. */
+    private static final class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        final Pool pool;
+        final Priority priority;
+        final long sequence;
+        final Runnable task;
+
+        QueuedTask(Pool pool, Priority priority, long sequence, Runnable task) {
+            this.pool = pool;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /** Work other than playback that a pool has taken, and what waits for it to shrink. */
+    private static final class Gate {
+        final PriorityQueue<QueuedTask> waiting = new PriorityQueue<>();
+        int admitted;
+    }
+
+    /** One plugin's view of a pool at one priority. */
+    final class Lane extends AbstractExecutorService {
+        private final Pool pool;
+        private final Priority priority;
+        private final boolean serial;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        // Serial lanes: a task is in the pool
+        private boolean running;
+        private int active;
+        private boolean shutdown;
+
+        private Lane(Pool pool, Priority priority, boolean serial) {
+            this.pool = pool;
+            this.priority = priority;
+            this.serial = serial;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Lane is shut down");
+                }
+                active++;
+                if (serial) {
+                    if (running) {
+                        waiting.add(task);
+                        return;
+                    }
+                    running = true;
+                }
+            }
+            dispatch(task);
+        }
+
+        /** Run {@code task} on this lane after {@code delay}. */
+        Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+            return timer.schedule(() -> {
+                try {
+                    execute(task);
+                } catch (RejectedExecutionException e) {
+                    // Shut down while waiting
+                }
+            }, delay, unit);
+        }
+
+        private void dispatch(Runnable task) {
+            enqueue(new QueuedTask(pool, priority, sequence.incrementAndGet(), () -> {
+                try {
+                    task.run();
+                } finally {
+                    released(pool, priority);
+                    finished();
+                }
+            }));
+        }
+
+        private void finished() {
+            Runnable next = null;
+            synchronized (this) {
+                active--;
+                if (serial) {
+                    next = waiting.poll();
+                    running = next != null;
+                }
+                if (active == 0) {
+                    notifyAll();
+                }
+            }
+            if (next != null) {
+                dispatch(next);
+            }
+        }
+
+        /** Stop taking tasks; those already submitted still run. */
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+
+        /** Stop taking tasks and drop the ones a serial lane has not started. */
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> dropped = new ArrayList<>(waiting);
+            active -= waiting.size();
+            waiting.clear();
+            if (active == 0) {
+                notifyAll();
+            }
+            return dropped;
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && active == 0;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+    }
+}
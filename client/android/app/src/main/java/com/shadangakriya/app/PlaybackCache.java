@@ -0,0 +1,208 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Decrypted lessons kept on disk for instant replay, within a byte budget.
+ *
+ * An entry is {@code <lessonId>.<fingerprint>.mp3}, where the fingerprint
+ * is derived by the caller from the lesson's key and manifest: a new key or
+ * re-download changes it, so a stale entry is never served and is dropped
+ * when its replacement is committed. Files are written as {@code .part}
+ * and renamed into place, so a half-assembled lesson is never a hit.
+ *
+ * An entry's {@link Mp3SeekIndex} sidecar, if the assembly saved one,
+ * moves and goes with it; it is not counted against the budget.
+ *
+ * Once over budget the least recently played entries go first. Recency is
+ * kept in memory and mirrored to each file's mtime, which seeds the order
+ * after a restart.
+ */
+final class PlaybackCache {
+    private static final String SUFFIX = ".mp3";
+    private static final String PART_SUFFIX = ".part";
+    private static final Pattern NAME_PART = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final File dir;
+    private long budgetBytes;
+    // Access order: least recently played first
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    PlaybackCache(File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = budgetBytes;
+        dir.mkdirs();
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> existing = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                existing.add(file);
+            } else if (name.endsWith(SUFFIX + Mp3SeekIndex.SIDECAR_SUFFIX)
+                    && new File(dir, name.substring(0, name.length() - Mp3SeekIndex.SIDECAR_SUFFIX.length())).isFile()) {
+                // Kept with its entry
+            } else {
+                // Left over from an assembly that never finished
+                file.delete();
+            }
+        }
+        existing.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : existing) {
+            entries.put(file.getName(), file);
+        }
+    }
+
+    /** The cached file, marked as just played, or null on a miss. */
+    synchronized File get(String lessonId, String fingerprint) {
+        File file = entries.get(entryName(lessonId, fingerprint));
+        if (file == null) {
+            return null;
+        }
+        if (!file.isFile()) {
+            entries.remove(file.getName());
+            Mp3SeekIndex.sidecarFor(file).delete();
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /** Whether the lesson is cached, without counting as a play (e.g. for prefetching). */
+    synchronized boolean contains(String lessonId, String fingerprint) {
+        File file = entries.get(entryName(lessonId, fingerprint));
+        return file != null && file.isFile();
+    }
+
+    /** Where to assemble a lesson before {@link #commit}; replaces any earlier partial file. */
+    synchronized File stagingFile(String lessonId, String fingerprint) {
+        File part = new File(dir, entryName(lessonId, fingerprint) + PART_SUFFIX);
+        delete(part);
+        return part;
+    }
+
+    /**
+     * Move a fully assembled staging file into the cache, drop the lesson's
+     * other versions and evict down to the budget. The new entry itself is
+     * never evicted here, even if it alone is over budget: it is about to
+     * play.
+     */
+    synchronized File commit(String lessonId, String fingerprint) throws IOException {
+        String name = entryName(lessonId, fingerprint);
+        File part = new File(dir, name + PART_SUFFIX);
+        File file = new File(dir, name);
+        if (!part.isFile()) {
+            throw new IOException("Nothing staged for lesson " + lessonId);
+        }
+        File sidecar = Mp3SeekIndex.sidecarFor(file);
+        sidecar.delete();
+        if (!part.renameTo(file)) {
+            delete(part);
+            throw new IOException("Could not move " + part.getName() + " into the playback cache");
+        }
+        // Without its index the entry still plays, the player just estimates seeks
+        Mp3SeekIndex.sidecarFor(part).renameTo(sidecar);
+
+        removeLesson(lessonId, name);
+        entries.put(name, file);
+        file.setLastModified(System.currentTimeMillis());
+        trimTo(budgetBytes, name);
+        return file;
+    }
+
+    /** Forget every cached version of a lesson. */
+    synchronized void invalidate(String lessonId) {
+        checkName(lessonId);
+        removeLesson(lessonId, null);
+        File[] parts = dir.listFiles((d, n) -> n.startsWith(lessonId + ".") && n.endsWith(PART_SUFFIX));
+        if (parts != null) {
+            for (File part : parts) {
+                delete(part);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        for (File file : entries.values()) {
+            delete(file);
+        }
+        entries.clear();
+    }
+
+    /** A smaller budget takes effect at once. */
+    synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trimTo(budgetBytes, null);
+    }
+
+    synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    synchronized long sizeBytes() {
+        long total = 0;
+        for (File file : entries.values()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private void removeLesson(String lessonId, String keep) {
+        String prefix = lessonId + ".";
+        Iterator<Map.Entry<String, File>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, File> entry = it.next();
+            if (entry.getKey().startsWith(prefix) && !entry.getKey().equals(keep)) {
+                delete(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private void trimTo(long budget, String keep) {
+        long total = sizeBytes();
+        Iterator<Map.Entry<String, File>> it = entries.entrySet().iterator();
+        while (total > budget && it.hasNext()) {
+            Map.Entry<String, File> entry = it.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            total -= entry.getValue().length();
+            delete(entry.getValue());
+            it.remove();
+        }
+    }
+
+    private static void delete(File file) {
+        file.delete();
+        Mp3SeekIndex.sidecarFor(file).delete();
+    }
+
+    private static String entryName(String lessonId, String fingerprint) {
+        checkName(lessonId);
+        checkName(fingerprint);
+        return lessonId + "." + fingerprint + SUFFIX;
+    }
+
+    private static void checkName(String part) {
+        // Both go into a file name, so no dots (the separator) or slashes
+        if (part == null || !NAME_PART.matcher(part).matches()) {
+            throw new IllegalArgumentException("Invalid cache key: " + part);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps assembled lessons for instant replay (see {@link PlaybackCache}).
+ * Paths are relative to the app's files directory, like the other plugins.
+ *
+ * To play: {@code lookup}; on a miss, assemble into the returned
+ * {@code stagingPath} (e.g. FileConcatenation.decryptAndAssemble) and then
+ * {@code commit}.
+ */
+@CapacitorPlugin(name = "PlaybackCache")
+public class PlaybackCachePlugin extends Plugin {
+    private static final String TAG = "PlaybackCache";
+    private static final String CACHE_DIR = "sk_playback_cache";
+    private static final String PREFS = "playback_cache";
+    private static final String PREF_BUDGET = "budgetBytes";
+    private static final long DEFAULT_BUDGET_BYTES = 300L * 1024 * 1024;
+
+    // One per process: the plugin and the prefetch worker share the folder
+    private static PlaybackCache sharedCache;
+
+    private PlaybackCache cache;
+
+    @Override
+    public void load() {
+        cache = sharedCache(getContext());
+    }
+
+    /** The process-wide cache, opened on first use. */
+    static synchronized PlaybackCache sharedCache(Context context) {
+        if (sharedCache == null) {
+            long budget = prefs(context).getLong(PREF_BUDGET, DEFAULT_BUDGET_BYTES);
+            sharedCache = new PlaybackCache(new File(context.getFilesDir(), CACHE_DIR), budget);
+        }
+        return sharedCache;
+    }
+
+    /**
+     * Resolves {@code hit} and the cached file's {@code path}, or on a miss
+     * the {@code stagingPath} to assemble into.
+     */
+    @PluginMethod
+    public void lookup(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        String fingerprint = call.getString("fingerprint");
+        if (lessonId == null || fingerprint == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        try {
+            JSObject result = new JSObject();
+            File hit = cache.get(lessonId, fingerprint);
+            result.put("hit", hit != null);
+            if (hit != null) {
+                result.put("path", relativePath(hit));
+            } else {
+                result.put("stagingPath", relativePath(cache.stagingFile(lessonId, fingerprint)));
+            }
+            call.resolve(result);
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid cache key: " + e.getMessage());
+        }
+    }
+
+    /** Move the assembled staging file into the cache; resolves its {@code path}. */
+    @PluginMethod
+    public void commit(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        String fingerprint = call.getString("fingerprint");
+        if (lessonId == null || fingerprint == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+
+        try {
+            File file = cache.commit(lessonId, fingerprint);
+            Log.d(TAG, "Cached " + file.getName() + ", " + cache.sizeBytes() + " of "
+                + cache.getBudgetBytes() + " bytes used");
+            JSObject result = new JSObject();
+            result.put("path", relativePath(file));
+            call.resolve(result);
+        } catch (IllegalArgumentException | IOException e) {
+            call.reject("Failed to cache lesson: " + e.getMessage());
+        }
+    }
+
+    /** Drop a lesson's cached copies, e.g. when it is deleted or re-downloaded. */
+    @PluginMethod
+    public void invalidate(PluginCall call) {
+        String lessonId = call.getString("lessonId");
+        if (lessonId == null) {
+            call.reject("Missing lessonId");
+            return;
+        }
+        try {
+            cache.invalidate(lessonId);
+            call.resolve();
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid cache key: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clear(PluginCall call) {
+        cache.clear();
+        call.resolve();
+    }
+
+    /** Set and persist the disk budget; a smaller one evicts right away. */
+    @PluginMethod
+    public void setBudget(PluginCall call) {
+        Long bytes = call.getLong("bytes");
+        if (bytes == null || bytes < 0) {
+            call.reject("Missing or invalid bytes");
+            return;
+        }
+        prefs(getContext()).edit().putLong(PREF_BUDGET, bytes).apply();
+        cache.setBudgetBytes(bytes);
+        call.resolve(stats());
+    }
+
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        call.resolve(stats());
+    }
+
+    private JSObject stats() {
+        JSObject result = new JSObject();
+        result.put("budgetBytes", cache.getBudgetBytes());
+        result.put("sizeBytes", cache.sizeBytes());
+        result.put("entries", cache.entryCount());
+        return result;
+    }
+
+    private String relativePath(File file) {
+        return CACHE_DIR + "/" + file.getName();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,340 @@
+package com.shadangakriya.app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Records lesson progress and attendance in an {@link EventJournal} and
+ * sends it in batches (see {@link JournalSync}), so updates made offline,
+ * e.g. in airplane mode during a lesson, reach the server once the device
+ * is back online.
+ *
+ * Each user has their own journal, opened by {@code configure} and closed
+ * by {@code signOut}, so events are only ever sent with the token of the
+ * user who made them. Whatever is unsent at sign-out waits for that user's
+ * next sign-in.
+ *
+ * Events are synced to disk together, {@link #SYNC_DELAY_MS} after the
+ * first unsynced one. Sending waits {@link #FLUSH_DELAY_MS} so events
+ * recorded together go out in one request, and happens again whenever a
+ * network becomes available. A {@code durable} event is synced and sent at
+ * once instead. {@code journalFlushed} reports each flush.
+ */
+@CapacitorPlugin(name = "ProgressJournal")
+public class ProgressJournalPlugin extends Plugin {
+    private static final String TAG = "ProgressJournal";
+    private static final String EVENT_FLUSHED = "journalFlushed";
+    private static final String JOURNAL_DIR = "journal";
+    private static final long SYNC_DELAY_MS = 1000;
+    private static final long FLUSH_DELAY_MS = 5000;
+    private static final Pattern FIELD = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    // Part of the journal's file name
+    private static final Pattern USER = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    // Journal writes and flushes, in order
+    private final NativeScheduler.Lane executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+
+    private ConnectivityManager connectivity;
+    private ConnectivityManager.NetworkCallback networkCallback;
+    // Set by configure, cleared by signOut; only touched on the executor
+    private EventJournal journal;
+    private String user;
+    private JournalSync sync;
+    private boolean syncScheduled;
+    private boolean flushScheduled;
+
+    @Override
+    public void load() {
+        connectivity = (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                executor.execute(() -> flushNow(null));
+            }
+        };
+        connectivity.registerDefaultNetworkCallback(networkCallback);
+    }
+
+    /**
+     * Who is signed in ({@code user}, whose journal is opened) and where and
+     * how to send: {@code baseUrl} (the API root) and {@code headers}, e.g.
+     * Authorization. Kept in memory only, so the app calls this at start and
+     * whenever the token changes. Sends whatever is pending.
+     */
+    @PluginMethod
+    public void configure(PluginCall call) {
+        String baseUrl = call.getString("baseUrl");
+        String user = call.getString("user");
+        if (baseUrl == null || user == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+        if (!USER.matcher(user).matches()) {
+            call.reject("Invalid user: " + user);
+            return;
+        }
+        Map<String, String> headers = new HashMap<>();
+        JSObject headersObject = call.getObject("headers");
+        if (headersObject != null) {
+            Iterator<String> names = headersObject.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                headers.put(name, headersObject.optString(name));
+            }
+        }
+        executor.execute(() -> {
+            if (!user.equals(this.user)) {
+                closeJournal();
+                File file = new File(new File(getContext().getFilesDir(), JOURNAL_DIR), "user-" + user + ".log");
+                try {
+                    journal = new EventJournal(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not open journal", e);
+                    sync = null;
+                    call.reject("Could not open journal: " + e.getMessage(), "JOURNAL_UNAVAILABLE");
+                    return;
+                }
+                this.user = user;
+                Log.d(TAG, journal.pendingCount() + " events pending");
+            }
+            sync = new JournalSync(baseUrl, headers);
+            scheduleFlush();
+            call.resolve();
+        });
+    }
+
+    /**
+     * Stop recording and sending for the signed-in user, e.g. on logout.
+     * Their unsent events stay in their journal; the app flushes first if
+     * it can.
+     */
+    @PluginMethod
+    public void signOut(PluginCall call) {
+        executor.execute(() -> {
+            closeJournal();
+            sync = null;
+            call.resolve();
+        });
+    }
+
+    /**
+     * Record one event: {@code data} is sent as is, in a batch of
+     * {@code {"<field>": [...]}} to {@code method} (default POST) {@code path}.
+     * A later event with the same target and {@code key} replaces it.
+     * Resolves with {@code sequence} and {@code pending} once queued.
+     *
+     * A {@code durable} event is written to disk and sent before resolving;
+     * if the server could be reached, {@code reply} holds its {@code status}
+     * and {@code body} for the batch the event went out in. A refused event
+     * is kept or dropped as {@link JournalSync} decides.
+     */
+    @PluginMethod
+    public void record(PluginCall call) {
+        String path = call.getString("path");
+        String field = call.getString("field", "events");
+        String method = call.getString("method", "POST");
+        String key = call.getString("key");
+        JSObject data = call.getObject("data");
+        boolean durable = call.getBoolean("durable", false);
+        if (path == null || key == null || data == null) {
+            call.reject("Missing required parameters");
+            return;
+        }
+        if (!path.startsWith("/") || !FIELD.matcher(field).matches()
+                || !("POST".equals(method) || "PUT".equals(method))) {
+            call.reject("Invalid target: " + method + " " + path + " " + field);
+            return;
+        }
+        EventJournal.Target target = new EventJournal.Target(method, path, field);
+        long recordedAt = System.currentTimeMillis();
+
+        executor.execute(() -> {
+            if (journal == null) {
+                call.reject("Not signed in", "JOURNAL_UNAVAILABLE");
+                return;
+            }
+            JSObject result = new JSObject();
+            try {
+                result.put("sequence", journal.append(target, key, data.toString(), recordedAt));
+                if (durable) {
+                    journal.sync();
+                } else {
+                    scheduleSync();
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                call.reject("Failed to record event: " + e.getMessage());
+                return;
+            }
+            JournalSync.Result flushed = durable ? send() : null;
+            JournalSync.Reply reply = flushed != null ? flushed.replies.get(target) : null;
+            if (reply != null) {
+                JSObject replyObject = new JSObject();
+                replyObject.put("status", reply.status);
+                replyObject.put("body", reply.body);
+                result.put("reply", replyObject);
+            }
+            scheduleFlush();
+            result.put("pending", journal.pendingCount());
+            call.resolve(result);
+        });
+    }
+
+    /** Send everything pending now; resolves with {@code sent}, {@code rejected} and {@code pending}. */
+    @PluginMethod
+    public void flush(PluginCall call) {
+        executor.execute(() -> flushNow(call));
+    }
+
+    @PluginMethod
+    public void getPending(PluginCall call) {
+        executor.execute(() -> {
+            JSObject result = new JSObject();
+            result.put("pending", journal != null ? journal.pendingCount() : 0);
+            call.resolve(result);
+        });
+    }
+
+    @Override
+    protected void handleOnPause() {
+        executor.execute(this::syncNow);
+        super.handleOnPause();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (connectivity != null && networkCallback != null) {
+            connectivity.unregisterNetworkCallback(networkCallback);
+        }
+        executor.execute(this::closeJournal);
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private void scheduleSync() {
+        if (syncScheduled) {
+            return;
+        }
+        syncScheduled = true;
+        executor.schedule(() -> {
+            syncScheduled = false;
+            syncNow();
+        }, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || sync == null) {
+            return;
+        }
+        flushScheduled = true;
+        executor.schedule(() -> {
+            flushScheduled = false;
+            flushNow(null);
+        }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void syncNow() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Journal sync failed", e);
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close journal", e);
+        }
+        journal = null;
+        user = null;
+    }
+
+    /** On the executor. {@code call} may be null for automatic flushes. */
+    private void flushNow(PluginCall call) {
+        if (journal == null || sync == null) {
+            if (call != null) {
+                call.reject("Not signed in", "JOURNAL_UNAVAILABLE");
+            }
+            return;
+        }
+        if (call == null && journal.pendingCount() == 0) {
+            return;
+        }
+        JournalSync.Result flushed;
+        try {
+            flushed = sync.flush(journal);
+        } catch (IOException e) {
+            Log.e(TAG, "Journal flush failed", e);
+            if (call != null) {
+                call.reject("Journal flush failed: " + e.getMessage());
+            }
+            return;
+        }
+        report(flushed);
+        if (call != null) {
+            call.resolve(flushResult(flushed));
+        }
+    }
+
+    /** On the executor: send what is pending now. Null if the journal itself failed. */
+    private JournalSync.Result send() {
+        if (sync == null) {
+            return null;
+        }
+        try {
+            JournalSync.Result flushed = sync.flush(journal);
+            report(flushed);
+            return flushed;
+        } catch (IOException e) {
+            Log.e(TAG, "Journal flush failed", e);
+            return null;
+        }
+    }
+
+    private void report(JournalSync.Result flushed) {
+        if (flushed.error != null) {
+            Log.d(TAG, "Flush stopped, " + flushed.pending + " pending: " + flushed.error.getMessage());
+        }
+        if (flushed.rejected > 0) {
+            Log.w(TAG, "Server rejected " + flushed.rejected + " events");
+        }
+        if (flushed.sent > 0 || flushed.rejected > 0) {
+            notifyListeners(EVENT_FLUSHED, flushResult(flushed));
+        }
+    }
+
+    private static JSObject flushResult(JournalSync.Result flushed) {
+        JSObject result = new JSObject();
+        result.put("sent", flushed.sent);
+        result.put("rejected", flushed.rejected);
+        result.put("pending", flushed.pending);
+        if (flushed.error != null) {
+            result.put("error", flushed.error.getMessage());
+        }
+        return result;
+    }
+}
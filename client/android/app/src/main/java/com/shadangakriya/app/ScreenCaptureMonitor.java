@@ -0,0 +1,224 @@
+package com.shadangakriya.app;
+
+import android.app.Activity;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Display;
+import android.view.WindowManager;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Single, event-driven source of screen capture state for the whole app.
+ *
+ * Recording is inferred from extra (virtual) displays via a
+ * {@link DisplayManager.DisplayListener}, and on API 35+ also from the
+ * window's screen-recording callback. On API 34+ screenshots are reported
+ * through {@link Activity.ScreenCaptureCallback}. Nothing polls: the
+ * system callbacks are registered while someone is listening and removed
+ * with the last listener.
+ *
+ * All callbacks arrive on the main thread.
+ */
+final class ScreenCaptureMonitor {
+    private static final String TAG = "ScreenCaptureMonitor";
+
+    interface Listener {
+        /** Screen recording started or stopped. */
+        void onRecordingChanged(boolean recording);
+
+        /** A screenshot of the app was taken (API 34+). */
+        default void onScreenshot() {}
+    }
+
+    private static ScreenCaptureMonitor instance;
+
+    private final DisplayManager displayManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArraySet<Listener> listeners = new CopyOnWriteArraySet<>();
+
+    // Written on the main thread, read by isRecording() from plugin threads
+    private volatile boolean virtualDisplayPresent = false;
+    private volatile boolean windowRecorded = false;
+    private volatile boolean recording = false;
+    private volatile boolean displayListenerRegistered = false;
+
+    private Activity activity;
+    private Object screenCaptureCallback;
+    private Consumer<Integer> screenRecordingCallback;
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+            refreshDisplays();
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+            refreshDisplays();
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            // Adding or removing a display is all we care about
+        }
+    };
+
+    private ScreenCaptureMonitor(Context context) {
+        displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    }
+
+    static synchronized ScreenCaptureMonitor get(Context context) {
+        if (instance == null) {
+            instance = new ScreenCaptureMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Current state; accurate even with no listeners registered. */
+    boolean isRecording() {
+        if (!displayListenerRegistered) {
+            return hasVirtualDisplay() || windowRecorded;
+        }
+        return recording;
+    }
+
+    /** Subscribe; a listener added while recording is told so right away. */
+    void addListener(Listener listener) {
+        runOnMain(() -> {
+            if (!listeners.add(listener)) {
+                return;
+            }
+            if (!displayListenerRegistered && displayManager != null) {
+                displayManager.registerDisplayListener(displayListener, mainHandler);
+                displayListenerRegistered = true;
+                // Nobody else is listening yet, so just take the current state
+                virtualDisplayPresent = hasVirtualDisplay();
+                recording = virtualDisplayPresent || windowRecorded;
+            }
+            if (recording) {
+                listener.onRecordingChanged(true);
+            }
+        });
+    }
+
+    void removeListener(Listener listener) {
+        runOnMain(() -> {
+            if (listeners.remove(listener) && listeners.isEmpty() && displayListenerRegistered) {
+                displayManager.unregisterDisplayListener(displayListener);
+                displayListenerRegistered = false;
+            }
+        });
+    }
+
+    /**
+     * Register the per-window callbacks on {@code activity}. Call from
+     * onStart and pair with {@link #detachActivity} in onStop, as the
+     * platform requires.
+     */
+    void attachActivity(Activity activity) {
+        runOnMain(() -> {
+            detachActivity(this.activity);
+            this.activity = activity;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                Activity.ScreenCaptureCallback callback = this::notifyScreenshot;
+                try {
+                    activity.registerScreenCaptureCallback(activity.getMainExecutor(), callback);
+                    screenCaptureCallback = callback;
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Screenshot detection unavailable", e);
+                }
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM) {
+                Consumer<Integer> callback = state -> {
+                    windowRecorded = state == WindowManager.SCREEN_RECORDING_STATE_VISIBLE;
+                    updateRecording();
+                };
+                try {
+                    int initial = activity.getWindowManager()
+                        .addScreenRecordingCallback(activity.getMainExecutor(), callback);
+                    screenRecordingCallback = callback;
+                    windowRecorded = initial == WindowManager.SCREEN_RECORDING_STATE_VISIBLE;
+                    updateRecording();
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Screen recording callback unavailable", e);
+                }
+            }
+        });
+    }
+
+    void detachActivity(Activity activity) {
+        runOnMain(() -> {
+            if (activity == null || activity != this.activity) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE && screenCaptureCallback != null) {
+                activity.unregisterScreenCaptureCallback((Activity.ScreenCaptureCallback) screenCaptureCallback);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM && screenRecordingCallback != null) {
+                activity.getWindowManager().removeScreenRecordingCallback(screenRecordingCallback);
+            }
+            screenCaptureCallback = null;
+            screenRecordingCallback = null;
+            windowRecorded = false;
+            this.activity = null;
+            updateRecording();
+        });
+    }
+
+    private void refreshDisplays() {
+        virtualDisplayPresent = hasVirtualDisplay();
+        updateRecording();
+    }
+
+    private void updateRecording() {
+        boolean now = virtualDisplayPresent || windowRecorded;
+        if (now == recording) {
+            return;
+        }
+        recording = now;
+        Log.d(TAG, "Screen recording " + (now ? "started" : "stopped"));
+        for (Listener listener : listeners) {
+            listener.onRecordingChanged(now);
+        }
+    }
+
+    private void notifyScreenshot() {
+        for (Listener listener : listeners) {
+            listener.onScreenshot();
+        }
+    }
+
+    /** Screen recorders and casting mirror the screen onto an extra display. */
+    private boolean hasVirtualDisplay() {
+        if (displayManager == null) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            for (Display display : displayManager.getDisplays()) {
+                if (display.getDisplayId() != Display.DEFAULT_DISPLAY) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            NativeMetrics.SCREEN_CAPTURE_CHECK_MICROS.recordMicrosSince(started);
+        }
+    }
+
+    private void runOnMain(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            mainHandler.post(action);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of the audio folder: what each lesson occupies, whether
+ * its chunks are all there, and which files are orphans. It is built with
+ * one directory listing and then kept current one file at a time through
+ * {@link #refresh}, so reading it never touches the disk.
+ *
+ * Orphans are temp files from interrupted playback preparation, chunk files
+ * with no manifest (or superseded by a v4 container), containers without a
+ * manifest (or whose lesson moved to the {@link ChunkStore}) and the remains
+ * of interrupted downloads.
+ */
+final class StorageIndex {
+    enum Kind { MANIFEST, CONTAINER, CHUNK, PARTIAL, TEMP }
+
+    /** What the index needs from a lesson manifest. */
+    static final class Manifest {
+        final int version;
+        final int totalChunks;
+
+        Manifest(int version, int totalChunks) {
+            this.version = version;
+            this.totalChunks = totalChunks;
+        }
+    }
+
+    interface ManifestReader {
+        Manifest read(File file) throws IOException;
+    }
+
+    static final class Entry {
+        final String name;
+        final String lessonId;
+        final Kind kind;
+        final int chunkIndex;
+        final long bytes;
+        final long modifiedMs;
+
+        Entry(String name, String lessonId, Kind kind, int chunkIndex, long bytes, long modifiedMs) {
+            this.name = name;
+            this.lessonId = lessonId;
+            this.kind = kind;
+            this.chunkIndex = chunkIndex;
+            this.bytes = bytes;
+            this.modifiedMs = modifiedMs;
+        }
+    }
+
+    static final class LessonUsage {
+        final String lessonId;
+        long bytes;
+        long orphanBytes;
+        int version;
+        int totalChunks;
+        int chunksPresent;
+        boolean hasManifest;
+        boolean hasContainer;
+
+        LessonUsage(String lessonId) {
+            this.lessonId = lessonId;
+        }
+
+        boolean isComplete() {
+            if (!hasManifest) {
+                return false;
+            }
+            if (version >= ChunkStore.MANIFEST_VERSION) {
+                // The chunks are in the store, outside this folder
+                return true;
+            }
+            return version >= 4 ? hasContainer : chunksPresent == totalChunks;
+        }
+    }
+
+    static final class Orphan {
+        final Entry entry;
+        final String reason;
+        /** An interrupted download the next attempt could still resume. */
+        final boolean resumable;
+
+        Orphan(Entry entry, String reason, boolean resumable) {
+            this.entry = entry;
+            this.reason = reason;
+            this.resumable = resumable;
+        }
+    }
+
+    static final class CompactResult {
+        int removedFiles;
+        long reclaimedBytes;
+    }
+
+    private static final Pattern MANIFEST = Pattern.compile("(.+)_manifest\\.json");
+    private static final Pattern CONTAINER = Pattern.compile("(.+)\\.skl");
+    private static final Pattern PARTIAL = Pattern.compile("(.+)\\.skl\\.(part|resume)");
+    private static final Pattern TEMP_CHUNK = Pattern.compile("(.+)_temp_chunk_(\\d{1,9})\\.mp3");
+    private static final Pattern TEMP = Pattern.compile("(.+)_temp\\.mp3");
+    private static final Pattern CHUNK = Pattern.compile("(.+)_chunk_(\\d{1,9})\\.enc");
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final ManifestReader manifestReader;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Manifest> manifests = new HashMap<>();
+
+    StorageIndex(File dir, ManifestReader manifestReader) {
+        this.dir = dir;
+        this.manifestReader = manifestReader;
+    }
+
+    /** Forget everything and list the folder again. */
+    synchronized void rebuild() {
+        entries.clear();
+        manifests.clear();
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            refresh(name);
+        }
+    }
+
+    /** Re-stat one file after it was created, changed, moved or deleted. */
+    synchronized void refresh(String name) {
+        Entry old = entries.remove(name);
+        if (old != null && old.kind == Kind.MANIFEST) {
+            manifests.remove(old.lessonId);
+        }
+
+        File file = new File(dir, name);
+        if (!file.isFile()) {
+            return;
+        }
+        Entry entry = classify(name, file.length(), file.lastModified());
+        if (entry == null) {
+            return;
+        }
+        entries.put(name, entry);
+        if (entry.kind == Kind.MANIFEST) {
+            try {
+                manifests.put(entry.lessonId, manifestReader.read(file));
+            } catch (IOException e) {
+                // Unreadable, e.g. mid-write: treated as missing until it changes again
+            }
+        }
+    }
+
+    /** Per-lesson usage, ordered by lesson id. */
+    synchronized Collection<LessonUsage> lessons() {
+        Map<String, LessonUsage> lessons = new TreeMap<>();
+        for (Entry entry : entries.values()) {
+            LessonUsage usage = lessons.get(entry.lessonId);
+            if (usage == null) {
+                usage = new LessonUsage(entry.lessonId);
+                lessons.put(entry.lessonId, usage);
+            }
+            usage.bytes += entry.bytes;
+            if (orphanReason(entry) != null) {
+                usage.orphanBytes += entry.bytes;
+                continue;
+            }
+            switch (entry.kind) {
+                case MANIFEST:
+                    Manifest manifest = manifests.get(entry.lessonId);
+                    usage.hasManifest = manifest != null;
+                    if (manifest != null) {
+                        usage.version = manifest.version;
+                        usage.totalChunks = manifest.totalChunks;
+                    }
+                    break;
+                case CONTAINER:
+                    usage.hasContainer = true;
+                    break;
+                case CHUNK:
+                    usage.chunksPresent++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return lessons.values();
+    }
+
+    synchronized List<Orphan> orphans() {
+        List<Orphan> orphans = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            String reason = orphanReason(entry);
+            if (reason != null) {
+                boolean resumable = entry.kind == Kind.PARTIAL && !manifests.containsKey(entry.lessonId);
+                orphans.add(new Orphan(entry, reason, resumable));
+            }
+        }
+        return orphans;
+    }
+
+    synchronized long totalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Delete orphans last modified at least {@code minAgeMs} before
+     * {@code nowMs}, except those of lessons in {@code keep} (e.g. being
+     * downloaded or prepared right now). Resumable downloads are only
+     * removed with {@code removeResumable}.
+     */
+    synchronized CompactResult compact(Collection<String> keep, long minAgeMs, boolean removeResumable, long nowMs) {
+        CompactResult result = new CompactResult();
+        for (Orphan orphan : orphans()) {
+            Entry entry = orphan.entry;
+            if (keep.contains(entry.lessonId) || nowMs - entry.modifiedMs < minAgeMs
+                    || (orphan.resumable && !removeResumable)) {
+                continue;
+            }
+            File file = new File(dir, entry.name);
+            if (file.delete() || !file.exists()) {
+                result.removedFiles++;
+                result.reclaimedBytes += entry.bytes;
+            }
+            refresh(entry.name);
+        }
+        return result;
+    }
+
+    /** Why {@code entry} is an orphan, or null if it belongs to a lesson. */
+    private String orphanReason(Entry entry) {
+        Manifest manifest = manifests.get(entry.lessonId);
+        switch (entry.kind) {
+            case TEMP:
+                return "temp file";
+            case PARTIAL:
+                return manifest != null ? "leftover from a finished download" : "interrupted download";
+            case CONTAINER:
+                if (manifest == null) {
+                    return "no manifest";
+                }
+                return manifest.version >= ChunkStore.MANIFEST_VERSION ? "superseded by chunk store" : null;
+            case CHUNK:
+                if (manifest == null) {
+                    return "no manifest";
+                }
+                if (manifest.version >= ChunkStore.MANIFEST_VERSION) {
+                    return "superseded by chunk store";
+                }
+                if (manifest.version >= 4) {
+                    return "superseded by container";
+                }
+                return entry.chunkIndex >= manifest.totalChunks ? "beyond manifest" : null;
+            default:
+                return null;
+        }
+    }
+
+    /** @return the entry for a file name, or null for files the app does not own */
+    static Entry classify(String name, long bytes, long modifiedMs) {
+        if (name.endsWith(TMP_SUFFIX)) {
+            // Half-written replacement of a manifest, resume state, ...
+            Entry target = classify(name.substring(0, name.length() - TMP_SUFFIX.length()), bytes, modifiedMs);
+            return target == null ? null : new Entry(name, target.lessonId, Kind.TEMP, -1, bytes, modifiedMs);
+        }
+
+        Matcher m;
+        if ((m = MANIFEST.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.MANIFEST, -1, bytes, modifiedMs);
+        }
+        if ((m = PARTIAL.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.PARTIAL, -1, bytes, modifiedMs);
+        }
+        if ((m = CONTAINER.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.CONTAINER, -1, bytes, modifiedMs);
+        }
+        if ((m = TEMP_CHUNK.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.TEMP, Integer.parseInt(m.group(2)), bytes, modifiedMs);
+        }
+        if ((m = TEMP.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.TEMP, -1, bytes, modifiedMs);
+        }
+        if ((m = CHUNK.matcher(name)).matches()) {
+            return new Entry(name, m.group(1), Kind.CHUNK, Integer.parseInt(m.group(2)), bytes, modifiedMs);
+        }
+        return null;
+    }
+}
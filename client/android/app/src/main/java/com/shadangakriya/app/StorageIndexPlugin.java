@@ -0,0 +1,201 @@
+package com.shadangakriya.app;
+
+import android.os.FileObserver;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Native view of the audio folder (see {@link StorageIndex}): per-lesson
+ * sizes and completeness and orphaned files, without a bridge round trip
+ * per file. The index is built off the main thread when the plugin loads
+ * and kept current by a {@link FileObserver}; {@code storageChanged} fires
+ * (at most every {@link #CHANGE_DEBOUNCE_MS}) when it changes.
+ */
+@CapacitorPlugin(name = "StorageIndex")
+public class StorageIndexPlugin extends Plugin {
+    private static final String TAG = "StorageIndex";
+    private static final String AUDIO_FOLDER = "sk_audio_files";
+    private static final String EVENT_CHANGED = "storageChanged";
+    private static final long CHANGE_DEBOUNCE_MS = 500;
+    private static final long DEFAULT_MIN_AGE_MS = 10 * 60 * 1000;
+    private static final int OBSERVED_EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE
+        | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO;
+
+    // Index updates and disk work, in order; never on the main thread
+    private final NativeScheduler.Lane executor =
+        NativeScheduler.get().serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+    private final AtomicBoolean changePending = new AtomicBoolean(false);
+
+    private StorageIndex index;
+    private FileObserver observer;
+
+    @Override
+    public void load() {
+        File dir = new File(getContext().getFilesDir(), AUDIO_FOLDER);
+        dir.mkdirs();
+        index = new StorageIndex(dir, StorageIndexPlugin::readManifest);
+        observer = new AudioFolderObserver(dir);
+        observer.startWatching();
+        executor.execute(index::rebuild);
+    }
+
+    /** Lessons, orphans and totals; waits for the initial build if it is still running. */
+    @PluginMethod
+    public void getIndex(PluginCall call) {
+        executor.execute(() -> call.resolve(snapshot()));
+    }
+
+    /** Rebuild from a fresh listing, e.g. if the folder was changed while the app was not running. */
+    @PluginMethod
+    public void refresh(PluginCall call) {
+        executor.execute(() -> {
+            index.rebuild();
+            call.resolve(snapshot());
+        });
+    }
+
+    /**
+     * Delete orphans in one pass. Orphans of lessons in {@code keep} and
+     * files younger than {@code minAgeMs} (default 10 minutes) are left
+     * alone; interrupted downloads only go with {@code removeResumable}.
+     */
+    @PluginMethod
+    public void compact(PluginCall call) {
+        List<String> keep = new ArrayList<>();
+        JSArray keepArray = call.getArray("keep");
+        try {
+            if (keepArray != null) {
+                for (int i = 0; i < keepArray.length(); i++) {
+                    keep.add(keepArray.getString(i));
+                }
+            }
+        } catch (JSONException e) {
+            call.reject("Invalid keep: " + e.getMessage());
+            return;
+        }
+        long minAgeMs = call.getLong("minAgeMs", DEFAULT_MIN_AGE_MS);
+        boolean removeResumable = call.getBoolean("removeResumable", false);
+
+        executor.execute(() -> {
+            StorageIndex.CompactResult compacted =
+                index.compact(keep, minAgeMs, removeResumable, System.currentTimeMillis());
+            if (compacted.removedFiles > 0) {
+                Log.d(TAG, "Removed " + compacted.removedFiles + " orphans, " + compacted.reclaimedBytes + " bytes");
+            }
+            JSObject result = snapshot();
+            result.put("removedFiles", compacted.removedFiles);
+            result.put("reclaimedBytes", compacted.reclaimedBytes);
+            call.resolve(result);
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (observer != null) {
+            observer.stopWatching();
+        }
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private JSObject snapshot() {
+        JSArray lessons = new JSArray();
+        for (StorageIndex.LessonUsage usage : index.lessons()) {
+            JSObject lesson = new JSObject();
+            lesson.put("lessonId", usage.lessonId);
+            lesson.put("bytes", usage.bytes);
+            lesson.put("orphanBytes", usage.orphanBytes);
+            lesson.put("version", usage.version);
+            lesson.put("totalChunks", usage.totalChunks);
+            lesson.put("chunksPresent", usage.chunksPresent);
+            lesson.put("complete", usage.isComplete());
+            lessons.put(lesson);
+        }
+
+        JSArray orphans = new JSArray();
+        long orphanBytes = 0;
+        for (StorageIndex.Orphan orphan : index.orphans()) {
+            JSObject item = new JSObject();
+            item.put("path", AUDIO_FOLDER + "/" + orphan.entry.name);
+            item.put("lessonId", orphan.entry.lessonId);
+            item.put("bytes", orphan.entry.bytes);
+            item.put("reason", orphan.reason);
+            item.put("resumable", orphan.resumable);
+            orphans.put(item);
+            orphanBytes += orphan.entry.bytes;
+        }
+
+        JSObject result = new JSObject();
+        result.put("totalBytes", index.totalBytes());
+        result.put("orphanBytes", orphanBytes);
+        result.put("lessons", lessons);
+        result.put("orphans", orphans);
+        return result;
+    }
+
+    /** Coalesces bursts of file events (a download closes a chunk every few seconds). */
+    private void scheduleChangeEvent() {
+        if (!changePending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.schedule(() -> {
+            changePending.set(false);
+            JSObject data = new JSObject();
+            data.put("totalBytes", index.totalBytes());
+            long orphanBytes = 0;
+            for (StorageIndex.Orphan orphan : index.orphans()) {
+                orphanBytes += orphan.entry.bytes;
+            }
+            data.put("orphanBytes", orphanBytes);
+            notifyListeners(EVENT_CHANGED, data);
+        }, CHANGE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static StorageIndex.Manifest readManifest(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            JSONObject manifest = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            return new StorageIndex.Manifest(manifest.getInt("version"), manifest.getInt("totalChunks"));
+        } catch (JSONException e) {
+            throw new IOException("Invalid manifest " + file.getName(), e);
+        }
+    }
+
+    private final class AudioFolderObserver extends FileObserver {
+        @SuppressWarnings("deprecation")
+        AudioFolderObserver(File dir) {
+            // The File constructor needs API 29; this one works everywhere
+            super(dir.getPath(), OBSERVED_EVENTS);
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            if (path == null) {
+                return;
+            }
+            executor.execute(() -> {
+                index.refresh(path);
+                scheduleChangeEvent();
+            });
+        }
+    }
+}
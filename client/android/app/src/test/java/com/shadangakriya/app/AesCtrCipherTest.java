@@ -0,0 +1,129 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Checks the native keystream against a reference built the way WebCrypto
+ * AES-CTR ({@code length: 64}) and the JS counter offset in audioEncryption.ts
+ * compute it.
+ */
+public class AesCtrCipherTest {
+
+    private static final String HEX_KEY =
+        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f";
+    private static final int CHUNK_SIZE = 4096;
+
+    @Test
+    public void matchesReferenceAcrossChunks() throws Exception {
+        byte[] nonce = AesCtrCipher.hexToBytes("f0e1d2c3b4a5968778695a4b3c2d1e0f");
+        assertKeystreamMatches(nonce, 3 * CHUNK_SIZE + 123);
+    }
+
+    @Test
+    public void matchesReferenceWhenLowCounterWraps() throws Exception {
+        // Low 64 bits wrap a few blocks into chunk 0, and the chunk offset of
+        // chunk 1 carries into the high half.
+        byte[] nonce = AesCtrCipher.hexToBytes("0000000000000001fffffffffffffffa");
+        assertKeystreamMatches(nonce, 2 * CHUNK_SIZE + 77);
+    }
+
+    @Test
+    public void startsMidChunkAtAnyOffset() throws Exception {
+        SecretKeySpec key = AesCtrCipher.keyFromHex(HEX_KEY);
+        byte[] nonce = AesCtrCipher.hexToBytes("0000000000000000fffffffffffffff0");
+        byte[] expected = referenceKeystream(key, nonce, 2, CHUNK_SIZE);
+
+        for (int offset : new int[] {0, 1, 15, 16, 17, 255, 300, CHUNK_SIZE - 1}) {
+            AesCtrCipher cipher = new AesCtrCipher(key, nonce, CHUNK_SIZE, 1, offset);
+            byte[] actual = new byte[CHUNK_SIZE - offset];
+            cipher.update(actual, 0, actual.length, actual, 0);
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals("offset " + offset + " byte " + i,
+                    expected[CHUNK_SIZE + offset + i], actual[i]);
+            }
+        }
+    }
+
+    @Test
+    public void assemblerRoundTripsChunkedCiphertext() throws Exception {
+        SecretKeySpec key = AesCtrCipher.keyFromHex(HEX_KEY);
+        byte[] nonce = AesCtrCipher.hexToBytes("00112233445566778899aabbccddeeff");
+        byte[] plain = new byte[2 * CHUNK_SIZE + 500];
+        new Random(7).nextBytes(plain);
+
+        int chunkCount = (plain.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        byte[][] encrypted = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int start = i * CHUNK_SIZE;
+            int len = Math.min(CHUNK_SIZE, plain.length - start);
+            encrypted[i] = new byte[len];
+            new AesCtrCipher(key, nonce, CHUNK_SIZE, i, 0).update(plain, start, len, encrypted[i], 0);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long total = new EncryptedChunkAssembler(key, nonce, CHUNK_SIZE)
+            .assemble(index -> new ByteArrayInputStream(encrypted[index]), chunkCount, out,
+                new AssemblyJob("test", plain.length, null));
+
+        assertEquals(plain.length, total);
+        assertArrayEquals(plain, out.toByteArray());
+    }
+
+    private static void assertKeystreamMatches(byte[] nonce, int length) throws Exception {
+        SecretKeySpec key = AesCtrCipher.keyFromHex(HEX_KEY);
+        int chunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        byte[] expected = referenceKeystream(key, nonce, chunks, CHUNK_SIZE);
+
+        for (int c = 0; c < chunks; c++) {
+            int len = Math.min(CHUNK_SIZE, length - c * CHUNK_SIZE);
+            byte[] actual = new byte[len];
+            new AesCtrCipher(key, nonce, CHUNK_SIZE, c, 0).update(actual, 0, len, actual, 0);
+            for (int i = 0; i < len; i++) {
+                assertEquals("chunk " + c + " byte " + i, expected[c * CHUNK_SIZE + i], actual[i]);
+            }
+        }
+    }
+
+    /** Keystream per chunk: full 128-bit chunk offset, then low-64-bit increments. */
+    private static byte[] referenceKeystream(SecretKeySpec key, byte[] nonce, int chunks, int chunkSize)
+            throws Exception {
+        Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding");
+        ecb.init(Cipher.ENCRYPT_MODE, key);
+        BigInteger two64 = BigInteger.ONE.shiftLeft(64);
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+
+        byte[] out = new byte[chunks * chunkSize];
+        for (int c = 0; c < chunks; c++) {
+            BigInteger chunkCounter = new BigInteger(1, nonce)
+                .add(BigInteger.valueOf((long) c * (chunkSize / 16)))
+                .mod(two128);
+            BigInteger high = chunkCounter.shiftRight(64).shiftLeft(64);
+            BigInteger low = chunkCounter.mod(two64);
+
+            for (int b = 0; b < chunkSize / 16; b++) {
+                BigInteger block = high.add(low.add(BigInteger.valueOf(b)).mod(two64));
+                byte[] ks = ecb.doFinal(toBlock(block));
+                System.arraycopy(ks, 0, out, c * chunkSize + b * 16, 16);
+            }
+        }
+        return out;
+    }
+
+    private static byte[] toBlock(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        byte[] block = new byte[16];
+        int copy = Math.min(raw.length, 16);
+        System.arraycopy(raw, raw.length - copy, block, 16 - copy, copy);
+        return block;
+    }
+}
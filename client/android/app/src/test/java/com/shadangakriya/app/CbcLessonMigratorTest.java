@@ -0,0 +1,119 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class CbcLessonMigratorTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    // v2 chunks need not line up with the new ones
+    private static final int V2_CHUNK_SIZE = 3000;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+
+    private final byte[] plain = new byte[3 * CHUNK_SIZE + 777];
+    private byte[][] v2Chunks;
+    private byte[][] ivs;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(7).nextBytes(plain);
+        int count = (plain.length + V2_CHUNK_SIZE - 1) / V2_CHUNK_SIZE;
+        v2Chunks = new byte[count][];
+        ivs = new byte[count][];
+        Random random = new Random(9);
+        for (int i = 0; i < count; i++) {
+            int start = i * V2_CHUNK_SIZE;
+            int end = Math.min(start + V2_CHUNK_SIZE, plain.length);
+            ivs[i] = new byte[16];
+            random.nextBytes(ivs[i]);
+            Cipher cbc = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cbc.init(Cipher.ENCRYPT_MODE, KEY, new IvParameterSpec(ivs[i]));
+            v2Chunks[i] = cbc.doFinal(plain, start, end - start);
+        }
+        dir = Files.createTempDirectory("cbc-migration").toFile();
+    }
+
+    @Test
+    public void reencryptsIntoCtrChunksThatAssembleToTheOriginal() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        LessonDownloader.Result result = migrate(container, ivs, v2Chunks);
+
+        assertEquals(plain.length, result.totalBytes);
+        assertEquals(4, result.chunkCount());
+        assertArrayEquals(plain, assemble(container, result));
+        assertEquals("manifest", LessonContainer.readManifest(container));
+
+        for (int i = 0; i < result.chunkCount(); i++) {
+            MessageDigest digest = ChunkDigests.newDigest();
+            digest.update(plain, i * CHUNK_SIZE, (int) result.chunkLength(i));
+            assertArrayEquals(digest.digest(), result.digests[i]);
+        }
+    }
+
+    @Test
+    public void readsIvsStoredInFrontOfTheirChunk() throws Exception {
+        byte[][] prefixed = new byte[v2Chunks.length][];
+        for (int i = 0; i < v2Chunks.length; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(ivs[i]);
+            out.write(v2Chunks[i]);
+            prefixed[i] = out.toByteArray();
+        }
+
+        File container = new File(dir, "lesson.skl");
+        LessonDownloader.Result result = migrate(container, new byte[v2Chunks.length][], prefixed);
+        assertArrayEquals(plain, assemble(container, result));
+    }
+
+    @Test
+    public void wrongKeyLeavesNoContainerBehind() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        SecretKeySpec wrongKey = AesCtrCipher.keyFromHex(
+            "ff0102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+        try {
+            new CbcLessonMigrator(wrongKey, CHUNK_SIZE).migrate(
+                i -> new ByteArrayInputStream(v2Chunks[i]), ivs, container, r -> "manifest",
+                new AssemblyJob("test", plain.length, null));
+            fail("Expected the padding check to fail");
+        } catch (GeneralSecurityException e) {
+            assertTrue(e.getMessage().contains("chunk 0"));
+        }
+        assertFalse(container.exists());
+        assertFalse(new File(container.getPath() + ".part").exists());
+    }
+
+    private LessonDownloader.Result migrate(File container, byte[][] chunkIvs, byte[][] chunks) throws Exception {
+        return new CbcLessonMigrator(KEY, CHUNK_SIZE).migrate(
+            i -> new ByteArrayInputStream(chunks[i]), chunkIvs, container, r -> "manifest",
+            new AssemblyJob("test", plain.length, null));
+    }
+
+    private byte[] assemble(File container, LessonDownloader.Result result) throws Exception {
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, result.nonce, CHUNK_SIZE);
+        File output = new File(dir, "out.mp3");
+        try (FileInputStream in = new FileInputStream(container);
+             FileOutputStream out = new FileOutputStream(output)) {
+            assembler.assembleContainer(in.getChannel(), LessonContainer.HEADER_SIZE,
+                LessonContainer.dataLength(container), out.getChannel(), new AssemblyJob("read", 0, null));
+        }
+        return Files.readAllBytes(output.toPath());
+    }
+}
@@ -0,0 +1,199 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class ChunkStoreTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "1f1e1d1c1b1a191817161514131211100f0e0d0c0b0a09080706050403020100");
+
+    private File dir;
+    private ChunkStore store;
+    private final byte[] intro = chunk(1, CHUNK_SIZE);
+    private final byte[] body = chunk(2, CHUNK_SIZE);
+    private final byte[] outro = chunk(3, 700);
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("chunk-store").toFile();
+        store = new ChunkStore(dir, KEY);
+    }
+
+    @Test
+    public void sharedChunksAreStoredOnce() throws Exception {
+        assertTrue(put(intro));
+        assertTrue(put(body));
+        assertFalse(put(intro));
+        assertTrue(put(outro));
+        store.retain("a", digests(intro, body));
+        store.retain("b", digests(intro, outro));
+
+        assertEquals(3, store.chunkCount());
+        assertEquals(2, store.references(digest(intro)));
+        long[] usage = store.usage();
+        assertEquals(2L * CHUNK_SIZE + outro.length, usage[0]);
+        assertEquals(3L * CHUNK_SIZE + outro.length, usage[1]);
+    }
+
+    @Test
+    public void releaseKeepsChunksOthersStillUse() throws Exception {
+        put(intro);
+        put(body);
+        put(outro);
+        store.retain("a", digests(intro, body));
+        store.retain("b", digests(intro, outro));
+
+        assertEquals(1, store.release("a"));
+        assertTrue(store.contains(digest(intro)));
+        assertFalse(store.contains(digest(body)));
+        assertEquals(0, store.release("a"));
+
+        // A new version of b drops the outro
+        assertEquals(1, store.retain("b", digests(intro)));
+        assertFalse(store.contains(digest(outro)));
+    }
+
+    @Test
+    public void dataNotMatchingItsDigestIsRejected() throws Exception {
+        try {
+            store.put(digest(intro), new ByteArrayInputStream(body), 1024);
+            fail("Expected a digest mismatch");
+        } catch (IOException expected) {
+            assertFalse(store.contains(digest(intro)));
+        }
+        try {
+            store.retain("a", digests(intro));
+            fail("Expected a missing chunk");
+        } catch (IOException expected) {
+            assertEquals(0, store.references(digest(intro)));
+        }
+    }
+
+    @Test
+    public void referencesSurviveReopening() throws Exception {
+        put(intro);
+        put(body);
+        store.retain("a", digests(intro, body));
+        store.retain("b", digests(intro));
+
+        ChunkStore reopened = new ChunkStore(dir, KEY);
+        assertEquals(2, reopened.references(digest(intro)));
+        assertEquals(0, reopened.sweep());
+        assertEquals(1, reopened.release("a"));
+        assertTrue(reopened.contains(digest(intro)));
+    }
+
+    @Test
+    public void sweepRemovesUnreferencedChunksAndTempFiles() throws Exception {
+        put(intro);
+        put(body);
+        store.retain("a", digests(intro));
+        Files.write(new File(dir, "abc.tmp").toPath(), new byte[10]);
+
+        assertEquals(2, store.sweep());
+        assertTrue(store.contains(digest(intro)));
+        assertFalse(store.contains(digest(body)));
+    }
+
+    @Test
+    public void evictingASharedChunkNamesEveryLessonThatLostIt() throws Exception {
+        put(intro);
+        put(body);
+        put(outro);
+        store.retain("a", digests(intro, body));
+        store.retain("b", digests(intro, outro));
+
+        assertEquals(new TreeSet<>(Arrays.asList("a", "b")), store.evict(digest(intro)));
+        assertFalse(store.contains(digest(intro)));
+
+        // Downloading a again writes the chunk back for both
+        assertTrue(put(intro));
+        store.retain("a", digests(intro, body));
+        assertEquals(2, store.references(digest(intro)));
+    }
+
+    @Test
+    public void storedChunksDecryptLikeALesson() throws Exception {
+        put(intro);
+        put(body);
+        put(outro);
+        byte[][] digests = digests(intro, body, intro, outro);
+        byte[] plain = concat(intro, body, intro, outro);
+
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(store.ciphers(digests), CHUNK_SIZE);
+        assembler.setExpectedDigests(digests);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(plain.length, assembler.assemble(index -> store.open(digests[index], 0), digests.length, out,
+            new AssemblyJob("test", plain.length, null)));
+        assertArrayEquals(plain, out.toByteArray());
+
+        // A range across a chunk boundary, as LessonStreamServer serves it
+        long start = CHUNK_SIZE - 100;
+        long end = 2L * CHUNK_SIZE + 50;
+        try (InputStream in = new DecryptingRangeStream(
+                (chunkIndex, offsetInChunk) -> store.open(digests[chunkIndex], offsetInChunk),
+                store.ciphers(digests), CHUNK_SIZE, start, end)) {
+            byte[] range = readAll(in);
+            byte[] expected = new byte[(int) (end - start)];
+            System.arraycopy(plain, (int) start, expected, 0, expected.length);
+            assertArrayEquals(expected, range);
+        }
+    }
+
+    private boolean put(byte[] plainText) throws Exception {
+        return store.put(digest(plainText), new ByteArrayInputStream(plainText), 1024);
+    }
+
+    private static byte[] chunk(int seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] digest(byte[] data) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+
+    private static byte[][] digests(byte[]... chunks) throws Exception {
+        byte[][] digests = new byte[chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            digests[i] = digest(chunks[i]);
+        }
+        return digests;
+    }
+
+    private static byte[] concat(byte[]... chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
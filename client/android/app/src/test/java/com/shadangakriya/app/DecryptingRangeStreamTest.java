@@ -0,0 +1,77 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class DecryptingRangeStreamTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "8f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0");
+    private static final byte[] NONCE = AesCtrCipher.hexToBytes("0123456789abcdef0123456789abcdef");
+
+    @Test
+    public void decryptsArbitraryRanges() throws Exception {
+        byte[] plain = new byte[5 * CHUNK_SIZE + 333];
+        Random random = new Random(42);
+        random.nextBytes(plain);
+        byte[][] chunks = encrypt(plain);
+
+        DecryptingRangeStream.CiphertextSource source = (index, offset) -> {
+            InputStream in = new ByteArrayInputStream(chunks[index]);
+            in.skip(offset);
+            return in;
+        };
+
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(plain.length);
+            int end = start + 1 + random.nextInt(plain.length - start);
+            byte[] actual = readAll(new DecryptingRangeStream(source, KEY, NONCE, CHUNK_SIZE, start, end));
+
+            byte[] expected = new byte[end - start];
+            System.arraycopy(plain, start, expected, 0, expected.length);
+            assertArrayEquals("range " + start + "-" + end, expected, actual);
+        }
+    }
+
+    @Test
+    public void parsesRangeHeaders() {
+        assertArrayEquals(new long[] {0, 99}, LessonStreamServer.parseRange("0-", 100));
+        assertArrayEquals(new long[] {10, 19}, LessonStreamServer.parseRange("10-19", 100));
+        assertArrayEquals(new long[] {90, 99}, LessonStreamServer.parseRange("-10", 100));
+        assertArrayEquals(new long[] {50, 99}, LessonStreamServer.parseRange("50-500", 100));
+        assertNull(LessonStreamServer.parseRange("100-", 100));
+        assertNull(LessonStreamServer.parseRange("abc", 100));
+    }
+
+    private static byte[][] encrypt(byte[] plain) throws Exception {
+        int count = (plain.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        byte[][] chunks = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int start = i * CHUNK_SIZE;
+            int len = Math.min(CHUNK_SIZE, plain.length - start);
+            chunks[i] = new byte[len];
+            new AesCtrCipher(KEY, NONCE, CHUNK_SIZE, i, 0).update(plain, start, len, chunks[i], 0);
+        }
+        return chunks;
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[700];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class DeviceProfileTest {
+
+    private static final long MB_PER_SECOND = 1024 * 1024;
+
+    @Test
+    public void lowRamDevicesGetSmallBuffersChunksAndPools() {
+        DeviceProfile profile = DeviceProfile.choose(true, 256, 8, 500 * MB_PER_SECOND);
+        assertEquals(DeviceProfile.Tier.LOW, profile.tier);
+        assertEquals(32 * 1024, profile.bufferSize);
+        assertEquals(2 * 1024 * 1024, profile.chunkSize);
+        assertEquals(2, profile.ioThreads);
+        assertEquals(2, profile.cpuThreads);
+
+        assertEquals(DeviceProfile.Tier.LOW, DeviceProfile.choose(false, 128, 8, 0).tier);
+        assertEquals(DeviceProfile.Tier.LOW, DeviceProfile.choose(false, 512, 2, 0).tier);
+    }
+
+    @Test
+    public void flagshipsNeedFastStorageToLeaveTheDefaults() {
+        DeviceProfile unprobed = DeviceProfile.choose(false, 512, 8, 0);
+        assertEquals(DeviceProfile.Tier.MID, unprobed.tier);
+        assertEquals(DeviceProfile.DEFAULT.bufferSize, unprobed.bufferSize);
+        assertEquals(DeviceProfile.DEFAULT.chunkSize, unprobed.chunkSize);
+
+        DeviceProfile fast = DeviceProfile.choose(false, 512, 8, 300 * MB_PER_SECOND);
+        assertEquals(DeviceProfile.Tier.HIGH, fast.tier);
+        assertTrue(fast.bufferSize > unprobed.bufferSize);
+        assertTrue(fast.ioThreads > unprobed.ioThreads);
+        assertEquals(8, fast.cpuThreads);
+        assertEquals(0, fast.chunkSize % AesCtrCipher.BLOCK_SIZE);
+    }
+
+    @Test
+    public void slowStorageRunsFewerDiskJobsAtOnce() {
+        assertEquals(2, DeviceProfile.choose(false, 192, 4, 10 * MB_PER_SECOND).ioThreads);
+        assertEquals(4, DeviceProfile.choose(false, 192, 4, 50 * MB_PER_SECOND).ioThreads);
+    }
+
+    @Test
+    public void pressureShrinksBuffersAndPausesBackgroundButKeepsTheChunkSize() {
+        DeviceProfile base = DeviceProfile.choose(false, 512, 8, 300 * MB_PER_SECOND);
+        assertSame(base, base.underPressure(DeviceProfile.Pressure.NONE));
+
+        DeviceProfile moderate = base.underPressure(DeviceProfile.Pressure.MODERATE);
+        assertEquals(base.bufferSize / 2, moderate.bufferSize);
+        assertEquals(4, moderate.cpuThreads);
+        assertTrue(moderate.backgroundPaused);
+        assertEquals(base.chunkSize, moderate.chunkSize);
+
+        DeviceProfile critical = DeviceProfile.choose(true, 64, 4, 0).underPressure(DeviceProfile.Pressure.CRITICAL);
+        assertEquals(DeviceProfile.MIN_BUFFER_SIZE, critical.bufferSize);
+        assertEquals(1, critical.cpuThreads);
+        assertEquals(2, critical.ioThreads);
+        assertEquals(DeviceProfile.Pressure.CRITICAL, critical.pressure);
+    }
+
+    @Test
+    public void storageProbeMeasuresAndCleansUp() throws Exception {
+        File dir = Files.createTempDirectory("io-probe").toFile();
+        assertTrue(DeviceProfile.probeStorage(dir, 1024 * 1024) > 0);
+        assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,250 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class EncryptedChunkAssemblerTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+    private static final byte[] NONCE = AesCtrCipher.hexToBytes("0f0e0d0c0b0a09080706050403020100");
+
+    private final byte[] plain = new byte[9 * CHUNK_SIZE + 321];
+    private byte[][] encrypted;
+    private ExecutorService pool;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(11).nextBytes(plain);
+        int chunkCount = (plain.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        encrypted = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int start = i * CHUNK_SIZE;
+            int len = Math.min(CHUNK_SIZE, plain.length - start);
+            encrypted[i] = new byte[len];
+            new AesCtrCipher(KEY, NONCE, CHUNK_SIZE, i, 0).update(plain, start, len, encrypted[i], 0);
+        }
+        pool = Executors.newFixedThreadPool(4);
+        dir = Files.createTempDirectory("assembler").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void parallelStreamsTrimOversizedPreallocation() throws Exception {
+        File output = new File(dir, "out.mp3");
+        long total;
+        try (RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            total = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleParallel(
+                index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                plain.length + 5000, out, pool, new AssemblyJob("test", plain.length, null));
+        }
+        assertEquals(plain.length, total);
+        assertArrayEquals(plain, Files.readAllBytes(output.toPath()));
+    }
+
+    @Test
+    public void parallelContainerMatchesSequential() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            for (byte[] chunk : encrypted) {
+                writer.append(chunk, 0, chunk.length);
+            }
+            writer.finish("{}");
+        }
+
+        File output = new File(dir, "out.mp3");
+        AssemblyJob job = new AssemblyJob("test", plain.length, null);
+        try (FileInputStream in = new FileInputStream(container);
+             RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            assertEquals(plain.length, new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleContainerParallel(
+                in.getChannel(), LessonContainer.HEADER_SIZE, plain.length, out, pool, job));
+        }
+        assertEquals(plain.length, job.getBytesDone());
+        assertArrayEquals(plain, Files.readAllBytes(output.toPath()));
+    }
+
+    @Test
+    public void parallelFailureNamesTheChunk() throws Exception {
+        encrypted[4] = Arrays.copyOf(encrypted[4], 100);
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleParallel(
+                index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                plain.length, out, pool, new AssemblyJob("test", plain.length, null));
+            fail("Truncated chunk should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Chunk 4"));
+        }
+    }
+
+    @Test
+    public void matchingDigestsPass() throws Exception {
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE);
+        assembler.setExpectedDigests(plainDigests());
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            assertEquals(plain.length, assembler.assembleParallel(
+                index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                plain.length, out, pool, new AssemblyJob("test", plain.length, null)));
+        }
+    }
+
+    @Test
+    public void corruptChunkIsNamed() throws Exception {
+        encrypted[6][100] ^= 1;
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE);
+        assembler.setExpectedDigests(plainDigests());
+
+        File container = new File(dir, "lesson.skl");
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            for (byte[] chunk : encrypted) {
+                writer.append(chunk, 0, chunk.length);
+            }
+            writer.finish("{}");
+        }
+
+        try (FileInputStream in = new FileInputStream(container);
+             RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            assembler.assembleContainerParallel(in.getChannel(), LessonContainer.HEADER_SIZE, plain.length, out,
+                pool, new AssemblyJob("test", plain.length, null));
+            fail("Corrupt chunk should fail verification");
+        } catch (ChunkIntegrityException e) {
+            assertEquals(6, e.chunkIndex);
+        }
+    }
+
+    @Test
+    public void playableHeadIsOnDiskWhenReported() throws Exception {
+        File output = new File(dir, "out.mp3");
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE);
+        List<Long> reports = new ArrayList<>();
+        assembler.setPlayableListener(2 * CHUNK_SIZE, bytes -> {
+            reports.add(bytes);
+            try {
+                byte[] head = Arrays.copyOf(Files.readAllBytes(output.toPath()), (int) bytes);
+                assertArrayEquals(Arrays.copyOf(plain, (int) bytes), head);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 64 * 1024)) {
+            assembler.assemble(index -> new ByteArrayInputStream(encrypted[index]), encrypted.length, out,
+                new AssemblyJob("test", plain.length, null));
+        }
+        assertEquals(Collections.singletonList(2L * CHUNK_SIZE), reports);
+    }
+
+    @Test
+    public void parallelNeverReportsAPlayableHead() throws Exception {
+        List<Long> reports = Collections.synchronizedList(new ArrayList<>());
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE);
+        assembler.setPlayableListener(CHUNK_SIZE, reports::add);
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            assembler.assembleParallel(index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                plain.length, out, pool, new AssemblyJob("test", plain.length, null));
+        }
+        // The preallocated file is full length with holes until the end
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void shortOutputIsPlayableWhenComplete() throws Exception {
+        List<Long> reports = new ArrayList<>();
+        EncryptedChunkAssembler assembler = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE);
+        assembler.setPlayableListener(Long.MAX_VALUE, reports::add);
+        assembler.assemble(index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+            new ByteArrayOutputStream(), new AssemblyJob("test", plain.length, null));
+        assertEquals(Collections.singletonList((long) plain.length), reports);
+    }
+
+    @Test
+    public void parallelHonoursCancellation() throws Exception {
+        AssemblyJob job = new AssemblyJob("test", plain.length, null);
+        job.cancel();
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleParallel(
+                index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                plain.length, out, pool, job);
+            fail("Cancelled job should stop");
+        } catch (CancellationException expected) {
+            // Reported as a cancellation, not an I/O error
+        }
+    }
+
+    @Test
+    public void interruptedRunWaitsForChunksInFlight() throws Exception {
+        AtomicInteger reading = new AtomicInteger();
+        EncryptedChunkAssembler.ChunkSource slow = index -> new FilterInputStream(new ByteArrayInputStream(encrypted[index])) {
+            private boolean started;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!started) {
+                    started = true;
+                    reading.incrementAndGet();
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    } finally {
+                        reading.decrementAndGet();
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        Thread.currentThread().interrupt();
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, "out.mp3"), "rw")) {
+            new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleParallel(
+                slow, encrypted.length, plain.length, out, pool, new AssemblyJob("test", plain.length, null));
+            fail("Interrupted run should fail");
+        } catch (InterruptedIOException expected) {
+            assertEquals(0, reading.get());
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    private byte[][] plainDigests() throws Exception {
+        byte[][] digests = new byte[encrypted.length][];
+        for (int i = 0; i < encrypted.length; i++) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(plain, i * CHUNK_SIZE, Math.min(CHUNK_SIZE, plain.length - i * CHUNK_SIZE));
+            digests[i] = digest.digest();
+        }
+        return digests;
+    }
+}
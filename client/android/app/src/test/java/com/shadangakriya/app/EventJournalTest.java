@@ -0,0 +1,144 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+public class EventJournalTest {
+
+    private static final EventJournal.Target PROGRESS = new EventJournal.Target("POST", "/progress/batch", "events");
+    private static final EventJournal.Target ATTENDANCE =
+        new EventJournal.Target("PUT", "/attendance/session/s1/bulk", "attendances");
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(Files.createTempDirectory("journal").toFile(), "journal/events.log");
+    }
+
+    @Test
+    public void keepsOnlyTheLatestEventPerKey() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", "{\"t\":1}", 1);
+            journal.append(PROGRESS, "b", "{\"t\":2}", 2);
+            journal.append(PROGRESS, "a", "{\"t\":3}", 3);
+            journal.append(ATTENDANCE, "a", "{\"s\":1}", 4);
+
+            List<EventJournal.Event> pending = journal.pending();
+            assertEquals(3, pending.size());
+            assertEquals("{\"t\":2}", pending.get(0).json);
+            assertEquals("{\"t\":3}", pending.get(1).json);
+            assertEquals(ATTENDANCE, pending.get(2).target);
+        }
+    }
+
+    @Test
+    public void syncWritesOnlyLiveEventsAndSurvivesReopen() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(PROGRESS, "a", "{\"t\":" + i + "}", i);
+            }
+            assertEquals(10, journal.unsyncedCount());
+            journal.sync();
+            assertEquals(0, journal.unsyncedCount());
+        }
+
+        try (EventJournal reopened = new EventJournal(file)) {
+            List<EventJournal.Event> pending = reopened.pending();
+            assertEquals(1, pending.size());
+            assertEquals("{\"t\":9}", pending.get(0).json);
+            // Sequence numbers carry on
+            assertTrue(reopened.append(PROGRESS, "b", "{}", 0) > pending.get(0).sequence);
+        }
+    }
+
+    @Test
+    public void compactsOnceMostRecordsAreReplaced() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", "{\"t\":100}", 0);
+            journal.sync();
+            long oneRecord = file.length();
+            for (int i = 101; i < 300; i++) {
+                journal.append(PROGRESS, "a", "{\"t\":" + i + "}", i);
+                journal.sync();
+            }
+            // 200 records written one sync at a time; replaced ones were dropped along the way
+            assertTrue(file.length() <= 65 * oneRecord);
+            assertEquals(1, journal.pendingCount());
+        }
+        try (EventJournal reopened = new EventJournal(file)) {
+            assertEquals("{\"t\":299}", reopened.pending().get(0).json);
+        }
+    }
+
+    @Test
+    public void dropsATornLastRecord() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", "{\"t\":1}", 1);
+            journal.append(PROGRESS, "b", "{\"t\":2}", 2);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (EventJournal reopened = new EventJournal(file)) {
+            assertEquals(1, reopened.pendingCount());
+            assertEquals("a", reopened.pending().get(0).key);
+            reopened.append(PROGRESS, "c", "{\"t\":3}", 3);
+        }
+        try (EventJournal again = new EventJournal(file)) {
+            assertEquals(2, again.pendingCount());
+        }
+    }
+
+    @Test
+    public void acknowledgedEventsStayGoneAfterReopen() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", "{\"t\":1}", 1);
+            journal.append(PROGRESS, "b", "{\"t\":2}", 2);
+            journal.sync();
+            journal.acknowledge(Collections.singletonList(journal.pending().get(0)));
+            assertEquals(1, journal.pendingCount());
+        }
+
+        try (EventJournal reopened = new EventJournal(file)) {
+            assertEquals(1, reopened.pendingCount());
+            assertEquals("b", reopened.pending().get(0).key);
+        }
+    }
+
+    @Test
+    public void acknowledgeKeepsAnEventRecordedAfterTheSend() throws Exception {
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", "{\"t\":1}", 1);
+            List<EventJournal.Event> sent = journal.pending();
+            journal.append(PROGRESS, "a", "{\"t\":2}", 2);
+            journal.acknowledge(sent);
+
+            assertEquals(1, journal.pendingCount());
+            assertEquals("{\"t\":2}", journal.pending().get(0).json);
+        }
+        try (EventJournal reopened = new EventJournal(file)) {
+            assertEquals("{\"t\":2}", reopened.pending().get(0).json);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOversizedEvents() throws Exception {
+        StringBuilder json = new StringBuilder();
+        while (json.length() < 70 * 1024) {
+            json.append("xxxxxxxxxx");
+        }
+        try (EventJournal journal = new EventJournal(file)) {
+            journal.append(PROGRESS, "a", json.toString(), 0);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Flushes against a local stub server standing in for the API. */
+public class JournalSyncTest {
+
+    private static final EventJournal.Target PROGRESS = new EventJournal.Target("POST", "/progress/batch", "events");
+    private static final EventJournal.Target ATTENDANCE =
+        new EventJournal.Target("PUT", "/attendance/session/s1/bulk", "attendances");
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+    // Answered with 403 instead of status
+    private volatile String forbiddenPath;
+    private EventJournal journal;
+    private JournalSync sync;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api", exchange -> {
+            String body = read(exchange.getRequestBody());
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+                + exchange.getRequestHeaders().getFirst("Authorization") + " " + body);
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            boolean forbidden = exchange.getRequestURI().getPath().equals(forbiddenPath);
+            exchange.sendResponseHeaders(forbidden ? 403 : status.get(), response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+
+        journal = new EventJournal(new File(Files.createTempDirectory("journal-sync").toFile(), "events.log"));
+        sync = new JournalSync("http://127.0.0.1:" + server.getAddress().getPort() + "/api/",
+            Collections.singletonMap("Authorization", "Bearer t"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        journal.close();
+    }
+
+    @Test
+    public void sendsOneBatchPerTargetAndAcknowledges() throws Exception {
+        journal.append(PROGRESS, "l1", "{\"lessonId\":\"l1\",\"lastPositionSeconds\":10}", 1);
+        journal.append(PROGRESS, "l2", "{\"lessonId\":\"l2\"}", 2);
+        journal.append(PROGRESS, "l1", "{\"lessonId\":\"l1\",\"lastPositionSeconds\":20}", 3);
+        journal.append(ATTENDANCE, "u1", "{\"userId\":\"u1\",\"status\":\"present\"}", 4);
+
+        JournalSync.Result result = sync.flush(journal);
+
+        assertNull(result.error);
+        assertEquals(3, result.sent);
+        assertEquals(0, result.pending);
+        assertEquals(2, requests.size());
+        assertEquals("POST /api/progress/batch Bearer t {\"events\":[{\"lessonId\":\"l2\"},"
+            + "{\"lessonId\":\"l1\",\"lastPositionSeconds\":20}]}", requests.get(0));
+        assertEquals("PUT /api/attendance/session/s1/bulk Bearer t "
+            + "{\"attendances\":[{\"userId\":\"u1\",\"status\":\"present\"}]}", requests.get(1));
+
+        assertEquals(0, sync.flush(journal).sent);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void splitsLargeBatches() throws Exception {
+        for (int i = 0; i < JournalSync.MAX_BATCH + 5; i++) {
+            journal.append(PROGRESS, "l" + i, "{}", i);
+        }
+        assertEquals(JournalSync.MAX_BATCH + 5, sync.flush(journal).sent);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void keepsEventsWhenTheServerFails() throws Exception {
+        journal.append(PROGRESS, "l1", "{}", 1);
+        status.set(503);
+
+        JournalSync.Result result = sync.flush(journal);
+        assertNotNull(result.error);
+        assertEquals(0, result.sent);
+        assertEquals(1, result.pending);
+
+        status.set(200);
+        assertEquals(1, sync.flush(journal).sent);
+        assertEquals(0, journal.pendingCount());
+    }
+
+    @Test
+    public void keepsEventsWhenOffline() throws Exception {
+        journal.append(PROGRESS, "l1", "{}", 1);
+        server.stop(0);
+
+        JournalSync.Result result = sync.flush(journal);
+        assertNotNull(result.error);
+        assertEquals(1, journal.pendingCount());
+    }
+
+    @Test
+    public void dropsBatchesTheServerRefuses() throws Exception {
+        journal.append(PROGRESS, "l1", "{}", 1);
+        status.set(400);
+
+        JournalSync.Result result = sync.flush(journal);
+        assertNull(result.error);
+        assertEquals(1, result.rejected);
+        assertEquals(0, journal.pendingCount());
+    }
+
+    @Test
+    public void holdsForbiddenBatchesAndSendsTheRest() throws Exception {
+        journal.append(ATTENDANCE, "u1", "{\"userId\":\"u1\",\"status\":\"present\"}", 1);
+        journal.append(PROGRESS, "l1", "{}", 2);
+        forbiddenPath = "/api" + ATTENDANCE.path;
+
+        JournalSync.Result result = sync.flush(journal);
+        assertNotNull(result.error);
+        assertEquals(1, result.sent);
+        assertEquals(0, result.rejected);
+        assertEquals(1, result.pending);
+        assertEquals(403, result.replies.get(ATTENDANCE).status);
+        assertEquals(200, result.replies.get(PROGRESS).status);
+        assertEquals("{}", result.replies.get(PROGRESS).body);
+
+        forbiddenPath = null;
+        assertEquals(1, sync.flush(journal).sent);
+        assertEquals(0, journal.pendingCount());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class LessonContainerTest {
+
+    private static final int CHUNK_SIZE = 2048;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff");
+    private static final byte[] NONCE = AesCtrCipher.hexToBytes("fedcba9876543210fedcba9876543210");
+
+    @Test
+    public void writesHeaderAndDecryptsThroughDirectBuffers() throws Exception {
+        File dir = Files.createTempDirectory("container").toFile();
+        File container = new File(dir, "lesson.skl");
+        File output = new File(dir, "lesson.mp3");
+
+        byte[] plain = new byte[3 * CHUNK_SIZE + 999];
+        new Random(3).nextBytes(plain);
+
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            for (int i = 0; i * CHUNK_SIZE < plain.length; i++) {
+                int start = i * CHUNK_SIZE;
+                int len = Math.min(CHUNK_SIZE, plain.length - start);
+                byte[] chunk = new byte[len];
+                new AesCtrCipher(KEY, NONCE, CHUNK_SIZE, i, 0).update(plain, start, len, chunk, 0);
+                writer.append(chunk, 0, len);
+            }
+            writer.finish("{\"version\":4}");
+        }
+
+        assertEquals("{\"version\":4}", LessonContainer.readManifest(container));
+        assertEquals(plain.length, LessonContainer.dataLength(container));
+        assertFalse(new File(container.getPath() + ".part").exists());
+
+        long written;
+        try (FileInputStream in = new FileInputStream(container);
+             FileOutputStream out = new FileOutputStream(output)) {
+            written = new EncryptedChunkAssembler(KEY, NONCE, CHUNK_SIZE).assembleContainer(
+                in.getChannel(), LessonContainer.HEADER_SIZE, plain.length, out.getChannel(),
+                new AssemblyJob("test", plain.length, null));
+        }
+        assertEquals(plain.length, written);
+        assertArrayEquals(plain, Files.readAllBytes(output.toPath()));
+
+        // Random access into the middle of chunk 2
+        try (InputStream in = new DecryptingRangeStream(
+                (index, offset) -> LessonContainer.openChunk(container, CHUNK_SIZE, index, offset),
+                KEY, NONCE, CHUNK_SIZE, 2 * CHUNK_SIZE + 5, 2 * CHUNK_SIZE + 105)) {
+            byte[] range = new byte[100];
+            int read = 0;
+            while (read < range.length) {
+                read += in.read(range, read, range.length - read);
+            }
+            for (int i = 0; i < range.length; i++) {
+                assertEquals(plain[2 * CHUNK_SIZE + 5 + i], range[i]);
+            }
+        }
+    }
+
+    @Test
+    public void abandonedWriterLeavesNothingBehind() throws Exception {
+        File dir = Files.createTempDirectory("container").toFile();
+        File container = new File(dir, "lesson.skl");
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            writer.append(new byte[100], 0, 100);
+        }
+        assertFalse(container.exists());
+        assertFalse(new File(container.getPath() + ".part").exists());
+    }
+}
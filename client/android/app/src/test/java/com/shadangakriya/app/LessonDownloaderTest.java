@@ -0,0 +1,204 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class LessonDownloaderTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff");
+
+    private final byte[] audio = new byte[5 * CHUNK_SIZE + 123];
+    private final List<String> rangeHeaders = Collections.synchronizedList(new ArrayList<>());
+    private volatile String etag = "\"v1\"";
+    private volatile int dropAfter = -1;
+
+    private HttpServer server;
+    private URL url;
+    private File dir;
+
+    /** Minimal origin: ETag, If-Range and open-ended Range, optional mid-body disconnect. */
+    @Before
+    public void startServer() throws IOException {
+        new Random(5).nextBytes(audio);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/audio.mp3", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            rangeHeaders.add(range);
+
+            int start = 0;
+            int last = audio.length - 1;
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                int dash = range.indexOf('-');
+                start = Integer.parseInt(range.substring("bytes=".length(), dash));
+                if (dash < range.length() - 1) {
+                    last = Integer.parseInt(range.substring(dash + 1));
+                }
+            }
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (start > 0 || last < audio.length - 1) {
+                exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + last + "/" + audio.length);
+                exchange.sendResponseHeaders(206, last + 1 - start);
+            } else {
+                exchange.sendResponseHeaders(200, audio.length);
+            }
+
+            int end = dropAfter >= 0 ? Math.min(last + 1, start + dropAfter) : last + 1;
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(audio, start, end - start);
+            } catch (IOException ignored) {
+                // Client gave up on a truncated body
+            }
+            exchange.close();
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/audio.mp3");
+        dir = Files.createTempDirectory("download").toFile();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsAndEncryptsIntoContainer() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        LessonDownloader.Result result = download(container);
+
+        assertEquals(audio.length, result.totalBytes);
+        assertEquals(6, result.chunkCount());
+        assertEquals(123, result.chunkLength(5));
+        assertEquals("manifest", LessonContainer.readManifest(container));
+        assertArrayEquals(audio, decrypt(container, result.nonce));
+        assertFalse(new File(container.getPath() + ".resume").exists());
+        for (int i = 0; i < result.chunkCount(); i++) {
+            assertArrayEquals(sha256(i), result.digests[i]);
+        }
+    }
+
+    @Test
+    public void resumesFromLastCommittedChunk() throws Exception {
+        File container = new File(dir, "lesson.skl");
+
+        dropAfter = 2 * CHUNK_SIZE + 1000;
+        try {
+            download(container);
+            fail("Truncated body should fail");
+        } catch (IOException expected) {
+            // Two full chunks are committed
+        }
+        assertTrue(new File(container.getPath() + ".resume").exists());
+        assertFalse(container.exists());
+
+        dropAfter = -1;
+        LessonDownloader.Result result = download(container);
+
+        assertEquals("bytes=" + 2 * CHUNK_SIZE + "-", rangeHeaders.get(rangeHeaders.size() - 1));
+        assertArrayEquals(audio, decrypt(container, result.nonce));
+        // Digests of the chunks from the first attempt survive the resume
+        assertArrayEquals(sha256(0), result.digests[0]);
+        assertArrayEquals(sha256(5), result.digests[5]);
+    }
+
+    @Test
+    public void repairsSingleChunkInPlace() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        LessonDownloader.Result result = download(container);
+
+        try (RandomAccessFile file = new RandomAccessFile(container, "rw")) {
+            file.seek(LessonContainer.HEADER_SIZE + 3 * CHUNK_SIZE + 10);
+            file.write(new byte[64]);
+        }
+        assertFalse(Arrays.equals(audio, decrypt(container, result.nonce)));
+
+        new LessonDownloader(KEY, CHUNK_SIZE).repairChunk(url, null, container, result.nonce, audio.length, 3,
+            result.digests[3]);
+
+        assertEquals("bytes=" + 3 * CHUNK_SIZE + "-" + (4 * CHUNK_SIZE - 1), rangeHeaders.get(rangeHeaders.size() - 1));
+        assertArrayEquals(audio, decrypt(container, result.nonce));
+    }
+
+    @Test
+    public void repairRejectsDataThatDoesNotMatchDigest() throws Exception {
+        File container = new File(dir, "lesson.skl");
+        LessonDownloader.Result result = download(container);
+
+        try {
+            new LessonDownloader(KEY, CHUNK_SIZE).repairChunk(url, null, container, result.nonce, audio.length, 2,
+                result.digests[1]);
+            fail("Mismatched digest should be rejected");
+        } catch (ChunkIntegrityException e) {
+            assertEquals(2, e.chunkIndex);
+        }
+    }
+
+    @Test
+    public void restartsWhenRemoteFileChanged() throws Exception {
+        File container = new File(dir, "lesson.skl");
+
+        dropAfter = 3 * CHUNK_SIZE;
+        try {
+            download(container);
+            fail("Truncated body should fail");
+        } catch (IOException expected) {
+            // Partial download left behind
+        }
+
+        dropAfter = -1;
+        etag = "\"v2\"";
+        new Random(6).nextBytes(audio);
+        LessonDownloader.Result result = download(container);
+
+        assertArrayEquals(audio, decrypt(container, result.nonce));
+    }
+
+    private LessonDownloader.Result download(File container) throws Exception {
+        return new LessonDownloader(KEY, CHUNK_SIZE).download(url, null, container, r -> "manifest",
+            new AssemblyJob("test", 0, null));
+    }
+
+    private byte[] sha256(int chunk) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(audio, chunk * CHUNK_SIZE, Math.min(CHUNK_SIZE, audio.length - chunk * CHUNK_SIZE));
+        return digest.digest();
+    }
+
+    private byte[] decrypt(File container, byte[] nonce) throws Exception {
+        File output = new File(dir, "lesson.mp3");
+        long dataLength = LessonContainer.dataLength(container);
+        try (FileInputStream in = new FileInputStream(container);
+             FileOutputStream out = new FileOutputStream(output)) {
+            new EncryptedChunkAssembler(KEY, nonce, CHUNK_SIZE).assembleContainer(
+                in.getChannel(), LessonContainer.HEADER_SIZE, dataLength, out.getChannel(),
+                new AssemblyJob("test", dataLength, null));
+        }
+        return Files.readAllBytes(output.toPath());
+    }
+}
@@ -0,0 +1,59 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class LessonKeyCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    public void keysExpireAfterTheirTtlSinceLastUse() {
+        LessonKeyCache cache = new LessonKeyCache(4, 100, now::get);
+        cache.put("a", key(1));
+
+        now.addAndGet(80);
+        assertNotNull(cache.get("a"));
+        now.addAndGet(80);
+        assertNotNull(cache.get("a"));
+        now.addAndGet(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverCapacity() {
+        LessonKeyCache cache = new LessonKeyCache(2, 10_000, now::get);
+        cache.put("a", key(1));
+        cache.put("b", key(2));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", key(3));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertArrayEquals(key(3).getEncoded(), cache.get("c").getEncoded());
+    }
+
+    @Test
+    public void invalidateAndClearForgetKeys() {
+        LessonKeyCache cache = new LessonKeyCache(4, 10_000, now::get);
+        cache.put("a", key(1));
+        cache.put("b", key(2));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    private static SecretKeySpec key(int fill) {
+        byte[] raw = new byte[32];
+        Arrays.fill(raw, (byte) fill);
+        return new SecretKeySpec(raw, "AES");
+    }
+}
@@ -0,0 +1,123 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.spec.SecretKeySpec;
+
+public class LessonPrefetchTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+    private static final byte[] NONCE = AesCtrCipher.hexToBytes("0f0e0d0c0b0a09080706050403020100");
+
+    private final byte[] plain = new byte[3 * CHUNK_SIZE + 100];
+    private byte[][] encrypted;
+    private byte[][] digests;
+    private PlaybackCache cache;
+    private LessonPrefetch prefetch;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(5).nextBytes(plain);
+        int chunkCount = (plain.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        encrypted = new byte[chunkCount][];
+        digests = new byte[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int start = i * CHUNK_SIZE;
+            int len = Math.min(CHUNK_SIZE, plain.length - start);
+            encrypted[i] = new byte[len];
+            new AesCtrCipher(KEY, NONCE, CHUNK_SIZE, i, 0).update(plain, start, len, encrypted[i], 0);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(plain, start, len);
+            digests[i] = digest.digest();
+        }
+        cache = new PlaybackCache(Files.createTempDirectory("prefetch").toFile(), 1_000_000);
+        prefetch = new LessonPrefetch();
+    }
+
+    @Test
+    public void cachesFingerprintedLessonsAndVerifiesTheRest() throws Exception {
+        prefetch.offer(Arrays.asList(lesson("a", "01", encrypted), lesson("b", null, encrypted)));
+        List<LessonPrefetch.Result> results = new ArrayList<>();
+        assertTrue(prefetch.runPending(cache, () -> false, results::add));
+
+        assertEquals(LessonPrefetch.Outcome.CACHED, results.get(0).outcome);
+        assertEquals(LessonPrefetch.Outcome.VERIFIED, results.get(1).outcome);
+        File cached = cache.get("a", "01");
+        assertArrayEquals(plain, Files.readAllBytes(cached.toPath()));
+        assertEquals(1, cache.entryCount());
+        assertFalse(prefetch.hasPending());
+    }
+
+    @Test
+    public void reportsTheDamagedChunk() {
+        byte[][] damaged = encrypted.clone();
+        damaged[2] = encrypted[2].clone();
+        damaged[2][7] ^= 1;
+        prefetch.offer(Arrays.asList(lesson("a", "01", damaged)));
+        assertTrue(prefetch.runPending(cache, () -> false, null));
+
+        LessonPrefetch.Result result = prefetch.results().get(0);
+        assertEquals(LessonPrefetch.Outcome.CORRUPT, result.outcome);
+        assertEquals(2, result.chunkIndex);
+        assertNull(cache.get("a", "01"));
+    }
+
+    @Test
+    public void stoppedLessonIsKeptForTheNextRun() {
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        // Stop as soon as the first chunk is read, like WorkManager would mid-lesson
+        EncryptedChunkAssembler.ChunkSource source = index -> {
+            stopped.set(true);
+            prefetch.interrupt();
+            return new ByteArrayInputStream(encrypted[index]);
+        };
+        prefetch.offer(Arrays.asList(
+            new LessonPrefetch.Lesson("a", source, encrypted.length, LessonPrefetchTest::ciphers, CHUNK_SIZE, digests,
+                "01")));
+
+        assertFalse(prefetch.runPending(cache, stopped::get, null));
+        assertEquals(Arrays.asList("a"), prefetch.pendingLessonIds());
+        assertTrue(prefetch.results().isEmpty());
+        assertEquals(0, cache.entryCount());
+    }
+
+    @Test
+    public void lessonWithoutAKeyFailsAlone() {
+        prefetch.offer(Arrays.asList(
+            new LessonPrefetch.Lesson("a", index -> new ByteArrayInputStream(encrypted[index]), encrypted.length,
+                () -> {
+                    throw new GeneralSecurityException("No key stored for lesson a");
+                }, CHUNK_SIZE, digests, null),
+            lesson("b", null, encrypted)));
+
+        assertTrue(prefetch.runPending(cache, () -> false, null));
+        List<LessonPrefetch.Result> results = prefetch.results();
+        assertEquals(LessonPrefetch.Outcome.FAILED, results.get(0).outcome);
+        assertEquals(LessonPrefetch.Outcome.VERIFIED, results.get(1).outcome);
+    }
+
+    private static ChunkCiphers ciphers() {
+        return ChunkCiphers.lesson(KEY, NONCE, CHUNK_SIZE);
+    }
+
+    private LessonPrefetch.Lesson lesson(String lessonId, String fingerprint, byte[][] chunks) {
+        return new LessonPrefetch.Lesson(lessonId, index -> new ByteArrayInputStream(chunks[index]),
+            chunks.length, LessonPrefetchTest::ciphers, CHUNK_SIZE, digests, fingerprint);
+    }
+}
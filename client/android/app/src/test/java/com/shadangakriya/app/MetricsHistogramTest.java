@@ -0,0 +1,71 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetricsHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        assertEquals(0, MetricsHistogram.bucketOf(0));
+        assertEquals(3, MetricsHistogram.bucketOf(3));
+        int previous = -1;
+        for (long value : new long[] {4, 5, 7, 8, 9, 10, 1000, 1 << 20, Long.MAX_VALUE}) {
+            int bucket = MetricsHistogram.bucketOf(value);
+            assertTrue(bucket >= previous);
+            assertTrue(value <= MetricsHistogram.bucketUpperBound(bucket));
+            // Within 25% of the value
+            assertTrue(MetricsHistogram.bucketUpperBound(bucket) - value <= value / 4);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void reportsPercentilesWithinBucketPrecision() {
+        MetricsHistogram histogram = new MetricsHistogram("test", "us");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(500, histogram.mean());
+        assertEquals(1000, histogram.max());
+        assertInRange(500, histogram.percentile(0.5));
+        assertInRange(990, histogram.percentile(0.99));
+        assertEquals(1000, histogram.percentile(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.5));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws Exception {
+        MetricsHistogram histogram = new MetricsHistogram("test", "us");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i + offset);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.count());
+        assertEquals(10_002, histogram.max());
+    }
+
+    private static void assertInRange(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+            actual >= expected && actual <= expected + expected / 4);
+    }
+}
@@ -0,0 +1,131 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+public class Mp3SeekIndexTest {
+
+    // MPEG-1 layer III, 128 kbps, 44.1 kHz: 417 bytes (418 padded), 1152 samples
+    private static final int HEADER = 0xFFFB9044;
+    private static final int PADDED = HEADER | 0x200;
+
+    @Test
+    public void indexesOneEntryPerSecondWithExactDuration() throws Exception {
+        byte[] mp3 = frames(100);
+        Mp3SeekIndex index = build(mp3, mp3.length);
+
+        assertEquals(100, index.frameCount);
+        assertEquals(100L * 1152 * 1_000_000 / 44100, index.durationUs());
+        // 100 frames are 2.6 s: entries at 0, 1 and 2 s
+        assertEquals(3, index.size());
+        assertEquals(0, index.offsetAt(0));
+        // Frame 39 is the first at or after 1 s
+        assertEquals(39L * 1152 * 1_000_000 / 44100, index.timeUsAt(1));
+        assertEquals(39 * 417 + 19, index.offsetAt(1));
+    }
+
+    @Test
+    public void resultDoesNotDependOnHowThePlaintextIsSplit() throws Exception {
+        byte[] mp3 = frames(200);
+        Mp3SeekIndex whole = build(mp3, mp3.length);
+        Mp3SeekIndex bytes = build(mp3, 1);
+        Mp3SeekIndex odd = build(mp3, 333);
+
+        assertEquals(whole.frameCount, bytes.frameCount);
+        assertEquals(whole.size(), odd.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertEquals(whole.offsetAt(i), bytes.offsetAt(i));
+            assertEquals(whole.offsetAt(i), odd.offsetAt(i));
+        }
+    }
+
+    @Test
+    public void skipsId3TagXingFrameAndTrailingGarbage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // ID3v2 tag with a 20 byte body
+        out.write(new byte[] {'I', 'D', '3', 4, 0, 0, 0, 0, 0, 20});
+        out.write(new byte[20]);
+        byte[] xing = frame(HEADER);
+        System.arraycopy("Xing".getBytes("US-ASCII"), 0, xing, 36, 4);
+        out.write(xing);
+        out.write(frames(50));
+        out.write("TAG this is not audio".getBytes("US-ASCII"));
+
+        Mp3SeekIndex index = build(out.toByteArray(), 4096);
+        assertEquals(50, index.frameCount);
+        assertEquals(30 + 417, index.offsetAt(0));
+    }
+
+    @Test
+    public void findsEntriesByTimeAndByOffset() throws Exception {
+        byte[] mp3 = frames(400);
+        Mp3SeekIndex index = build(mp3, mp3.length);
+
+        assertEquals(0, index.entryForTime(index.timeUsAt(1) - 1));
+        assertEquals(1, index.entryForTime(index.timeUsAt(1)));
+        assertEquals(index.size() - 1, index.entryForTime(600_000_000L));
+        assertEquals(1, index.entryForOffset(index.offsetAt(1)));
+        assertEquals(1, index.entryForOffset(index.offsetAt(2) - 1));
+    }
+
+    @Test
+    public void sidecarRoundTripsAndScanMatchesTheBuilder() throws Exception {
+        File dir = Files.createTempDirectory("seek-index").toFile();
+        File mp3 = new File(dir, "lesson.mp3");
+        byte[] data = frames(300);
+        Files.write(mp3.toPath(), data);
+
+        Mp3SeekIndex scanned = Mp3SeekIndex.scan(mp3);
+        File sidecar = Mp3SeekIndex.sidecarFor(mp3);
+        assertNull(Mp3SeekIndex.readFrom(sidecar));
+        scanned.writeTo(sidecar);
+
+        Mp3SeekIndex read = Mp3SeekIndex.readFrom(sidecar);
+        Mp3SeekIndex built = build(data, 8192);
+        assertEquals(built.frameCount, read.frameCount);
+        assertEquals(built.durationUs(), read.durationUs());
+        assertEquals(built.size(), read.size());
+        for (int i = 0; i < built.size(); i++) {
+            assertEquals(built.timeUsAt(i), read.timeUsAt(i));
+            assertEquals(built.offsetAt(i), read.offsetAt(i));
+        }
+    }
+
+    @Test
+    public void noFramesMeansNoIndex() {
+        Mp3SeekIndex.Builder builder = new Mp3SeekIndex.Builder();
+        builder.update(new byte[5000], 0, 5000);
+        assertNull(builder.build());
+    }
+
+    private static Mp3SeekIndex build(byte[] data, int pieceSize) {
+        Mp3SeekIndex.Builder builder = new Mp3SeekIndex.Builder();
+        for (int offset = 0; offset < data.length; offset += pieceSize) {
+            builder.update(data, offset, Math.min(pieceSize, data.length - offset));
+        }
+        return builder.build();
+    }
+
+    /** Every other frame padded, like a real 44.1 kHz stream. */
+    private static byte[] frames(int count) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            out.write(frame(i % 2 == 1 ? PADDED : HEADER));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] frame(int header) {
+        byte[] frame = new byte[Mp3SeekIndex.frameLength(header)];
+        frame[0] = (byte) (header >>> 24);
+        frame[1] = (byte) (header >>> 16);
+        frame[2] = (byte) (header >>> 8);
+        frame[3] = (byte) header;
+        return frame;
+    }
+}
@@ -0,0 +1,174 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NativeSchedulerTest {
+
+    @Test
+    public void queuedPlaybackWorkRunsBeforeEarlierBackgroundWork() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(1, 1);
+        CountDownLatch release = block(scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService background = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+        ExecutorService user = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+        ExecutorService playback = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.PLAYBACK);
+        background.execute(() -> order.add("background"));
+        user.execute(() -> order.add("user 1"));
+        playback.execute(() -> order.add("playback"));
+        user.execute(() -> order.add("user 2"));
+
+        release.countDown();
+        background.shutdown();
+        assertTrue(background.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("playback", "user 1", "user 2", "background"), order);
+    }
+
+    @Test
+    public void serialLaneRunsOneTaskAtATimeInOrder() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(4, 1);
+        ExecutorService lane = scheduler.serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+        AtomicInteger running = new AtomicInteger();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 20; i++) {
+            int task = i;
+            lane.execute(() -> {
+                assertEquals(1, running.incrementAndGet());
+                order.add(task);
+                running.decrementAndGet();
+            });
+        }
+        lane.shutdown();
+        assertTrue(lane.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(20, order.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void shuttingALaneDownLeavesThePoolAndOtherLanesRunning() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(2, 1);
+        ExecutorService closed = scheduler.lane(NativeScheduler.Pool.CPU, NativeScheduler.Priority.USER);
+        closed.shutdown();
+        try {
+            closed.execute(() -> { });
+            fail("A shut down lane takes no work");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertTrue(closed.isTerminated());
+
+        ExecutorService open = scheduler.lane(NativeScheduler.Pool.CPU, NativeScheduler.Priority.USER);
+        assertEquals("ok", open.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void delayedTasksRunOnTheirLane() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(1, 1);
+        NativeScheduler.Lane lane = scheduler.serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+        CountDownLatch ran = new CountDownLatch(1);
+        String[] thread = new String[1];
+        lane.schedule(() -> {
+            thread[0] = Thread.currentThread().getName();
+            ran.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(thread[0], thread[0].startsWith("NativeIO"));
+    }
+
+    @Test
+    public void poolSizeCanBeCapped() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(4, 4);
+        scheduler.setThreads(NativeScheduler.Pool.CPU, 1);
+        assertEquals(1, scheduler.threads(NativeScheduler.Pool.CPU));
+
+        ExecutorService lane = scheduler.lane(NativeScheduler.Pool.CPU, NativeScheduler.Priority.USER);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        for (int i = 0; i < 8; i++) {
+            lane.execute(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+            });
+        }
+        lane.shutdown();
+        assertTrue(lane.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, peak.get());
+
+        scheduler.setThreads(NativeScheduler.Pool.CPU, 3);
+        assertEquals(3, scheduler.threads(NativeScheduler.Pool.CPU));
+    }
+
+    @Test
+    public void pausedBackgroundWorkWaitsWhileOtherLanesRun() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(2, 1);
+        scheduler.setBackgroundPaused(true);
+        ExecutorService background = scheduler.serialLane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        background.execute(() -> order.add(1));
+        background.execute(() -> order.add(2));
+
+        ExecutorService user = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER);
+        assertEquals("ok", user.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+        assertTrue(order.isEmpty());
+
+        scheduler.setBackgroundPaused(false);
+        background.shutdown();
+        assertTrue(background.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), order);
+    }
+
+    @Test
+    public void playbackKeepsAThreadWhileOtherWorkWaits() throws Exception {
+        NativeScheduler scheduler = new NativeScheduler(2, 1);
+        CountDownLatch release = block(scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.USER));
+        ExecutorService background = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.BACKGROUND);
+        CountDownLatch backgroundRan = new CountDownLatch(1);
+        background.execute(backgroundRan::countDown);
+
+        ExecutorService playback = scheduler.lane(NativeScheduler.Pool.IO, NativeScheduler.Priority.PLAYBACK);
+        assertEquals("ok", playback.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+        assertEquals(1, backgroundRan.getCount());
+        assertEquals(1, scheduler.queued(NativeScheduler.Pool.IO));
+
+        release.countDown();
+        assertTrue(backgroundRan.await(5, TimeUnit.SECONDS));
+    }
+
+    /** Occupy the lane's only thread until the returned latch is released. */
+    private static CountDownLatch block(ExecutorService lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class PlaybackCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("playback-cache").toFile();
+    }
+
+    @Test
+    public void committedLessonIsAHitUntilItsFingerprintChanges() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 10_000);
+        assertNull(cache.get("lesson-1", "aaaa"));
+
+        put(cache, "lesson-1", "aaaa", 100);
+        File hit = cache.get("lesson-1", "aaaa");
+        assertNotNull(hit);
+        assertEquals(100, hit.length());
+
+        // New key or manifest: the old copy is never served and goes on commit
+        assertNull(cache.get("lesson-1", "bbbb"));
+        put(cache, "lesson-1", "bbbb", 100);
+        assertFalse(hit.exists());
+        assertEquals(1, cache.entryCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyPlayedOverBudget() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 250);
+        put(cache, "a", "01", 100);
+        put(cache, "b", "01", 100);
+        assertNotNull(cache.get("a", "01"));
+
+        put(cache, "c", "01", 100);
+        assertNotNull(cache.get("a", "01"));
+        assertNull(cache.get("b", "01"));
+        assertNotNull(cache.get("c", "01"));
+        assertEquals(200, cache.sizeBytes());
+    }
+
+    @Test
+    public void newEntryIsKeptEvenWhenOverBudget() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 50);
+        put(cache, "a", "01", 40);
+        put(cache, "b", "01", 100);
+        assertNull(cache.get("a", "01"));
+        assertNotNull(cache.get("b", "01"));
+
+        cache.setBudgetBytes(0);
+        assertEquals(0, cache.entryCount());
+    }
+
+    @Test
+    public void recencySurvivesRestartAndPartialFilesAreDropped() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 1000);
+        put(cache, "old", "01", 10);
+        new File(dir, "old.01.mp3").setLastModified(1_000_000L);
+        put(cache, "new", "01", 10);
+        Files.write(cache.stagingFile("half", "01").toPath(), new byte[5]);
+
+        PlaybackCache reopened = new PlaybackCache(dir, 1000);
+        assertFalse(new File(dir, "half.01.mp3.part").exists());
+        reopened.setBudgetBytes(10);
+        assertNull(reopened.get("old", "01"));
+        assertNotNull(reopened.get("new", "01"));
+    }
+
+    @Test
+    public void invalidateRemovesEveryVersion() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 1000);
+        put(cache, "a", "01", 10);
+        put(cache, "b", "01", 10);
+        cache.invalidate("a");
+        assertNull(cache.get("a", "01"));
+        assertNotNull(cache.get("b", "01"));
+    }
+
+    @Test
+    public void seekIndexMovesAndGoesWithItsEntry() throws Exception {
+        PlaybackCache cache = new PlaybackCache(dir, 1000);
+        File staging = cache.stagingFile("a", "01");
+        Files.write(staging.toPath(), new byte[10]);
+        Files.write(Mp3SeekIndex.sidecarFor(staging).toPath(), new byte[4]);
+        File file = cache.commit("a", "01");
+        File sidecar = Mp3SeekIndex.sidecarFor(file);
+        assertTrue(sidecar.exists());
+
+        // Survives a restart, then is dropped with the entry
+        PlaybackCache reopened = new PlaybackCache(dir, 1000);
+        assertTrue(sidecar.exists());
+        put(reopened, "a", "02", 10);
+        assertFalse(sidecar.exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeysThatAreNotPlainNames() {
+        new PlaybackCache(dir, 1000).get("../escape", "01");
+    }
+
+    private static void put(PlaybackCache cache, String lessonId, String fingerprint, int size) throws IOException {
+        Files.write(cache.stagingFile(lessonId, fingerprint).toPath(), new byte[size]);
+        cache.commit(lessonId, fingerprint);
+    }
+}
@@ -0,0 +1,153 @@
+package com.shadangakriya.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class StorageIndexTest {
+
+    private static final Pattern VERSION = Pattern.compile("\"version\":(\\d+)");
+    private static final Pattern TOTAL_CHUNKS = Pattern.compile("\"totalChunks\":(\\d+)");
+
+    private File dir;
+    private StorageIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("storage-index").toFile();
+        index = new StorageIndex(dir, file -> {
+            String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            return new StorageIndex.Manifest(number(VERSION, json), number(TOTAL_CHUNKS, json));
+        });
+    }
+
+    @Test
+    public void reportsLessonsAndTheirCompleteness() throws Exception {
+        write("a_manifest.json", "{\"version\":3,\"totalChunks\":2}");
+        write("a_chunk_0.enc", 100);
+        write("a_chunk_1.enc", 50);
+        write("b_manifest.json", "{\"version\":3,\"totalChunks\":3}");
+        write("b_chunk_0.enc", 100);
+        write("c_manifest.json", "{\"version\":4,\"totalChunks\":3}");
+        write("c.skl", 300);
+        write("unrelated.txt", 10);
+        index.rebuild();
+
+        Map<String, StorageIndex.LessonUsage> lessons = byId();
+        assertEquals(3, lessons.size());
+        assertTrue(lessons.get("a").isComplete());
+        assertEquals(2, lessons.get("a").chunksPresent);
+        assertFalse(lessons.get("b").isComplete());
+        assertTrue(lessons.get("c").isComplete());
+        assertTrue(index.orphans().isEmpty());
+    }
+
+    @Test
+    public void findsOrphansAndCompactsThem() throws Exception {
+        write("a_manifest.json", "{\"version\":4,\"totalChunks\":1}");
+        write("a.skl", 100);
+        write("a_chunk_0.enc", 40);            // superseded by the container
+        write("a_temp_chunk_0.mp3", 30);       // interrupted preparation
+        write("a_manifest.json.tmp", 5);       // half-written manifest
+        write("b_chunk_0.enc", 20);            // no manifest
+        write("c.skl.part", 70);               // resumable download
+        write("c.skl.resume", 1);
+        index.rebuild();
+
+        assertEquals(6, index.orphans().size());
+        assertEquals(75, byId().get("a").orphanBytes);
+
+        StorageIndex.CompactResult result = index.compact(Collections.emptySet(), 0, false, System.currentTimeMillis());
+        assertEquals(4, result.removedFiles);
+        assertEquals(95, result.reclaimedBytes);
+        assertTrue(new File(dir, "a.skl").exists());
+        assertTrue(new File(dir, "c.skl.part").exists());
+        assertEquals(2, index.orphans().size());
+
+        index.compact(Collections.emptySet(), 0, true, System.currentTimeMillis());
+        assertTrue(index.orphans().isEmpty());
+        assertEquals(new File(dir, "a_manifest.json").length() + 100, index.totalBytes());
+    }
+
+    @Test
+    public void lessonsInTheChunkStoreLeaveOnlyTheirManifest() throws Exception {
+        write("a_manifest.json", "{\"version\":5,\"totalChunks\":2}");
+        write("a.skl", 100);                   // ingest stopped before deleting it
+        write("a_chunk_0.enc", 40);
+        index.rebuild();
+
+        assertTrue(byId().get("a").isComplete());
+        assertEquals(2, index.orphans().size());
+        for (StorageIndex.Orphan orphan : index.orphans()) {
+            assertEquals("superseded by chunk store", orphan.reason);
+        }
+    }
+
+    @Test
+    public void compactSparesKeptLessonsAndFreshFiles() throws Exception {
+        write("a_temp.mp3", 10);
+        write("b_temp.mp3", 10);
+        write("c_temp.mp3", 10);
+        new File(dir, "c_temp.mp3").setLastModified(System.currentTimeMillis() - 60_000);
+        index.rebuild();
+
+        StorageIndex.CompactResult result = index.compact(Collections.singleton("a"), 30_000, false,
+            System.currentTimeMillis());
+        assertEquals(1, result.removedFiles);
+        assertTrue(new File(dir, "a_temp.mp3").exists());
+        assertTrue(new File(dir, "b_temp.mp3").exists());
+        assertFalse(new File(dir, "c_temp.mp3").exists());
+    }
+
+    @Test
+    public void refreshTracksSingleFileChanges() throws Exception {
+        index.rebuild();
+        write("a_chunk_0.enc", 10);
+        index.refresh("a_chunk_0.enc");
+        assertEquals(1, index.orphans().size());
+
+        write("a_manifest.json", "{\"version\":3,\"totalChunks\":1}");
+        index.refresh("a_manifest.json");
+        assertTrue(index.orphans().isEmpty());
+        assertTrue(byId().get("a").isComplete());
+
+        new File(dir, "a_chunk_0.enc").delete();
+        index.refresh("a_chunk_0.enc");
+        assertFalse(byId().get("a").isComplete());
+    }
+
+    private Map<String, StorageIndex.LessonUsage> byId() {
+        Map<String, StorageIndex.LessonUsage> lessons = new HashMap<>();
+        for (StorageIndex.LessonUsage usage : index.lessons()) {
+            lessons.put(usage.lessonId, usage);
+        }
+        return lessons;
+    }
+
+    private void write(String name, int size) throws IOException {
+        Files.write(new File(dir, name).toPath(), new byte[size]);
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.write(new File(dir, name).toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int number(Pattern pattern, String json) throws IOException {
+        Matcher m = pattern.matcher(json);
+        if (!m.find()) {
+            throw new IOException("Missing " + pattern);
+        }
+        return Integer.parseInt(m.group(1));
+    }
+}
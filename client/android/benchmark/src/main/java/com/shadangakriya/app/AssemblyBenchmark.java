@@ -0,0 +1,98 @@
+package com.shadangakriya.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decrypting a v4 container into a playable file, one chunk after another
+ * ({@link EncryptedChunkAssembler#assembleContainer}) against chunks fanned
+ * out over a thread pool ({@link EncryptedChunkAssembler#assembleContainerParallel}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class AssemblyBenchmark {
+    /** A lesson of a bit under 40 MB, the last chunk partial as usual. */
+    private static final int LESSON_SIZE = 8 * BenchmarkFiles.CHUNK_SIZE - 12_345;
+
+    @Param({"sequential", "parallel-2", "parallel-4", "parallel-cores"})
+    public String mode;
+
+    private File dir;
+    private File container;
+    private File output;
+    private ExecutorService pool;
+    private EncryptedChunkAssembler assembler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchmarkFiles.tempDir("assembly-bench");
+        container = BenchmarkFiles.container(dir, BenchmarkFiles.randomBytes(LESSON_SIZE));
+        output = new File(dir, "output.mp3");
+        assembler = new EncryptedChunkAssembler(BenchmarkFiles.KEY, BenchmarkFiles.NONCE, BenchmarkFiles.CHUNK_SIZE);
+
+        int threads;
+        switch (mode) {
+            case "parallel-2":
+                threads = 2;
+                break;
+            case "parallel-4":
+                threads = 4;
+                break;
+            case "parallel-cores":
+                threads = Runtime.getRuntime().availableProcessors();
+                break;
+            default:
+                threads = 0;
+                break;
+        }
+        pool = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long assemble() throws Exception {
+        AssemblyJob job = new AssemblyJob("bench", LESSON_SIZE, null);
+        try (FileInputStream in = new FileInputStream(container)) {
+            if (pool == null) {
+                try (FileOutputStream out = new FileOutputStream(output)) {
+                    return assembler.assembleContainer(in.getChannel(), LessonContainer.HEADER_SIZE,
+                        LESSON_SIZE, out.getChannel(), job);
+                }
+            }
+            try (RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+                return assembler.assembleContainerParallel(in.getChannel(), LessonContainer.HEADER_SIZE,
+                    LESSON_SIZE, out, pool, job);
+            }
+        }
+    }
+}
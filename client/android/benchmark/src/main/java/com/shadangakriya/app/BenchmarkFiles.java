@@ -0,0 +1,70 @@
+package com.shadangakriya.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/** Fixtures shared by the benchmarks: random data, lesson-sized files, a key. */
+final class BenchmarkFiles {
+    /** Same as ENCRYPTION_CHUNK_SIZE in audioEncryption.ts. */
+    static final int CHUNK_SIZE = 5 * 1024 * 1024;
+
+    static final SecretKeySpec KEY = AesCtrCipher.keyFromHex(
+        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+    static final byte[] NONCE = AesCtrCipher.hexToBytes("0f0e0d0c0b0a09080706050403020100");
+
+    private BenchmarkFiles() {}
+
+    static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    static File tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /** {@code count} files of {@code size} random bytes each. */
+    static List<File> randomFiles(File dir, int count, int size) throws IOException {
+        List<File> files = new ArrayList<>();
+        byte[] data = randomBytes(size);
+        for (int i = 0; i < count; i++) {
+            File file = new File(dir, "input_" + i);
+            Files.write(file.toPath(), data);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /** A v4 container holding {@code plain} encrypted the way the app stores lessons. */
+    static File container(File dir, byte[] plain) throws Exception {
+        File container = new File(dir, "lesson.skl");
+        try (LessonContainer.Writer writer = new LessonContainer.Writer(container)) {
+            for (int i = 0; (long) i * CHUNK_SIZE < plain.length; i++) {
+                int start = i * CHUNK_SIZE;
+                int len = Math.min(CHUNK_SIZE, plain.length - start);
+                byte[] chunk = new byte[len];
+                new AesCtrCipher(KEY, NONCE, CHUNK_SIZE, i, 0).update(plain, start, len, chunk, 0);
+                writer.append(chunk, 0, len);
+            }
+            writer.finish("{}");
+        }
+        return container;
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,87 @@
+package com.shadangakriya.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * AES-CTR over one 5 MB chunk, fed in {@code bufferSize} pieces: the app's
+ * {@link AesCtrCipher} on heap arrays and on direct buffers, against a bare
+ * JCE cipher to show what the counter bookkeeping costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherBenchmark {
+    @Param({"4096", "16384", "65536", "262144", "1048576"})
+    public int bufferSize;
+
+    private byte[] data;
+    private ByteBuffer directIn;
+    private ByteBuffer directOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkFiles.randomBytes(BenchmarkFiles.CHUNK_SIZE);
+        directIn = ByteBuffer.allocateDirect(BenchmarkFiles.CHUNK_SIZE);
+        directIn.put(data).flip();
+        directOut = ByteBuffer.allocateDirect(BenchmarkFiles.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public void aesCtrCipherArrays(Blackhole bh) throws GeneralSecurityException {
+        AesCtrCipher cipher = new AesCtrCipher(BenchmarkFiles.KEY, BenchmarkFiles.NONCE,
+            BenchmarkFiles.CHUNK_SIZE, 1, 0);
+        for (int offset = 0; offset < data.length; offset += bufferSize) {
+            int len = Math.min(bufferSize, data.length - offset);
+            // In place, as the assembler does
+            cipher.update(data, offset, len, data, offset);
+        }
+        bh.consume(data);
+    }
+
+    @Benchmark
+    public void aesCtrCipherDirectBuffers(Blackhole bh) throws GeneralSecurityException {
+        AesCtrCipher cipher = new AesCtrCipher(BenchmarkFiles.KEY, BenchmarkFiles.NONCE,
+            BenchmarkFiles.CHUNK_SIZE, 1, 0);
+        directOut.clear();
+        for (int offset = 0; offset < BenchmarkFiles.CHUNK_SIZE; offset += bufferSize) {
+            int len = Math.min(bufferSize, BenchmarkFiles.CHUNK_SIZE - offset);
+            ByteBuffer in = directIn.duplicate();
+            in.position(offset).limit(offset + len);
+            cipher.update(in, directOut);
+        }
+        bh.consume(directOut);
+    }
+
+    @Benchmark
+    public void jceCipherArrays(Blackhole bh) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, BenchmarkFiles.KEY, new IvParameterSpec(BenchmarkFiles.NONCE));
+        for (int offset = 0; offset < data.length; offset += bufferSize) {
+            int len = Math.min(bufferSize, data.length - offset);
+            cipher.update(data, offset, len, data, offset);
+        }
+        bh.consume(data);
+    }
+}
@@ -0,0 +1,94 @@
+package com.shadangakriya.app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concatenating a lesson's files: a plain stream copy at several buffer
+ * sizes (8 KB was the original plugin's) against {@link ChannelConcatenator}'s
+ * transferTo. The inputs sit in the page cache after the first iteration,
+ * so this measures copy overhead rather than storage speed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+    private static final int FILE_COUNT = 6;
+
+    @Param({"stream-8k", "stream-64k", "stream-256k", "stream-1m", "transferTo"})
+    public String strategy;
+
+    private File dir;
+    private List<File> inputs;
+    private File output;
+    private long totalBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.tempDir("copy-bench");
+        inputs = BenchmarkFiles.randomFiles(dir, FILE_COUNT, BenchmarkFiles.CHUNK_SIZE);
+        output = new File(dir, "output.mp3");
+        totalBytes = (long) FILE_COUNT * BenchmarkFiles.CHUNK_SIZE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long concatenate() throws IOException {
+        switch (strategy) {
+            case "stream-8k":
+                return streamCopy(8 * 1024);
+            case "stream-64k":
+                return streamCopy(64 * 1024);
+            case "stream-256k":
+                return streamCopy(256 * 1024);
+            case "stream-1m":
+                return streamCopy(1024 * 1024);
+            default:
+                return ChannelConcatenator.concatenate(inputs, output, new AssemblyJob("bench", totalBytes, null));
+        }
+    }
+
+    private long streamCopy(int bufferSize) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long written = 0;
+        try (OutputStream out = new FileOutputStream(output)) {
+            for (File input : inputs) {
+                try (InputStream in = new FileInputStream(input)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        written += read;
+                    }
+                }
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,38 @@
+package com.shadangakriya.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Collects the Baseline Profile :app ships with. Run it through
+ * {@code ./gradlew :app:generateReleaseBaselineProfile}, which copies the
+ * result into app/src/release/generated/baselineProfiles; commit that file.
+ *
+ * Covers startup and, on a device set up as {@link LearnerJourney}
+ * describes, starting a downloaded lesson. Without such a setup only
+ * startup is profiled.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    @Rule
+    public final BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        rule.collect(LearnerJourney.PACKAGE, scope -> {
+            scope.pressHome();
+            scope.startActivityAndWait();
+            if (LearnerJourney.awaitLearnerHome(scope.getDevice())) {
+                LearnerJourney.playFirstDownloadedLesson(scope.getDevice());
+                LearnerJourney.pauseLesson(scope.getDevice());
+            }
+            return Unit.INSTANCE;
+        });
+    }
+}
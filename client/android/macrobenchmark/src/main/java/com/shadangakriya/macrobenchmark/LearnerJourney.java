@@ -0,0 +1,94 @@
+package com.shadangakriya.macrobenchmark;
+
+import android.os.SystemClock;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+
+/**
+ * The UI steps the benchmarks share. They drive the WebView through its
+ * accessibility tree, so they rely on visible labels of the learner screens
+ * (BottomNav, DownloadsPage, LessonCard, AudioPlayer).
+ *
+ * The lesson steps need a device prepared by hand: the app signed in as a
+ * learner, with at least one lesson downloaded and playable offline.
+ */
+final class LearnerJourney {
+    static final String PACKAGE = "com.shadangakriya.app";
+
+    /** Trace sections LessonPlayerPlugin emits; keep the names in sync. */
+    static final String SECTION_PREPARE = "LessonPrepare";
+    static final String SECTION_FIRST_AUDIO = "LessonFirstAudio";
+
+    private static final long UI_TIMEOUT_MS = 10_000;
+    private static final long AUDIO_TIMEOUT_MS = 30_000;
+    private static final long POLL_MS = 250;
+
+    private LearnerJourney() {}
+
+    /** Launch and wait until the web app is interactive. */
+    static void launch(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        awaitLearnerHome(scope.getDevice());
+    }
+
+    /** True once the learner bottom navigation is on screen, i.e. signed in. */
+    static boolean awaitLearnerHome(UiDevice device) {
+        return find(device, "Downloads", UI_TIMEOUT_MS) != null;
+    }
+
+    /**
+     * From the learner home, open the course of the first downloaded lesson,
+     * start its first playable lesson and wait for audio.
+     *
+     * @throws IllegalStateException if a step's control never shows up
+     */
+    static void playFirstDownloadedLesson(UiDevice device) {
+        click(device, "Downloads");
+        click(device, "Go to course to play this lesson");
+        click(device, "Ready");
+        click(device, "Play lesson");
+        if (find(device, "Pause lesson", AUDIO_TIMEOUT_MS) == null) {
+            throw new IllegalStateException("Lesson did not start playing");
+        }
+    }
+
+    /** Pause so the next iteration starts from silence. */
+    static void pauseLesson(UiDevice device) {
+        UiObject2 pause = find(device, "Pause lesson", UI_TIMEOUT_MS);
+        if (pause != null) {
+            pause.click();
+        }
+    }
+
+    private static void click(UiDevice device, String label) {
+        UiObject2 control = find(device, label, UI_TIMEOUT_MS);
+        if (control == null) {
+            throw new IllegalStateException("\"" + label + "\" not found on screen");
+        }
+        control.click();
+        device.waitForIdle();
+    }
+
+    // WebView exposes an element's accessible name as either text or content
+    // description depending on the WebView version
+    private static UiObject2 find(UiDevice device, String label, long timeoutMs) {
+        BySelector byText = By.text(label);
+        BySelector byDesc = By.desc(label);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        do {
+            UiObject2 control = device.findObject(byText);
+            if (control == null) {
+                control = device.findObject(byDesc);
+            }
+            if (control != null) {
+                return control;
+            }
+            SystemClock.sleep(POLL_MS);
+        } while (System.currentTimeMillis() < deadline);
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package com.shadangakriya.macrobenchmark;
+
+import static org.junit.Assume.assumeTrue;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Path from a cold launch to the first audible frame of a downloaded lesson.
+ * Reports the native sections of that path (LessonPlayerPlugin): preparing
+ * the lesson (key lookup, first chunk decrypt, extractor setup) and the gap
+ * between play and audio. Skipped unless the device is set up as
+ * {@link LearnerJourney} describes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LessonStartBenchmark {
+    private static final int ITERATIONS = 5;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Before
+    public void requireSignedInLearner() throws IOException {
+        UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+        device.pressHome();
+        device.executeShellCommand("am start -W -n " + LearnerJourney.PACKAGE + "/.MainActivity");
+        assumeTrue("Needs a signed-in learner with a downloaded lesson", LearnerJourney.awaitLearnerHome(device));
+    }
+
+    @Test
+    public void firstAudioNoCompilation() {
+        firstAudio(new CompilationMode.None());
+    }
+
+    @Test
+    public void firstAudioBaselineProfile() {
+        firstAudio(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void firstAudio(CompilationMode compilationMode) {
+        List<Metric> metrics = Arrays.asList(
+            new TraceSectionMetric(LearnerJourney.SECTION_PREPARE, TraceSectionMetric.Mode.First.INSTANCE),
+            new TraceSectionMetric(LearnerJourney.SECTION_FIRST_AUDIO, TraceSectionMetric.Mode.First.INSTANCE));
+        rule.measureRepeated(
+            LearnerJourney.PACKAGE,
+            metrics,
+            compilationMode,
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                LearnerJourney.launch(scope);
+                LearnerJourney.playFirstDownloadedLesson(scope.getDevice());
+                LearnerJourney.pauseLesson(scope.getDevice());
+                return Unit.INSTANCE;
+            });
+    }
+}
@@ -0,0 +1,62 @@
+package com.shadangakriya.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Time to initial and full display, cold and warm. The cold start without
+ * compilation is the first launch after install on a device that has not
+ * received a cloud profile; compare it with the Baseline Profile runs to see
+ * what the profile buys.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldStartBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.WARM);
+    }
+
+    private void startup(CompilationMode compilationMode, StartupMode startupMode) {
+        rule.measureRepeated(
+            LearnerJourney.PACKAGE,
+            Collections.singletonList(new StartupTimingMetric()),
+            compilationMode,
+            startupMode,
+            ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                LearnerJourney.launch(scope);
+                return Unit.INSTANCE;
+            });
+    }
+}
@@ -23,9 +23,13 @@ import { getCachedToken } from "@/lib/api";
 import {
   isLessonDownloaded,
   loadEncryptedAudio,
+  loadNativeLessonAudio,
   cleanupTempAudio,
+  getAssembledAudioDuration,
 } from "@/lib/downloadManager";
-import { isAirplaneModeEnabled, areEarphonesConnected, requestExclusiveAudioFocus, abandonAudioFocus, isRingerSilent, getSilentModeInstructions, openAirplaneModeSettings } from "@/lib/deviceChecks";
+import { isAirplaneModeEnabled, areEarphonesConnected, onHeadphonesChange, getPreflightState, onPreflightChange, requestExclusiveAudioFocus, abandonAudioFocus, isRingerSilent, getSilentModeInstructions, openAirplaneModeSettings } from "@/lib/deviceChecks";
+import type { PreflightState } from "@/lib/deviceChecks";
+import type { LessonAudio } from "@/lib/lessonAudio";
 import { useToast } from "@/hooks/use-toast";
 import { usePlaybackSettings } from "@/hooks/useApi";
 import { Capacitor } from "@capacitor/core";
@@ -42,7 +46,7 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
   const token = getCachedToken();
   const { toast } = useToast();
   const { data: playbackSettings } = usePlaybackSettings();
-  const audioRef = useRef<HTMLAudioElement | null>(null);
+  const audioRef = useRef<LessonAudio | null>(null);
   const audioBlobUrlRef = useRef<string | null>(null);
   const wakeLockRef = useRef<WakeLockSentinel | null>(null);
   const autoSkipTimerRef = useRef<NodeJS.Timeout | null>(null);
@@ -115,7 +119,7 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
     autoMute: true, // Automatically mute and pause audio
   });
 
-  // Poll for Airplane Mode Status (Global for this component)
+  // Track Airplane Mode Status (Global for this component)
   useEffect(() => {
     const checkStatus = async () => {
       const airplaneOn = await isAirplaneModeEnabled();
@@ -124,6 +128,12 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
       setIsOffline(airplaneOn);
     };
 
+    // Android: airplane mode changes are pushed by the native plugin
+    const unsubscribeNative = onPreflightChange((state) => setIsOffline(state.airplaneMode));
+    if (unsubscribeNative) {
+      return unsubscribeNative;
+    }
+
     checkStatus(); // Initial check
     const interval = setInterval(checkStatus, 2000); // UI updates every 2s
     return () => clearInterval(interval);
@@ -243,16 +253,15 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
 
   // ENFORCEMENT: Monitor Airplane Mode AND Earphones (Strict) during playback
   useEffect(() => {
-    let intervalId: NodeJS.Timeout;
-
-    const checkCompliance = async () => {
+    const checkCompliance = async (pushed?: PreflightState) => {
       // Only check if we are playing
       if (!playback.isPlaying) return;
 
+      const state = pushed ?? await getPreflightState();
+
       // Check Airplane Mode (if required)
       if (offlineModeRequired) {
-        const isAirplaneOn = await isAirplaneModeEnabled();
-        if (!isAirplaneOn) {
+        if (!state.airplaneMode) {
           // Violation detected! Pause and show warning
           if (audioRef.current) {
             audioRef.current.pause();
@@ -284,8 +293,7 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
 
       // Check Earphones (if required)
       if (earphoneCheckEnabled) {
-        const earphonesConnected = await areEarphonesConnected();
-        if (!earphonesConnected) {
+        if (!state.headphonesConnected) {
           // Violation detected! Pause and show warning
           if (audioRef.current) {
             audioRef.current.pause();
@@ -322,15 +330,19 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
       }
     };
 
-    // Run check immediately and then poll every 2 seconds
-    if (playback.isPlaying) {
-      checkCompliance();
-      intervalId = setInterval(checkCompliance, 2000);
+    if (!playback.isPlaying) return;
+
+    // Android: re-check whenever the native plugin reports a change
+    const unsubscribeNative = onPreflightChange((state) => checkCompliance(state));
+    if (unsubscribeNative) {
+      return unsubscribeNative;
     }
 
-    return () => {
-      if (intervalId) clearInterval(intervalId);
-    };
+    // Elsewhere run check immediately and then poll every 2 seconds
+    checkCompliance();
+    const intervalId = setInterval(() => checkCompliance(), 2000);
+
+    return () => clearInterval(intervalId);
   }, [playback.isPlaying, playback.pausesRemaining, releaseWakeLock, offlineModeRequired, earphoneCheckEnabled, complianceViolation.type, toast]);
 
   // Listen for earphone disconnect events (real-time)
@@ -370,6 +382,14 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
       }
     };
 
+    // Android: route changes are pushed by the native plugin
+    const unsubscribeNative = onHeadphonesChange((connected) => {
+      if (!connected) handleDeviceChange();
+    });
+    if (unsubscribeNative) {
+      return unsubscribeNative;
+    }
+
     const mediaDevices = navigator?.mediaDevices;
     const supportsDeviceChangeEvents =
       !!mediaDevices &&
@@ -396,8 +416,9 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
 
     try {
       // Check all conditions
-      const airplaneOk = !offlineModeRequired || await isAirplaneModeEnabled();
-      const earphonesOk = !earphoneCheckEnabled || await areEarphonesConnected();
+      const state = await getPreflightState();
+      const airplaneOk = !offlineModeRequired || state.airplaneMode;
+      const earphonesOk = !earphoneCheckEnabled || state.headphonesConnected;
 
       if (airplaneOk && earphonesOk) {
         // All conditions met - clear violation and allow resume
@@ -474,30 +495,79 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
           );
         }
 
-        let audioUrl: string;
-
-        // Load encrypted audio from local storage (offline-only)
-        try {
-          audioUrl = await loadEncryptedAudio(lesson.id, token!);
-          audioBlobUrlRef.current = audioUrl;
-          if (isMounted) setAudioSource("offline");
-        } catch (err) {
-          console.error("Failed to load offline audio:", err);
-          throw new Error(
-            "Failed to decrypt offline audio. Please re-download the lesson."
-          );
+        let selected: LessonAudio | null = null;
+
+        // Android: the native player decrypts from the encrypted chunks as
+        // it plays and keeps playing in the background / on the lock screen
+        if (Capacitor.getPlatform() === "android") {
+          try {
+            const nativeAudio = await loadNativeLessonAudio(lesson.id, token!, {
+              allowSeeking: lesson.allowSeeking === true,
+              title: lesson.title,
+            });
+            if (!isMounted) {
+              nativeAudio.src = "";
+              return;
+            }
+            selected = nativeAudio;
+            setAudioSource("offline");
+
+            // Paused or resumed outside the app UI (lock screen, notification)
+            nativeAudio.addEventListener("pause", () => {
+              setPlayback((prev) =>
+                prev.isPlaying
+                  ? {
+                      ...prev,
+                      isPlaying: false,
+                      isPaused: true,
+                      pausesRemaining: Math.max(0, prev.pausesRemaining - 1),
+                    }
+                  : prev
+              );
+              releaseWakeLock();
+            });
+            nativeAudio.addEventListener("play", () => {
+              setPlayback((prev) =>
+                prev.isPlaying ? prev : { ...prev, isPlaying: true, isPaused: false }
+              );
+            });
+          } catch (nativeError) {
+            console.warn("Native player unavailable, using audio element:", nativeError);
+          }
         }
 
-        if (!isMounted) return;
+        // Exact duration of an assembled file, from its MP3 seek index
+        let assembledDuration = 0;
+        if (!selected) {
+          let audioUrl: string;
+
+          // Load encrypted audio from local storage (offline-only)
+          try {
+            audioUrl = await loadEncryptedAudio(lesson.id, token!);
+            audioBlobUrlRef.current = audioUrl;
+            assembledDuration = await getAssembledAudioDuration(lesson.id);
+            if (isMounted) setAudioSource("offline");
+          } catch (err) {
+            console.error("Failed to load offline audio:", err);
+            throw new Error(
+              "Failed to decrypt offline audio. Please re-download the lesson."
+            );
+          }
+
+          if (!isMounted) return;
+
+          selected = new Audio(audioUrl);
+        }
 
-        const audio = new Audio(audioUrl);
+        const audio = selected;
         audioRef.current = audio;
 
         audio.addEventListener("loadedmetadata", () => {
-          // Prefer the known duration from the backend (lesson.durationSeconds)
-          // because audio.duration from native file URLs is often wildly
-          // inaccurate for VBR MP3s (WebView estimates from first-frame bitrate).
-          const trustedDuration = lesson.durationSeconds || 0;
+          // Prefer the duration counted from the file's frames, then the one
+          // from the backend (lesson.durationSeconds), because audio.duration
+          // from native file URLs is often wildly inaccurate for VBR MP3s
+          // (WebView estimates from first-frame bitrate).
+          const trustedDuration = assembledDuration || lesson.durationSeconds || 0;
           const audioDur = (audio.duration && audio.duration !== Infinity) ? audio.duration : 0;
           const bestDuration = trustedDuration > 0 ? trustedDuration : audioDur;
 
@@ -916,6 +986,7 @@ export function AudioPlayer({ lesson, onBack, onComplete }: AudioPlayerProps) {
             size="icon-xl"
             className="rounded-full"
             onClick={togglePlayback}
+            aria-label={playback.isPlaying ? "Pause lesson" : "Play lesson"}
             disabled={
               (!playback.isPlaying &&
                 playback.pausesRemaining === 0 &&
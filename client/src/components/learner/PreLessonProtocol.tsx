@@ -1,5 +1,6 @@
 import { useState, useEffect } from "react";
 import { Lesson, PreLessonChecklist } from "@/types";
+import { Capacitor } from "@capacitor/core";
 import { Button } from "@/components/ui/button";
 import { Checkbox } from "@/components/ui/checkbox";
 import {
@@ -17,6 +18,8 @@ import { cn } from "@/lib/utils";
 import {
   isAirplaneModeEnabled,
   areEarphonesConnected,
+  getPreflightState,
+  onPreflightChange,
   onNetworkStatusChange,
   openAirplaneModeSettings,
   getAirplaneModeInstructions,
@@ -106,12 +109,9 @@ export function PreLessonProtocol({
   const checkDeviceStatus = async (): Promise<boolean> => {
     setIsCheckingDevices(true);
     try {
-      const [airplaneMode, earphones] = await Promise.all([
-        flightModeCheckEnabled
-          ? isAirplaneModeEnabled()
-          : Promise.resolve(true),
-        earphoneCheckEnabled ? areEarphonesConnected() : Promise.resolve(true),
-      ]);
+      const state = await getPreflightState();
+      const airplaneMode = !flightModeCheckEnabled || state.airplaneMode;
+      const earphones = !earphoneCheckEnabled || state.headphonesConnected;
 
       setAutoCheckResults({
         airplaneMode: flightModeCheckEnabled ? airplaneMode : null,
@@ -182,9 +182,25 @@ export function PreLessonProtocol({
     checkDeviceStatus();
   }, []);
 
+  // Android: airplane mode and audio route changes are pushed natively
+  useEffect(() => {
+    if (!flightModeCheckEnabled && !earphoneCheckEnabled) return;
+
+    return onPreflightChange((state) => {
+      if (flightModeCheckEnabled) {
+        setAutoCheckResults((prev) => ({ ...prev, airplaneMode: state.airplaneMode }));
+        setChecklist((prev) => ({ ...prev, flightModeEnabled: state.airplaneMode }));
+      }
+      if (earphoneCheckEnabled) {
+        setAutoCheckResults((prev) => ({ ...prev, earphones: state.headphonesConnected }));
+        setChecklist((prev) => ({ ...prev, earbudsConnected: state.headphonesConnected }));
+      }
+    }) ?? undefined;
+  }, [flightModeCheckEnabled, earphoneCheckEnabled]);
+
   // Monitor audio device changes (Earphones) - REAL TIME
   useEffect(() => {
-    if (!earphoneCheckEnabled) return;
+    if (!earphoneCheckEnabled || Capacitor.getPlatform() === "android") return;
 
     const handleDeviceChange = async () => {
       try {
@@ -1,4 +1,7 @@
+import { useEffect } from "react";
 import { useQuery, useMutation, useQueryClient } from "@tanstack/react-query";
+import { Capacitor } from "@capacitor/core";
+import ProgressJournal from "@/plugins/progressJournal";
 import {
   coursesApi,
   lessonsApi,
@@ -428,12 +431,31 @@ export function useCourseProgress(courseId: string) {
 
 export function useUpdateLessonProgress() {
   const queryClient = useQueryClient();
+  const invalidateProgress = () => {
+    queryClient.invalidateQueries({ queryKey: ["myProgress"] });
+    queryClient.invalidateQueries({ queryKey: ["courseProgress"] });
+  };
+
+  // Queued updates reach the server later: refetch once the journal sends them
+  useEffect(() => {
+    if (Capacitor.getPlatform() !== "android") return;
+    const listener = ProgressJournal.addListener("journalFlushed", (result) => {
+      if (result.sent === 0) return;
+      queryClient.invalidateQueries({ queryKey: ["myProgress"] });
+      queryClient.invalidateQueries({ queryKey: ["courseProgress"] });
+    });
+    return () => {
+      listener.then((handle) => handle.remove());
+    };
+  }, [queryClient]);
+
   return useMutation({
     mutationFn: ({ lessonId, data }: { lessonId: string; data: any }) =>
       progressApi.updateLesson(lessonId, data),
-    onSuccess: () => {
-      queryClient.invalidateQueries({ queryKey: ["myProgress"] });
-      queryClient.invalidateQueries({ queryKey: ["courseProgress"] });
+    onSuccess: (result) => {
+      // Only queued: the server has not seen it yet, a refetch would be stale
+      if ((result as { message?: string })?.message === "Queued") return;
+      invalidateProgress();
     },
   });
 }
@@ -679,9 +701,15 @@ export function useMarkAttendance() {
       userId: string;
       status: "present" | "absent";
     }) => attendanceApi.mark(sessionId, userId, status),
-    onSuccess: () => {
+    onSuccess: (result) => {
       queryClient.invalidateQueries({ queryKey: ["attendance"] });
-      toast({ title: "Attendance marked" });
+      // Marked offline: the journal sends it once there is a network
+      toast({
+        title:
+          result?.message === "Queued"
+            ? "Attendance saved, will sync when online"
+            : "Attendance marked",
+      });
     },
     onError: (error: Error) => {
       toast({
@@ -1,6 +1,7 @@
 import { useEffect, useRef, useCallback } from 'react';
 import { Capacitor } from '@capacitor/core';
 import AudioProtection from '../plugins/audioProtection';
+import type { LessonAudio } from '../lib/lessonAudio';
 
 interface UseAudioProtectionOptions {
   onRecordingDetected?: () => void;
@@ -9,7 +10,7 @@ interface UseAudioProtectionOptions {
 }
 
 export const useAudioProtection = (
-  audioRef?: React.RefObject<HTMLAudioElement>,
+  audioRef?: React.RefObject<LessonAudio>,
   options: UseAudioProtectionOptions = {}
 ) => {
   const { onRecordingDetected, onRecordingStopped, autoMute = true } = options;
@@ -19,6 +19,8 @@ import {
   getDownloadsStorageSize,
   formatBytes,
   cleanupTempAudio,
+  upgradeLegacyDownloads,
+  compactStorage,
   DownloadedLesson,
   DownloadProgress,
 } from "@/lib/downloadManager";
@@ -92,6 +94,14 @@ export function useDownloads(): UseDownloadsReturn {
 
   useEffect(() => {
     refreshDownloads();
+    // Move older downloads to the container format and the chunk store in the background
+    upgradeLegacyDownloads()
+      .then(async (converted) => {
+        // Reclaim space left by interrupted downloads and preparations
+        const compacted = await compactStorage();
+        if (converted > 0 || (compacted?.removedFiles ?? 0) > 0) refreshDownloads();
+      })
+      .catch(console.warn);
   }, [refreshDownloads]);
 
   // Start downloading a lesson
@@ -38,6 +38,8 @@ import type {
 } from "@/types";
 import { Capacitor } from "@capacitor/core";
 import { Preferences } from "@capacitor/preferences";
+import ProgressJournal from "@/plugins/progressJournal";
+import type { JournalEvent } from "@/plugins/progressJournal";
 
 // Token storage key
 const TOKEN_KEY = "shadanga_kriya_auth_token";
@@ -131,6 +133,7 @@ export const initializeAuth = async (): Promise<boolean> => {
     }
 
     isInitialized = true;
+    configureJournal();
     console.log("[Auth] Initialization complete. Has token:", !!tokenCache);
     return !!tokenCache;
   } catch (error) {
@@ -230,6 +233,99 @@ async function apiRequest<T>(
   return text as unknown as T;
 }
 
+// On Android, record an update in the native journal instead of sending it,
+// so it survives being offline; it is sent in a batch once there is a network.
+// Important updates (durable) are sent right away and answered like a request
+// when the server can be reached.
+const useJournal = () => Capacitor.getPlatform() === "android";
+
+// The journal is per user: the one the token was issued to (its userId claim)
+const tokenUserId = (token: string): string | null => {
+  try {
+    const payload = token.split(".")[1].replace(/-/g, "+").replace(/_/g, "/");
+    const userId = JSON.parse(atob(payload)).userId;
+    return userId ? String(userId) : null;
+  } catch (e) {
+    return null;
+  }
+};
+
+let journalReady: Promise<void> = Promise.resolve();
+
+// Point the journal at the signed-in user and their token; on app start and
+// whenever the token changes, so events pending from earlier get sent
+function configureJournal(): Promise<void> {
+  const token = getToken();
+  const user = token ? tokenUserId(token) : null;
+  if (!useJournal() || !token || !user) return journalReady;
+  journalReady = ProgressJournal.configure({
+    baseUrl: API_BASE_URL,
+    user,
+    headers: {
+      Authorization: `Bearer ${token}`,
+      "x-client-platform": Capacitor.getPlatform(),
+      "ngrok-skip-browser-warning": "true",
+    },
+  }).catch((error) => console.error("[Journal] Configure failed:", error));
+  return journalReady;
+}
+
+// On logout: send what the journal holds while the token still works, then
+// stop. Whatever could not be sent waits for this user's next sign-in.
+async function signOutJournal(): Promise<void> {
+  await journalReady;
+  await ProgressJournal.flush().catch(() => undefined);
+  await ProgressJournal.signOut().catch(() => undefined);
+  journalReady = Promise.resolve();
+}
+
+async function journalRequest(event: JournalEvent): Promise<{ message: string }> {
+  await journalReady;
+  const { reply } = await ProgressJournal.record(event);
+  if (!reply) {
+    // Not durable, or offline: the journal keeps it and retries on reconnect
+    return { message: "Queued" };
+  }
+
+  let data: any = null;
+  try {
+    if (reply.body.trim()) data = JSON.parse(reply.body);
+  } catch (e) {
+    // Not JSON; fall back to the text
+  }
+  if (reply.status < 200 || reply.status >= 300) {
+    const errorMessage =
+      (data && (data.error || data.message)) || reply.body || "Request failed";
+    throw new Error(`${reply.status}: ${errorMessage}`);
+  }
+  // A batch answers 200 and lists the events it refused; fail this one the
+  // way the single-event endpoint would have
+  const refused = rejectedEntry(data, event);
+  if (refused) {
+    throw new Error(`${refused.httpStatus}: ${refused.error || "Request failed"}`);
+  }
+  return data ?? { message: reply.body };
+}
+
+// The batch reply's `rejected` entry for `event`: the one whose identifying
+// fields (e.g. lessonId, userId) all match the event's data
+function rejectedEntry(
+  data: any,
+  event: JournalEvent,
+): { httpStatus: number; error?: string } | null {
+  if (!data || !Array.isArray(data.rejected)) return null;
+  return (
+    data.rejected.find(
+      (entry: Record<string, unknown>) =>
+        entry &&
+        Object.entries(entry).every(
+          ([name, value]) =>
+            name === "httpStatus" || name === "error" || event.data[name] === value,
+        ),
+    ) ?? null
+  );
+}
+
 // Auth API
 export const authApi = {
   login: (email: string, password: string) =>
@@ -499,10 +595,18 @@ export const progressApi = {
   getCourse: (courseId: string) =>
     apiRequest<Record<string, unknown>>(`/progress/course/${courseId}`),
   updateLesson: (lessonId: string, data: ProgressUpdateData) =>
-    apiRequest<Record<string, unknown>>(`/progress/lesson/${lessonId}`, {
-      method: "PUT",
-      body: JSON.stringify(data),
-    }),
+    useJournal()
+      ? journalRequest({
+          path: "/progress/batch",
+          // Completion is kept apart so a later position update cannot replace it
+          key: data.completed ? `${lessonId}:completed` : lessonId,
+          data: { lessonId, ...data },
+          durable: !!data.completed,
+        })
+      : apiRequest<Record<string, unknown>>(`/progress/lesson/${lessonId}`, {
+          method: "PUT",
+          body: JSON.stringify(data),
+        }),
   // Admin actions
   grantPause: (
     userId: string,
@@ -608,10 +712,19 @@ export const attendanceApi = {
       message: string;
     }>(`/attendance/my/${courseId}`),
   mark: (sessionId: string, userId: string, status: "present" | "absent") =>
-    apiRequest<{ message: string }>(
-      `/attendance/session/${sessionId}/user/${userId}`,
-      { method: "PUT", body: JSON.stringify({ status }) },
-    ),
+    useJournal()
+      ? journalRequest({
+          method: "PUT",
+          path: `/attendance/session/${sessionId}/bulk`,
+          field: "attendances",
+          key: userId,
+          data: { userId, status },
+          durable: true,
+        })
+      : apiRequest<{ message: string }>(
+          `/attendance/session/${sessionId}/user/${userId}`,
+          { method: "PUT", body: JSON.stringify({ status }) },
+        ),
   bulkMark: (sessionId: string, attendances: BulkAttendanceData[]) =>
     apiRequest<{ message: string }>(`/attendance/session/${sessionId}/bulk`, {
       method: "PUT",
@@ -784,6 +897,7 @@ export const setAuthToken = async (token: string): Promise<void> => {
     const isNative = Capacitor.isNativePlatform();
     console.log("[Auth] Saving token, isNative:", isNative);
     tokenCache = token;
+    configureJournal();
 
     if (isNative) {
       // Ensure Preferences is configured with the same group
@@ -833,6 +947,7 @@ export const removeAuthToken = async (): Promise<void> => {
   try {
     const isNative = Capacitor.isNativePlatform();
     console.log("[Auth] Removing token, isNative:", isNative);
+    if (useJournal()) await signOutJournal();
     tokenCache = null;
 
     if (isNative) {
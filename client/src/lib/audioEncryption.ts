@@ -90,17 +90,32 @@ const importKey = async (hexKey: string): Promise<CryptoKey> => {
 // ---------------------------------------------------------------------------
 
 export interface ChunkInfo {
-  /** Size of the encrypted base64 text stored on disk */
+  /**
+   * Size of the chunk on disk: base64 text length for v3, raw ciphertext
+   * bytes for v4
+   */
   encryptedSize: number;
+  /**
+   * SHA-256 of the chunk's plaintext (hex), checked when the lesson is
+   * decrypted. Absent in manifests written before digests were added.
+   */
+  sha256?: string;
 }
 
 export interface ChunkManifest {
-  version: 3;
+  /**
+   * 3 = one base64 `_chunk_N.enc` file per chunk;
+   * 4 = raw ciphertext of all chunks in one container file (Android);
+   * 5 = chunks kept in the shared chunk store under their `sha256`, no
+   *     container (Android)
+   */
+  version: 3 | 4 | 5;
   algorithm: "AES-256-CTR";
   chunkSize: number;
   totalChunks: number;
   chunks: ChunkInfo[];
   nonce: string; // Base nonce/IV for CTR mode
+  container?: string; // v4: container path relative to Directory.Data
   metadata: {
     lessonId: string;
     originalSize: number;
@@ -108,6 +123,28 @@ export interface ChunkManifest {
   };
 }
 
+// ---------------------------------------------------------------------------
+// Chunk integrity
+// ---------------------------------------------------------------------------
+
+/** SHA-256 of a chunk's plaintext, hex encoded as stored in `ChunkInfo.sha256`. */
+export const chunkDigest = async (plain: ArrayBuffer): Promise<string> =>
+  arrayBufferToHex(await crypto.subtle.digest("SHA-256", plain));
+
+/**
+ * A chunk's plaintext did not match its manifest digest. Only that chunk
+ * needs fetching again; `chunkIndex` says which.
+ */
+export class ChunkIntegrityError extends Error {
+  readonly chunkIndex: number;
+
+  constructor(chunkIndex: number, message?: string) {
+    super(message ?? `Chunk ${chunkIndex} failed integrity check`);
+    this.name = "ChunkIntegrityError";
+    this.chunkIndex = chunkIndex;
+  }
+}
+
 // ---------------------------------------------------------------------------
 // Single-chunk encrypt / decrypt
 // ---------------------------------------------------------------------------
@@ -139,10 +176,7 @@ export const encryptChunk = async (
   // Do division first to avoid overflow: (chunkIndex * (ENCRYPTION_CHUNK_SIZE / 16))
   const blocksPerChunk = ENCRYPTION_CHUNK_SIZE / 16; // 327680 blocks per 5MB chunk
   const blockOffset = chunkIndex * blocksPerChunk;
-  
-  console.log(`[CTR] Chunk ${chunkIndex}: blocksPerChunk=${blocksPerChunk}, blockOffset=${blockOffset}`);
-  console.log(`[CTR] Base nonce: ${Array.from(baseNonce).map(b => b.toString(16).padStart(2, '0')).join('')}`);
-  
+
   // Add block offset to counter (big-endian addition)
   // We need to handle this as a 128-bit integer addition
   let carry = Math.floor(blockOffset);
@@ -151,8 +185,6 @@ export const encryptChunk = async (
     counter[i] = sum & 0xFF;
     carry = Math.floor(carry / 256) + Math.floor(sum / 256);
   }
-  
-  console.log(`[CTR] Final counter: ${Array.from(counter).map(b => b.toString(16).padStart(2, '0')).join('')}`);
 
   // Encrypt with CTR mode (no padding!)
   const encryptedBuffer = await crypto.subtle.encrypt(
@@ -172,13 +204,15 @@ export const encryptChunk = async (
  * @param hexKey          - hex-encoded AES-256 key
  * @param baseNonce       - base nonce/IV (16 bytes)
  * @param chunkIndex      - position of this chunk (0, 1, 2, ...)
+ * @param chunkSize       - the lesson's chunk size (manifest.chunkSize)
  * @returns the decrypted raw audio bytes (exact original, no padding!)
  */
 export const decryptChunk = async (
   encryptedBase64: string,
   hexKey: string,
   baseNonce: Uint8Array,
-  chunkIndex: number
+  chunkIndex: number,
+  chunkSize: number = ENCRYPTION_CHUNK_SIZE
 ): Promise<ArrayBuffer> => {
   const key = await importKey(hexKey);
   const dataBuffer = base64ToArrayBuffer(encryptedBase64);
@@ -187,12 +221,9 @@ export const decryptChunk = async (
   const counter = new Uint8Array(baseNonce);
   
   // Calculate block offset (same as encryption)
-  const blocksPerChunk = ENCRYPTION_CHUNK_SIZE / 16;
+  const blocksPerChunk = chunkSize / 16;
   const blockOffset = chunkIndex * blocksPerChunk;
-  
-  console.log(`[CTR-DEC] Chunk ${chunkIndex}: blocksPerChunk=${blocksPerChunk}, blockOffset=${blockOffset}`);
-  console.log(`[CTR-DEC] Base nonce: ${Array.from(baseNonce).map(b => b.toString(16).padStart(2, '0')).join('')}`);
-  
+
   // Add block offset to counter (big-endian addition)
   let carry = Math.floor(blockOffset);
   for (let i = 15; i >= 0 && carry > 0; i--) {
@@ -200,8 +231,6 @@ export const decryptChunk = async (
     counter[i] = sum & 0xFF;
     carry = Math.floor(carry / 256) + Math.floor(sum / 256);
   }
-  
-  console.log(`[CTR-DEC] Final counter: ${Array.from(counter).map(b => b.toString(16).padStart(2, '0')).join('')}`);
 
   // Decrypt with CTR mode
   return crypto.subtle.decrypt(
@@ -1,11 +1,35 @@
 import { Capacitor } from "@capacitor/core";
+import type { PluginListenerHandle } from "@capacitor/core";
 
 interface HeadphoneDetectionPlugin {
   isConnected: () => Promise<{ isConnected: boolean; deviceType?: string }>;
+  addListener?(
+    eventName: "headphonesChanged",
+    listenerFunc: (route: { isConnected: boolean; deviceType?: string }) => void
+  ): Promise<PluginListenerHandle>;
+  addListener?(
+    eventName: "preflightChanged",
+    listenerFunc: (state: PreflightState) => void
+  ): Promise<PluginListenerHandle>;
   isAirplaneModeEnabled?: () => Promise<{ isEnabled: boolean }>;
   requestExclusiveAudioFocus?: () => Promise<{ granted: boolean; message: string }>;
   abandonAudioFocus?: () => Promise<{ released: boolean }>;
   isRingerSilent?: () => Promise<{ isSilent: boolean; mode: string }>;
+  getPreflightState?: () => Promise<PreflightState>;
+  startPreflightUpdates?: () => Promise<PreflightState>;
+  stopPreflightUpdates?: () => Promise<void>;
+}
+
+/**
+ * Everything the pre-lesson checks look at, in one snapshot.
+ */
+export interface PreflightState {
+  airplaneMode: boolean;
+  headphonesConnected: boolean;
+  headphoneType?: string;
+  ringerSilent: boolean;
+  ringerMode: string;
+  screenRecording: boolean;
 }
 
 /**
@@ -151,6 +175,110 @@ export async function areEarphonesConnected(): Promise<boolean> {
   }
 }
 
+/**
+ * Subscribe to headphone connect/disconnect. On Android the native audio
+ * device callback pushes every output route change, so no polling is
+ * needed. Returns an unsubscribe function, or null where route events are
+ * not available (callers should fall back to polling).
+ */
+export function onHeadphonesChange(
+  callback: (isConnected: boolean, deviceType?: string) => void
+): (() => void) | null {
+  if (Capacitor.getPlatform() !== "android") {
+    return null;
+  }
+
+  let handle: PluginListenerHandle | null = null;
+  let removed = false;
+
+  import("@capacitor/core").then(async ({ registerPlugin }) => {
+    const HeadphoneDetection = registerPlugin<HeadphoneDetectionPlugin>("HeadphoneDetection");
+    const listener = await HeadphoneDetection.addListener?.("headphonesChanged", (route) => {
+      callback(route.isConnected === true, route.deviceType);
+    });
+    if (removed) {
+      listener?.remove();
+    } else {
+      handle = listener ?? null;
+    }
+  });
+
+  return () => {
+    removed = true;
+    handle?.remove();
+  };
+}
+
+/**
+ * Read airplane mode, headphones, ringer and screen recording at once. On
+ * Android this is a single native call; elsewhere it is composed from the
+ * individual checks.
+ */
+export async function getPreflightState(): Promise<PreflightState> {
+  if (Capacitor.getPlatform() === "android") {
+    try {
+      const { registerPlugin } = await import("@capacitor/core");
+      const HeadphoneDetection = registerPlugin<HeadphoneDetectionPlugin>("HeadphoneDetection");
+      if (HeadphoneDetection.getPreflightState) {
+        return await HeadphoneDetection.getPreflightState();
+      }
+    } catch (error) {
+      console.warn("[DeviceChecks] Native preflight snapshot failed, checking individually:", error);
+    }
+  }
+
+  const [airplaneMode, headphonesConnected, ringer] = await Promise.all([
+    isAirplaneModeEnabled(),
+    areEarphonesConnected(),
+    isRingerSilent(),
+  ]);
+  return {
+    airplaneMode,
+    headphonesConnected,
+    ringerSilent: ringer.isSilent,
+    ringerMode: ringer.mode,
+    screenRecording: false,
+  };
+}
+
+/**
+ * Subscribe to preflight changes. On Android the plugin pushes a fresh
+ * snapshot whenever airplane mode, ringer mode, the audio route or the
+ * display set changes. Returns an unsubscribe function, or null where
+ * change events are not available (callers should fall back to polling).
+ */
+export function onPreflightChange(
+  callback: (state: PreflightState) => void
+): (() => void) | null {
+  if (Capacitor.getPlatform() !== "android") {
+    return null;
+  }
+
+  let handle: PluginListenerHandle | null = null;
+  let removed = false;
+
+  import("@capacitor/core").then(async ({ registerPlugin }) => {
+    const HeadphoneDetection = registerPlugin<HeadphoneDetectionPlugin>("HeadphoneDetection");
+    const listener = await HeadphoneDetection.addListener?.("preflightChanged", callback);
+    if (removed) {
+      listener?.remove();
+      return;
+    }
+    handle = listener ?? null;
+    const initial = await HeadphoneDetection.startPreflightUpdates?.();
+    if (initial && !removed) {
+      callback(initial);
+    }
+  });
+
+  return () => {
+    removed = true;
+    handle?.remove();
+    import("@capacitor/core").then(({ registerPlugin }) => {
+      registerPlugin<HeadphoneDetectionPlugin>("HeadphoneDetection").stopPreflightUpdates?.();
+    });
+  };
+}
 
 /**
  * Monitor network status changes
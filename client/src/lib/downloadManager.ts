@@ -12,9 +12,30 @@ import { Capacitor } from "@capacitor/core";
 import { Filesystem, Directory, Encoding } from "@capacitor/filesystem";
 import { SecureStoragePlugin } from "capacitor-secure-storage-plugin";
 import FileConcatenation from "../plugins/fileConcatenation";
+import type { ConcatenationProgress, EncryptedSource } from "../plugins/fileConcatenation";
+import LessonStream from "../plugins/lessonStream";
+import LessonPlayer from "../plugins/lessonPlayer";
+import { NativeLessonAudio } from "./lessonAudio";
+import LessonContainer from "../plugins/lessonContainer";
+import LessonDownload from "../plugins/lessonDownload";
+import PlaybackCache from "../plugins/playbackCache";
+import StorageIndex from "../plugins/storageIndex";
+import LessonPrefetch from "../plugins/lessonPrefetch";
+import KeyVault from "../plugins/keyVault";
+import ChunkStore from "../plugins/chunkStore";
+import DeviceProfile from "../plugins/deviceProfile";
+import type {
+  LessonPrefetchResult,
+  PrefetchConstraints,
+  PrefetchLesson,
+} from "../plugins/lessonPrefetch";
+import type { CompactResult } from "../plugins/storageIndex";
+import type { DownloadProgressEvent } from "../plugins/lessonDownload";
 import {
   encryptChunk,
   decryptChunk,
+  chunkDigest,
+  ChunkIntegrityError,
   arrayBufferToBase64,
   ENCRYPTION_CHUNK_SIZE,
   ChunkManifest,
@@ -48,9 +69,19 @@ const DEVICE_ID_KEY = "sk_device_id";
 const DOWNLOADS_INDEX_KEY = "sk_downloads_index";
 const AUDIO_FOLDER = "sk_audio_files";
 
+// v4 container file holding all encrypted chunks of a lesson (Android)
+const containerPathFor = (lessonId: string): string => `${AUDIO_FOLDER}/${lessonId}.skl`;
+
+// Native job id used for a lesson's playback preparation (progress + cancel)
+const preparationJobId = (lessonId: string): string => `prepare_${lessonId}`;
+
 // Download/decryption locks to prevent race conditions
 const downloadLocks = new Map<string, Promise<void>>();
 const decryptionLocks = new Map<string, Promise<string>>();
+// Lessons loaded for playback and not yet cleaned up; their temp files are in use
+const playbackLessons = new Set<string>();
+// Android: decrypted file each lesson is played from, when it was assembled rather than streamed
+const assembledFiles = new Map<string, { path: string; durationMs?: number }>();
 
 // ---------------------------------------------------------------------------
 // Secure key storage helpers
@@ -111,13 +142,29 @@ const ensureAudioFolder = async (): Promise<void> => {
   }
 };
 
+/**
+ * Chunk size for lessons written natively from now on: the device profile's
+ * (smaller on low-RAM devices), else the fixed default. Readers take the
+ * size from each lesson's manifest, so lessons of different sizes coexist.
+ */
+const nativeChunkSize = async (): Promise<number> => {
+  try {
+    return (await DeviceProfile.getProfile()).chunkSize;
+  } catch {
+    return ENCRYPTION_CHUNK_SIZE;
+  }
+};
+
 // ---------------------------------------------------------------------------
 // Encrypt + save (download-time)
 // ---------------------------------------------------------------------------
 
 /**
  * Split raw audio into 5 MB chunks, encrypt each one with AES-CTR, and write
- * the encrypted base64 text + a manifest to the filesystem.
+ * the encrypted chunks + a manifest to the filesystem.
+ *
+ * On Android the chunks are stored as raw bytes in one v4 container file
+ * (no base64 inflation on disk); elsewhere each chunk is a base64 text file.
  *
  * CTR mode is a stream cipher - no padding added, so audio structure stays intact!
  * Peak memory ≈ 2 × chunkSize (one raw + one encrypted) ≈ 10 MB.
@@ -137,6 +184,12 @@ const encryptAndSaveChunks = async (
   // Generate ONE base nonce for the entire file
   const baseNonce = crypto.getRandomValues(new Uint8Array(16));
 
+  const useContainer = Capacitor.getPlatform() === "android";
+  const containerPath = containerPathFor(lessonId);
+  if (useContainer) {
+    await LessonContainer.create({ path: containerPath });
+  }
+
   console.log(
     `[DL] Encrypting ${totalSize} bytes in ${numChunks} chunks of ${ENCRYPTION_CHUNK_SIZE} bytes using AES-CTR`
   );
@@ -147,29 +200,29 @@ const encryptAndSaveChunks = async (
       const end = Math.min(start + ENCRYPTION_CHUNK_SIZE, totalSize);
       const chunkData = audioData.slice(start, end);
 
-      console.log(`[ENC] === Encrypting chunk ${i} ===`);
-      console.log(`[ENC] Chunk ${i} byte range: ${start} to ${end} (size: ${chunkData.byteLength})`);
-      
-      // DEBUG: Log first 32 bytes of original chunk
-      const firstBytes = new Uint8Array(chunkData.slice(0, 32));
-      const firstBytesHex = Array.from(firstBytes).map(b => b.toString(16).padStart(2, '0')).join('');
-      console.log(`[ENC] Chunk ${i} first 32 bytes (ORIGINAL): ${firstBytesHex}`);
-
       // Encrypt this chunk with position-based counter (no padding!)
       const { encryptedBase64 } = await encryptChunk(chunkData, hexKey, baseNonce, i);
-      console.log(`[ENC] Chunk ${i} encrypted size: ${encryptedBase64.length} chars`);
+      const sha256 = await chunkDigest(chunkData);
 
-      // Write encrypted text to its own file
-      const chunkPath = `${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`;
-      console.log(`[ENC] Writing chunk ${i} to: ${chunkPath}`);
-      await Filesystem.writeFile({
-        path: chunkPath,
-        data: encryptedBase64,
-        directory: Directory.Data,
-        encoding: Encoding.UTF8,
-      });
+      if (useContainer) {
+        // Append raw ciphertext to the lesson's v4 container
+        const { size } = await LessonContainer.append({
+          path: containerPath,
+          data: encryptedBase64,
+        });
+        chunks.push({ encryptedSize: size, sha256 });
+      } else {
+        // Write encrypted text to its own file
+        const chunkPath = `${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`;
+        await Filesystem.writeFile({
+          path: chunkPath,
+          data: encryptedBase64,
+          directory: Directory.Data,
+          encoding: Encoding.UTF8,
+        });
 
-      chunks.push({ encryptedSize: encryptedBase64.length });
+        chunks.push({ encryptedSize: encryptedBase64.length, sha256 });
+      }
 
       console.log(
         `[ENC] ✓ Chunk ${i + 1}/${numChunks} encrypted & saved (${encryptedBase64.length} chars)`
@@ -178,6 +231,9 @@ const encryptAndSaveChunks = async (
     }
   } catch (error) {
     // Cleanup partial files on failure
+    if (useContainer) {
+      await LessonContainer.abort({ path: containerPath }).catch(() => {});
+    }
     for (let j = 0; j < chunks.length; j++) {
       try {
         await Filesystem.deleteFile({
@@ -192,12 +248,13 @@ const encryptAndSaveChunks = async (
   }
 
   const manifest: ChunkManifest = {
-    version: 3,
+    version: useContainer ? 4 : 3,
     algorithm: "AES-256-CTR",
     chunkSize: ENCRYPTION_CHUNK_SIZE,
     totalChunks: numChunks,
     chunks,
     nonce: arrayBufferToHex(baseNonce.buffer),
+    ...(useContainer ? { container: containerPath } : {}),
     metadata: {
       lessonId,
       originalSize: totalSize,
@@ -205,6 +262,11 @@ const encryptAndSaveChunks = async (
     },
   };
 
+  if (useContainer) {
+    // Writes the header and moves the container into place atomically
+    await LessonContainer.finish({ path: containerPath, manifest });
+  }
+
   // Persist the manifest
   await Filesystem.writeFile({
     path: `${AUDIO_FOLDER}/${lessonId}_manifest.json`,
@@ -216,6 +278,160 @@ const encryptAndSaveChunks = async (
   return manifest;
 };
 
+/**
+ * Android: download, encrypt and store a lesson natively in one streaming
+ * pass (no audio in JS memory), then persist the returned manifest. An
+ * interrupted download resumes from its last completed chunk on retry.
+ * `onProgress` receives 0-100.
+ */
+const downloadAndEncryptNatively = async (
+  lessonId: string,
+  audioUrl: string,
+  hexKey: string,
+  onProgress?: (progress: number) => void
+): Promise<ChunkManifest> => {
+  const jobId = `download_${lessonId}`;
+  const listener = await LessonDownload.addListener(
+    "downloadProgress",
+    (event: DownloadProgressEvent) => {
+      if (event.jobId === jobId && event.totalBytes > 0) {
+        onProgress?.(Math.min(100, (event.bytesDone / event.totalBytes) * 100));
+      }
+    }
+  );
+
+  try {
+    const { manifest } = await LessonDownload.download({
+      lessonId,
+      url: audioUrl,
+      headers: { Accept: "audio/mpeg,audio/*;q=0.9,*/*;q=0.8" },
+      containerPath: containerPathFor(lessonId),
+      key: hexKey,
+      chunkSize: await nativeChunkSize(),
+      jobId,
+    });
+
+    await Filesystem.writeFile({
+      path: `${AUDIO_FOLDER}/${lessonId}_manifest.json`,
+      data: JSON.stringify(manifest),
+      directory: Directory.Data,
+      encoding: Encoding.UTF8,
+    });
+    return manifest;
+  } finally {
+    await listener.remove();
+  }
+};
+
+/**
+ * Where the native plugins read a lesson's ciphertext from: the chunk store
+ * (v5), the v4 container, or the list of v3 base64 chunk files.
+ */
+const nativeChunkSource = (lessonId: string, manifest: ChunkManifest): EncryptedSource => {
+  if (manifest.version === 5) {
+    return { chunkStore: true, digests: manifest.chunks.map((c) => c.sha256 ?? "") };
+  }
+  if (manifest.version === 4 && manifest.container) {
+    return { containerPath: manifest.container };
+  }
+  const inputPaths: string[] = [];
+  for (let i = 0; i < manifest.totalChunks; i++) {
+    inputPaths.push(`${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`);
+  }
+  return { inputPaths };
+};
+
+/** Manifest digests for the native assembler, or undefined if there are none. */
+const chunkDigests = (manifest: ChunkManifest): (string | null)[] | undefined =>
+  manifest.chunks.some((c) => c.sha256)
+    ? manifest.chunks.map((c) => c.sha256 ?? null)
+    : undefined;
+
+/**
+ * Playback cache key for a lesson: changes with its key or manifest, so a
+ * re-download or rotated key never replays a stale decrypted copy. Hashed,
+ * so no key material ends up in a file name.
+ */
+const playbackFingerprint = async (manifest: ChunkManifest, keyId: string): Promise<string> => {
+  const material = new TextEncoder().encode(`${keyId}:${JSON.stringify(manifest)}`);
+  return (await chunkDigest(material.buffer)).slice(0, 32);
+};
+
+/**
+ * Fetch one damaged chunk again with a Range request and write it back in
+ * place, leaving the rest of the lesson untouched. Needs network access and
+ * a server that honours ranges; throws a `ChunkIntegrityError` naming the
+ * chunk otherwise.
+ */
+const repairLessonChunk = async (
+  lessonId: string,
+  token: string,
+  manifest: ChunkManifest,
+  lessonKey: LessonKey,
+  chunkIndex: number
+): Promise<void> => {
+  const sha256 = manifest.chunks[chunkIndex]?.sha256;
+  try {
+    if (!sha256) throw new Error("No digest to verify a repaired chunk against");
+    // The damaged chunk was dropped from the store; only a full download brings it back
+    if (manifest.version === 5) throw new Error("Stored chunks are replaced by a new download");
+    const { audioUrl } = await authorizeDownload(lessonId, token);
+
+    if (manifest.version === 4 && manifest.container) {
+      await LessonDownload.repairChunk({
+        url: audioUrl,
+        headers: { Accept: "audio/mpeg,audio/*;q=0.9,*/*;q=0.8" },
+        containerPath: manifest.container,
+        ...nativeKey(lessonId, lessonKey),
+        nonce: manifest.nonce,
+        chunkSize: manifest.chunkSize,
+        totalSize: manifest.metadata.originalSize,
+        chunkIndex,
+        sha256,
+      });
+    } else {
+      const start = chunkIndex * manifest.chunkSize;
+      const end = Math.min(start + manifest.chunkSize, manifest.metadata.originalSize);
+      const isIOS = Capacitor.getPlatform() === "ios";
+      const url = isIOS
+        ? `${API_BASE}/downloads/proxy/${lessonId}?deviceId=${encodeURIComponent(await getDeviceId())}`
+        : audioUrl;
+      const response = await fetch(url, {
+        headers: {
+          Range: `bytes=${start}-${end - 1}`,
+          ...(isIOS ? { Authorization: `Bearer ${token}` } : {}),
+        },
+        credentials: isIOS ? "include" : "omit",
+        cache: "no-store",
+      });
+      if (response.status !== 206) {
+        throw new Error(`Range request not honoured (HTTP ${response.status})`);
+      }
+      const plain = await response.arrayBuffer();
+      if (plain.byteLength !== end - start || (await chunkDigest(plain)) !== sha256) {
+        throw new Error("Re-downloaded data does not match the manifest");
+      }
+      const baseNonce = new Uint8Array(hexToArrayBuffer(manifest.nonce));
+      const hexKey = lessonKey.key ?? (await loadDecryptionKey(lessonId, token));
+      const { encryptedBase64 } = await encryptChunk(plain, hexKey, baseNonce, chunkIndex);
+      await Filesystem.writeFile({
+        path: `${AUDIO_FOLDER}/${lessonId}_chunk_${chunkIndex}.enc`,
+        data: encryptedBase64,
+        directory: Directory.Data,
+        encoding: Encoding.UTF8,
+      });
+    }
+    console.log(`[DL] ✓ Repaired chunk ${chunkIndex} of lesson ${lessonId}`);
+  } catch (error) {
+    console.error(`[DL] Could not repair chunk ${chunkIndex}:`, error);
+    throw new ChunkIntegrityError(
+      chunkIndex,
+      `Part ${chunkIndex + 1} of this lesson is damaged and could not be downloaded again. ` +
+        "Connect to the internet and try again, or re-download the lesson."
+    );
+  }
+};
+
 // ---------------------------------------------------------------------------
 // Delete helpers
 // ---------------------------------------------------------------------------
@@ -236,6 +452,18 @@ const deleteAudioData = async (lessonId: string): Promise<void> => {
         manifestResult.data as string
       );
 
+      if (manifest.container) {
+        try {
+          await Filesystem.deleteFile({
+            path: manifest.container,
+            directory: Directory.Data,
+          });
+        } catch {
+          // Ignore
+        }
+      }
+
+      // v3 chunk files (also leftovers of an interrupted v4 conversion)
       for (let i = 0; i < manifest.totalChunks; i++) {
         try {
           await Filesystem.deleteFile({
@@ -250,6 +478,15 @@ const deleteAudioData = async (lessonId: string): Promise<void> => {
       // Manifest missing — nothing to clean
     }
 
+    // Partial native download left by an interrupted attempt, and any
+    // decrypted copy kept for replay
+    if (Capacitor.getPlatform() === "android") {
+      await LessonDownload.discard({ containerPath: containerPathFor(lessonId) }).catch(() => {});
+      await PlaybackCache.invalidate({ lessonId }).catch(() => {});
+      // Chunks other lessons still share stay in the store
+      await ChunkStore.release({ lessonId }).catch(() => {});
+    }
+
     // Delete manifest
     try {
       await Filesystem.deleteFile({
@@ -489,120 +726,155 @@ export const downloadLesson = async (
       downloadUrl = `${API_BASE}/downloads/proxy/${lessonId}?deviceId=${encodeURIComponent(deviceId)}`;
     }
 
-    // 3. Stream-download the audio
+    let manifest: ChunkManifest;
+    if (platform === "android") {
+      // 3. Download, encrypt and store natively in one streaming pass
+      try {
+        manifest = await downloadAndEncryptNatively(
+          lessonId,
+          audioUrl,
+          encryptionKey,
+          (dlProgress) => {
+            // Map native progress 10 → 85
+            updateProgress("downloading", Math.round(10 + (dlProgress / 100) * 75));
+          }
+        );
+      } catch (nativeError: any) {
+        console.error(`[DL] Native download failed:`, nativeError?.message);
+        if (nativeError?.code !== "CANCELLED" && retryCount < MAX_RETRIES) {
+          // The retry resumes from the last chunk that reached the disk
+          console.log(`[DL] Retrying...`);
+          downloadLocks.delete(lessonId);
+          await new Promise(resolve => setTimeout(resolve, 2000));
+          return downloadLesson(lessonId, courseId, token, onProgress, retryCount + 1);
+        }
+        throw nativeError;
+      }
+    } else {
+      // 3. Stream-download the audio
     
-    const controller = new AbortController();
-    const timeoutId = setTimeout(() => controller.abort(), 600_000); // 10 min timeout for large files
+      const controller = new AbortController();
+      const timeoutId = setTimeout(() => controller.abort(), 600_000); // 10 min timeout for large files
 
-    let chunks: Uint8Array[] = [];
-    let receivedBytes = 0;
+      let chunks: Uint8Array[] = [];
+      let receivedBytes = 0;
 
-    try {
-      // For iOS, we need to be more careful with fetch options
-      const fetchOptions: RequestInit = {
-        signal: controller.signal,
-        method: 'GET',
-        headers: {
-          'Accept': 'audio/mpeg,audio/*;q=0.9,*/*;q=0.8',
-          // Add auth header for proxy endpoint
-          ...(isIOS ? { 'Authorization': `Bearer ${token}` } : {}),
-        },
-        credentials: isIOS ? 'include' : 'omit',
-        mode: 'cors',
-        cache: 'no-store',
-      };
+      try {
+        // For iOS, we need to be more careful with fetch options
+        const fetchOptions: RequestInit = {
+          signal: controller.signal,
+          method: 'GET',
+          headers: {
+            'Accept': 'audio/mpeg,audio/*;q=0.9,*/*;q=0.8',
+            // Add auth header for proxy endpoint
+            ...(isIOS ? { 'Authorization': `Bearer ${token}` } : {}),
+          },
+          credentials: isIOS ? 'include' : 'omit',
+          mode: 'cors',
+          cache: 'no-store',
+        };
       
-      console.log(`[DL] Starting fetch...`);
-      const audioResponse = await fetch(downloadUrl, fetchOptions);
-      clearTimeout(timeoutId);
+        console.log(`[DL] Starting fetch...`);
+        const audioResponse = await fetch(downloadUrl, fetchOptions);
+        clearTimeout(timeoutId);
       
-      if (!audioResponse.ok) {
-        throw new Error(`HTTP ${audioResponse.status}: ${audioResponse.statusText}`);
-      }
+        if (!audioResponse.ok) {
+          throw new Error(`HTTP ${audioResponse.status}: ${audioResponse.statusText}`);
+        }
 
-      const contentLength = audioResponse.headers.get("content-length");
-      const totalBytes = contentLength ? parseInt(contentLength, 10) : 0;
-      const reader = audioResponse.body?.getReader();
-      if (!reader) throw new Error("Failed to read audio stream");
+        const contentLength = audioResponse.headers.get("content-length");
+        const totalBytes = contentLength ? parseInt(contentLength, 10) : 0;
+        const reader = audioResponse.body?.getReader();
+        if (!reader) throw new Error("Failed to read audio stream");
 
-      while (true) {
-        const { done, value } = await reader.read();
-        if (done) break;
+        while (true) {
+          const { done, value } = await reader.read();
+          if (done) break;
 
-        chunks.push(value);
-        receivedBytes += value.length;
+          chunks.push(value);
+          receivedBytes += value.length;
 
-        if (totalBytes > 0) {
-          const dlProgress = 10 + (receivedBytes / totalBytes) * 50;
-          updateProgress("downloading", Math.min(dlProgress, 60));
+          if (totalBytes > 0) {
+            const dlProgress = 10 + (receivedBytes / totalBytes) * 50;
+            updateProgress("downloading", Math.min(dlProgress, 60));
+          }
         }
-      }
-    } catch (fetchError: any) {
-      clearTimeout(timeoutId);
+      } catch (fetchError: any) {
+        clearTimeout(timeoutId);
       
-      // Create detailed error message for debugging
-      const errorDetails = {
-        type: typeof fetchError,
-        name: fetchError?.name || 'Unknown',
-        message: fetchError?.message || 'Unknown error',
-        toString: fetchError?.toString() || '',
-        platform: Capacitor.getPlatform(),
-        urlType: isIOS ? 'proxy' : 'direct',
-        attempt: retryCount + 1,
-      };
+        // Create detailed error message for debugging
+        const errorDetails = {
+          type: typeof fetchError,
+          name: fetchError?.name || 'Unknown',
+          message: fetchError?.message || 'Unknown error',
+          toString: fetchError?.toString() || '',
+          platform: Capacitor.getPlatform(),
+          urlType: isIOS ? 'proxy' : 'direct',
+          attempt: retryCount + 1,
+        };
       
-      const debugMessage = `Platform: ${errorDetails.platform}\n` +
-        `URL: ${errorDetails.urlType}\n` +
-        `Error: ${errorDetails.name}\n` +
-        `Message: ${errorDetails.message}\n` +
-        `Attempt: ${errorDetails.attempt}/${MAX_RETRIES + 1}`;
+        const debugMessage = `Platform: ${errorDetails.platform}\n` +
+          `URL: ${errorDetails.urlType}\n` +
+          `Error: ${errorDetails.name}\n` +
+          `Message: ${errorDetails.message}\n` +
+          `Attempt: ${errorDetails.attempt}/${MAX_RETRIES + 1}`;
       
-      console.error(`[DL] Fetch failed:`, debugMessage);
+        console.error(`[DL] Fetch failed:`, debugMessage);
       
-      // Retry logic for network errors
-      if (retryCount < MAX_RETRIES) {
-        console.log(`[DL] Retrying...`);
-        downloadLocks.delete(lessonId);
-        await new Promise(resolve => setTimeout(resolve, 2000));
-        return downloadLesson(lessonId, courseId, token, onProgress, retryCount + 1);
-      }
+        // Retry logic for network errors
+        if (retryCount < MAX_RETRIES) {
+          console.log(`[DL] Retrying...`);
+          downloadLocks.delete(lessonId);
+          await new Promise(resolve => setTimeout(resolve, 2000));
+          return downloadLesson(lessonId, courseId, token, onProgress, retryCount + 1);
+        }
       
-      // Final error after all retries
-      throw new Error(debugMessage);
-    }
-
-    // Combine fetch chunks into one ArrayBuffer
-    const totalLength = chunks.reduce((acc, c) => acc + c.length, 0);
-    const audioData = new Uint8Array(totalLength);
-    let offset = 0;
-    for (const c of chunks) {
-      audioData.set(c, offset);
-      offset += c.length;
-    }
-    // Release fetch-chunk references
-    chunks = [];
-
-    updateProgress("encrypting", 65);
+        // Final error after all retries
+        throw new Error(debugMessage);
+      }
 
-    // 3. Encrypt in 5 MB chunks & save each to disk
-    const manifest = await encryptAndSaveChunks(
-      lessonId,
-      audioData.buffer,
-      encryptionKey,
-      (encProgress) => {
-        // Map encryption progress 65 → 85
-        const overall = 65 + (encProgress / 100) * 20;
-        updateProgress(
-          encProgress < 100 ? "encrypting" : "saving",
-          Math.round(overall)
-        );
+      // Combine fetch chunks into one ArrayBuffer
+      const totalLength = chunks.reduce((acc, c) => acc + c.length, 0);
+      const audioData = new Uint8Array(totalLength);
+      let offset = 0;
+      for (const c of chunks) {
+        audioData.set(c, offset);
+        offset += c.length;
       }
-    );
+      // Release fetch-chunk references
+      chunks = [];
+
+      updateProgress("encrypting", 65);
+
+      // 3. Encrypt in 5 MB chunks & save each to disk
+      manifest = await encryptAndSaveChunks(
+        lessonId,
+        audioData.buffer,
+        encryptionKey,
+        (encProgress) => {
+          // Map encryption progress 65 → 85
+          const overall = 65 + (encProgress / 100) * 20;
+          updateProgress(
+            encProgress < 100 ? "encrypting" : "saving",
+            Math.round(overall)
+          );
+        }
+      );
+    }
 
     updateProgress("saving", 88);
 
     // 4. Save encryption key for offline playback
     await saveSecureKey(`${KEY_STORAGE_PREFIX}${lessonId}`, encryptionKey);
+    if (Capacitor.getPlatform() === "android") {
+      // Playback then resolves the key natively; the vault is filled lazily if this fails
+      await KeyVault.store({ lessonId, key: encryptionKey }).catch((error) =>
+        console.warn("[DL] Key vault unavailable:", error)
+      );
+      if (manifest.version === 4) {
+        manifest = (await moveToChunkStore(lessonId, encryptionKey)) ?? manifest;
+      }
+    }
 
     // 5. Update downloads index
     const totalEncryptedSize = manifest.chunks.reduce(
@@ -642,6 +914,118 @@ export const downloadLesson = async (
   return downloadPromise;
 };
 
+// ---------------------------------------------------------------------------
+// Upgrade v2 / v3 / v4 downloads to the chunk store (Android)
+// ---------------------------------------------------------------------------
+
+let legacyUpgrade: Promise<number> | null = null;
+
+/**
+ * Re-encrypt a v2 (AES-256-CBC) download into a v4 CTR container natively,
+ * chunk by chunk, instead of fetching it again. Uses the key kept in secure
+ * storage, else the key vault's.
+ */
+const migrateCbcDownload = async (lessonId: string, manifest: ChunkManifest): Promise<ChunkManifest> => {
+  const storedKey = await getSecureKey(`${KEY_STORAGE_PREFIX}${lessonId}`);
+  const source = nativeChunkSource(lessonId, manifest) as { inputPaths: string[] };
+  const { manifest: migrated } = await LessonContainer.migrateFromV2({
+    manifestPath: `${AUDIO_FOLDER}/${lessonId}_manifest.json`,
+    containerPath: containerPathFor(lessonId),
+    inputPaths: source.inputPaths,
+    chunkSize: await nativeChunkSize(),
+    ...(storedKey ? { key: storedKey } : { lessonId }),
+  });
+  console.log(`[DL] ✓ Migrated lesson ${lessonId} from CBC to v4 storage`);
+  return migrated;
+};
+
+/**
+ * Move a v4 lesson into the shared chunk store (v5), so audio it has in
+ * common with other lessons, or with its previous download, is kept once.
+ * Resolves to the v5 manifest, or null if the lesson stays a playable v4
+ * container.
+ */
+const moveToChunkStore = async (lessonId: string, key?: string): Promise<ChunkManifest | null> => {
+  try {
+    const { manifest, added, shared } = await ChunkStore.ingest({
+      manifestPath: `${AUDIO_FOLDER}/${lessonId}_manifest.json`,
+      lessonId,
+      ...(key ? { key } : {}),
+    });
+    console.log(`[DL] ✓ Lesson ${lessonId} in the chunk store (${added} new, ${shared} shared chunks)`);
+    return manifest;
+  } catch (error) {
+    console.warn(`[DL] Keeping lesson ${lessonId} in its container:`, error);
+    return null;
+  }
+};
+
+/**
+ * Convert every downloaded v3 lesson (base64 chunk files) into a v4 container
+ * natively, one lesson at a time, without re-downloading; v2 (CBC) lessons
+ * are re-encrypted on the way. v4 lessons then move into the chunk store.
+ * Safe to call repeatedly; concurrent calls share one run. Resolves to the
+ * number of lessons converted.
+ */
+export const upgradeLegacyDownloads = (): Promise<number> => {
+  if (Capacitor.getPlatform() !== "android") return Promise.resolve(0);
+  if (legacyUpgrade) return legacyUpgrade;
+
+  legacyUpgrade = (async () => {
+    let converted = 0;
+    const index = await getDownloadsIndex();
+
+    for (const lessonId of Object.keys(index)) {
+      // Never convert underneath an active download or playback preparation
+      if (downloadLocks.has(lessonId) || decryptionLocks.has(lessonId)) continue;
+
+      const manifestPath = `${AUDIO_FOLDER}/${lessonId}_manifest.json`;
+      try {
+        const manifestResult = await Filesystem.readFile({
+          path: manifestPath,
+          directory: Directory.Data,
+          encoding: Encoding.UTF8,
+        });
+        const manifest: ChunkManifest = JSON.parse(manifestResult.data as string);
+        let upgraded: ChunkManifest;
+        if ((manifest.version as number) === 2) {
+          upgraded = await migrateCbcDownload(lessonId, manifest);
+        } else if (manifest.version === 3) {
+          const source = nativeChunkSource(lessonId, manifest) as { inputPaths: string[] };
+          ({ manifest: upgraded } = await LessonContainer.convertFromV3({
+            manifestPath,
+            containerPath: containerPathFor(lessonId),
+            inputPaths: source.inputPaths,
+          }));
+        } else if (manifest.version === 4) {
+          upgraded = manifest;
+        } else {
+          continue;
+        }
+        const stored = await moveToChunkStore(lessonId);
+        if (!stored && upgraded === manifest) continue;
+        upgraded = stored ?? upgraded;
+
+        const totalEncryptedSize = upgraded.chunks.reduce((sum, c) => sum + c.encryptedSize, 0);
+        const latestIndex = await getDownloadsIndex();
+        if (latestIndex[lessonId]) {
+          latestIndex[lessonId].fileSizeBytes = totalEncryptedSize;
+          await saveDownloadsIndex(latestIndex);
+        }
+        converted++;
+        console.log(`[DL] ✓ Upgraded lesson ${lessonId} to v${upgraded.version} storage`);
+      } catch (error) {
+        console.warn(`[DL] Could not upgrade lesson ${lessonId}:`, error);
+      }
+    }
+    return converted;
+  })().finally(() => {
+    legacyUpgrade = null;
+  });
+
+  return legacyUpgrade;
+};
+
 // ---------------------------------------------------------------------------
 // Check / list downloads
 // ---------------------------------------------------------------------------
@@ -670,30 +1054,38 @@ export const getDownloadedLessonsForCourse = async (
 // ---------------------------------------------------------------------------
 
 /**
- * Decrypt a downloaded lesson chunk-by-chunk and write the result to a temp
- * file on disk. Returns a web-accessible URL for the temp file that can
- * be passed straight to `new Audio(url)`.
- *
- * Uses AES-CTR mode - no padding, so audio structure stays perfect!
- * Peak memory ≈ 2 × chunkSize ≈ 10 MB (one encrypted + one decrypted buffer
- * exist at the same time; both are released before the next iteration).
+ * A lesson key as the playback paths hold it. On Android it normally lives
+ * only in the native key vault: `key` is then absent and native plugins
+ * look the key up by lesson id (see `nativeKey`). `keyId` identifies the
+ * key without revealing it.
  */
-export const loadEncryptedAudio = async (
+interface LessonKey {
+  key?: string;
+  keyId: string;
+}
+
+/** Key parameters for a native decrypting plugin. */
+const nativeKey = (lessonId: string, lessonKey: LessonKey): { key: string } | { lessonId: string } =>
+  lessonKey.key !== undefined ? { key: lessonKey.key } : { lessonId };
+
+/**
+ * Read a downloaded lesson's manifest and its decryption key. Shared by
+ * every playback path.
+ */
+const loadPlaybackSecrets = async (
   lessonId: string,
   token: string
-): Promise<string> => {
-  // Check if decryption is already in progress
-  const existingDecryption = decryptionLocks.get(lessonId);
-  if (existingDecryption) {
-    console.log(`[DL] Decryption already in progress for lesson ${lessonId}, waiting...`);
-    return existingDecryption;
-  }
+): Promise<{ manifest: ChunkManifest; lessonKey: LessonKey }> => {
+  const manifest = await loadPlaybackManifest(lessonId);
+  const lessonKey =
+    Capacitor.getPlatform() === "android"
+      ? await loadVaultKey(lessonId, token)
+      : await loadDecryptionKey(lessonId, token).then((key) => ({ key, keyId: key }));
+  return { manifest, lessonKey };
+};
 
-  // Create decryption promise and store it
-  const decryptionPromise = (async () => {
-    try {
-      // 1. Load manifest
-      let manifest: ChunkManifest;
+const loadPlaybackManifest = async (lessonId: string): Promise<ChunkManifest> => {
+  let manifest: ChunkManifest;
   try {
     const manifestResult = await Filesystem.readFile({
       path: `${AUDIO_FOLDER}/${lessonId}_manifest.json`,
@@ -701,9 +1093,20 @@ export const loadEncryptedAudio = async (
       encoding: Encoding.UTF8,
     });
     manifest = JSON.parse(manifestResult.data as string);
+
+    // v2 (CBC) downloads are re-encrypted locally rather than fetched again
+    if ((manifest.version as number) === 2 && Capacitor.getPlatform() === "android") {
+      manifest = await migrateCbcDownload(lessonId, manifest).catch((error) => {
+        console.warn(`[DL] Could not migrate lesson ${lessonId}:`, error);
+        return manifest;
+      });
+    }
     
-    // Check version compatibility
-    if (manifest.version !== 3) {
+    // Check version compatibility (v4 containers and the v5 chunk store are read natively on Android)
+    const supported =
+      manifest.version === 3 ||
+      ((manifest.version === 4 || manifest.version === 5) && Capacitor.getPlatform() === "android");
+    if (!supported) {
       throw new Error(
         `This lesson was downloaded with an older version (v${manifest.version}). ` +
         `Please delete and re-download the lesson to use the new encryption format.`
@@ -730,8 +1133,11 @@ export const loadEncryptedAudio = async (
     }
     throw new Error("Audio not found. Please download the lesson first.");
   }
+  return manifest;
+};
 
-  // 2. Obtain decryption key (prefer cached → fallback to server)
+/** The raw hex key: cached key first, then the server. */
+const loadDecryptionKey = async (lessonId: string, token: string): Promise<string> => {
   let decryptionKey: string;
   const keyStorageKey = `${KEY_STORAGE_PREFIX}${lessonId}`;
   const cachedKey = await getSecureKey(keyStorageKey);
@@ -748,12 +1154,114 @@ export const loadEncryptedAudio = async (
       );
     }
   }
+  return decryptionKey;
+};
+
+/**
+ * Android: make sure the lesson's key is in the native key vault, so it
+ * never has to be read into JS for playback. A key still in secure storage
+ * is copied in once; a missing one is fetched natively. Falls back to the
+ * raw key if the vault is unavailable.
+ */
+const loadVaultKey = async (lessonId: string, token: string): Promise<LessonKey> => {
+  try {
+    const { keyId } = await KeyVault.lookup({ lessonId });
+    if (keyId) return { keyId };
+
+    const storedKey = await getSecureKey(`${KEY_STORAGE_PREFIX}${lessonId}`);
+    if (storedKey) {
+      return await KeyVault.store({ lessonId, key: storedKey });
+    }
+    return await KeyVault.fetch({
+      lessonId,
+      url: `${API_BASE}/downloads/decrypt/${lessonId}`,
+      headers: { Authorization: `Bearer ${token}` },
+      body: JSON.stringify({ deviceId: await getDeviceId() }),
+    });
+  } catch (error) {
+    console.warn("[DL] Key vault unavailable, passing the key directly:", error);
+    const key = await loadDecryptionKey(lessonId, token);
+    return { key, keyId: key };
+  }
+};
+
+/**
+ * Decrypt a downloaded lesson chunk-by-chunk and write the result to a temp
+ * file on disk. Returns a web-accessible URL for the temp file that can
+ * be passed straight to `new Audio(url)`.
+ *
+ * On Android the URL is a native decrypt-on-demand stream instead, so no
+ * plaintext file is created; the temp file path is only a fallback there.
+ *
+ * Uses AES-CTR mode - no padding, so audio structure stays perfect!
+ * Peak memory ≈ 2 × chunkSize ≈ 10 MB (one encrypted + one decrypted buffer
+ * exist at the same time; both are released before the next iteration).
+ */
+export const loadEncryptedAudio = async (
+  lessonId: string,
+  token: string,
+  onPrepareProgress?: (progress: ConcatenationProgress) => void
+): Promise<string> => {
+  // Check if decryption is already in progress
+  const existingDecryption = decryptionLocks.get(lessonId);
+  if (existingDecryption) {
+    console.log(`[DL] Decryption already in progress for lesson ${lessonId}, waiting...`);
+    return existingDecryption;
+  }
+
+  playbackLessons.add(lessonId);
+
+  // Create decryption promise and store it
+  const decryptionPromise = (async () => {
+    try {
+      await pausePrefetch();
+
+      // 1-2. Manifest and decryption key
+      const { manifest, lessonKey } = await loadPlaybackSecrets(lessonId, token);
+
+  // 3. Android: serve the lesson through the native decrypting stream. Only
+  //    the ranges the player requests are decrypted and nothing is written.
+  if (Capacitor.getPlatform() === "android") {
+    try {
+      const { url } = await LessonStream.open({
+        lessonId,
+        ...nativeChunkSource(lessonId, manifest),
+        ...nativeKey(lessonId, lessonKey),
+        nonce: manifest.nonce,
+        chunkSize: manifest.chunkSize,
+        totalSize: manifest.metadata.originalSize,
+      });
+      console.log(`[DL] ✓ Streaming lesson ${lessonId} from encrypted chunks`);
+      return url;
+    } catch (streamError) {
+      console.warn("[DL] Native stream unavailable, assembling temp file:", streamError);
+    }
+  }
 
-  // 3. Get base nonce from manifest
+  // Get base nonce from manifest
   const baseNonce = new Uint8Array(hexToArrayBuffer(manifest.nonce));
 
-  // 4. Decrypt chunk-by-chunk → write to temp .mp3 on disk
+  // 4. Decrypt chunk-by-chunk → write to temp .mp3 on disk. On Android the
+  //    result goes into the playback cache, so replaying starts at once.
   const tempPath = `${AUDIO_FOLDER}/${lessonId}_temp.mp3`;
+  let playbackPath = tempPath;
+  let fingerprint: string | null = null;
+  if (Capacitor.getPlatform() === "android") {
+    try {
+      fingerprint = await playbackFingerprint(manifest, lessonKey.keyId);
+      const cached = await PlaybackCache.lookup({ lessonId, fingerprint });
+      if (cached.hit && cached.path) {
+        assembledFiles.set(lessonId, { path: cached.path });
+        const { uri } = await Filesystem.getUri({ path: cached.path, directory: Directory.Data });
+        console.log(`[DL] ✓ Playing lesson ${lessonId} from the playback cache`);
+        return Capacitor.convertFileSrc(uri);
+      }
+      playbackPath = cached.stagingPath ?? tempPath;
+    } catch (cacheError) {
+      console.warn("[DL] Playback cache unavailable:", cacheError);
+      fingerprint = null;
+    }
+  }
 
   // Remove stale temp file
   try {
@@ -763,80 +1271,126 @@ export const loadEncryptedAudio = async (
   }
 
   try {
-    for (let i = 0; i < manifest.totalChunks; i++) {
-      console.log(`[DL] === Processing chunk ${i} ===`);
-      console.log(`[DL] Reading: ${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`);
-      
-      // Read encrypted base64 text (~6.7 MB for a 5 MB chunk)
-      const chunkResult = await Filesystem.readFile({
-        path: `${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`,
-        directory: Directory.Data,
-        encoding: Encoding.UTF8,
-      });
-      const encryptedBase64 = chunkResult.data as string;
-      console.log(`[DL] Encrypted chunk ${i} size: ${encryptedBase64.length} chars`);
-
-      // Decrypt → raw audio ArrayBuffer (~5 MB) - EXACT original bytes!
-      console.log(`[DL] Decrypting chunk ${i} with chunkIndex=${i}`);
-      const decryptedBuffer = await decryptChunk(
-        encryptedBase64,
-        decryptionKey,
-        baseNonce,
-        i
-      );
-      console.log(`[DL] Decrypted chunk ${i} size: ${decryptedBuffer.byteLength} bytes`);
-      
-      // DEBUG: Log first 32 bytes of each chunk to verify order
-      const firstBytes = new Uint8Array(decryptedBuffer.slice(0, 32));
-      const firstBytesHex = Array.from(firstBytes).map(b => b.toString(16).padStart(2, '0')).join('');
-      console.log(`[DL] Chunk ${i} first 32 bytes: ${firstBytesHex}`);
-
-      // Write each chunk to a separate temp file first
-      const chunkTempPath = `${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`;
-      const decryptedBase64 = arrayBufferToBase64(decryptedBuffer);
+    if (Capacitor.getPlatform() === "android") {
+      // Native one-pass decrypt: every chunk is streamed through AES-CTR
+      // straight into the temp .mp3 — no temp chunk files, no base64
+      // round-trips and no plaintext across the bridge.
+      const jobId = preparationJobId(lessonId);
+      const progressListener = onPrepareProgress
+        ? await FileConcatenation.addListener("concatenationProgress", (progress) => {
+            if (progress.jobId === jobId) onPrepareProgress(progress);
+          })
+        : null;
+      const assemble = () =>
+        FileConcatenation.decryptAndAssemble({
+          outputPath: playbackPath,
+          lessonId,
+          digests: chunkDigests(manifest),
+          ...nativeChunkSource(lessonId, manifest),
+          ...nativeKey(lessonId, lessonKey),
+          nonce: manifest.nonce,
+          chunkSize: manifest.chunkSize,
+          jobId,
+        });
+      try {
+        let result;
+        try {
+          result = await assemble();
+        } catch (assembleError: any) {
+          if (manifest.version === 5 && (assembleError?.code === "CHUNK_CORRUPT" || assembleError?.code === "CHUNK_MISSING")) {
+            // Stored chunks only come back with a new download, for every
+            // lesson that shared the bad one
+            await dropStoredLessons(assembleError.data?.lessonIds ?? [lessonId], token);
+            throw new ChunkIntegrityError(
+              assembleError.data?.chunkIndex ?? 0,
+              "Part of this lesson is damaged. Download the lesson again."
+            );
+          }
+          if (assembleError?.code !== "CHUNK_CORRUPT") throw assembleError;
+          // One bad chunk: fetch just that one again, then assemble once more
+          await repairLessonChunk(lessonId, token, manifest, lessonKey, assembleError.data?.chunkIndex);
+          result = await assemble();
+        }
+        console.log(`[DL] ✓ Native decrypt & assemble complete: ${result.totalBytes} bytes`);
+        if (fingerprint) {
+          playbackPath = (await PlaybackCache.commit({ lessonId, fingerprint })).path;
+        }
+        assembledFiles.set(lessonId, { path: playbackPath, durationMs: result.durationMs });
+      } finally {
+        await progressListener?.remove();
+      }
+    } else {
+      const decryptionKey = lessonKey.key ?? (await loadDecryptionKey(lessonId, token));
+      for (let i = 0; i < manifest.totalChunks; i++) {
+        const readChunk = async (): Promise<ArrayBuffer> => {
+          // Read encrypted base64 text (~6.7 MB for a 5 MB chunk)
+          const chunkResult = await Filesystem.readFile({
+            path: `${AUDIO_FOLDER}/${lessonId}_chunk_${i}.enc`,
+            directory: Directory.Data,
+            encoding: Encoding.UTF8,
+          });
+          const encryptedBase64 = chunkResult.data as string;
+
+          // Decrypt → raw audio ArrayBuffer (~5 MB) - EXACT original bytes!
+          return decryptChunk(encryptedBase64, decryptionKey, baseNonce, i, manifest.chunkSize);
+        };
+        const expected = manifest.chunks[i]?.sha256;
+        let decryptedBuffer = await readChunk();
+        if (expected && (await chunkDigest(decryptedBuffer)) !== expected) {
+          await repairLessonChunk(lessonId, token, manifest, lessonKey, i);
+          decryptedBuffer = await readChunk();
+          if ((await chunkDigest(decryptedBuffer)) !== expected) {
+            throw new ChunkIntegrityError(i);
+          }
+        }
+
+        // Write each chunk to a separate temp file first
+        const chunkTempPath = `${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`;
+        const decryptedBase64 = arrayBufferToBase64(decryptedBuffer);
       
-      await Filesystem.writeFile({
-        path: chunkTempPath,
-        data: decryptedBase64,
-        directory: Directory.Data,
-      });
+        await Filesystem.writeFile({
+          path: chunkTempPath,
+          data: decryptedBase64,
+          directory: Directory.Data,
+        });
       
-      console.log(`[DL] ✓ Chunk ${i + 1}/${manifest.totalChunks} written to temp file`);
-    }
+        console.log(`[DL] ✓ Chunk ${i + 1}/${manifest.totalChunks} written to temp file`);
+      }
     
-    // Concatenate all temp chunk files using native plugin
-    console.log(`[DL] Concatenating ${manifest.totalChunks} temp files using native plugin...`);
+      // Concatenate all temp chunk files using native plugin
+      console.log(`[DL] Concatenating ${manifest.totalChunks} temp files using native plugin...`);
     
-    // Build array of input paths
-    const inputPaths: string[] = [];
-    for (let i = 0; i < manifest.totalChunks; i++) {
-      inputPaths.push(`${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`);
-    }
+      // Build array of input paths
+      const inputPaths: string[] = [];
+      for (let i = 0; i < manifest.totalChunks; i++) {
+        inputPaths.push(`${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`);
+      }
     
-    // Use native plugin to concatenate
-    const result = await FileConcatenation.concatenateFiles({
-      outputPath: tempPath,
-      inputPaths,
-    });
+      // Use native plugin to concatenate
+      const result = await FileConcatenation.concatenateFiles({
+        outputPath: tempPath,
+        inputPaths,
+      });
     
-    console.log(`[DL] ✓ Native concatenation complete: ${result.totalBytes} bytes`);
+      console.log(`[DL] ✓ Native concatenation complete: ${result.totalBytes} bytes`);
     
-    // Clean up temp chunk files
-    for (let i = 0; i < manifest.totalChunks; i++) {
-      const chunkTempPath = `${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`;
-      try {
-        await Filesystem.deleteFile({
-          path: chunkTempPath,
-          directory: Directory.Data,
-        });
-      } catch {
-        // Ignore deletion errors
+      // Clean up temp chunk files
+      for (let i = 0; i < manifest.totalChunks; i++) {
+        const chunkTempPath = `${AUDIO_FOLDER}/${lessonId}_temp_chunk_${i}.mp3`;
+        try {
+          await Filesystem.deleteFile({
+            path: chunkTempPath,
+            directory: Directory.Data,
+          });
+        } catch {
+          // Ignore deletion errors
+        }
       }
-    }
-    console.log(`[DL] ✓ All temp chunks deleted`);
+      console.log(`[DL] ✓ All temp chunks deleted`);
     
     
-    console.log(`[DL] ✓ All chunks concatenated successfully!`);
+      console.log(`[DL] ✓ All chunks concatenated successfully!`);
+    }
     
   } catch (error) {
     // Clean up temp file on failure
@@ -849,6 +1403,7 @@ export const loadEncryptedAudio = async (
       // Ignore
     }
     console.error("[DL] Decryption failed:", error);
+    if (error instanceof ChunkIntegrityError) throw error;
     throw new Error(
       "Failed to decrypt audio. The file may be corrupted or the key is invalid."
     );
@@ -856,14 +1411,14 @@ export const loadEncryptedAudio = async (
 
   // 5. Convert file path to a web-accessible URL
   const fileInfo = await Filesystem.getUri({
-    path: tempPath,
+    path: playbackPath,
     directory: Directory.Data,
   });
 
   // DEBUG: Log file size to verify it matches original
   try {
     const stat = await Filesystem.stat({
-      path: tempPath,
+      path: playbackPath,
       directory: Directory.Data,
     });
     console.log(`[DL] ✓ Decrypted file size: ${stat.size} bytes (original: ${manifest.metadata.originalSize} bytes)`);
@@ -901,15 +1456,86 @@ export const loadEncryptedAudio = async (
   return decryptionPromise;
 };
 
+/**
+ * Android only: queue a downloaded lesson in the native player, which
+ * decrypts from the encrypted chunks as it plays and keeps going in the
+ * background and on the lock screen. Resolves to an audio-element-like
+ * handle for the player UI.
+ */
+export const loadNativeLessonAudio = async (
+  lessonId: string,
+  token: string,
+  options: { allowSeeking: boolean; title?: string }
+): Promise<NativeLessonAudio> => {
+  await pausePrefetch();
+  const { manifest, lessonKey } = await loadPlaybackSecrets(lessonId, token);
+
+  // Subscribe before loading so the first state events are not missed
+  const audio = new NativeLessonAudio(lessonId);
+  try {
+    await LessonPlayer.load({
+      lessonId,
+      ...nativeChunkSource(lessonId, manifest),
+      ...nativeKey(lessonId, lessonKey),
+      nonce: manifest.nonce,
+      chunkSize: manifest.chunkSize,
+      totalSize: manifest.metadata.originalSize,
+      allowSeeking: options.allowSeeking,
+      title: options.title,
+    });
+  } catch (error) {
+    audio.src = "";
+    throw error;
+  }
+  return audio;
+};
+
+/**
+ * Exact duration in seconds of the file `loadEncryptedAudio` assembled for
+ * a lesson, from the MP3 seek index saved next to it. The WebView estimates
+ * VBR durations from the first frame, so this is the one to show. Resolves
+ * to 0 when the lesson is streamed, off Android, or the file is not an MP3.
+ */
+export const getAssembledAudioDuration = async (lessonId: string): Promise<number> => {
+  const assembled = assembledFiles.get(lessonId);
+  if (!assembled) return 0;
+  // Known from the assembly itself; a cached file has its index on disk
+  if (assembled.durationMs) return assembled.durationMs / 1000;
+  try {
+    const { durationMs } = await FileConcatenation.getSeekIndex({ path: assembled.path, positionsMs: [] });
+    return durationMs / 1000;
+  } catch (error) {
+    console.warn(`[DL] No seek index for lesson ${lessonId}:`, error);
+    return 0;
+  }
+};
+
 // ---------------------------------------------------------------------------
 // Cleanup temp playback file
 // ---------------------------------------------------------------------------
 
 /**
- * Delete the temporary decrypted .mp3 created by `loadEncryptedAudio`.
+ * Release the playback source created by `loadEncryptedAudio` or
+ * `loadNativeLessonAudio`: the native stream or player on Android, and the
+ * temporary decrypted .mp3 if one was assembled.
  * Call this when the player unmounts or the user navigates away.
  */
 export const cleanupTempAudio = async (lessonId: string): Promise<void> => {
+  playbackLessons.delete(lessonId);
+  assembledFiles.delete(lessonId);
+  if (Capacitor.getPlatform() === "android") {
+    // Release the lesson's stream URL or native player and stop a
+    // preparation still running
+    try {
+      await LessonStream.close({ lessonId });
+      await LessonPlayer.stop({ lessonId });
+      await FileConcatenation.cancel({ jobId: preparationJobId(lessonId) });
+      await LessonPrefetch.resume();
+    } catch {
+      // Ignore
+    }
+  }
+
   try {
     await Filesystem.deleteFile({
       path: `${AUDIO_FOLDER}/${lessonId}_temp.mp3`,
@@ -921,6 +1547,87 @@ export const cleanupTempAudio = async (lessonId: string): Promise<void> => {
   }
 };
 
+// ---------------------------------------------------------------------------
+// Prefetch upcoming lessons (Android)
+// ---------------------------------------------------------------------------
+
+let prefetchListener: Promise<unknown> | null = null;
+let prefetchToken: string | null = null;
+
+/** Playback needs the CPU and disk: prefetching resumes in cleanupTempAudio. */
+const pausePrefetch = async (): Promise<void> => {
+  if (Capacitor.getPlatform() !== "android") return;
+  try {
+    await LessonPrefetch.pause();
+  } catch {
+    // Ignore
+  }
+};
+
+/** A chunk found damaged ahead of time is repaired before it is ever played. */
+const onLessonPrefetched = async (result: LessonPrefetchResult): Promise<void> => {
+  if (result.outcome === "failed") {
+    console.warn(`[DL] Prefetch of lesson ${result.lessonId} failed:`, result.message);
+    return;
+  }
+  if (result.outcome !== "corrupt" || result.chunkIndex === undefined || !prefetchToken) return;
+  try {
+    const { manifest, lessonKey } = await loadPlaybackSecrets(result.lessonId, prefetchToken);
+    await repairLessonChunk(result.lessonId, prefetchToken, manifest, lessonKey, result.chunkIndex);
+    console.log(`[DL] ✓ Repaired chunk ${result.chunkIndex} of lesson ${result.lessonId}`);
+  } catch (error) {
+    console.warn(`[DL] Could not repair lesson ${result.lessonId} yet:`, error);
+  }
+};
+
+/**
+ * Android only: get the given downloaded lessons (e.g. the next ones in a
+ * course) ready in the background, so pressing play does not wait. Keys are
+ * fetched now while online; a WorkManager job then decrypts each lesson
+ * once with its chunk digests checked, and damaged chunks are repaired.
+ *
+ * The native player decrypts as it plays, so by default nothing plaintext
+ * is kept; with `cache` the lessons also go into the playback cache for the
+ * audio element fallback. Lessons not downloaded are skipped. Resolves to
+ * the number of lessons scheduled.
+ */
+export const prefetchLessons = async (
+  lessonIds: string[],
+  token: string,
+  options: PrefetchConstraints & { cache?: boolean } = {}
+): Promise<number> => {
+  if (Capacitor.getPlatform() !== "android") return 0;
+  const { cache = false, ...constraints } = options;
+
+  prefetchToken = token;
+  if (!prefetchListener) {
+    prefetchListener = LessonPrefetch.addListener("lessonPrefetched", onLessonPrefetched);
+  }
+
+  const lessons: PrefetchLesson[] = [];
+  for (const lessonId of lessonIds) {
+    if (!(await isLessonDownloaded(lessonId))) continue;
+    try {
+      const { manifest, lessonKey } = await loadPlaybackSecrets(lessonId, token);
+      const lesson: PrefetchLesson = {
+        lessonId,
+        digests: chunkDigests(manifest),
+        ...nativeChunkSource(lessonId, manifest),
+        ...nativeKey(lessonId, lessonKey),
+        nonce: manifest.nonce,
+        chunkSize: manifest.chunkSize,
+      };
+      if (cache) lesson.fingerprint = await playbackFingerprint(manifest, lessonKey.keyId);
+      lessons.push(lesson);
+    } catch (error) {
+      console.warn(`[DL] Not prefetching lesson ${lessonId}:`, error);
+    }
+  }
+
+  const { scheduled } = await LessonPrefetch.schedule({ lessons, ...constraints });
+  return scheduled;
+};
+
 // ---------------------------------------------------------------------------
 // Delete a downloaded lesson
 // ---------------------------------------------------------------------------
@@ -934,6 +1641,9 @@ export const deleteDownloadedLesson = async (
 
   // Remove cached encryption key
   await removeSecureKey(`${KEY_STORAGE_PREFIX}${lessonId}`);
+  if (Capacitor.getPlatform() === "android") {
+    await KeyVault.remove({ lessonId }).catch(() => undefined);
+  }
 
   // Update index
   const index = await getDownloadsIndex();
@@ -958,6 +1668,19 @@ export const deleteDownloadedLesson = async (
   }
 };
 
+/**
+ * Forget downloaded chunk-store lessons that lost a chunk, so they show as
+ * not downloaded and the app offers to download them again.
+ */
+const dropStoredLessons = async (lessonIds: string[], token?: string): Promise<void> => {
+  for (const id of lessonIds) {
+    console.warn(`[DL] Lesson ${id} lost a stored chunk and must be downloaded again`);
+    await deleteDownloadedLesson(id, token).catch((e) =>
+      console.warn(`[DL] Could not drop lesson ${id}:`, e)
+    );
+  }
+};
+
 /**
  * Delete all downloaded lessons for a specific course.
  */
@@ -989,6 +1712,10 @@ export const clearAllDownloads = async (token?: string): Promise<void> => {
   for (const lessonId of Object.keys(index)) {
     await deleteAudioData(lessonId);
   }
+  if (Capacitor.getPlatform() === "android") {
+    // Also drops chunks of lessons the index had lost track of
+    await ChunkStore.clear().catch(() => {});
+  }
 
   await Preferences.remove({ key: DOWNLOADS_INDEX_KEY });
   console.log("[DL] All downloads cleared");
@@ -999,10 +1726,34 @@ export const clearAllDownloads = async (token?: string): Promise<void> => {
 // ---------------------------------------------------------------------------
 
 export const getDownloadsStorageSize = async (): Promise<number> => {
+  if (Capacitor.getPlatform() === "android") {
+    // Actual bytes on disk, from the native index and the chunk store: no per-file stats
+    try {
+      const { storedBytes } = await ChunkStore.getStats().catch(() => ({ storedBytes: 0 }));
+      return (await StorageIndex.getIndex()).totalBytes + storedBytes;
+    } catch (error) {
+      console.warn("[DL] Storage index unavailable:", error);
+    }
+  }
   const index = await getDownloadsIndex();
   return Object.values(index).reduce((total, d) => total + d.fileSizeBytes, 0);
 };
 
+/**
+ * Android only: delete leftovers of interrupted downloads and playback
+ * preparation in one native pass. Lessons being downloaded, prepared or
+ * played are left alone. Resolves to null elsewhere.
+ */
+export const compactStorage = async (): Promise<CompactResult | null> => {
+  if (Capacitor.getPlatform() !== "android") return null;
+  const keep = [...downloadLocks.keys(), ...decryptionLocks.keys(), ...playbackLessons];
+  const result = await StorageIndex.compact({ keep });
+  if (result.removedFiles > 0) {
+    console.log(`[DL] Reclaimed ${formatBytes(result.reclaimedBytes)} from ${result.removedFiles} orphaned files`);
+  }
+  return result;
+};
+
 export const formatBytes = (bytes: number): string => {
   if (bytes === 0) return "0 B";
   const k = 1024;
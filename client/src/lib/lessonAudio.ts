@@ -0,0 +1,147 @@
+import type { PluginListenerHandle } from "@capacitor/core";
+import LessonPlayer from "../plugins/lessonPlayer";
+import type { LessonPlayerState } from "../plugins/lessonPlayer";
+
+type LessonAudioEvent = "loadedmetadata" | "timeupdate" | "ended" | "error" | "play" | "pause";
+
+/**
+ * The part of HTMLAudioElement the lesson player uses. Implemented by a
+ * plain `Audio` element and by {@link NativeLessonAudio}.
+ */
+export interface LessonAudio {
+  src: string;
+  currentTime: number;
+  readonly duration: number;
+  readonly paused: boolean;
+  volume: number;
+  muted: boolean;
+  play(): Promise<void>;
+  pause(): void;
+  addEventListener(type: LessonAudioEvent, listener: (event: Event) => void): void;
+  removeEventListener(type: LessonAudioEvent, listener: (event: Event) => void): void;
+}
+
+/**
+ * Android: drives the native LessonPlayer (Media3, decrypting from the
+ * encrypted chunks) behind the same surface as an audio element. Native
+ * state and position events are re-dispatched as media element events.
+ *
+ * "pause" and "play" are also dispatched when playback is paused or resumed
+ * outside the app UI (lock screen, notification, audio becoming noisy).
+ */
+export class NativeLessonAudio extends EventTarget implements LessonAudio {
+  private position = 0;
+  private durationSeconds = 0;
+  private isPaused = true;
+  private level = 1;
+  private isMuted = false;
+  private loaded = false;
+  private released = false;
+  private readonly handles: Promise<PluginListenerHandle>[];
+
+  constructor(private readonly lessonId: string) {
+    super();
+    this.handles = [
+      LessonPlayer.addListener("playbackStateChanged", (state) => this.onState(state)),
+      LessonPlayer.addListener("positionChanged", (position) => {
+        if (position.lessonId !== this.lessonId) return;
+        this.position = position.positionMs / 1000;
+        if (position.durationMs > 0) this.durationSeconds = position.durationMs / 1000;
+        this.dispatchEvent(new Event("timeupdate"));
+      }),
+      LessonPlayer.addListener("playbackError", (error) => {
+        if (error.lessonId !== this.lessonId) return;
+        console.error("[LessonAudio] Native playback error:", error);
+        this.dispatchEvent(new Event("error"));
+      }),
+    ];
+  }
+
+  get src(): string {
+    return this.released ? "" : `lesson:${this.lessonId}`;
+  }
+
+  /** Setting "" releases the native player, like clearing an audio element. */
+  set src(value: string) {
+    if (value === "" && !this.released) {
+      this.released = true;
+      this.handles.forEach((handle) => handle.then((h) => h.remove()));
+      LessonPlayer.stop({ lessonId: this.lessonId }).catch(() => undefined);
+    }
+  }
+
+  get currentTime(): number {
+    return this.position;
+  }
+
+  set currentTime(seconds: number) {
+    this.position = seconds;
+    LessonPlayer.seekTo({ positionMs: Math.round(seconds * 1000) }).catch((err) => {
+      console.warn("[LessonAudio] Seek rejected:", err);
+    });
+  }
+
+  get duration(): number {
+    return this.durationSeconds;
+  }
+
+  get paused(): boolean {
+    return this.isPaused;
+  }
+
+  get volume(): number {
+    return this.level;
+  }
+
+  set volume(value: number) {
+    this.level = value;
+    this.applyVolume();
+  }
+
+  get muted(): boolean {
+    return this.isMuted;
+  }
+
+  set muted(value: boolean) {
+    this.isMuted = value;
+    this.applyVolume();
+  }
+
+  async play(): Promise<void> {
+    await LessonPlayer.play();
+    this.isPaused = false;
+  }
+
+  pause(): void {
+    this.isPaused = true;
+    LessonPlayer.pause().catch((err) => console.warn("[LessonAudio] Pause failed:", err));
+  }
+
+  private applyVolume() {
+    LessonPlayer.setVolume({ volume: this.isMuted ? 0 : this.level }).catch(() => undefined);
+  }
+
+  private onState(state: LessonPlayerState) {
+    if (state.lessonId !== this.lessonId || this.released) return;
+
+    this.position = state.positionMs / 1000;
+    if (state.durationMs > 0) this.durationSeconds = state.durationMs / 1000;
+
+    if (!this.loaded && state.state === "ready") {
+      this.loaded = true;
+      this.dispatchEvent(new Event("loadedmetadata"));
+    }
+
+    if (state.state === "ended") {
+      this.isPaused = true;
+      this.dispatchEvent(new Event("ended"));
+      return;
+    }
+
+    const paused = !state.playWhenReady;
+    if (paused !== this.isPaused) {
+      this.isPaused = paused;
+      this.dispatchEvent(new Event(paused ? "pause" : "play"));
+    }
+  }
+}
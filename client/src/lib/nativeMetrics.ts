@@ -0,0 +1,35 @@
+/**
+ * Native performance metrics for field telemetry. Android only; elsewhere
+ * every helper resolves to null / does nothing.
+ */
+
+import { Capacitor } from "@capacitor/core";
+import Metrics from "../plugins/metrics";
+import type { NativeMetricsSnapshot } from "../plugins/metrics";
+
+/**
+ * Snapshot of the native timers and counters. Times `bridgeSamples` empty
+ * plugin calls first, so the snapshot includes current bridge latency.
+ */
+export const getNativeMetrics = async (
+  bridgeSamples = 5
+): Promise<NativeMetricsSnapshot | null> => {
+  if (Capacitor.getPlatform() !== "android") return null;
+
+  const micros: number[] = [];
+  for (let i = 0; i < bridgeSamples; i++) {
+    const start = performance.now();
+    await Metrics.ping();
+    micros.push(Math.round((performance.now() - start) * 1000));
+  }
+  if (micros.length > 0) {
+    await Metrics.recordBridgeSamples({ micros });
+  }
+  return Metrics.getMetrics();
+};
+
+/** Start a new measurement window, e.g. after the metrics were reported. */
+export const resetNativeMetrics = async (): Promise<void> => {
+  if (Capacitor.getPlatform() !== "android") return;
+  await Metrics.resetMetrics();
+};
@@ -29,12 +29,17 @@ import {
   getDownloadedLessonsForCourse,
   deleteDownloadsForCourse,
   isLessonDownloaded,
+  prefetchLessons,
 } from "@/lib/downloadManager";
+import { getCachedToken } from "@/lib/api";
 import { shouldShowPricing } from "@/lib/platformDetection";
 import { Capacitor } from "@capacitor/core";
 
 type ViewState = "details" | "protocol" | "player";
 
+// Lessons to get ready ahead of the learner: the current one and the next
+const PREFETCH_AHEAD = 2;
+
 export default function CourseDetail() {
   const { id } = useParams();
   const navigate = useNavigate();
@@ -121,6 +126,20 @@ export default function CourseDetail() {
     }
   );
 
+  // Prepare the upcoming downloaded lessons in the background (Android)
+  const upcomingLessonIds = lessons
+    .filter((l) => l.status !== "completed")
+    .slice(0, PREFETCH_AHEAD)
+    .map((l) => l.id)
+    .join(",");
+  useEffect(() => {
+    const token = getCachedToken();
+    if (!upcomingLessonIds || !token) return;
+    prefetchLessons(upcomingLessonIds.split(","), token).catch((e) =>
+      console.warn("Failed to schedule lesson prefetch:", e)
+    );
+  }, [upcomingLessonIds, downloadedCount]);
+
   const isLoading = courseLoading || lessonsLoading;
 
   if (isLoading) {
@@ -8,6 +8,11 @@ export interface AudioProtectionPlugin {
     eventName: 'screenRecordingChanged',
     listenerFunc: (info: { isRecording: boolean }) => void
   ): Promise<any>;
+  /** Android 14+: a screenshot of the app was taken. */
+  addListener(
+    eventName: 'screenCaptured',
+    listenerFunc: () => void
+  ): Promise<any>;
   removeAllListeners(): Promise<void>;
 }
 
@@ -0,0 +1,43 @@
+import { registerPlugin } from '@capacitor/core';
+import type { ChunkManifest } from '../lib/audioEncryption';
+
+export interface ChunkStoreStats {
+  chunks: number;
+  /** Bytes the stored chunks take on disk */
+  storedBytes: number;
+  /** Bytes the lessons would take on top if nothing were shared */
+  savedBytes: number;
+}
+
+/**
+ * Android only: a content-addressed store of lesson chunks. Chunks are named
+ * by the SHA-256 of their plaintext and reference-counted across lessons, so
+ * audio several lessons share, or that an updated lesson kept, is on disk
+ * once. Stored lessons have a v5 manifest and are played with `chunkStore`.
+ */
+export interface ChunkStorePlugin {
+  /**
+   * Move a downloaded v4 lesson into the store and turn its manifest into
+   * v5; the container is deleted. Without `key`, the lesson's key comes
+   * from the KeyVault.
+   */
+  ingest(options: {
+    manifestPath: string;
+    lessonId: string;
+    key?: string;
+  }): Promise<{ manifest: ChunkManifest; added: number; shared: number }>;
+
+  /** Drop the lesson's references; chunks no other lesson uses are deleted. */
+  release(options: { lessonId: string }): Promise<{ removed: number }>;
+
+  getStats(): Promise<ChunkStoreStats>;
+
+  /** Delete every stored chunk. */
+  clear(): Promise<void>;
+}
+
+const ChunkStore = registerPlugin<ChunkStorePlugin>('ChunkStore', {
+  web: () => import('./chunkStore.web').then(m => new m.ChunkStoreWeb()),
+});
+
+export default ChunkStore;
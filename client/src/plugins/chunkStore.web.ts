@@ -0,0 +1,21 @@
+import { WebPlugin } from '@capacitor/core';
+import type { ChunkManifest } from '../lib/audioEncryption';
+import type { ChunkStorePlugin, ChunkStoreStats } from './chunkStore';
+
+export class ChunkStoreWeb extends WebPlugin implements ChunkStorePlugin {
+  async ingest(): Promise<{ manifest: ChunkManifest; added: number; shared: number }> {
+    throw new Error('ChunkStore is not supported on web');
+  }
+
+  async release(): Promise<{ removed: number }> {
+    throw new Error('ChunkStore is not supported on web');
+  }
+
+  async getStats(): Promise<ChunkStoreStats> {
+    throw new Error('ChunkStore is not supported on web');
+  }
+
+  async clear(): Promise<void> {
+    throw new Error('ChunkStore is not supported on web');
+  }
+}
@@ -0,0 +1,42 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface DeviceIoProfile {
+  tier: 'low' | 'mid' | 'high';
+  /** Set while the system reports memory pressure; eases a minute after the last report */
+  pressure: 'none' | 'moderate' | 'critical';
+  /** Bytes read, decrypted and written at a time by native jobs */
+  bufferSize: number;
+  /** Plaintext bytes per chunk for new downloads; existing lessons keep theirs */
+  chunkSize: number;
+  ioThreads: number;
+  cpuThreads: number;
+  /** Prefetching and other background work is held back */
+  backgroundPaused: boolean;
+  lowRamDevice: boolean;
+  /** The app's heap limit */
+  memoryClassMb: number;
+  cores: number;
+  /** Measured sustained write speed; 0 until probed */
+  storageBytesPerSecond: number;
+}
+
+/**
+ * Android only: the buffer, pool and chunk sizes native I/O uses on this
+ * device, chosen from its memory, cores and storage speed and scaled down
+ * under memory pressure.
+ */
+export interface DeviceProfilePlugin {
+  getProfile(): Promise<DeviceIoProfile>;
+
+  addListener(
+    eventName: 'profileChanged',
+    listenerFunc: (profile: DeviceIoProfile) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const DeviceProfile = registerPlugin<DeviceProfilePlugin>('DeviceProfile', {
+  web: () => import('./deviceProfile.web').then(m => new m.DeviceProfileWeb()),
+});
+
+export default DeviceProfile;
@@ -0,0 +1,8 @@
+import { WebPlugin } from '@capacitor/core';
+import type { DeviceIoProfile, DeviceProfilePlugin } from './deviceProfile';
+
+export class DeviceProfileWeb extends WebPlugin implements DeviceProfilePlugin {
+  async getProfile(): Promise<DeviceIoProfile> {
+    throw new Error('DeviceProfile is not supported on web');
+  }
+}
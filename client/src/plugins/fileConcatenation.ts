@@ -1,10 +1,111 @@
 import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface ConcatenationProgress {
+  jobId: string;
+  bytesDone: number;
+  totalBytes: number;
+  bytesPerSecond: number;
+}
+
+/** The head of a `decryptAndAssemble` output is on disk and can be opened. */
+export interface PlayableReady {
+  jobId: string;
+  outputPath: string;
+  bytesWritten: number;
+}
+
+export interface Mp3SeekIndex {
+  durationMs: number;
+  sampleRate: number;
+  frameCount: number;
+  offsets: number[];
+  timesMs?: number[];
+}
+
+/**
+ * Where a lesson's ciphertext lives: v3 chunk files, a v4 container or, for
+ * v5, the shared chunk store (the chunks are named by their `digests`; no
+ * key or nonce is needed).
+ */
+export type EncryptedSource =
+  | { inputPaths: string[] }
+  | { containerPath: string }
+  | { chunkStore: true; digests: string[] };
 
 export interface FileConcatenationPlugin {
+  /**
+   * Join files in order. On Android this runs on a background thread and
+   * reports `concatenationProgress` events for `jobId` (generated if omitted).
+   */
   concatenateFiles(options: {
     outputPath: string;
     inputPaths: string[];
-  }): Promise<{ success: boolean; totalBytes: number }>;
+    jobId?: string;
+  }): Promise<{ success: boolean; totalBytes: number; jobId?: string }>;
+
+  /**
+   * Android only: decrypt a lesson straight into `outputPath` in one native
+   * pass, from v3 chunk files (`inputPaths`, base64 text), a v4 container
+   * (`containerPath`) or the chunk store (`chunkStore`). Chunks are decrypted
+   * on all cores unless `parallel` is false.
+   *
+   * With `digests` (the manifest's per-chunk SHA-256) every chunk is
+   * verified in the same pass; a mismatch rejects with code `CHUNK_CORRUPT`
+   * and `data.chunkIndex`. A corrupt stored chunk is dropped from the chunk
+   * store, so downloading the lesson again replaces it; `data.lessonIds`
+   * names every lesson that shared it and has to be downloaded again. A
+   * stored chunk that is gone rejects with `CHUNK_MISSING`.
+   *
+   * Without `key`, the key of `lessonId` comes from the KeyVault.
+   *
+   * Unless `seekIndex` is false, the MP3 frame headers are indexed on the
+   * way (see `getSeekIndex`) and the exact `durationMs` is resolved.
+   *
+   * With `playableAfterBytes`, a `playableReady` event fires once that much
+   * of the output is on disk; the rest keeps being appended and the call
+   * resolves with the final `totalBytes`. Such a lesson is assembled in
+   * order, never in parallel, so the head really is playable.
+   */
+  decryptAndAssemble(options: EncryptedSource & {
+    outputPath: string;
+    lessonId?: string;
+    key?: string;
+    /** Not needed for `chunkStore` */
+    nonce?: string;
+    chunkSize: number;
+    jobId?: string;
+    parallel?: boolean;
+    digests?: (string | null)[];
+    seekIndex?: boolean;
+    playableAfterBytes?: number;
+  }): Promise<{ success: boolean; totalBytes: number; jobId: string; durationMs?: number }>;
+
+  /**
+   * Android only: exact duration and seek points of an assembled MP3,
+   * from the index saved by `decryptAndAssemble` (other files are scanned
+   * once). With `positionsMs`, `offsets` holds the byte offset of the frame
+   * at or before each position; otherwise `timesMs` / `offsets` is the whole
+   * table, one entry per second. Rejects with code `NOT_MP3` if no frames
+   * are found, and `BUSY` while `decryptAndAssemble` is still writing it.
+   */
+  getSeekIndex(options: { path: string; positionsMs?: number[] }): Promise<Mp3SeekIndex>;
+
+  /**
+   * Android only: stop a running job. Its call rejects with code
+   * `CANCELLED` and the partial output file is removed.
+   */
+  cancel(options: { jobId: string }): Promise<{ cancelled: boolean }>;
+
+  addListener(
+    eventName: 'concatenationProgress',
+    listenerFunc: (progress: ConcatenationProgress) => void
+  ): Promise<PluginListenerHandle>;
+
+  addListener(
+    eventName: 'playableReady',
+    listenerFunc: (event: PlayableReady) => void
+  ): Promise<PluginListenerHandle>;
 }
 
 const FileConcatenation = registerPlugin<FileConcatenationPlugin>('FileConcatenation', {
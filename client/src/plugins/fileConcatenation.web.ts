@@ -1,8 +1,20 @@
 import { WebPlugin } from '@capacitor/core';
-import type { FileConcatenationPlugin } from './fileConcatenation';
+import type { FileConcatenationPlugin, Mp3SeekIndex } from './fileConcatenation';
 
 export class FileConcatenationWeb extends WebPlugin implements FileConcatenationPlugin {
   async concatenateFiles(): Promise<{ success: boolean; totalBytes: number }> {
     throw new Error('FileConcatenation is not supported on web');
   }
+
+  async decryptAndAssemble(): Promise<{ success: boolean; totalBytes: number; jobId: string }> {
+    throw new Error('FileConcatenation is not supported on web');
+  }
+
+  async getSeekIndex(): Promise<Mp3SeekIndex> {
+    throw new Error('FileConcatenation is not supported on web');
+  }
+
+  async cancel(): Promise<{ cancelled: boolean }> {
+    return { cancelled: false };
+  }
 }
@@ -0,0 +1,36 @@
+import { registerPlugin } from '@capacitor/core';
+
+/**
+ * Android only: lesson keys wrapped by a hardware-backed Keystore key. Once
+ * a lesson's key is stored, the decrypting plugins take its `lessonId`
+ * instead of a `key`, so the raw key stays native. Methods return a
+ * `keyId`, which identifies a key without revealing it.
+ */
+export interface KeyVaultPlugin {
+  /** `keyId` is absent if no usable key is stored for the lesson. */
+  lookup(options: { lessonId: string }): Promise<{ keyId?: string }>;
+
+  /** Wrap and store a key the app already holds. */
+  store(options: { lessonId: string; key: string }): Promise<{ keyId: string }>;
+
+  /**
+   * POST `body` to the decrypt endpoint `url` and store the `key` of the
+   * response natively; the key is never returned to JS.
+   */
+  fetch(options: {
+    lessonId: string;
+    url: string;
+    headers?: Record<string, string>;
+    body?: string;
+  }): Promise<{ keyId: string }>;
+
+  remove(options: { lessonId: string }): Promise<void>;
+
+  clear(): Promise<void>;
+}
+
+const KeyVault = registerPlugin<KeyVaultPlugin>('KeyVault', {
+  web: () => import('./keyVault.web').then(m => new m.KeyVaultWeb()),
+});
+
+export default KeyVault;
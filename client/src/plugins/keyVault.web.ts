@@ -0,0 +1,24 @@
+import { WebPlugin } from '@capacitor/core';
+import type { KeyVaultPlugin } from './keyVault';
+
+export class KeyVaultWeb extends WebPlugin implements KeyVaultPlugin {
+  async lookup(): Promise<{ keyId?: string }> {
+    throw new Error('KeyVault is not supported on web');
+  }
+
+  async store(): Promise<{ keyId: string }> {
+    throw new Error('KeyVault is not supported on web');
+  }
+
+  async fetch(): Promise<{ keyId: string }> {
+    throw new Error('KeyVault is not supported on web');
+  }
+
+  async remove(): Promise<void> {
+    // Nothing stored on web
+  }
+
+  async clear(): Promise<void> {
+    // Nothing stored on web
+  }
+}
@@ -0,0 +1,52 @@
+import { registerPlugin } from '@capacitor/core';
+import type { ChunkManifest } from '../lib/audioEncryption';
+
+/**
+ * Android only: v4 lesson storage. All encrypted chunks of a lesson live as
+ * raw bytes in one container file with the manifest in its header, instead
+ * of one base64 text file per chunk.
+ */
+export interface LessonContainerPlugin {
+  create(options: { path: string }): Promise<void>;
+
+  /** Append one encrypted chunk (base64 over the bridge, raw bytes on disk). */
+  append(options: { path: string; data: string }): Promise<{ size: number }>;
+
+  finish(options: { path: string; manifest: ChunkManifest }): Promise<{ dataLength: number }>;
+
+  abort(options: { path: string }): Promise<void>;
+
+  readManifest(options: { path: string }): Promise<{ manifest: ChunkManifest }>;
+
+  /**
+   * Convert a v3 download (base64 chunk files) into a v4 container in the
+   * background and rewrite its manifest. The chunk files are removed once
+   * the new manifest is in place.
+   */
+  convertFromV3(options: {
+    manifestPath: string;
+    containerPath: string;
+    inputPaths: string[];
+  }): Promise<{ manifest: ChunkManifest }>;
+
+  /**
+   * Re-encrypt a v2 download (AES-256-CBC base64 chunk files) into a v4
+   * AES-CTR container in the background, chunk by chunk, and rewrite its
+   * manifest. The chunk files are removed once the new manifest is in
+   * place. Without `key`, the key of `lessonId` comes from the KeyVault.
+   */
+  migrateFromV2(options: {
+    manifestPath: string;
+    containerPath: string;
+    inputPaths: string[];
+    chunkSize: number;
+    lessonId?: string;
+    key?: string;
+  }): Promise<{ manifest: ChunkManifest }>;
+}
+
+const LessonContainer = registerPlugin<LessonContainerPlugin>('LessonContainer', {
+  web: () => import('./lessonContainer.web').then(m => new m.LessonContainerWeb()),
+});
+
+export default LessonContainer;
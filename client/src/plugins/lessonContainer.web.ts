@@ -0,0 +1,33 @@
+import { WebPlugin } from '@capacitor/core';
+import type { LessonContainerPlugin } from './lessonContainer';
+import type { ChunkManifest } from '../lib/audioEncryption';
+
+export class LessonContainerWeb extends WebPlugin implements LessonContainerPlugin {
+  async create(): Promise<void> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+
+  async append(): Promise<{ size: number }> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+
+  async finish(): Promise<{ dataLength: number }> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+
+  async abort(): Promise<void> {
+    // Nothing to discard on web
+  }
+
+  async readManifest(): Promise<{ manifest: ChunkManifest }> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+
+  async convertFromV3(): Promise<{ manifest: ChunkManifest }> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+
+  async migrateFromV2(): Promise<{ manifest: ChunkManifest }> {
+    throw new Error('LessonContainer is not supported on web');
+  }
+}
@@ -0,0 +1,67 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+import type { ChunkManifest } from '../lib/audioEncryption';
+
+export interface DownloadProgressEvent {
+  jobId: string;
+  bytesDone: number;
+  totalBytes: number;
+  bytesPerSecond: number;
+}
+
+export interface LessonDownloadPlugin {
+  /**
+   * Android only: download `url` and encrypt it with AES-256-CTR straight
+   * into a v4 container at `containerPath`. An interrupted download of the
+   * same container resumes from its last completed chunk. Resolves with the
+   * manifest to store next to it.
+   */
+  download(options: {
+    lessonId: string;
+    url: string;
+    headers?: Record<string, string>;
+    containerPath: string;
+    key: string;
+    chunkSize: number;
+    jobId?: string;
+  }): Promise<{ jobId: string; manifest: ChunkManifest }>;
+
+  /**
+   * Re-download one chunk of a finished container with a Range request,
+   * check it against `sha256` and re-encrypt it in place. Rejects with code
+   * `CHUNK_CORRUPT` if the server's bytes do not match either. Without
+   * `key`, the key of `lessonId` comes from the KeyVault.
+   */
+  repairChunk(options: {
+    url: string;
+    headers?: Record<string, string>;
+    containerPath: string;
+    lessonId?: string;
+    key?: string;
+    nonce: string;
+    chunkSize: number;
+    totalSize: number;
+    chunkIndex: number;
+    sha256: string;
+  }): Promise<{ chunkIndex: number }>;
+
+  /**
+   * Stop a running download. Its call rejects with code `CANCELLED` and the
+   * partial container is removed.
+   */
+  cancel(options: { jobId: string }): Promise<{ cancelled: boolean }>;
+
+  /** Drop a resumable partial download, e.g. when the lesson is deleted. */
+  discard(options: { containerPath: string }): Promise<void>;
+
+  addListener(
+    eventName: 'downloadProgress',
+    listenerFunc: (progress: DownloadProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const LessonDownload = registerPlugin<LessonDownloadPlugin>('LessonDownload', {
+  web: () => import('./lessonDownload.web').then(m => new m.LessonDownloadWeb()),
+});
+
+export default LessonDownload;
@@ -0,0 +1,21 @@
+import { WebPlugin } from '@capacitor/core';
+import type { LessonDownloadPlugin } from './lessonDownload';
+import type { ChunkManifest } from '../lib/audioEncryption';
+
+export class LessonDownloadWeb extends WebPlugin implements LessonDownloadPlugin {
+  async download(): Promise<{ jobId: string; manifest: ChunkManifest }> {
+    throw new Error('LessonDownload is not supported on web');
+  }
+
+  async repairChunk(): Promise<{ chunkIndex: number }> {
+    throw new Error('LessonDownload is not supported on web');
+  }
+
+  async cancel(): Promise<{ cancelled: boolean }> {
+    return { cancelled: false };
+  }
+
+  async discard(): Promise<void> {
+    // Nothing to discard on web
+  }
+}
@@ -0,0 +1,78 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+import type { EncryptedSource } from './fileConcatenation';
+
+export interface LessonPlayerPosition {
+  lessonId: string;
+  positionMs: number;
+  bufferedMs: number;
+  durationMs: number;
+}
+
+export interface LessonPlayerState extends LessonPlayerPosition {
+  state: 'idle' | 'buffering' | 'ready' | 'ended';
+  isPlaying: boolean;
+  /** Stays true while buffering; false once paused from anywhere. */
+  playWhenReady: boolean;
+  allowSeeking: boolean;
+}
+
+export interface LessonPlayerPlugin {
+  /**
+   * Android only: queue a downloaded lesson in the native player. Audio is
+   * decrypted from the encrypted chunks as it plays and keeps playing in
+   * the background and on the lock screen.
+   */
+  load(options: EncryptedSource & {
+    lessonId: string;
+    /** Omit when the lesson's key is in the KeyVault */
+    key?: string;
+    /** Not needed for `chunkStore` */
+    nonce?: string;
+    chunkSize: number;
+    totalSize: number;
+    allowSeeking: boolean;
+    startPositionMs?: number;
+    title?: string;
+    artist?: string;
+  }): Promise<{ lessonId: string }>;
+
+  play(): Promise<void>;
+
+  pause(): Promise<LessonPlayerPosition>;
+
+  /** Rejects when the loaded lesson does not allow seeking. */
+  seekTo(options: { positionMs: number }): Promise<LessonPlayerPosition>;
+
+  setVolume(options: { volume: number }): Promise<void>;
+
+  getState(): Promise<LessonPlayerState & { volume: number }>;
+
+  /**
+   * Stop playback and forget the lesson's key. With `lessonId`, only if
+   * that lesson is the one loaded.
+   */
+  stop(options?: { lessonId?: string }): Promise<void>;
+
+  /** Every 500 ms while playing and the app is in the foreground. */
+  addListener(
+    eventName: 'positionChanged',
+    listenerFunc: (position: LessonPlayerPosition) => void
+  ): Promise<PluginListenerHandle>;
+
+  addListener(
+    eventName: 'playbackStateChanged',
+    listenerFunc: (state: LessonPlayerState) => void
+  ): Promise<PluginListenerHandle>;
+
+  addListener(
+    eventName: 'playbackError',
+    listenerFunc: (error: { lessonId: string; message: string; code: string }) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const LessonPlayer = registerPlugin<LessonPlayerPlugin>('LessonPlayer', {
+  web: () => import('./lessonPlayer.web').then(m => new m.LessonPlayerWeb()),
+});
+
+export default LessonPlayer;
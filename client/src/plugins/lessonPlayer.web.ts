@@ -0,0 +1,32 @@
+import { WebPlugin } from '@capacitor/core';
+import type { LessonPlayerPlugin, LessonPlayerPosition, LessonPlayerState } from './lessonPlayer';
+
+export class LessonPlayerWeb extends WebPlugin implements LessonPlayerPlugin {
+  async load(): Promise<{ lessonId: string }> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async play(): Promise<void> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async pause(): Promise<LessonPlayerPosition> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async seekTo(): Promise<LessonPlayerPosition> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async setVolume(): Promise<void> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async getState(): Promise<LessonPlayerState & { volume: number }> {
+    throw new Error('LessonPlayer is not supported on web');
+  }
+
+  async stop(): Promise<void> {
+    // Nothing to release on web
+  }
+}
@@ -0,0 +1,68 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+/** A downloaded lesson, described like LessonStream.open. */
+export interface PrefetchLesson {
+  lessonId: string;
+  inputPaths?: string[];
+  containerPath?: string;
+  /** A v5 lesson in the chunk store; `digests` name its chunks */
+  chunkStore?: boolean;
+  /** Omit when the lesson's key is in the KeyVault */
+  key?: string;
+  /** Not needed for `chunkStore` */
+  nonce?: string;
+  chunkSize: number;
+  /** Per-chunk SHA-256 of the plaintext, checked while decrypting */
+  digests?: (string | null)[];
+  /** Store the decrypted lesson in the playback cache under this fingerprint */
+  fingerprint?: string;
+}
+
+export interface PrefetchConstraints {
+  /** Default false */
+  requiresCharging?: boolean;
+  /** Default false */
+  requiresDeviceIdle?: boolean;
+  /** Default true */
+  requiresBatteryNotLow?: boolean;
+}
+
+export interface LessonPrefetchResult {
+  lessonId: string;
+  outcome: 'verified' | 'cached' | 'corrupt' | 'failed';
+  /** The damaged chunk when `outcome` is 'corrupt' */
+  chunkIndex?: number;
+  message?: string;
+}
+
+/**
+ * Android only: prepares the lessons a learner is likely to play next in a
+ * WorkManager job, decrypting each once with its chunk digests checked.
+ * Keys stay in native memory and are never written to disk.
+ */
+export interface LessonPrefetchPlugin {
+  /** Replace the lessons to prepare and start the job. */
+  schedule(options: { lessons: PrefetchLesson[] } & PrefetchConstraints): Promise<{ scheduled: number }>;
+
+  /** Stop preparing but keep the list, e.g. while a lesson is playing. */
+  pause(): Promise<void>;
+
+  resume(): Promise<void>;
+
+  /** Stop and forget the lessons left. */
+  cancel(): Promise<void>;
+
+  getStatus(): Promise<{ pending: string[]; results: LessonPrefetchResult[] }>;
+
+  addListener(
+    eventName: 'lessonPrefetched',
+    listenerFunc: (result: LessonPrefetchResult) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const LessonPrefetch = registerPlugin<LessonPrefetchPlugin>('LessonPrefetch', {
+  web: () => import('./lessonPrefetch.web').then(m => new m.LessonPrefetchWeb()),
+});
+
+export default LessonPrefetch;
@@ -0,0 +1,24 @@
+import { WebPlugin } from '@capacitor/core';
+import type { LessonPrefetchPlugin, LessonPrefetchResult } from './lessonPrefetch';
+
+export class LessonPrefetchWeb extends WebPlugin implements LessonPrefetchPlugin {
+  async schedule(): Promise<{ scheduled: number }> {
+    throw new Error('LessonPrefetch is not supported on web');
+  }
+
+  async pause(): Promise<void> {
+    // Nothing runs on web
+  }
+
+  async resume(): Promise<void> {
+    // Nothing runs on web
+  }
+
+  async cancel(): Promise<void> {
+    // Nothing runs on web
+  }
+
+  async getStatus(): Promise<{ pending: string[]; results: LessonPrefetchResult[] }> {
+    throw new Error('LessonPrefetch is not supported on web');
+  }
+}
@@ -0,0 +1,28 @@
+import { registerPlugin } from '@capacitor/core';
+import type { EncryptedSource } from './fileConcatenation';
+
+export interface LessonStreamPlugin {
+  /**
+   * Android only: register a downloaded lesson and get a virtual URL that the
+   * WebView's media element can play. Byte ranges are decrypted on demand,
+   * so no plaintext file is ever written.
+   */
+  open(options: EncryptedSource & {
+    lessonId: string;
+    /** Omit when the lesson's key is in the KeyVault */
+    key?: string;
+    /** Not needed for `chunkStore` */
+    nonce?: string;
+    chunkSize: number;
+    totalSize: number;
+  }): Promise<{ url: string }>;
+
+  /** Forget the lesson's key and invalidate its URL. */
+  close(options: { lessonId: string }): Promise<void>;
+}
+
+const LessonStream = registerPlugin<LessonStreamPlugin>('LessonStream', {
+  web: () => import('./lessonStream.web').then(m => new m.LessonStreamWeb()),
+});
+
+export default LessonStream;
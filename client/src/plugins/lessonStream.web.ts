@@ -0,0 +1,12 @@
+import { WebPlugin } from '@capacitor/core';
+import type { LessonStreamPlugin } from './lessonStream';
+
+export class LessonStreamWeb extends WebPlugin implements LessonStreamPlugin {
+  async open(): Promise<{ url: string }> {
+    throw new Error('LessonStream is not supported on web');
+  }
+
+  async close(): Promise<void> {
+    // Nothing to release on web
+  }
+}
@@ -0,0 +1,42 @@
+import { registerPlugin } from '@capacitor/core';
+
+export interface HistogramSummary {
+  unit: string;
+  count: number;
+  mean: number;
+  /** Percentiles are bucket upper bounds, within 25% of the true value. */
+  p50: number;
+  p90: number;
+  p99: number;
+  max: number;
+}
+
+export interface NativeMetricsSnapshot {
+  /** Start of the window (epoch ms): app start or the last reset. */
+  sinceMs: number;
+  /**
+   * `assembly.bytesPerSecond`, `decrypt.chunkMicros`,
+   * `bridge.roundTripMicros`, `screenCapture.checkMicros`
+   */
+  histograms: Record<string, HistogramSummary>;
+  /** `assembly.bytes`, `decrypt.chunks`, `decrypt.corruptChunks` */
+  counters: Record<string, number>;
+}
+
+/** Android only: timers and counters recorded by the native hot paths. */
+export interface MetricsPlugin {
+  getMetrics(): Promise<NativeMetricsSnapshot>;
+
+  resetMetrics(): Promise<void>;
+
+  /** Empty call, timed by the WebView to measure bridge latency. */
+  ping(): Promise<void>;
+
+  recordBridgeSamples(options: { micros: number[] }): Promise<void>;
+}
+
+const Metrics = registerPlugin<MetricsPlugin>('Metrics', {
+  web: () => import('./metrics.web').then(m => new m.MetricsWeb()),
+});
+
+export default Metrics;
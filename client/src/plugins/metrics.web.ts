@@ -0,0 +1,20 @@
+import { WebPlugin } from '@capacitor/core';
+import type { MetricsPlugin, NativeMetricsSnapshot } from './metrics';
+
+export class MetricsWeb extends WebPlugin implements MetricsPlugin {
+  async getMetrics(): Promise<NativeMetricsSnapshot> {
+    throw new Error('Metrics is not supported on web');
+  }
+
+  async resetMetrics(): Promise<void> {
+    // Nothing recorded on web
+  }
+
+  async ping(): Promise<void> {
+    // Nothing to measure on web
+  }
+
+  async recordBridgeSamples(): Promise<void> {
+    // Nothing recorded on web
+  }
+}
@@ -0,0 +1,39 @@
+import { registerPlugin } from '@capacitor/core';
+
+export interface PlaybackCacheStats {
+  budgetBytes: number;
+  sizeBytes: number;
+  entries: number;
+}
+
+/**
+ * Android only: assembled lessons kept on disk for instant replay, evicted
+ * least-recently-played first once over the byte budget. Entries are keyed
+ * by lesson and a fingerprint of its key and manifest, so a changed key or
+ * re-download never plays a stale copy. Paths are relative to
+ * Directory.Data.
+ */
+export interface PlaybackCachePlugin {
+  /** On a miss, assemble into `stagingPath` and then call `commit`. */
+  lookup(options: {
+    lessonId: string;
+    fingerprint: string;
+  }): Promise<{ hit: boolean; path?: string; stagingPath?: string }>;
+
+  commit(options: { lessonId: string; fingerprint: string }): Promise<{ path: string }>;
+
+  invalidate(options: { lessonId: string }): Promise<void>;
+
+  clear(): Promise<void>;
+
+  /** Persisted; a smaller budget evicts right away. */
+  setBudget(options: { bytes: number }): Promise<PlaybackCacheStats>;
+
+  getStats(): Promise<PlaybackCacheStats>;
+}
+
+const PlaybackCache = registerPlugin<PlaybackCachePlugin>('PlaybackCache', {
+  web: () => import('./playbackCache.web').then(m => new m.PlaybackCacheWeb()),
+});
+
+export default PlaybackCache;
@@ -0,0 +1,28 @@
+import { WebPlugin } from '@capacitor/core';
+import type { PlaybackCachePlugin, PlaybackCacheStats } from './playbackCache';
+
+export class PlaybackCacheWeb extends WebPlugin implements PlaybackCachePlugin {
+  async lookup(): Promise<{ hit: boolean; path?: string; stagingPath?: string }> {
+    throw new Error('PlaybackCache is not supported on web');
+  }
+
+  async commit(): Promise<{ path: string }> {
+    throw new Error('PlaybackCache is not supported on web');
+  }
+
+  async invalidate(): Promise<void> {
+    // Nothing cached on web
+  }
+
+  async clear(): Promise<void> {
+    // Nothing cached on web
+  }
+
+  async setBudget(): Promise<PlaybackCacheStats> {
+    throw new Error('PlaybackCache is not supported on web');
+  }
+
+  async getStats(): Promise<PlaybackCacheStats> {
+    throw new Error('PlaybackCache is not supported on web');
+  }
+}
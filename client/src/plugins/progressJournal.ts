@@ -0,0 +1,71 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface JournalEvent {
+  /** API path the batch is sent to, e.g. '/progress/batch' */
+  path: string;
+  /** Defaults to POST */
+  method?: 'POST' | 'PUT';
+  /** Body field holding the batch array; defaults to 'events' */
+  field?: string;
+  /** A later event with the same path, field and key replaces this one */
+  key: string;
+  data: Record<string, unknown>;
+  /**
+   * Write to disk and send right away instead of in the next batch; the
+   * result carries the server's `reply` if it was reached
+   */
+  durable?: boolean;
+}
+
+export interface JournalRecordResult {
+  sequence: number;
+  pending: number;
+  /** Durable events only: the server's answer to the batch the event went out in */
+  reply?: { status: number; body: string };
+}
+
+export interface JournalFlushResult {
+  sent: number;
+  /** Dropped because the server refused them (4xx other than 401 and 403) */
+  rejected: number;
+  /** Still queued, e.g. while offline */
+  pending: number;
+  /** Why the flush stopped early */
+  error?: string;
+}
+
+/**
+ * Android only: progress and attendance recorded to an on-device journal
+ * and sent in batches once there is a network, so updates made offline are
+ * not lost. Each user has their own journal.
+ */
+export interface ProgressJournalPlugin {
+  /**
+   * The signed-in `user`, whose journal is opened, and the base URL and
+   * headers (e.g. Authorization) for sending; kept in memory only, so call
+   * it at start and whenever the token changes.
+   */
+  configure(options: { baseUrl: string; user: string; headers?: Record<string, string> }): Promise<void>;
+
+  /** Stop recording and sending; unsent events wait for the user's next sign-in. */
+  signOut(): Promise<void>;
+
+  record(event: JournalEvent): Promise<JournalRecordResult>;
+
+  /** Send everything pending now. */
+  flush(): Promise<JournalFlushResult>;
+
+  getPending(): Promise<{ pending: number }>;
+
+  addListener(
+    eventName: 'journalFlushed',
+    listenerFunc: (result: JournalFlushResult) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const ProgressJournal = registerPlugin<ProgressJournalPlugin>('ProgressJournal', {
+  web: () => import('./progressJournal.web').then(m => new m.ProgressJournalWeb()),
+});
+
+export default ProgressJournal;
@@ -0,0 +1,24 @@
+import { WebPlugin } from '@capacitor/core';
+import type { JournalFlushResult, JournalRecordResult, ProgressJournalPlugin } from './progressJournal';
+
+export class ProgressJournalWeb extends WebPlugin implements ProgressJournalPlugin {
+  async configure(): Promise<void> {
+    throw new Error('ProgressJournal is not supported on web');
+  }
+
+  async signOut(): Promise<void> {
+    throw new Error('ProgressJournal is not supported on web');
+  }
+
+  async record(): Promise<JournalRecordResult> {
+    throw new Error('ProgressJournal is not supported on web');
+  }
+
+  async flush(): Promise<JournalFlushResult> {
+    throw new Error('ProgressJournal is not supported on web');
+  }
+
+  async getPending(): Promise<{ pending: number }> {
+    throw new Error('ProgressJournal is not supported on web');
+  }
+}
@@ -0,0 +1,70 @@
+import { registerPlugin } from '@capacitor/core';
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export interface LessonStorage {
+  lessonId: string;
+  /** Everything on disk for the lesson, orphans included */
+  bytes: number;
+  orphanBytes: number;
+  /** Manifest version and chunk count; 0 without a readable manifest */
+  version: number;
+  totalChunks: number;
+  /** v3 chunk files present */
+  chunksPresent: number;
+  complete: boolean;
+}
+
+export interface OrphanFile {
+  /** Relative to Directory.Data */
+  path: string;
+  lessonId: string;
+  bytes: number;
+  reason: string;
+  /** An interrupted download the next attempt can still resume */
+  resumable: boolean;
+}
+
+export interface StorageSnapshot {
+  totalBytes: number;
+  orphanBytes: number;
+  lessons: LessonStorage[];
+  orphans: OrphanFile[];
+}
+
+export interface CompactResult extends StorageSnapshot {
+  removedFiles: number;
+  reclaimedBytes: number;
+}
+
+/**
+ * Android only: native index of the audio folder, kept current as files
+ * change, so sizes and orphans come back in one call.
+ */
+export interface StorageIndexPlugin {
+  getIndex(): Promise<StorageSnapshot>;
+
+  /** Rebuild from a fresh directory listing. */
+  refresh(): Promise<StorageSnapshot>;
+
+  /**
+   * Delete orphaned files in one pass. Lessons in `keep` and files newer
+   * than `minAgeMs` (default 10 minutes) are spared; interrupted downloads
+   * are only removed with `removeResumable`.
+   */
+  compact(options?: {
+    keep?: string[];
+    minAgeMs?: number;
+    removeResumable?: boolean;
+  }): Promise<CompactResult>;
+
+  addListener(
+    eventName: 'storageChanged',
+    listenerFunc: (event: { totalBytes: number; orphanBytes: number }) => void
+  ): Promise<PluginListenerHandle>;
+}
+
+const StorageIndex = registerPlugin<StorageIndexPlugin>('StorageIndex', {
+  web: () => import('./storageIndex.web').then(m => new m.StorageIndexWeb()),
+});
+
+export default StorageIndex;
@@ -0,0 +1,16 @@
+import { WebPlugin } from '@capacitor/core';
+import type { CompactResult, StorageIndexPlugin, StorageSnapshot } from './storageIndex';
+
+export class StorageIndexWeb extends WebPlugin implements StorageIndexPlugin {
+  async getIndex(): Promise<StorageSnapshot> {
+    throw new Error('StorageIndex is not supported on web');
+  }
+
+  async refresh(): Promise<StorageSnapshot> {
+    throw new Error('StorageIndex is not supported on web');
+  }
+
+  async compact(): Promise<CompactResult> {
+    throw new Error('StorageIndex is not supported on web');
+  }
+}